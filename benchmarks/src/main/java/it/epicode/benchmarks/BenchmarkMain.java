@@ -0,0 +1,25 @@
+package it.epicode.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Avvia JMH salvando i risultati in JSON (default: jmh-result.json)
+ * Accetta tutte le opzioni di JMH, ad esempio: -p persone=100000 -p database=postgres -rff risultati.json
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> argomenti = new ArrayList<>(Arrays.asList(args));
+        if (!argomenti.contains("-rf")) {
+            argomenti.add("-rf");
+            argomenti.add("json");
+        }
+        if (!argomenti.contains("-rff")) {
+            argomenti.add("-rff");
+            argomenti.add("jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(argomenti.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,59 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.PersonaDAO;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import java.time.LocalDate;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark di inserimento massivo: confronta un ciclo di save() con saveAll()
+ * Il primo argomento indica il numero di persone da inserire (default 20000)
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.BulkInsertBenchmark" -Dexec.args="20000"
+ */
+public class BulkInsertBenchmark {
+
+    public static void main(String[] args) {
+        int righe = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+
+        try {
+            System.out.println("=== BENCHMARK INSERIMENTO MASSIVO (" + righe + " persone) ===\n");
+
+            // Riscaldamento: inizializza sequence, statement e connessioni
+            personaDAO.saveAll(persone("warmup", 1_000));
+
+            long inizio = System.nanoTime();
+            persone("save", righe).forEach(personaDAO::save);
+            double singoli = righeAlSecondo(righe, System.nanoTime() - inizio);
+            System.out.printf("Ciclo di save():  %,.0f righe/s%n", singoli);
+
+            inizio = System.nanoTime();
+            personaDAO.saveAll(persone("saveall", righe));
+            double batch = righeAlSecondo(righe, System.nanoTime() - inizio);
+            System.out.printf("saveAll (batch %d): %,.0f righe/s%n", runtime.getBatchSize(), batch);
+
+            System.out.printf("%nSpeedup: %.1fx%n", batch / singoli);
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+    }
+
+    // Genera le persone in modo lazy, con email univoche per ogni esecuzione
+    private static Stream<Persona> persone(String prefisso, int numero) {
+        long esecuzione = System.currentTimeMillis();
+        return LongStream.range(0, numero).mapToObj(i -> new Persona(
+            "Nome" + i,
+            "Cognome" + i,
+            prefisso + "." + esecuzione + "." + i + "@bench.it",
+            LocalDate.of(1980, 1, 1).plusDays(i % 10_000),
+            i % 2 == 0 ? Persona.Sesso.M : Persona.Sesso.F));
+    }
+
+    private static double righeAlSecondo(int righe, long nanos) {
+        return righe / (nanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,63 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Partecipazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cambio di stato di un gruppo di partecipazioni: una merge e una transazione per riga
+ * rispetto a PartecipazioneDAO.updateStato con aggiornamenti massivi
+ * A ogni operazione lo stato alterna tra CONFERMATA e DA_CONFERMARE, così ogni riga viene davvero aggiornata
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkStatoBenchmark {
+
+    @Param({"200"})
+    public int righe;
+
+    private List<Long> ids;
+    private boolean conferma;
+
+    @Setup(Level.Trial)
+    public void caricaIds(Dataset dataset) {
+        ids = dataset.partecipazioneDAO.findAllAfter(null, righe).stream().map(Partecipazione::getId).toList();
+    }
+
+    @Benchmark
+    public int perRiga(Dataset dataset) {
+        Partecipazione.Stato stato = prossimoStato();
+        for (Long id : ids) {
+            Partecipazione partecipazione = dataset.partecipazioneDAO.findById(id);
+            partecipazione.setStato(stato);
+            dataset.partecipazioneDAO.update(partecipazione);
+        }
+        return ids.size();
+    }
+
+    @Benchmark
+    public int updateStato(Dataset dataset) {
+        return dataset.partecipazioneDAO.updateStato(ids, prossimoStato());
+    }
+
+    private Partecipazione.Stato prossimoStato() {
+        conferma = !conferma;
+        return conferma ? Partecipazione.Stato.CONFERMATA : Partecipazione.Stato.DA_CONFERMARE;
+    }
+}
@@ -0,0 +1,150 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.LatencyHistogram;
+import it.epicode.persistence.Bulkhead;
+import it.epicode.persistence.OperazioneRifiutataException;
+import it.epicode.persistence.PersistenceRuntime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Latenza delle iscrizioni (PartecipazioneDAO.register) durante una raffica di findAll lenti
+ * Mentre N thread chiamano in continuazione PersonaDAO.findAll su qualche decina di migliaia di persone,
+ * un thread iscrive una persona alla volta e misura la latenza di ogni iscrizione.
+ * La prova viene eseguita due volte, con i compartimenti (gestione-eventi.bulkhead.enabled) disattivati e attivati:
+ * senza compartimenti le letture occupano tutte le connessioni e le iscrizioni attendono il pool,
+ * con i compartimenti le letture in eccesso sono rifiutate e le iscrizioni trovano sempre una connessione
+ * Argomenti: thread di lettura (default 32), persone lette da findAll (default 20000), iscrizioni (default 300)
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.BulkheadBenchmark" -Dexec.args="32 20000 300"
+ */
+public class BulkheadBenchmark {
+
+    private static final String BULKHEAD_PROPERTY = "gestione-eventi.bulkhead.enabled";
+
+    public static void main(String[] args) throws InterruptedException {
+        int lettori = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int numeroPersone = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int iscrizioni = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+        System.out.println("=== ISCRIZIONI DURANTE UNA RAFFICA DI findAll (" + lettori + " lettori, "
+            + numeroPersone + " persone, " + iscrizioni + " iscrizioni) ===\n");
+        Long eventoId = preparaDati(numeroPersone, iscrizioni);
+        try {
+            for (boolean compartimenti : new boolean[] {false, true}) {
+                System.setProperty(BULKHEAD_PROPERTY, String.valueOf(compartimenti));
+                try {
+                    esegui(compartimenti, lettori, iscrizioni, eventoId);
+                } finally {
+                    PersistenceRuntime.closeDefault();
+                }
+            }
+        } finally {
+            System.clearProperty(BULKHEAD_PROPERTY);
+        }
+    }
+
+    private static Long preparaDati(int numeroPersone, int iscrizioni) {
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        try {
+            PersonaDAO personaDAO = new PersonaDAO(runtime);
+            // Le persone lette da findAll restano nel database e vengono riusate dalle esecuzioni successive
+            if (personaDAO.findByEmail(emailLettura(numeroPersone - 1)) == null) {
+                personaDAO.saveAll(IntStream.range(0, numeroPersone)
+                    .filter(i -> personaDAO.findByEmail(emailLettura(i)) == null)
+                    .mapToObj(i -> new Persona("Nome" + i, "Cognome" + i, emailLettura(i), LocalDate.of(1990, 1, 1), Persona.Sesso.F))
+                    .collect(Collectors.toList()));
+            }
+            long esecuzione = System.currentTimeMillis();
+            Location location = new LocationDAO(runtime).save(new Location("Arena Bulkhead", "Genova"));
+            Evento evento = new EventoDAO(runtime).save(new Evento("Bulkhead " + esecuzione, LocalDate.now().plusMonths(1),
+                "Evento per la prova dei compartimenti", Evento.TipoEvento.PUBBLICO, 2 * iscrizioni, location));
+            return evento.getId();
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+    }
+
+    private static String emailLettura(int i) {
+        return "lettura." + i + "@bulkhead.bench";
+    }
+
+    private static void esegui(boolean compartimenti, int lettori, int iscrizioni, Long eventoId) throws InterruptedException {
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO(runtime);
+
+        long esecuzione = System.currentTimeMillis();
+        List<Persona> persone = IntStream.range(0, iscrizioni)
+            .mapToObj(i -> new Persona("Iscritto" + i, "Bulkhead", "iscrizione." + esecuzione + "." + i + "@bulkhead.bench",
+                LocalDate.of(1990, 1, 1), Persona.Sesso.M))
+            .collect(Collectors.toList());
+        personaDAO.saveAll(persone);
+
+        AtomicBoolean fine = new AtomicBoolean();
+        LongAdder letture = new LongAdder();
+        LongAdder lettureFallite = new LongAdder();
+        LongAdder lettureRifiutate = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < lettori; t++) {
+            Thread lettore = new Thread(() -> {
+                while (!fine.get()) {
+                    try {
+                        personaDAO.findAll();
+                        letture.increment();
+                    } catch (OperazioneRifiutataException e) {
+                        lettureRifiutate.increment();
+                    } catch (RuntimeException e) {
+                        lettureFallite.increment();
+                    }
+                }
+            });
+            lettore.start();
+            threads.add(lettore);
+        }
+
+        // Qualche secondo perché le letture occupino il pool prima delle iscrizioni
+        Thread.sleep(2_000);
+        LatencyHistogram latenze = new LatencyHistogram();
+        int errori = 0;
+        long inizio = System.nanoTime();
+        for (Persona persona : persone) {
+            long t0 = System.nanoTime();
+            try {
+                partecipazioneDAO.register(persona.getId(), eventoId);
+            } catch (RuntimeException e) {
+                errori++;
+            }
+            latenze.record(System.nanoTime() - t0);
+        }
+        double durata = (System.nanoTime() - inizio) / 1_000_000_000.0;
+        fine.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("Compartimenti %s:%n", compartimenti ? "attivi" : "disattivati");
+        System.out.printf("  iscrizioni: %d in %.1f s, errori %d | p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+            iscrizioni, durata, errori, latenze.getValueAtQuantile(0.5) / 1e6, latenze.getValueAtQuantile(0.99) / 1e6,
+            latenze.getMax() / 1e6);
+        System.out.printf("  findAll: %d completate, %d rifiutate, %d fallite%n",
+            letture.sum(), lettureRifiutate.sum(), lettureFallite.sum());
+        for (Bulkhead bulkhead : DaoMetrics.of(runtime).getAdmissionControl().getBulkheads()) {
+            System.out.println("  " + bulkhead);
+        }
+        System.out.println();
+    }
+}
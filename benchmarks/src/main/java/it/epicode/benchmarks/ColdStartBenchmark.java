@@ -0,0 +1,124 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.PersonaDAO;
+import it.epicode.persistence.PersistenceRuntime;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark di avvio a freddo: ogni misura è una JVM nuova che crea il runtime di persistenza
+ * ed esegue la prima query, come all'avvio dell'applicazione
+ * Riporta mediana e minimo del tempo dall'avvio della JVM alla prima query e del solo avvio del runtime
+ * Le system property hibernate.*, jakarta.persistence.jdbc.* e gestione-eventi.* vengono passate alle JVM figlie,
+ * ad esempio -Dhibernate.hbm2ddl.auto=update -Dgestione-eventi.schema.migrate=false per confrontare le migrazioni
+ * con l'aggiornamento dello schema da parte di Hibernate
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.ColdStartBenchmark" -Dexec.args="5"
+ */
+public class ColdStartBenchmark {
+
+    private static final String FIGLIO = "--figlio";
+    private static final String PREFISSO_RISULTATO = "AVVIO ";
+    private static final String[] PREFISSI_INOLTRATI = {"hibernate.", "jakarta.persistence.jdbc.", "gestione-eventi."};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && FIGLIO.equals(args[0])) {
+            eseguiFiglio();
+            return;
+        }
+        int avvii = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        System.out.println("=== BENCHMARK DI AVVIO A FREDDO (" + avvii + " JVM) ===\n");
+
+        long[] totale = new long[avvii];
+        long[] runtime = new long[avvii];
+        long[] primaQuery = new long[avvii];
+        for (int i = 0; i < avvii; i++) {
+            long[] misura = avviaFiglio();
+            totale[i] = misura[0];
+            runtime[i] = misura[1];
+            primaQuery[i] = misura[2];
+            System.out.printf("Avvio %d: %d ms alla prima query (runtime %d ms, prima query %d ms)%n",
+                i + 1, misura[0], misura[1], misura[2]);
+        }
+        System.out.println();
+        System.out.println("JVM -> prima query: " + statistiche(totale));
+        System.out.println("Avvio del runtime:  " + statistiche(runtime));
+        System.out.println("Prima query:        " + statistiche(primaQuery));
+    }
+
+    // Nella JVM figlia: misura l'avvio del runtime e la prima query, poi stampa i tempi su una riga
+    private static void eseguiFiglio() {
+        long inizio = System.nanoTime();
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        long avviato = System.nanoTime();
+        new PersonaDAO(runtime).findById(1L);
+        long fine = System.nanoTime();
+        long dallaJvm = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        PersistenceRuntime.closeDefault();
+        System.out.println(PREFISSO_RISULTATO + dallaJvm + " " + (avviato - inizio) / 1_000_000 + " " + (fine - avviato) / 1_000_000);
+    }
+
+    private static long[] avviaFiglio() throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String nome : System.getProperties().stringPropertyNames()) {
+            for (String prefisso : PREFISSI_INOLTRATI) {
+                if (nome.startsWith(prefisso)) {
+                    comando.add("-D" + nome + "=" + System.getProperty(nome));
+                    break;
+                }
+            }
+        }
+        comando.add("-cp");
+        comando.add(classpath());
+        comando.add(ColdStartBenchmark.class.getName());
+        comando.add(FIGLIO);
+        Process processo = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        long[] risultato = null;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(processo.getInputStream()))) {
+            String riga;
+            while ((riga = output.readLine()) != null) {
+                if (riga.startsWith(PREFISSO_RISULTATO)) {
+                    risultato = Arrays.stream(riga.substring(PREFISSO_RISULTATO.length()).split(" "))
+                        .mapToLong(Long::parseLong).toArray();
+                }
+            }
+        }
+        int codice = processo.waitFor();
+        if (codice != 0 || risultato == null) {
+            throw new IllegalStateException("La JVM figlia è terminata con codice " + codice + " senza risultati");
+        }
+        return risultato;
+    }
+
+    // Con mvn exec:java le classi del progetto sono in un URLClassLoader, non in java.class.path
+    private static String classpath() {
+        if (ColdStartBenchmark.class.getClassLoader() instanceof URLClassLoader loader) {
+            List<String> percorsi = new ArrayList<>();
+            for (URL url : loader.getURLs()) {
+                try {
+                    percorsi.add(Paths.get(url.toURI()).toString());
+                } catch (Exception e) {
+                    throw new IllegalStateException("Classpath non valido: " + url, e);
+                }
+            }
+            return String.join(File.pathSeparator, percorsi);
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    private static String statistiche(long[] valori) {
+        long[] ordinati = valori.clone();
+        Arrays.sort(ordinati);
+        return "mediana " + ordinati[ordinati.length / 2] + " ms, minimo " + ordinati[0] + " ms";
+    }
+}
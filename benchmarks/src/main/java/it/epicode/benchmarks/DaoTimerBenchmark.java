@@ -0,0 +1,58 @@
+package it.epicode.benchmarks;
+
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.DaoTimer;
+import it.epicode.persistence.PersistenceRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo della misura dei metodi dei DAO: DaoTimer.misura attorno a una chiamata vuota, confrontato con la chiamata diretta
+ * Con -t N si misura anche la contesa tra thread sugli stessi contatori
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoTimerBenchmark {
+
+    private static final List<String> RISULTATO = List.of("a", "b", "c");
+
+    private PersistenceRuntime runtime;
+    private DaoTimer timer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runtime = Dataset.apriRuntime("h2");
+        timer = DaoMetrics.of(runtime).timer("DaoTimerBenchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runtime.close();
+    }
+
+    @Benchmark
+    public List<String> baseline() {
+        return RISULTATO;
+    }
+
+    @Benchmark
+    public List<String> misura() {
+        return timer.misura("misura", () -> RISULTATO);
+    }
+}
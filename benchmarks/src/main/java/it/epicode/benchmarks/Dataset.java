@@ -0,0 +1,136 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.SchemaMigrations;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Dataset condiviso dai benchmark: runtime di persistenza, DAO e dati generati all'avvio
+ * Parametri JMH:
+ * - database: "h2" (embedded in memoria, default) oppure "postgres" (persistence.xml,
+ *   sovrascrivibile con -Djakarta.persistence.jdbc.url=...; le tabelle vengono ricreate)
+ * - persone: numero di persone generate; ogni persona è iscritta a un evento e ogni evento ha PERSONE_PER_EVENTO iscritti
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+
+    static final int PERSONE_PER_EVENTO = 100;
+
+    @Param({"h2"})
+    public String database;
+
+    @Param({"10000"})
+    public int persone;
+
+    PersistenceRuntime runtime;
+    PersonaDAO personaDAO;
+    EventoDAO eventoDAO;
+    PartecipazioneDAO partecipazioneDAO;
+
+    Location location;
+    long primaPersonaId;
+    long primoEventoId;
+    int eventi;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runtime = apriRuntime(database);
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        LocationDAO locationDAO = new LocationDAO(runtime);
+
+        location = locationDAO.save(new Location("Centro Congressi Benchmark", "Bologna"));
+        eventi = Math.max(1, persone / PERSONE_PER_EVENTO);
+        eventoDAO.saveAll(IntStream.range(0, eventi).mapToObj(i -> new Evento(
+            "Evento " + i, LocalDate.now().plusDays(i % 365), null,
+            Evento.TipoEvento.PUBBLICO, PERSONE_PER_EVENTO * 2, location)));
+        personaDAO.saveAll(IntStream.range(0, persone).mapToObj(Dataset::persona));
+
+        primoEventoId = eventoDAO.findAllAfter(null, 1).get(0).getId();
+        primaPersonaId = personaDAO.findAllAfter(null, 1).get(0).getId();
+        // Gli ID sono consecutivi perché le tabelle sono appena state create
+        EntityManager em = runtime.createEntityManager();
+        try {
+            partecipazioneDAO.saveAll(IntStream.range(0, persone).mapToObj(i -> new Partecipazione(
+                em.getReference(Persona.class, primaPersonaId + i),
+                em.getReference(Evento.class, primoEventoId + i % eventi),
+                Partecipazione.Stato.CONFERMATA)));
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runtime.close();
+    }
+
+    static Persona persona(int i) {
+        return new Persona("Nome" + i, "Cognome" + i, email(i), LocalDate.of(1990, 1, 1).plusDays(i % 10_000),
+            i % 2 == 0 ? Persona.Sesso.M : Persona.Sesso.F);
+    }
+
+    static String email(int i) {
+        return "persona" + i + "@benchmark.it";
+    }
+
+    int personaCasuale() {
+        return ThreadLocalRandom.current().nextInt(persone);
+    }
+
+    long eventoCasualeId() {
+        return primoEventoId + ThreadLocalRandom.current().nextInt(eventi);
+    }
+
+    List<Long> personaIds(int primo, int quanti) {
+        return IntStream.range(primo, primo + quanti).mapToObj(i -> primaPersonaId + i % persone).toList();
+    }
+
+    // Crea un runtime sul database indicato con tabelle vuote
+    static PersistenceRuntime apriRuntime(String database) {
+        Map<String, Object> overrides = new HashMap<>();
+        if ("h2".equals(database)) {
+            overrides.put("jakarta.persistence.jdbc.driver", "org.h2.Driver");
+            overrides.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+            overrides.put("jakarta.persistence.jdbc.user", "sa");
+            overrides.put("jakarta.persistence.jdbc.password", "");
+            overrides.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        } else if ("postgres".equals(database)) {
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("jakarta.persistence.jdbc.") || name.startsWith("hibernate.")) {
+                    overrides.put(name, System.getProperty(name));
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Database non supportato: " + database + " (valori ammessi: h2, postgres)");
+        }
+        // Le tabelle sono ricreate da hbm2ddl a ogni trial: le migrazioni Flyway (e le partizioni degli eventi)
+        // presuppongono uno schema che evolve solo tramite migrazioni, quindi restano disattivate
+        overrides.put("hibernate.hbm2ddl.auto", "create");
+        overrides.put(SchemaMigrations.MIGRATE_PROPERTY, "false");
+        overrides.put("hibernate.show_sql", "false");
+        overrides.put("hibernate.format_sql", "false");
+        return PersistenceRuntime.create(overrides);
+    }
+}
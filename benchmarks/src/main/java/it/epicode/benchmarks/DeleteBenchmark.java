@@ -0,0 +1,51 @@
+package it.epicode.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark di PersonaDAO.deleteById
+ * Ogni iterazione elimina BATCH persone create nel setup dell'iterazione, fuori dalla misura;
+ * il punteggio è il tempo dell'intero lotto di eliminazioni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = DeleteBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = DeleteBenchmark.BATCH)
+@Fork(1)
+public class DeleteBenchmark {
+
+    static final int BATCH = 500;
+
+    private List<Long> daEliminare;
+    private int prossima;
+    private int generazione;
+
+    @Setup(Level.Iteration)
+    public void creaPersone(Dataset dataset) {
+        int primo = 2_000_000_000 - (++generazione) * BATCH;
+        dataset.personaDAO.saveAll(IntStream.range(primo, primo + BATCH).mapToObj(Dataset::persona));
+        daEliminare = IntStream.range(primo, primo + BATCH)
+            .mapToObj(i -> dataset.personaDAO.findByEmail(Dataset.email(i)).getId())
+            .toList();
+        prossima = 0;
+    }
+
+    @Benchmark
+    public void deleteById(Dataset dataset) {
+        dataset.personaDAO.deleteById(daEliminare.get(prossima++));
+    }
+}
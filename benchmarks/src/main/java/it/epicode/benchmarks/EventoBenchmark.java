@@ -0,0 +1,52 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark di Evento.getPostiDisponibili su un'entità in memoria, senza database
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventoBenchmark {
+
+    @Param({"1000"})
+    public int partecipanti;
+
+    private Evento evento;
+
+    @Setup(Level.Trial)
+    public void creaEvento() {
+        evento = new Evento("Evento", LocalDate.now(), null, Evento.TipoEvento.PUBBLICO,
+            partecipanti * 2, new Location("Location", "Bologna"));
+        Persona persona = new Persona("Nome", "Cognome", "nome@benchmark.it", LocalDate.of(1990, 1, 1), Persona.Sesso.M);
+        for (int i = 0; i < partecipanti; i++) {
+            evento.addPartecipazione(new Partecipazione(persona, evento, Partecipazione.Stato.CONFERMATA));
+        }
+    }
+
+    @Benchmark
+    public int getPostiDisponibili() {
+        return evento.getPostiDisponibili();
+    }
+}
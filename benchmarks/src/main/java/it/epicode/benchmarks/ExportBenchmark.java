@@ -0,0 +1,124 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.dto.PartecipazioneView;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.exporter.ExportResult;
+import it.epicode.exporter.PartecipazioneExporter;
+import it.epicode.importer.Formato;
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.EntityManager;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark dell'esportazione dei partecipanti di un evento
+ * Confronta la sola lettura del cursore con l'esportazione CSV, CSV gzip e NDJSON su un canale che scarta i dati,
+ * e con il caricamento dell'intera lista con findByEvento; per ogni variante stampa righe al secondo e byte allocati
+ * Argomenti: numero di partecipanti dell'evento da generare (default 200000)
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.ExportBenchmark" -Dexec.args="200000"
+ */
+public class ExportBenchmark {
+
+    private static final int RIPETIZIONI = 3;
+
+    public static void main(String[] args) {
+        int partecipanti = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO(runtime);
+        PartecipazioneExporter exporter = new PartecipazioneExporter(runtime);
+        WritableByteChannel scarto = Channels.newChannel(OutputStream.nullOutputStream());
+        try {
+            System.out.println("=== BENCHMARK ESPORTAZIONE PARTECIPANTI (" + partecipanti + " partecipanti) ===\n");
+            Evento evento = generaEvento(runtime, partecipanti);
+            List<Partecipazione.Stato> tutti = List.of();
+
+            misura("Solo cursore", partecipanti, () -> {
+                long[] righe = {0};
+                try (Stream<PartecipazioneView> stream = partecipazioneDAO.streamViewByEvento(evento.getId(), tutti)) {
+                    stream.forEach(p -> righe[0]++);
+                }
+                return righe[0];
+            });
+            misura("CSV", partecipanti, () ->
+                exporter.esporta(evento.getId(), tutti, Formato.CSV, false, scarto).righe());
+            misura("CSV gzip", partecipanti, () ->
+                exporter.esporta(evento.getId(), tutti, Formato.CSV, true, scarto).righe());
+            misura("NDJSON", partecipanti, () ->
+                exporter.esporta(evento.getId(), tutti, Formato.NDJSON, false, scarto).righe());
+            try {
+                misura("findByEvento (lista)", partecipanti, () ->
+                    (long) partecipazioneDAO.findByEvento(evento, Partecipazione.GRAFO_PERSONA_EVENTO).size());
+            } catch (OutOfMemoryError e) {
+                // Con un heap piccolo (es. -Xmx256m) la lista completa non entra in memoria, l'esportazione sì
+                System.out.printf("%-22s memoria esaurita%n", "findByEvento (lista)");
+            }
+
+            ExportResult confermate = exporter.esporta(evento.getId(), List.of(Partecipazione.Stato.CONFERMATA),
+                Formato.CSV, false, scarto);
+            System.out.printf("%nSolo CONFERMATA: %,d righe%n", confermate.righe());
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+    }
+
+    // Un evento con tanti posti quanti partecipanti, due terzi CONFERMATA e un terzo DA_CONFERMARE
+    private static Evento generaEvento(PersistenceRuntime runtime, int partecipanti) {
+        System.out.println("Generazione dei dati...");
+        long esecuzione = System.currentTimeMillis();
+        Location location = new LocationDAO(runtime).save(new Location("Centro Congressi Benchmark", "Bologna"));
+        Evento evento = new EventoDAO(runtime).save(new Evento("Export " + esecuzione, LocalDate.now().plusDays(30),
+            null, Evento.TipoEvento.PUBBLICO, partecipanti, location));
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        personaDAO.saveAll(IntStream.range(0, partecipanti).mapToObj(i -> new Persona(
+            "Nome" + i, "Cognome, " + i, "export." + esecuzione + "." + i + "@bench.it",
+            LocalDate.of(1980, 1, 1).plusDays(i % 10_000), i % 2 == 0 ? Persona.Sesso.M : Persona.Sesso.F)));
+        Long primaPersonaId = personaDAO.findByEmail("export." + esecuzione + ".0@bench.it").getId();
+        // Gli ID delle persone appena inserite sono consecutivi se nessun altro inserisce persone nel frattempo
+        EntityManager em = runtime.createEntityManager();
+        try {
+            new PartecipazioneDAO(runtime).saveAll(IntStream.range(0, partecipanti).mapToObj(i -> new Partecipazione(
+                em.getReference(Persona.class, primaPersonaId + i),
+                em.getReference(Evento.class, evento.getId()),
+                i % 3 == 0 ? Partecipazione.Stato.DA_CONFERMARE : Partecipazione.Stato.CONFERMATA)));
+        } finally {
+            em.close();
+        }
+        return evento;
+    }
+
+    // Stampa il tempo migliore su RIPETIZIONI esecuzioni, dopo un'esecuzione di riscaldamento
+    private static void misura(String nome, int partecipanti, Supplier<Long> esportazione) {
+        esportazione.get();
+        com.sun.management.ThreadMXBean thread = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long migliore = Long.MAX_VALUE;
+        long allocati = 0;
+        long righe = 0;
+        for (int r = 0; r < RIPETIZIONI; r++) {
+            long allocatiPrima = thread.getCurrentThreadAllocatedBytes();
+            long inizio = System.nanoTime();
+            righe = esportazione.get();
+            migliore = Math.min(migliore, System.nanoTime() - inizio);
+            allocati = thread.getCurrentThreadAllocatedBytes() - allocatiPrima;
+        }
+        if (righe != partecipanti) {
+            throw new IllegalStateException(nome + ": " + righe + " righe invece di " + partecipanti);
+        }
+        System.out.printf("%-22s %,10.0f righe/s  %,8.1f MB allocati%n",
+            nome, righe / (migliore / 1_000_000_000.0), allocati / 1_048_576.0);
+    }
+}
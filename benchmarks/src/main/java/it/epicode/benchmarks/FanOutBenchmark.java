@@ -0,0 +1,67 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caricamento di una pagina che legge una persona, le sue partecipazioni e alcuni eventi in evidenza
+ * Confronta le chiamate una dopo l'altra con le varianti asincrone dei DAO eseguite in parallelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+    private static final int EVENTI_IN_EVIDENZA = 8;
+
+    @Benchmark
+    public Pagina sequenziale(Dataset dataset) {
+        long personaId = dataset.primaPersonaId + dataset.personaCasuale();
+        Persona persona = dataset.personaDAO.findById(personaId);
+        List<Partecipazione> partecipazioni = dataset.partecipazioneDAO.findByPersona(riferimento(personaId));
+        List<Evento> eventi = new ArrayList<>(EVENTI_IN_EVIDENZA);
+        for (int i = 0; i < EVENTI_IN_EVIDENZA; i++) {
+            eventi.add(dataset.eventoDAO.findById(dataset.eventoCasualeId()));
+        }
+        return new Pagina(persona, partecipazioni, eventi);
+    }
+
+    @Benchmark
+    public Pagina asincrona(Dataset dataset) {
+        long personaId = dataset.primaPersonaId + dataset.personaCasuale();
+        CompletableFuture<Persona> persona = dataset.personaDAO.findByIdAsync(personaId);
+        CompletableFuture<List<Partecipazione>> partecipazioni =
+            dataset.partecipazioneDAO.findByPersonaAsync(riferimento(personaId));
+        List<CompletableFuture<Evento>> eventi = new ArrayList<>(EVENTI_IN_EVIDENZA);
+        for (int i = 0; i < EVENTI_IN_EVIDENZA; i++) {
+            eventi.add(dataset.eventoDAO.findByIdAsync(dataset.eventoCasualeId()));
+        }
+        return new Pagina(persona.join(), partecipazioni.join(), eventi.stream().map(CompletableFuture::join).toList());
+    }
+
+    // Le partecipazioni si possono cercare con il solo ID, senza aspettare il caricamento della persona
+    private static Persona riferimento(long personaId) {
+        Persona persona = new Persona();
+        persona.setId(personaId);
+        return persona;
+    }
+
+    public record Pagina(Persona persona, List<Partecipazione> partecipazioni, List<Evento> eventi) {}
+}
@@ -0,0 +1,64 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Persona;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del costo del flush: un persistence context con "gestite" persone caricate,
+ * ogni operazione modifica una sola persona ed esegue il commit (quindi il flush)
+ * Senza il dirty tracking dell'enhancement Hibernate confronta lo stato di tutte le entità gestite,
+ * con l'enhancement controlla solo quelle che hanno registrato una modifica
+ * Ogni operazione è una transazione: dopo il commit le entità restano gestite dall'EntityManager aperto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushBenchmark {
+
+    @Param({"1000"})
+    public int gestite;
+
+    private EntityManager em;
+    private List<Persona> persone;
+
+    @Setup(Level.Trial)
+    public void setup(Dataset dataset) {
+        em = dataset.runtime.getEntityManagerFactory().createEntityManager();
+        persone = em.createQuery("SELECT p FROM Persona p ORDER BY p.id", Persona.class)
+            .setMaxResults(gestite)
+            .getResultList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Persona modificaUna() {
+        Persona persona = persone.get(ThreadLocalRandom.current().nextInt(persone.size()));
+        em.getTransaction().begin();
+        persona.setNome("Nome" + System.nanoTime());
+        em.getTransaction().commit();
+        return persona;
+    }
+}
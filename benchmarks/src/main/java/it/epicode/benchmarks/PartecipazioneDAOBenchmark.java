@@ -0,0 +1,60 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark delle letture di PartecipazioneDAO: elenco per evento e verifica delle iscrizioni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartecipazioneDAOBenchmark {
+
+    // Numero di persone verificate da areIscritte, come in una pagina di elenco
+    private static final int PAGINA = 50;
+
+    private Evento[] eventi;
+
+    @Setup(Level.Trial)
+    public void caricaEventi(Dataset dataset) {
+        eventi = new Evento[dataset.eventi];
+        for (int i = 0; i < eventi.length; i++) {
+            eventi[i] = dataset.eventoDAO.findById(dataset.primoEventoId + i);
+        }
+    }
+
+    @Benchmark
+    public List<Partecipazione> findByEvento(Dataset dataset) {
+        return dataset.partecipazioneDAO.findByEvento(eventi[(int) (dataset.eventoCasualeId() - dataset.primoEventoId)]);
+    }
+
+    @Benchmark
+    public boolean isPersonaIscritta(Dataset dataset) {
+        return dataset.partecipazioneDAO.isPersonaIscritta(
+            dataset.primaPersonaId + dataset.personaCasuale(), dataset.eventoCasualeId());
+    }
+
+    @Benchmark
+    public Map<Long, Boolean> areIscritte(Dataset dataset) {
+        return dataset.partecipazioneDAO.areIscritte(
+            dataset.personaIds(dataset.personaCasuale(), PAGINA), dataset.eventoCasualeId());
+    }
+}
@@ -0,0 +1,51 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Persona;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark delle operazioni CRUD di PersonaDAO sul dataset generato
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonaDAOBenchmark {
+
+    // Le nuove persone partono dopo quelle del dataset per non violare l'unicità dell'email
+    private final AtomicInteger nuove = new AtomicInteger(1_000_000_000);
+
+    @Benchmark
+    public Persona save(Dataset dataset) {
+        return dataset.personaDAO.save(Dataset.persona(nuove.incrementAndGet()));
+    }
+
+    @Benchmark
+    public Persona findById(Dataset dataset) {
+        return dataset.personaDAO.findById(dataset.primaPersonaId + dataset.personaCasuale());
+    }
+
+    @Benchmark
+    public Persona findByEmail(Dataset dataset) {
+        return dataset.personaDAO.findByEmail(Dataset.email(dataset.personaCasuale()));
+    }
+
+    @Benchmark
+    public Persona update(Dataset dataset) {
+        Persona persona = dataset.personaDAO.findById(dataset.primaPersonaId + dataset.personaCasuale());
+        persona.setNome("Nome" + System.nanoTime());
+        return dataset.personaDAO.update(persona);
+    }
+}
@@ -0,0 +1,61 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dto.PartecipazioneView;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dell'elenco dei partecipanti di un evento con nome, cognome e titolo:
+ * entity graph (entità gestite con persona ed evento caricati in join) contro proiezione DTO
+ * Con -prof gc si confrontano anche le allocazioni per operazione
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private Evento[] eventi;
+
+    @Setup(Level.Trial)
+    public void caricaEventi(Dataset dataset) {
+        eventi = new Evento[dataset.eventi];
+        for (int i = 0; i < eventi.length; i++) {
+            eventi[i] = dataset.eventoDAO.findById(dataset.primoEventoId + i);
+        }
+    }
+
+    @Benchmark
+    public void entityGraph(Dataset dataset, Blackhole blackhole) {
+        Evento evento = eventi[(int) (dataset.eventoCasualeId() - dataset.primoEventoId)];
+        for (Partecipazione p : dataset.partecipazioneDAO.findByEvento(evento, Partecipazione.GRAFO_PERSONA_EVENTO)) {
+            blackhole.consume(p.getPersona().getNome());
+            blackhole.consume(p.getPersona().getCognome());
+            blackhole.consume(p.getEvento().getTitolo());
+        }
+    }
+
+    @Benchmark
+    public void proiezione(Dataset dataset, Blackhole blackhole) {
+        for (PartecipazioneView p : dataset.partecipazioneDAO.findViewByEvento(dataset.eventoCasualeId())) {
+            blackhole.consume(p.nome());
+            blackhole.consume(p.cognome());
+            blackhole.consume(p.titolo());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark delle letture di risultati grandi: stessa query con un EntityManager normale
+ * (entità gestite con la copia dello stato per il dirty checking) e con i finder dei DAO in sola lettura
+ * Con -prof gc si confrontano le allocazioni per operazione
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadOnlyBenchmark {
+
+    @Benchmark
+    public List<Persona> findAllGestito(Dataset dataset) {
+        EntityManager em = dataset.runtime.createEntityManager();
+        try {
+            return em.createQuery("SELECT p FROM Persona p", Persona.class).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<Persona> findAllSolaLettura(Dataset dataset) {
+        return dataset.personaDAO.findAll();
+    }
+
+    @Benchmark
+    public List<Partecipazione> findByStatoGestito(Dataset dataset) {
+        EntityManager em = dataset.runtime.createEntityManager();
+        try {
+            return em.createQuery("SELECT p FROM Partecipazione p WHERE p.stato = :stato", Partecipazione.class)
+                .setParameter("stato", Partecipazione.Stato.CONFERMATA)
+                .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<Partecipazione> findByStatoSolaLettura(Dataset dataset) {
+        return dataset.partecipazioneDAO.findByStato(Partecipazione.Stato.CONFERMATA);
+    }
+}
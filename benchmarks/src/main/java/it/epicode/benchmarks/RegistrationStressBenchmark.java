@@ -0,0 +1,128 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.dao.PersonaGiaIscrittaException;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Stress test delle iscrizioni concorrenti con PartecipazioneDAO.register
+ * Con 1, 8 e 64 thread, più persone di quanti sono i posti tentano di iscriversi allo stesso evento,
+ * ognuna due volte; alla fine verifica che non ci siano overbooking né iscrizioni duplicate
+ * Argomenti: capienza dell'evento (default 500), numero di persone (default 1000)
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.RegistrationStressBenchmark" -Dexec.args="500 1000"
+ */
+public class RegistrationStressBenchmark {
+
+    private static final int[] THREADS = {1, 8, 64};
+
+    public static void main(String[] args) throws InterruptedException {
+        int capienza = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int numeroPersone = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        EventoDAO eventoDAO = new EventoDAO(runtime);
+        PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO(runtime);
+        boolean overbooking = false;
+
+        try {
+            System.out.println("=== STRESS TEST ISCRIZIONI (capienza " + capienza + ", " + numeroPersone + " persone) ===\n");
+            Location location = new LocationDAO(runtime).save(new Location("Arena Stress Test", "Torino"));
+
+            for (int threads : THREADS) {
+                Evento evento = eventoDAO.save(new Evento("Stress test " + threads + " thread", LocalDate.now().plusMonths(1),
+                    "Evento per lo stress test delle iscrizioni", Evento.TipoEvento.PUBBLICO, capienza, location));
+                List<Persona> persone = creaPersone(threads, numeroPersone);
+                personaDAO.saveAll(persone);
+
+                // Ogni persona tenta due volte: la seconda deve essere rifiutata come duplicato
+                List<Long> tentativi = persone.stream()
+                    .flatMap(persona -> Stream.of(persona.getId(), persona.getId()))
+                    .collect(Collectors.toList());
+                AtomicInteger prossimo = new AtomicInteger();
+                LongAdder iscritte = new LongAdder();
+                LongAdder esauriti = new LongAdder();
+                LongAdder duplicate = new LongAdder();
+                LongAdder errori = new LongAdder();
+                CountDownLatch partenza = new CountDownLatch(1);
+
+                List<Thread> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    Thread worker = new Thread(() -> {
+                        try {
+                            partenza.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        int i;
+                        while ((i = prossimo.getAndIncrement()) < tentativi.size()) {
+                            try {
+                                partecipazioneDAO.register(tentativi.get(i), evento.getId());
+                                iscritte.increment();
+                            } catch (PostiEsauritiException e) {
+                                esauriti.increment();
+                            } catch (PersonaGiaIscrittaException e) {
+                                duplicate.increment();
+                            } catch (RuntimeException e) {
+                                errori.increment();
+                            }
+                        }
+                    });
+                    worker.start();
+                    workers.add(worker);
+                }
+
+                long inizio = System.nanoTime();
+                partenza.countDown();
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                double durata = (System.nanoTime() - inizio) / 1_000_000_000.0;
+
+                long righe;
+                try (Stream<?> partecipazioni = partecipazioneDAO.streamByEvento(evento)) {
+                    righe = partecipazioni.count();
+                }
+                int occupati = capienza - eventoDAO.getPostiDisponibili(evento.getId());
+                boolean corretto = righe <= capienza && righe == occupati && iscritte.sum() == righe;
+                overbooking |= !corretto;
+
+                System.out.printf("%2d thread: %,8.0f tentativi/s | iscritte %d, esauriti %d, duplicate %d, errori %d | " +
+                        "righe %d, posti occupati %d -> %s%n",
+                    threads, tentativi.size() / durata, iscritte.sum(), esauriti.sum(), duplicate.sum(), errori.sum(),
+                    righe, occupati, corretto ? "OK" : "OVERBOOKING");
+            }
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+        if (overbooking) {
+            System.exit(1);
+        }
+    }
+
+    private static List<Persona> creaPersone(int threads, int numero) {
+        long esecuzione = System.currentTimeMillis();
+        return IntStream.range(0, numero)
+            .mapToObj(i -> new Persona("Nome" + i, "Cognome" + i,
+                "stress." + threads + "." + esecuzione + "." + i + "@bench.it",
+                LocalDate.of(1990, 1, 1), Persona.Sesso.M))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,127 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.PersonaDAO;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.ReadReplicas;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Verifica dell'instradamento delle letture verso le repliche, da eseguire con un primario e almeno una replica
+ * in streaming (gestione-eventi.replica.urls, vedi README)
+ * Controlla che:
+ * - una lettura subito dopo il salvataggio, anche asincrona, vada sul primario e trovi la riga (lettura delle proprie scritture)
+ * - scaduta la finestra di gestione-eventi.replica.sticky-ms le letture vadano sulle repliche, distribuite a rotazione
+ * - la riga salvata arrivi sulle repliche, misurando dopo quanto tempo
+ * Termina con codice 1 se un controllo fallisce
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.ReplicaRoutingCheck"
+ *     -Dgestione-eventi.replica.urls=jdbc:postgresql://localhost:5433/gestione_eventi
+ */
+public class ReplicaRoutingCheck {
+
+    private static final int LETTURE = 200;
+    private static final long ATTESA_REPLICA_MILLIS = 10_000;
+
+    public static void main(String[] args) {
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        List<String> falliti = new ArrayList<>();
+        Persona persona = null;
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        try {
+            System.out.println("=== VERIFICA DELLE REPLICHE DI LETTURA ===\n");
+            ReadReplicas replicas = runtime.getReadReplicas();
+            if (!replicas.isAttive()) {
+                throw new IllegalStateException("Nessuna replica configurata: impostare gestione-eventi.replica.urls");
+            }
+            replicas.getStats().forEach(stats -> System.out.println("Replica: " + stats));
+
+            String email = "replica." + System.nanoTime() + "@replica.check";
+            persona = personaDAO.save(new Persona("Replica", "Check", email, LocalDate.of(1990, 1, 1), Persona.Sesso.F));
+            long primario = replicas.getLettureDalPrimario();
+            verifica(falliti, "lettura subito dopo il salvataggio", personaDAO.findByEmail(email) != null);
+            verifica(falliti, "la lettura dopo il salvataggio usa il primario", replicas.getLettureDalPrimario() > primario);
+            verifica(falliti, "lettura asincrona subito dopo il salvataggio",
+                personaDAO.findByEmailAsync(email).join() != null);
+
+            // Un altro thread non ha scritto: legge dalle repliche, dove la riga arriva con il ritardo della replica
+            long inizio = System.nanoTime();
+            boolean arrivata = attendi(() -> CompletableFuture.supplyAsync(() -> personaDAO.findByEmail(email)).join() != null);
+            long ritardo = (System.nanoTime() - inizio) / 1_000_000;
+            verifica(falliti, "la riga salvata arriva sulle repliche (" + ritardo + " ms)", arrivata);
+
+            List<Long> prima = letture(replicas);
+            primario = replicas.getLettureDalPrimario();
+            CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < LETTURE; i++) {
+                    personaDAO.findByEmail(email);
+                }
+            }).join();
+            List<Long> dopo = letture(replicas);
+            long sulleRepliche = 0;
+            for (int i = 0; i < dopo.size(); i++) {
+                long lette = dopo.get(i) - prima.get(i);
+                sulleRepliche += lette;
+                System.out.println("Letture sulla replica " + (i + 1) + ": " + lette);
+            }
+            verifica(falliti, "le letture di un thread senza scritture vanno sulle repliche",
+                sulleRepliche == LETTURE && replicas.getLettureDalPrimario() == primario);
+            for (int i = 0; i < dopo.size(); i++) {
+                verifica(falliti, "la replica " + (i + 1) + " riceve la sua quota di letture",
+                    dopo.get(i) - prima.get(i) >= LETTURE / dopo.size() - 1);
+            }
+            verifica(falliti, "dalPrimario() legge dal primario",
+                replicas.dalPrimario(() -> personaDAO.findByEmail(email)) != null
+                    && replicas.getLettureDalPrimario() == primario + 1);
+
+            System.out.println();
+            replicas.getStats().forEach(stats -> System.out.println("Replica: " + stats));
+            System.out.println("Letture sul primario: " + replicas.getLettureDalPrimario());
+            System.out.println();
+            if (falliti.isEmpty()) {
+                System.out.println("Instradamento delle letture corretto");
+            } else {
+                System.out.println("Verifiche fallite: " + falliti.size());
+                falliti.forEach(f -> System.out.println("  - " + f));
+            }
+        } catch (Exception e) {
+            System.err.println("Errore durante la verifica delle repliche: " + e.getMessage());
+            e.printStackTrace();
+            falliti.add(e.getMessage());
+        } finally {
+            if (persona != null) {
+                personaDAO.deleteById(persona.getId());
+            }
+            PersistenceRuntime.closeDefault();
+        }
+        if (!falliti.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private static void verifica(List<String> falliti, String nome, boolean superata) {
+        System.out.println((superata ? "OK   " : "FAIL ") + nome);
+        if (!superata) {
+            falliti.add(nome);
+        }
+    }
+
+    private static List<Long> letture(ReadReplicas replicas) {
+        return replicas.getStats().stream().map(ReadReplicas.ReplicaStats::letture).toList();
+    }
+
+    private static boolean attendi(BooleanSupplier condizione) throws InterruptedException {
+        long scadenza = System.currentTimeMillis() + ATTESA_REPLICA_MILLIS;
+        while (System.currentTimeMillis() < scadenza) {
+            if (condizione.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
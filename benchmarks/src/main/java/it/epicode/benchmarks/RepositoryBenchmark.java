@@ -0,0 +1,99 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dto.PartecipazioneView;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.repository.EventoRepository;
+import it.epicode.repository.PartecipazioneRepository;
+import it.epicode.repository.PersonaRepository;
+import it.epicode.repository.memory.MemoryDatabase;
+import it.epicode.repository.memory.MemoryEventoRepository;
+import it.epicode.repository.memory.MemoryPartecipazioneRepository;
+import it.epicode.repository.memory.MemoryPersonaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark delle stesse letture sulle interfacce dei repository con i DAO JPA ("jpa")
+ * e con i repository in memoria caricati dallo stesso database ("memoria")
+ * Eseguito con più thread per misurare anche le letture concorrenti (-t per cambiarne il numero)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"jpa", "memoria"})
+    public String implementazione;
+
+    private PersonaRepository persone;
+    private EventoRepository eventi;
+    private PartecipazioneRepository partecipazioni;
+    private List<Evento> tuttiGliEventi;
+
+    @Setup(Level.Trial)
+    public void creaRepository(Dataset dataset) {
+        if ("jpa".equals(implementazione)) {
+            persone = dataset.personaDAO;
+            eventi = dataset.eventoDAO;
+            partecipazioni = dataset.partecipazioneDAO;
+        } else if ("memoria".equals(implementazione)) {
+            MemoryDatabase db = MemoryDatabase.caricaDa(dataset.runtime);
+            persone = new MemoryPersonaRepository(db);
+            eventi = new MemoryEventoRepository(db);
+            partecipazioni = new MemoryPartecipazioneRepository(db);
+        } else {
+            throw new IllegalArgumentException("Implementazione non supportata: " + implementazione + " (valori ammessi: jpa, memoria)");
+        }
+        tuttiGliEventi = eventi.findAll();
+    }
+
+    @Benchmark
+    public Persona findById(Dataset dataset) {
+        return persone.findById(dataset.primaPersonaId + dataset.personaCasuale());
+    }
+
+    @Benchmark
+    public Persona findByEmail(Dataset dataset) {
+        return persone.findByEmail(Dataset.email(dataset.personaCasuale()));
+    }
+
+    @Benchmark
+    public Integer getPostiDisponibili(Dataset dataset) {
+        return eventi.getPostiDisponibili(dataset.eventoCasualeId());
+    }
+
+    @Benchmark
+    public boolean isPersonaIscritta(Dataset dataset) {
+        return partecipazioni.isPersonaIscritta(dataset.primaPersonaId + dataset.personaCasuale(), dataset.eventoCasualeId());
+    }
+
+    @Benchmark
+    public List<Partecipazione> findByEvento(Dataset dataset) {
+        return partecipazioni.findByEvento(tuttiGliEventi.get(ThreadLocalRandom.current().nextInt(tuttiGliEventi.size())));
+    }
+
+    @Benchmark
+    public List<PartecipazioneView> findViewByEvento(Dataset dataset) {
+        return partecipazioni.findViewByEvento(dataset.eventoCasualeId());
+    }
+}
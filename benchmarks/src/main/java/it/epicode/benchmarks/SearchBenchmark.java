@@ -0,0 +1,81 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.persistence.PersistenceRuntime;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark della ricerca per sottostringa sul titolo degli eventi
+ * Confronta EventoDAO.findByTitolo (LIKE '%x%', scansione della tabella) con EventoDAO.searchByTitolo (indice trigram)
+ * Argomenti: numero di eventi da generare (default 1000000, 0 per usare i dati esistenti), ripetizioni (default 20)
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.SearchBenchmark" -Dexec.args="1000000 20"
+ */
+public class SearchBenchmark {
+
+    private static final String[] PAROLE = {
+        "Java", "Spring", "Kotlin", "Cloud", "Data", "Security", "Design", "Agile", "Mobile", "Python",
+        "Conferenza", "Workshop", "Meetup", "Summit", "Hackathon", "Festival", "Seminario", "Corso"
+    };
+
+    private static final List<String> RICERCHE = List.of("java", "worksh", "cloud summit", "securit", "hackathon kot");
+
+    private static final int LIMITE_RISULTATI = 20;
+
+    public static void main(String[] args) {
+        int eventi = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int ripetizioni = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        EventoDAO eventoDAO = new EventoDAO(runtime);
+        try {
+            System.out.println("=== BENCHMARK RICERCA PER TITOLO ===\n");
+            if (eventi > 0) {
+                System.out.println("Generazione di " + eventi + " eventi...");
+                Location location = new LocationDAO(runtime).save(new Location("Centro Congressi Benchmark", "Bologna"));
+                eventoDAO.saveAll(IntStream.range(0, eventi).mapToObj(i -> new Evento(
+                    titolo(i),
+                    LocalDate.now().plusDays(i % 365), null, Evento.TipoEvento.PUBBLICO, 100, location)));
+            }
+
+            for (String ricerca : RICERCHE) {
+                // La cache delle query viene svuotata a ogni ripetizione per misurare la query sul database
+                double[] like = misura(ripetizioni, r -> {
+                    runtime.evictCache();
+                    eventoDAO.findByTitolo(ricerca);
+                });
+                double[] trigram = misura(ripetizioni, r -> eventoDAO.searchByTitolo(ricerca, LIMITE_RISULTATI));
+                System.out.printf("'%s': LIKE p50 %.2f ms, p99 %.2f ms | trigram p50 %.2f ms, p99 %.2f ms%n",
+                    ricerca, like[0], like[1], trigram[0], trigram[1]);
+            }
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+    }
+
+    // Titoli con parole ripetute e un suffisso alfanumerico distinto per ogni evento
+    private static String titolo(int i) {
+        return PAROLE[i % PAROLE.length] + " " + PAROLE[(i / PAROLE.length) % PAROLE.length] + " "
+            + Integer.toString(i * 7919 + 104729, 36);
+    }
+
+    // Restituisce p50 e p99 della latenza in millisecondi, dopo una ripetizione di riscaldamento
+    private static double[] misura(int ripetizioni, Consumer<Integer> ricerca) {
+        ricerca.accept(-1);
+        double[] latenze = new double[ripetizioni];
+        for (int r = 0; r < ripetizioni; r++) {
+            long inizio = System.nanoTime();
+            ricerca.accept(r);
+            latenze[r] = (System.nanoTime() - inizio) / 1_000_000.0;
+        }
+        Arrays.sort(latenze);
+        return new double[] {latenze[ripetizioni / 2], latenze[Math.min(ripetizioni - 1, (int) (ripetizioni * 0.99))]};
+    }
+}
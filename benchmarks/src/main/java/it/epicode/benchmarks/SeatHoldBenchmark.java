@@ -0,0 +1,99 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.reservation.SeatHold;
+import it.epicode.reservation.SeatHoldService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark delle prenotazioni temporanee su un singolo evento molto richiesto
+ * Più thread bloccano e rilasciano posti in contesa; metà dei blocchi viene lasciata scadere
+ * Argomenti: numero di thread (default 8), durata in secondi (default 10), capienza dell'evento (default 1000)
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.benchmarks.SeatHoldBenchmark" -Dexec.args="8 10 1000"
+ */
+public class SeatHoldBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int secondi = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int capienza = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        EventoDAO eventoDAO = new EventoDAO(runtime);
+        try (SeatHoldService service = new SeatHoldService(eventoDAO, new PartecipazioneDAO(runtime))) {
+            System.out.println("=== BENCHMARK PRENOTAZIONI (" + threads + " thread, capienza " + capienza + ") ===\n");
+
+            Location location = new LocationDAO(runtime).save(new Location("Arena Benchmark", "Milano"));
+            Evento evento = eventoDAO.save(new Evento("Evento molto richiesto", LocalDate.now().plusMonths(1),
+                "Evento per il benchmark delle prenotazioni", Evento.TipoEvento.PUBBLICO, capienza, location));
+            Persona persona = new PersonaDAO(runtime).save(new Persona("Bench", "Mark",
+                "seat-hold." + System.currentTimeMillis() + "@bench.it", LocalDate.of(1990, 1, 1), Persona.Sesso.F));
+
+            LongAdder riuscite = new LongAdder();
+            LongAdder rifiutate = new LongAdder();
+            AtomicInteger massimoTrattenuti = new AtomicInteger();
+            CountDownLatch partenza = new CountDownLatch(1);
+            long fine = System.nanoTime() + secondi * 1_000_000_000L;
+
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        partenza.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long n = 0;
+                    while (System.nanoTime() < fine) {
+                        try {
+                            SeatHold hold = service.trattieni(persona.getId(), evento.getId(), 1, Duration.ofMillis(200));
+                            riuscite.increment();
+                            // Un blocco su due viene rilasciato, gli altri scadono tramite la timer wheel
+                            if (n++ % 2 == 0) {
+                                service.rilascia(hold.getId());
+                            }
+                        } catch (PostiEsauritiException e) {
+                            rifiutate.increment();
+                        }
+                        massimoTrattenuti.accumulateAndGet(service.getPostiTrattenuti(evento.getId()), Math::max);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+
+            long inizio = System.nanoTime();
+            partenza.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double durata = (System.nanoTime() - inizio) / 1_000_000_000.0;
+
+            System.out.printf("Blocchi riusciti:      %,d (%,.0f/s)%n", riuscite.sum(), riuscite.sum() / durata);
+            System.out.printf("Blocchi rifiutati:     %,d%n", rifiutate.sum());
+            System.out.printf("Massimo posti bloccati: %d su %d%n", massimoTrattenuti.get(), capienza);
+            System.out.println(massimoTrattenuti.get() <= capienza ? "Nessun overbooking" : "OVERBOOKING RILEVATO");
+
+            // Attende la scadenza dei blocchi residui
+            Thread.sleep(1_000);
+            System.out.println("Blocchi attivi dopo la scadenza: " + service.getNumeroPrenotazioniAttive());
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+    }
+}
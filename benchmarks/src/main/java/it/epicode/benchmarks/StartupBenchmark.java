@@ -0,0 +1,116 @@
+package it.epicode.benchmarks;
+
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.SchemaMigrations;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark di avvio: confronta i quattro EntityManagerFactory separati (un tempo uno per DAO)
+ * con il runtime di persistenza condiviso, sul database PostgreSQL di persistence.xml
+ * Ogni misura è un solo avvio in una JVM nuova (Mode.SingleShotTime, una fork per misura), quindi nessuna delle
+ * due varianti trova classi già caricate o codice di Hibernate già compilato dal JIT dall'altra
+ * Le migrazioni sono disattivate per entrambe: il confronto riguarda solo factory e connection pool
+ * A fine misura ogni fork stampa memoria occupata e connessioni aperte verso il database
+ *
+ * Esecuzione: java -jar target/benchmarks.jar StartupBenchmark
+ * (database diverso: -jvmArgsAppend "-Djakarta.persistence.jdbc.url=...")
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+    private static final int NUMERO_DAO = 4;
+
+    private final List<EntityManagerFactory> factories = new ArrayList<>();
+    private PersistenceRuntime runtime;
+    private long memoriaIniziale;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        memoriaIniziale = memoriaUsata();
+    }
+
+    // Replica la configurazione precedente: una factory per DAO con il pool interno di Hibernate
+    @Benchmark
+    public void factorySeparate() {
+        Map<String, Object> legacy = proprieta();
+        legacy.put("hibernate.connection.provider_class",
+            "org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl");
+        for (int i = 0; i < NUMERO_DAO; i++) {
+            factories.add(Persistence.createEntityManagerFactory(PersistenceRuntime.PERSISTENCE_UNIT, legacy));
+        }
+    }
+
+    @Benchmark
+    public void runtimeCondiviso() {
+        runtime = PersistenceRuntime.create(proprieta());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        EntityManagerFactory emf = runtime != null ? runtime.getEntityManagerFactory() : factories.get(0);
+        System.out.printf("%nMemoria: %d KB, connessioni: %d%n",
+            (memoriaUsata() - memoriaIniziale) / 1024, contaConnessioni(emf));
+        factories.forEach(EntityManagerFactory::close);
+        factories.clear();
+        if (runtime != null) {
+            runtime.close();
+            runtime = null;
+        }
+    }
+
+    private static Map<String, Object> proprieta() {
+        Map<String, Object> proprieta = new HashMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("jakarta.persistence.jdbc.") || name.startsWith("hibernate.")) {
+                proprieta.put(name, System.getProperty(name));
+            }
+        }
+        proprieta.put(SchemaMigrations.MIGRATE_PROPERTY, "false");
+        return proprieta;
+    }
+
+    // Conta le connessioni aperte sul database corrente lato server
+    private static long contaConnessioni(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Number count = (Number) em.createNativeQuery(
+                "SELECT COUNT(*) FROM pg_stat_activity WHERE datname = current_database()")
+                .getSingleResult();
+            return count.longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long memoriaUsata() {
+        Runtime jvm = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return jvm.totalMemory() - jvm.freeMemory();
+    }
+}
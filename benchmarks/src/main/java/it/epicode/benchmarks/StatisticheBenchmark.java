@@ -0,0 +1,63 @@
+package it.epicode.benchmarks;
+
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.StatisticheDAO;
+import it.epicode.dto.Statistiche;
+import it.epicode.statistiche.StatisticheService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dei totali del riepilogo: findAll().size() su ogni tabella, le query di aggregazione
+ * di StatisticheDAO e la fotografia in memoria di StatisticheService
+ * Con -p persone=... si verifica che solo il primo dipende dalla dimensione dei dati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticheBenchmark {
+
+    private LocationDAO locationDAO;
+    private StatisticheDAO statisticheDAO;
+    private StatisticheService statisticheService;
+
+    @Setup(Level.Trial)
+    public void setup(Dataset dataset) {
+        locationDAO = new LocationDAO(dataset.runtime);
+        statisticheDAO = new StatisticheDAO(dataset.runtime);
+        statisticheService = new StatisticheService(statisticheDAO, Duration.ofSeconds(30));
+        statisticheService.aggiorna();
+    }
+
+    @Benchmark
+    public long findAllSize(Dataset dataset) {
+        return dataset.personaDAO.findAll().size()
+            + locationDAO.findAll().size()
+            + dataset.eventoDAO.findAll().size()
+            + dataset.partecipazioneDAO.findAll().size();
+    }
+
+    @Benchmark
+    public Statistiche aggregazioneSql() {
+        return statisticheDAO.calcola();
+    }
+
+    @Benchmark
+    public Statistiche fotografia() {
+        return statisticheService.get();
+    }
+}
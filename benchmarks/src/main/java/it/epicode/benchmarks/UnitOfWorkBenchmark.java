@@ -0,0 +1,55 @@
+package it.epicode.benchmarks;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.UnitOfWork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark di un'operazione composta da più chiamate ai DAO: nuova persona, nuovo evento,
+ * iscrizione e cambio di stato della partecipazione
+ * "separate" esegue quattro transazioni (quattro connessioni e quattro commit),
+ * "unitaDiLavoro" le esegue in una sola UnitOfWork (una connessione e un commit)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnitOfWorkBenchmark {
+
+    private final AtomicInteger prossima = new AtomicInteger(1_000_000_000);
+
+    @Benchmark
+    public Partecipazione separate(Dataset dataset) {
+        return operazione(dataset);
+    }
+
+    @Benchmark
+    public Partecipazione unitaDiLavoro(Dataset dataset) {
+        return UnitOfWork.of(dataset.runtime).esegui(() -> operazione(dataset));
+    }
+
+    private Partecipazione operazione(Dataset dataset) {
+        int i = prossima.incrementAndGet();
+        Persona persona = dataset.personaDAO.save(Dataset.persona(i));
+        Evento evento = dataset.eventoDAO.save(new Evento("Evento " + i, LocalDate.now(), null,
+            Evento.TipoEvento.PUBBLICO, 10, dataset.location));
+        Partecipazione partecipazione = dataset.partecipazioneDAO.register(persona.getId(), evento.getId());
+        partecipazione.setStato(Partecipazione.Stato.DA_CONFERMARE);
+        return dataset.partecipazioneDAO.update(partecipazione);
+    }
+}
@@ -0,0 +1,50 @@
+package it.epicode.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DatasetTest {
+
+    private Dataset dataset;
+
+    @BeforeEach
+    void setup() {
+        dataset = new Dataset();
+        dataset.database = "h2";
+        dataset.persone = 2 * Dataset.PERSONE_PER_EVENTO;
+        dataset.setup();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataset.tearDown();
+    }
+
+    @Test
+    void ilSetupCreaIlDatasetSulloSchemaHbm2ddl() {
+        assertEquals(2, dataset.eventi);
+        assertNotNull(new PersonaDAOBenchmark().findById(dataset));
+        Evento evento = dataset.eventoDAO.findById(dataset.primoEventoId);
+        assertEquals(Dataset.PERSONE_PER_EVENTO, evento.getPostiOccupati());
+    }
+
+    @Test
+    void leOperazioniDeiBenchmarkFunzionanoSulloSchemaHbm2ddl() {
+        long eventoId = dataset.primoEventoId + 1;
+        Long personaId = dataset.personaDAO.save(Dataset.persona(dataset.persone)).getId();
+
+        Partecipazione partecipazione = dataset.partecipazioneDAO.register(personaId, eventoId);
+        assertEquals(Dataset.PERSONE_PER_EVENTO + 1, dataset.eventoDAO.findById(eventoId).getPostiOccupati());
+
+        dataset.partecipazioneDAO.deleteById(partecipazione.getId());
+        dataset.eventoDAO.deleteById(dataset.primoEventoId);
+        assertNull(dataset.eventoDAO.findById(dataset.primoEventoId));
+    }
+}
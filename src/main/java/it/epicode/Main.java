@@ -1,7 +1,12 @@
 package it.epicode;
 
 import it.epicode.dao.*;
+import it.epicode.dto.Statistiche;
 import it.epicode.entities.*;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.MethodMetrics;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.UnitOfWork;
 import java.time.LocalDate;
 
 /**
@@ -11,11 +16,12 @@ import java.time.LocalDate;
 public class Main {
     
     public static void main(String[] args) {
-        // Inizializzazione dei DAO
-        PersonaDAO personaDAO = new PersonaDAO();
-        LocationDAO locationDAO = new LocationDAO();
-        EventoDAO eventoDAO = new EventoDAO();
-        PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO();
+        // Inizializzazione dei DAO sul runtime di persistenza condiviso
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        LocationDAO locationDAO = new LocationDAO(runtime);
+        EventoDAO eventoDAO = new EventoDAO(runtime);
+        PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO(runtime);
         
         try {
             System.out.println("=== SISTEMA DI GESTIONE EVENTI ===\n");
@@ -103,7 +109,7 @@ public class Main {
             
             // Informazioni sui posti disponibili
             System.out.println("10. Informazioni sui posti disponibili...");
-            System.out.println("Posti disponibili per l'evento '" + evento.getTitolo() + "': " + evento.getPostiDisponibili());
+            System.out.println("Posti disponibili per l'evento '" + evento.getTitolo() + "': " + eventoDAO.getPostiDisponibili(evento.getId()));
             System.out.println();
             
             // Test aggiornamento stato partecipazione
@@ -114,49 +120,63 @@ public class Main {
             System.out.println();
             
             // Creazione di una seconda persona e partecipazione
+            // Le due operazioni condividono connessione e transazione: un solo commit alla fine
             System.out.println("12. Creazione di una seconda persona e partecipazione...");
-            Persona persona2 = new Persona(
-                "Giulia", 
-                "Bianchi", 
-                "giulia.bianchi@email.com", 
-                LocalDate.of(1985, 8, 22), 
-                Persona.Sesso.F
-            );
-            persona2 = personaDAO.save(persona2);
-            
-            Partecipazione partecipazione2 = new Partecipazione(
-                persona2, 
-                evento, 
-                Partecipazione.Stato.CONFERMATA
-            );
-            partecipazione2 = partecipazioneDAO.save(partecipazione2);
-            
-            System.out.println("Seconda persona creata: " + persona2);
+            Evento eventoScelto = evento;
+            Partecipazione partecipazione2 = UnitOfWork.of(runtime).esegui(() -> {
+                Persona persona2 = new Persona(
+                    "Giulia", 
+                    "Bianchi", 
+                    "giulia.bianchi@email.com", 
+                    LocalDate.of(1985, 8, 22), 
+                    Persona.Sesso.F
+                );
+                persona2 = personaDAO.save(persona2);
+                
+                return partecipazioneDAO.save(new Partecipazione(
+                    persona2, 
+                    eventoScelto, 
+                    Partecipazione.Stato.CONFERMATA
+                ));
+            });
+            
+            System.out.println("Seconda persona creata: " + partecipazione2.getPersona());
             System.out.println("Seconda partecipazione creata: " + partecipazione2);
             System.out.println();
             
             // Riepilogo finale
             System.out.println("=== RIEPILOGO FINALE ===");
-            System.out.println("Totale persone nel sistema: " + personaDAO.findAll().size());
-            System.out.println("Totale location nel sistema: " + locationDAO.findAll().size());
-            System.out.println("Totale eventi nel sistema: " + eventoDAO.findAll().size());
-            System.out.println("Totale partecipazioni nel sistema: " + partecipazioneDAO.findAll().size());
+            // Conteggi calcolati dal database con query di aggregazione, senza caricare le tabelle
+            Statistiche statistiche = new StatisticheDAO(runtime).calcola();
+            System.out.println("Totale persone nel sistema: " + statistiche.persone());
+            System.out.println("Totale location nel sistema: " + statistiche.locations());
+            System.out.println("Totale eventi nel sistema: " + statistiche.eventi());
+            System.out.println("Totale partecipazioni nel sistema: " + statistiche.partecipazioni());
+            System.out.println("Partecipazioni per stato: " + statistiche.partecipazioniPerStato());
+            System.out.println("Eventi per tipo: " + statistiche.eventiPerTipo());
+            System.out.printf("Posti occupati: %d su %d (%.1f%%)%n", statistiche.postiOccupati(),
+                statistiche.postiTotali(), statistiche.getOccupazione() * 100);
             
             // Aggiorna l'evento per vedere i posti rimanenti
             evento = eventoDAO.findById(evento.getId());
             System.out.println("Posti rimanenti per '" + evento.getTitolo() + "': " + evento.getPostiDisponibili());
             
+            // Metriche raccolte durante il test (le stesse sono disponibili via JMX)
+            System.out.println("\n=== METRICHE DEI DAO ===");
+            DaoMetrics metriche = DaoMetrics.of(runtime);
+            for (MethodMetrics metodo : metriche.getMethodMetrics()) {
+                System.out.println(metodo);
+            }
+            System.out.println("Transazioni: " + metriche.getCommit() + " commit, " + metriche.getRollback() + " rollback");
+            
             System.out.println("\n=== TEST COMPLETATO CON SUCCESSO! ===");
             
         } catch (Exception e) {
             System.err.println("Errore durante l'esecuzione del test: " + e.getMessage());
             e.printStackTrace();
         } finally {
-            // Chiusura delle connessioni
-            PersonaDAO.closeEntityManagerFactory();
-            LocationDAO.closeEntityManagerFactory();
-            EventoDAO.closeEntityManagerFactory();
-            PartecipazioneDAO.closeEntityManagerFactory();
+            // Chiusura del runtime di persistenza condiviso e del connection pool
+            PersistenceRuntime.closeDefault();
         }
     }
 }
\ No newline at end of file
@@ -1,19 +1,63 @@
 package it.epicode.dao;
 
 import it.epicode.entities.Evento;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.DaoTimer;
+import it.epicode.persistence.AsyncExecutor;
+import it.epicode.persistence.BatchInserter;
+import it.epicode.persistence.PartizioniEventi;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.QueryStreams;
+import it.epicode.persistence.SearchIndexes;
+import it.epicode.repository.EventoRepository;
+import it.epicode.repository.RicercaEventi;
+import jakarta.persistence.Cache;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object per l'entità Evento
  * Gestisce le operazioni CRUD per gli eventi
  */
-public class EventoDAO {
+public class EventoDAO implements EventoRepository {
     
-    private static final EntityManagerFactory emf = Persistence.createEntityManagerFactory("gestione-eventi-pu");
+    // Spazio di sincronizzazione degli update del contatore posti_occupati
+    private static final String POSTI_OCCUPATI_QUERY_SPACE = "eventi_posti_occupati";
+    // La data letta da eventi_chiavi (migrazione V7) limita all'esecuzione le query per ID alla partizione
+    // dell'evento; con il solo ID PostgreSQL consulterebbe l'indice di ogni partizione. Su uno schema
+    // senza migrazioni (hbm2ddl, H2) la tabella non esiste e le query usano il solo ID
+    private static final String PARTIZIONE_EVENTO = " AND data_evento = (SELECT data_evento FROM eventi_chiavi WHERE id = :id)";
+    
+    private final PersistenceRuntime runtime;
+    private final DaoTimer timer;
+    private final AsyncExecutor async;
+    
+    /**
+     * Crea il DAO sul runtime di persistenza condiviso
+     */
+    public EventoDAO() {
+        this(PersistenceRuntime.getDefault());
+    }
+    
+    /**
+     * Crea il DAO sul runtime di persistenza indicato
+     * @param runtime il runtime di persistenza da utilizzare
+     */
+    public EventoDAO(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.timer = DaoMetrics.of(runtime).timer("EventoDAO");
+        this.async = AsyncExecutor.of(runtime);
+    }
     
     /**
      * Salva un nuovo evento nel database
@@ -21,18 +65,54 @@ public class EventoDAO {
      * @return l'evento salvato con l'ID generato
      */
     public Evento save(Evento evento) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            em.persist(evento);
-            em.getTransaction().commit();
-            return evento;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante il salvataggio dell'evento", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("save", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                em.persist(evento);
+                em.getTransaction().commit();
+                return evento;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante il salvataggio dell'evento", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Salva gli eventi in un'unica transazione con batching JDBC
+     * @param eventi gli eventi da salvare
+     * @return il numero di eventi salvati
+     */
+    public long saveAll(Collection<Evento> eventi) {
+        return saveAll(eventi, runtime.getBatchSize());
+    }
+    
+    /**
+     * Salva gli eventi in un'unica transazione con batching JDBC
+     * @param eventi gli eventi da salvare
+     * @param batchSize il numero di righe per ogni flush
+     * @return il numero di eventi salvati
+     */
+    public long saveAll(Collection<Evento> eventi, int batchSize) {
+        return timer.misura("saveAll", () -> {
+            return BatchInserter.persistAll(runtime, eventi.iterator(), batchSize,
+                "Errore durante il salvataggio massivo degli eventi");
+        });
+    }
+    
+    /**
+     * Salva gli eventi prodotti da uno stream senza mantenerli in memoria
+     * @param eventi lo stream degli eventi da salvare
+     * @return il numero di eventi salvati
+     */
+    public long saveAll(Stream<Evento> eventi) {
+        return timer.misura("saveAll", () -> {
+            return BatchInserter.persistAll(runtime, eventi.iterator(), runtime.getBatchSize(),
+                "Errore durante il salvataggio massivo degli eventi");
+        });
     }
     
     /**
@@ -41,12 +121,14 @@ public class EventoDAO {
      * @return l'evento trovato o null se non esiste
      */
     public Evento findById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            return em.find(Evento.class, id);
-        } finally {
-            em.close();
-        }
+        return timer.misura("findById", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return trova(runtime, em, id);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -54,13 +136,48 @@ public class EventoDAO {
      * @return lista di tutti gli eventi
      */
     public List<Evento> findAll() {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Evento> query = em.createQuery("SELECT e FROM Evento e", Evento.class);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findAll", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Evento> query = em.createQuery("SELECT e FROM Evento e", Evento.class);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova tutti gli eventi con paginazione keyset ordinata per ID
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Evento> findAllAfter(Long lastId, int limit) {
+        return timer.misura("findAllAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Evento> query = em.createQuery(
+                    "SELECT e FROM Evento e WHERE e.id > :lastId ORDER BY e.id", Evento.class);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce tutti gli eventi come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Evento> streamAll() {
+        return timer.misura("streamAll", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT e FROM Evento e ORDER BY e.id", Evento.class));
+        });
     }
     
     /**
@@ -69,18 +186,21 @@ public class EventoDAO {
      * @return l'evento aggiornato
      */
     public Evento update(Evento evento) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Evento updatedEvento = em.merge(evento);
-            em.getTransaction().commit();
-            return updatedEvento;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'aggiornamento dell'evento", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("update", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Evento updatedEvento = em.merge(evento);
+                em.getTransaction().commit();
+                runtime.dopoCommit(() -> VariazioniPosti.of(runtime).notifica(updatedEvento.getId()));
+                return updatedEvento;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'aggiornamento dell'evento", e);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -88,20 +208,26 @@ public class EventoDAO {
      * @param id l'ID dell'evento da eliminare
      */
     public void deleteById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Evento evento = em.find(Evento.class, id);
-            if (evento != null) {
-                em.remove(evento);
+        timer.misura("deleteById", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Evento evento = trova(runtime, em, id);
+                if (evento != null) {
+                    em.remove(evento);
+                }
+                em.getTransaction().commit();
+                runtime.dopoCommit(() -> {
+                    MembershipIndex.of(runtime).invalida(id);
+                    VariazioniPosti.of(runtime).notifica(id);
+                });
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'eliminazione dell'evento", e);
+            } finally {
+                em.close();
             }
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'eliminazione dell'evento", e);
-        } finally {
-            em.close();
-        }
+        });
     }
     
     /**
@@ -110,23 +236,433 @@ public class EventoDAO {
      * @return lista degli eventi che contengono il titolo specificato
      */
     public List<Evento> findByTitolo(String titolo) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Evento> query = em.createQuery(
-                "SELECT e FROM Evento e WHERE e.titolo LIKE :titolo", Evento.class);
-            query.setParameter("titolo", "%" + titolo + "%");
-            return query.getResultList();
-        } finally {
-            em.close();
+        return timer.misura("findByTitolo", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Evento> query = em.createQuery(
+                    "SELECT e FROM Evento e WHERE e.titolo LIKE :titolo", Evento.class);
+                query.setParameter("titolo", "%" + titolo + "%");
+                query.setHint(HibernateHints.HINT_CACHEABLE, true);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Cerca gli eventi per titolo per sottostringa, senza distinzione tra maiuscole e minuscole
+     * Usa l'indice trigram su lower(titolo) e ordina i risultati per somiglianza con il testo cercato
+     * @param titolo il testo da cercare nel titolo
+     * @param limit il numero massimo di risultati
+     * @return i risultati più somiglianti, al massimo limit
+     */
+    @SuppressWarnings("unchecked")
+    public List<Evento> searchByTitolo(String titolo, int limit) {
+        return timer.misura("searchByTitolo", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                Query query = em.createNativeQuery(
+                    "SELECT * FROM eventi WHERE lower(titolo) LIKE lower(:pattern) " +
+                    "ORDER BY lower(:testo) <<-> lower(titolo) LIMIT :limit", Evento.class);
+                query.setParameter("pattern", SearchIndexes.containsPattern(titolo));
+                query.setParameter("testo", titolo);
+                query.setParameter("limit", limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova gli eventi che contengono il titolo specificato con paginazione keyset ordinata per ID
+     * @param titolo il titolo da cercare
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Evento> findByTitoloAfter(String titolo, Long lastId, int limit) {
+        return timer.misura("findByTitoloAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Evento> query = em.createQuery(
+                    "SELECT e FROM Evento e WHERE e.titolo LIKE :titolo AND e.id > :lastId ORDER BY e.id", Evento.class);
+                query.setParameter("titolo", "%" + titolo + "%");
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce gli eventi che contengono il titolo specificato come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param titolo il titolo da cercare
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Evento> streamByTitolo(String titolo) {
+        return timer.misura("streamByTitolo", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT e FROM Evento e WHERE e.titolo LIKE :titolo ORDER BY e.id", Evento.class)
+                    .setParameter("titolo", "%" + titolo + "%"));
+        });
+    }
+    
+    /**
+     * Trova gli eventi che soddisfano i criteri, ordinati per data e ID
+     * Su PostgreSQL la condizione sulla data limita la lettura alle partizioni annuali degli anni richiesti
+     * @param ricerca intervallo di date, città e tipo
+     * @return gli eventi trovati
+     */
+    public List<Evento> findByDataEvento(RicercaEventi ricerca) {
+        return timer.misura("findByDataEvento", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return queryRicerca(em, ricerca, null).getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova gli eventi che soddisfano i criteri con paginazione keyset ordinata per data e ID
+     * @param ricerca intervallo di date, città e tipo
+     * @param ultimo l'ultimo evento della pagina precedente (ne contano data e ID), null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a ultimo
+     */
+    public List<Evento> findByDataEventoAfter(RicercaEventi ricerca, Evento ultimo, int limit) {
+        return timer.misura("findByDataEventoAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Evento> query = queryRicerca(em, ricerca, ultimo);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    // La pagina successiva parte dalla data dell'ultimo evento: (data, id) > (ultima data, ultimo id),
+    // scritta come intervallo su data_evento più un filtro, così l'indice (data_evento, id) resta utilizzabile
+    private static TypedQuery<Evento> queryRicerca(EntityManager em, RicercaEventi ricerca, Evento ultimo) {
+        StringBuilder jpql = new StringBuilder("SELECT e FROM Evento e");
+        if (ricerca.citta() != null) {
+            jpql.append(" JOIN e.location l");
+        }
+        jpql.append(" WHERE e.dataEvento >= :da AND e.dataEvento <= :a");
+        if (ultimo != null) {
+            jpql.append(" AND (e.dataEvento > :lastData OR e.id > :lastId)");
+        }
+        if (ricerca.citta() != null) {
+            jpql.append(" AND l.citta = :citta");
+        }
+        if (ricerca.tipo() != null) {
+            jpql.append(" AND e.tipoEvento = :tipo");
         }
+        jpql.append(" ORDER BY e.dataEvento, e.id");
+    
+        TypedQuery<Evento> query = em.createQuery(jpql.toString(), Evento.class);
+        LocalDate da = ricerca.da();
+        if (ultimo != null) {
+            if (ultimo.getDataEvento().isAfter(da)) {
+                da = ultimo.getDataEvento();
+            }
+            query.setParameter("lastData", ultimo.getDataEvento());
+            query.setParameter("lastId", ultimo.getId());
+        }
+        query.setParameter("da", da);
+        query.setParameter("a", ricerca.a());
+        if (ricerca.citta() != null) {
+            query.setParameter("citta", ricerca.citta());
+        }
+        if (ricerca.tipo() != null) {
+            query.setParameter("tipo", ricerca.tipo());
+        }
+        return query;
+    }
+    
+    /**
+     * Restituisce i posti disponibili di un evento con una sola lettura per chiave primaria
+     * Non carica l'evento né le sue partecipazioni
+     * Legge sempre dal primario: il contatore cambia a ogni iscrizione e le prenotazioni ne partono
+     * @param eventoId l'ID dell'evento
+     * @return il numero di posti disponibili, o null se l'evento non esiste
+     */
+    public Integer getPostiDisponibili(Long eventoId) {
+        return timer.misura("getPostiDisponibili", () -> {
+            EntityManager em = runtime.createPrimaryReadOnlyEntityManager();
+            try {
+                TypedQuery<Integer> query = em.createQuery(
+                    "SELECT e.numeroMassimoPartecipanti - e.postiOccupati FROM Evento e WHERE e.id = :id", Integer.class);
+                query.setParameter("id", eventoId);
+                List<Integer> result = query.getResultList();
+                return result.isEmpty() ? null : result.get(0);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
-     * Chiude l'EntityManagerFactory
+     * Verifica se un evento ha ancora posti disponibili
+     * @param eventoId l'ID dell'evento
+     * @return true se ci sono posti disponibili, false se l'evento è pieno o non esiste
      */
-    public static void closeEntityManagerFactory() {
-        if (emf != null && emf.isOpen()) {
-            emf.close();
+    public boolean hasPostiDisponibili(Long eventoId) {
+        return timer.misura("hasPostiDisponibili", () -> {
+            Integer posti = getPostiDisponibili(eventoId);
+            return posti != null && posti > 0;
+        });
+    }
+    
+    /**
+     * Ricalcola il contatore dei posti occupati di tutti gli eventi a partire dalle partecipazioni
+     * Da usare dopo import o modifiche fatte direttamente sul database
+     * @return il numero di eventi aggiornati
+     */
+    public int ricalcolaPostiOccupati() {
+        return timer.misura("ricalcolaPostiOccupati", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                int aggiornati = em.createQuery(
+                    "UPDATE Evento e SET e.postiOccupati = " +
+                    "CAST((SELECT COUNT(p) FROM Partecipazione p WHERE p.evento = e) AS Integer)")
+                    .executeUpdate();
+                em.getTransaction().commit();
+                runtime.dopoCommit(() -> VariazioniPosti.of(runtime).notifica(null));
+                return aggiornati;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante il ricalcolo dei posti occupati", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Registra un listener avvisato dopo ogni commit che cambia i posti disponibili di un evento
+     * Il listener è condiviso da tutti i DAO del runtime
+     * @param listener il listener da registrare
+     */
+    public void addPostiListener(PostiListener listener) {
+        VariazioniPosti.of(runtime).addListener(listener);
+    }
+    
+    /**
+     * Rimuove un listener registrato con {@link #addPostiListener(PostiListener)}
+     * @param listener il listener da rimuovere
+     */
+    public void removePostiListener(PostiListener listener) {
+        VariazioniPosti.of(runtime).removeListener(listener);
+    }
+    
+    /**
+     * Aggiorna in modo atomico il contatore dei posti occupati nella transazione corrente
+     * @param runtime il runtime del DAO chiamante
+     * @param em l'EntityManager con la transazione attiva
+     * @param eventoId l'ID dell'evento
+     * @param delta la variazione dei posti occupati
+     */
+    static void aggiornaPostiOccupati(PersistenceRuntime runtime, EntityManager em, Long eventoId, int delta) {
+        updatePostiOccupati(runtime, em, eventoId,
+            "UPDATE eventi SET posti_occupati = posti_occupati + :posti WHERE id = :id" + partizione(runtime), delta);
+    }
+    
+    /**
+     * Occupa dei posti solo se la capienza dell'evento lo consente, nella transazione corrente
+     * Il controllo e l'incremento avvengono nello stesso update, quindi non è possibile superare la capienza
+     * @param runtime il runtime del DAO chiamante
+     * @param em l'EntityManager con la transazione attiva
+     * @param eventoId l'ID dell'evento
+     * @param posti il numero di posti da occupare
+     * @return true se i posti sono stati occupati, false se non ci sono abbastanza posti
+     */
+    static boolean occupaPosti(PersistenceRuntime runtime, EntityManager em, Long eventoId, int posti) {
+        return updatePostiOccupati(runtime, em, eventoId,
+            "UPDATE eventi SET posti_occupati = posti_occupati + :posti " +
+            "WHERE id = :id AND posti_occupati + :posti <= numero_massimo_partecipanti" + partizione(runtime), posti) == 1;
+    }
+    
+    /**
+     * Trova un evento per ID leggendo solo la sua partizione
+     * Un evento in cache di secondo livello, o uno schema senza partizioni, usano em.find
+     * @param runtime il runtime del DAO chiamante
+     * @param em l'EntityManager da usare
+     * @param id l'ID dell'evento
+     * @return l'evento trovato o null
+     */
+    static Evento trova(PersistenceRuntime runtime, EntityManager em, Long id) {
+        if (!PartizioniEventi.of(runtime).isSchemaPartizionato()
+                || em.getEntityManagerFactory().getCache().contains(Evento.class, id)) {
+            return em.find(Evento.class, id);
+        }
+        List<?> eventi = em.createNativeQuery("SELECT * FROM eventi WHERE id = :id" + PARTIZIONE_EVENTO, Evento.class)
+            .setParameter("id", id)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedEntityClass(Evento.class)
+            .getResultList();
+        return eventi.isEmpty() ? null : (Evento) eventi.get(0);
+    }
+    
+    /**
+     * Libera i posti occupati da una persona in tutti gli eventi a cui partecipa, nella transazione corrente
+     * Da chiamare prima di rimuovere la persona, quando le sue partecipazioni esistono ancora
+     * @param runtime il runtime del DAO chiamante
+     * @param em l'EntityManager con la transazione attiva
+     * @param personaId l'ID della persona
+     * @return il numero di eventi aggiornati
+     */
+    static int liberaPostiDellaPersona(PersistenceRuntime runtime, EntityManager em, Long personaId) {
+        @SuppressWarnings("unchecked")
+        List<Long> eventoIds = em.createNativeQuery(
+                "SELECT DISTINCT evento_id FROM partecipazioni WHERE persona_id = :persona", Long.class)
+            .setParameter("persona", personaId)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(POSTI_OCCUPATI_QUERY_SPACE)
+            .getResultList();
+        if (eventoIds.isEmpty()) {
+            return 0;
+        }
+        int aggiornati = em.createNativeQuery(
+                "UPDATE eventi SET posti_occupati = posti_occupati - " +
+                "(SELECT COUNT(*) FROM partecipazioni p WHERE p.evento_id = eventi.id AND p.persona_id = :persona) " +
+                "WHERE id IN (:eventi)")
+            .setParameter("persona", personaId)
+            .setParameter("eventi", eventoIds)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(POSTI_OCCUPATI_QUERY_SPACE)
+            .executeUpdate();
+        invalidaPosti(runtime, em, eventoIds);
+        return aggiornati;
+    }
+    
+    // Un update JPQL su Evento svuoterebbe l'intera regione di cache degli eventi:
+    // l'update nativo dichiara uno spazio dedicato e invalida solo l'evento modificato
+    private static String partizione(PersistenceRuntime runtime) {
+        return PartizioniEventi.of(runtime).isSchemaPartizionato() ? PARTIZIONE_EVENTO : "";
+    }
+    
+    private static int updatePostiOccupati(PersistenceRuntime runtime, EntityManager em, Long eventoId,
+                                           String sql, int posti) {
+        int aggiornati = em.createNativeQuery(sql)
+            .setParameter("posti", posti)
+            .setParameter("id", eventoId)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(POSTI_OCCUPATI_QUERY_SPACE)
+            .executeUpdate();
+        if (aggiornati > 0) {
+            invalidaPosti(runtime, em, List.of(eventoId));
         }
+        return aggiornati;
+    }
+    
+    // L'evento viene tolto dalla cache subito e di nuovo alla fine della transazione: una lettura concorrente
+    // che arriva prima del commit ricaricherebbe in cache il contatore vecchio. I listener dei posti
+    // vengono avvisati solo dopo il commit, anche quando la transazione è quella di un'unità di lavoro
+    private static void invalidaPosti(PersistenceRuntime runtime, EntityManager em, Collection<Long> eventoIds) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        eventoIds.forEach(id -> cache.evict(Evento.class, id));
+        em.unwrap(Session.class).addEventListeners(new SessionEventListener() {
+            @Override
+            public void transactionCompletion(boolean successful) {
+                eventoIds.forEach(id -> cache.evict(Evento.class, id));
+                if (successful) {
+                    eventoIds.forEach(VariazioniPosti.of(runtime)::notifica);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #save(Evento)}
+     * @param evento l'evento da salvare
+     * @return il future con l'evento salvato
+     */
+    public CompletableFuture<Evento> saveAsync(Evento evento) {
+        return async.submit(() -> save(evento));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findById(Long)}
+     * @param id l'ID dell'evento
+     * @return il future con l'evento trovato o null
+     */
+    public CompletableFuture<Evento> findByIdAsync(Long id) {
+        return async.submit(() -> findById(id));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findAll()}
+     * @return il future con la lista di tutti gli eventi
+     */
+    public CompletableFuture<List<Evento>> findAllAsync() {
+        return async.submit(() -> findAll());
+    }
+    
+    /**
+     * Versione asincrona di {@link #update(Evento)}
+     * @param evento l'evento da aggiornare
+     * @return il future con l'evento aggiornato
+     */
+    public CompletableFuture<Evento> updateAsync(Evento evento) {
+        return async.submit(() -> update(evento));
+    }
+    
+    /**
+     * Versione asincrona di {@link #deleteById(Long)}
+     * @param id l'ID dell'evento da eliminare
+     * @return il future completato al termine dell'eliminazione
+     */
+    public CompletableFuture<Void> deleteByIdAsync(Long id) {
+        return async.submit(() -> {
+            deleteById(id);
+            return null;
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByTitolo(String)}
+     * @param titolo il titolo da cercare
+     * @return il future con la lista degli eventi trovati
+     */
+    public CompletableFuture<List<Evento>> findByTitoloAsync(String titolo) {
+        return async.submit(() -> findByTitolo(titolo));
+    }
+    
+    /**
+     * Versione asincrona di {@link #searchByTitolo(String, int)}
+     * @param titolo il testo da cercare nel titolo
+     * @param limit il numero massimo di risultati
+     * @return il future con i risultati più somiglianti
+     */
+    public CompletableFuture<List<Evento>> searchByTitoloAsync(String titolo, int limit) {
+        return async.submit(() -> searchByTitolo(titolo, limit));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByDataEvento(RicercaEventi)}
+     * @param ricerca intervallo di date, città e tipo
+     * @return il future con gli eventi trovati
+     */
+    public CompletableFuture<List<Evento>> findByDataEventoAsync(RicercaEventi ricerca) {
+        return async.submit(() -> findByDataEvento(ricerca));
+    }
+    
+    /**
+     * Versione asincrona di {@link #getPostiDisponibili(Long)}
+     * @param eventoId l'ID dell'evento
+     * @return il future con i posti disponibili, o null se l'evento non esiste
+     */
+    public CompletableFuture<Integer> getPostiDisponibiliAsync(Long eventoId) {
+        return async.submit(() -> getPostiDisponibili(eventoId));
     }
-}
\ No newline at end of file
+}
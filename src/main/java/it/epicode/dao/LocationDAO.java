@@ -1,19 +1,50 @@
 package it.epicode.dao;
 
+import it.epicode.entities.Evento;
 import it.epicode.entities.Location;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.DaoTimer;
+import it.epicode.persistence.AsyncExecutor;
+import it.epicode.persistence.BatchInserter;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.QueryStreams;
+import it.epicode.persistence.SearchIndexes;
+import it.epicode.repository.LocationRepository;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object per l'entità Location
  * Gestisce le operazioni CRUD per le location
  */
-public class LocationDAO {
+public class LocationDAO implements LocationRepository {
     
-    private static final EntityManagerFactory emf = Persistence.createEntityManagerFactory("gestione-eventi-pu");
+    private final PersistenceRuntime runtime;
+    private final DaoTimer timer;
+    private final AsyncExecutor async;
+    
+    /**
+     * Crea il DAO sul runtime di persistenza condiviso
+     */
+    public LocationDAO() {
+        this(PersistenceRuntime.getDefault());
+    }
+    
+    /**
+     * Crea il DAO sul runtime di persistenza indicato
+     * @param runtime il runtime di persistenza da utilizzare
+     */
+    public LocationDAO(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.timer = DaoMetrics.of(runtime).timer("LocationDAO");
+        this.async = AsyncExecutor.of(runtime);
+    }
     
     /**
      * Salva una nuova location nel database
@@ -21,18 +52,54 @@ public class LocationDAO {
      * @return la location salvata con l'ID generato
      */
     public Location save(Location location) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            em.persist(location);
-            em.getTransaction().commit();
-            return location;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante il salvataggio della location", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("save", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                em.persist(location);
+                em.getTransaction().commit();
+                return location;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante il salvataggio della location", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Salva le location in un'unica transazione con batching JDBC
+     * @param locations le location da salvare
+     * @return il numero di location salvate
+     */
+    public long saveAll(Collection<Location> locations) {
+        return saveAll(locations, runtime.getBatchSize());
+    }
+    
+    /**
+     * Salva le location in un'unica transazione con batching JDBC
+     * @param locations le location da salvare
+     * @param batchSize il numero di righe per ogni flush
+     * @return il numero di location salvate
+     */
+    public long saveAll(Collection<Location> locations, int batchSize) {
+        return timer.misura("saveAll", () -> {
+            return BatchInserter.persistAll(runtime, locations.iterator(), batchSize,
+                "Errore durante il salvataggio massivo delle location");
+        });
+    }
+    
+    /**
+     * Salva le location prodotte da uno stream senza mantenerle in memoria
+     * @param locations lo stream delle location da salvare
+     * @return il numero di location salvate
+     */
+    public long saveAll(Stream<Location> locations) {
+        return timer.misura("saveAll", () -> {
+            return BatchInserter.persistAll(runtime, locations.iterator(), runtime.getBatchSize(),
+                "Errore durante il salvataggio massivo delle location");
+        });
     }
     
     /**
@@ -41,12 +108,14 @@ public class LocationDAO {
      * @return la location trovata o null se non esiste
      */
     public Location findById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            return em.find(Location.class, id);
-        } finally {
-            em.close();
-        }
+        return timer.misura("findById", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return em.find(Location.class, id);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -54,13 +123,49 @@ public class LocationDAO {
      * @return lista di tutte le location
      */
     public List<Location> findAll() {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Location> query = em.createQuery("SELECT l FROM Location l", Location.class);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findAll", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Location> query = em.createQuery("SELECT l FROM Location l", Location.class);
+                query.setHint(HibernateHints.HINT_CACHEABLE, true);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova tutte le location con paginazione keyset ordinata per ID
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Location> findAllAfter(Long lastId, int limit) {
+        return timer.misura("findAllAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Location> query = em.createQuery(
+                    "SELECT l FROM Location l WHERE l.id > :lastId ORDER BY l.id", Location.class);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce tutte le location come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Location> streamAll() {
+        return timer.misura("streamAll", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT l FROM Location l ORDER BY l.id", Location.class));
+        });
     }
     
     /**
@@ -69,18 +174,20 @@ public class LocationDAO {
      * @return la location aggiornata
      */
     public Location update(Location location) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Location updatedLocation = em.merge(location);
-            em.getTransaction().commit();
-            return updatedLocation;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'aggiornamento della location", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("update", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Location updatedLocation = em.merge(location);
+                em.getTransaction().commit();
+                return updatedLocation;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'aggiornamento della location", e);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -88,20 +195,27 @@ public class LocationDAO {
      * @param id l'ID della location da eliminare
      */
     public void deleteById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Location location = em.find(Location.class, id);
-            if (location != null) {
-                em.remove(location);
+        timer.misura("deleteById", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Location location = em.find(Location.class, id);
+                List<Long> eventoIds = List.of();
+                if (location != null) {
+                    // Gli eventi vengono rimossi in cascata insieme alle loro partecipazioni
+                    eventoIds = location.getEventi().stream().map(Evento::getId).toList();
+                    em.remove(location);
+                }
+                em.getTransaction().commit();
+                List<Long> eventiRimossi = eventoIds;
+                runtime.dopoCommit(() -> eventiRimossi.forEach(MembershipIndex.of(runtime)::invalida));
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'eliminazione della location", e);
+            } finally {
+                em.close();
             }
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'eliminazione della location", e);
-        } finally {
-            em.close();
-        }
+        });
     }
     
     /**
@@ -110,15 +224,80 @@ public class LocationDAO {
      * @return lista delle location che contengono il nome specificato
      */
     public List<Location> findByNome(String nome) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Location> query = em.createQuery(
-                "SELECT l FROM Location l WHERE l.nome LIKE :nome", Location.class);
-            query.setParameter("nome", "%" + nome + "%");
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByNome", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Location> query = em.createQuery(
+                    "SELECT l FROM Location l WHERE l.nome LIKE :nome", Location.class);
+                query.setParameter("nome", "%" + nome + "%");
+                query.setHint(HibernateHints.HINT_CACHEABLE, true);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Cerca le location per nome per sottostringa, senza distinzione tra maiuscole e minuscole
+     * Usa l'indice trigram su lower(nome) e ordina i risultati per somiglianza con il testo cercato
+     * @param nome il testo da cercare nel nome
+     * @param limit il numero massimo di risultati
+     * @return i risultati più somiglianti, al massimo limit
+     */
+    @SuppressWarnings("unchecked")
+    public List<Location> searchByNome(String nome, int limit) {
+        return timer.misura("searchByNome", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                Query query = em.createNativeQuery(
+                    "SELECT * FROM locations WHERE lower(nome) LIKE lower(:pattern) " +
+                    "ORDER BY lower(:testo) <<-> lower(nome) LIMIT :limit", Location.class);
+                query.setParameter("pattern", SearchIndexes.containsPattern(nome));
+                query.setParameter("testo", nome);
+                query.setParameter("limit", limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova le location che contengono il nome specificato con paginazione keyset ordinata per ID
+     * @param nome il nome da cercare
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Location> findByNomeAfter(String nome, Long lastId, int limit) {
+        return timer.misura("findByNomeAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Location> query = em.createQuery(
+                    "SELECT l FROM Location l WHERE l.nome LIKE :nome AND l.id > :lastId ORDER BY l.id", Location.class);
+                query.setParameter("nome", "%" + nome + "%");
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le location che contengono il nome specificato come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param nome il nome da cercare
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Location> streamByNome(String nome) {
+        return timer.misura("streamByNome", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT l FROM Location l WHERE l.nome LIKE :nome ORDER BY l.id", Location.class)
+                    .setParameter("nome", "%" + nome + "%"));
+        });
     }
     
     /**
@@ -127,23 +306,164 @@ public class LocationDAO {
      * @return lista delle location nella città specificata
      */
     public List<Location> findByCitta(String citta) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Location> query = em.createQuery(
-                "SELECT l FROM Location l WHERE l.citta LIKE :citta", Location.class);
-            query.setParameter("citta", "%" + citta + "%");
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByCitta", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Location> query = em.createQuery(
+                    "SELECT l FROM Location l WHERE l.citta LIKE :citta", Location.class);
+                query.setParameter("citta", "%" + citta + "%");
+                query.setHint(HibernateHints.HINT_CACHEABLE, true);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Cerca le location per città per sottostringa, senza distinzione tra maiuscole e minuscole
+     * Usa l'indice trigram su lower(citta) e ordina i risultati per somiglianza con il testo cercato
+     * @param citta il testo da cercare nella città
+     * @param limit il numero massimo di risultati
+     * @return i risultati più somiglianti, al massimo limit
+     */
+    @SuppressWarnings("unchecked")
+    public List<Location> searchByCitta(String citta, int limit) {
+        return timer.misura("searchByCitta", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                Query query = em.createNativeQuery(
+                    "SELECT * FROM locations WHERE lower(citta) LIKE lower(:pattern) " +
+                    "ORDER BY lower(:testo) <<-> lower(citta) LIMIT :limit", Location.class);
+                query.setParameter("pattern", SearchIndexes.containsPattern(citta));
+                query.setParameter("testo", citta);
+                query.setParameter("limit", limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova le location nella città specificata con paginazione keyset ordinata per ID
+     * @param citta la città da cercare
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Location> findByCittaAfter(String citta, Long lastId, int limit) {
+        return timer.misura("findByCittaAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Location> query = em.createQuery(
+                    "SELECT l FROM Location l WHERE l.citta LIKE :citta AND l.id > :lastId ORDER BY l.id", Location.class);
+                query.setParameter("citta", "%" + citta + "%");
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le location nella città specificata come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param citta la città da cercare
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Location> streamByCitta(String citta) {
+        return timer.misura("streamByCitta", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT l FROM Location l WHERE l.citta LIKE :citta ORDER BY l.id", Location.class)
+                    .setParameter("citta", "%" + citta + "%"));
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #save(Location)}
+     * @param location la location da salvare
+     * @return il future con la location salvata
+     */
+    public CompletableFuture<Location> saveAsync(Location location) {
+        return async.submit(() -> save(location));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findById(Long)}
+     * @param id l'ID della location
+     * @return il future con la location trovata o null
+     */
+    public CompletableFuture<Location> findByIdAsync(Long id) {
+        return async.submit(() -> findById(id));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findAll()}
+     * @return il future con la lista di tutte le location
+     */
+    public CompletableFuture<List<Location>> findAllAsync() {
+        return async.submit(() -> findAll());
+    }
+    
+    /**
+     * Versione asincrona di {@link #update(Location)}
+     * @param location la location da aggiornare
+     * @return il future con la location aggiornata
+     */
+    public CompletableFuture<Location> updateAsync(Location location) {
+        return async.submit(() -> update(location));
+    }
+    
+    /**
+     * Versione asincrona di {@link #deleteById(Long)}
+     * @param id l'ID della location da eliminare
+     * @return il future completato al termine dell'eliminazione
+     */
+    public CompletableFuture<Void> deleteByIdAsync(Long id) {
+        return async.submit(() -> {
+            deleteById(id);
+            return null;
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByNome(String)}
+     * @param nome il nome da cercare
+     * @return il future con la lista delle location trovate
+     */
+    public CompletableFuture<List<Location>> findByNomeAsync(String nome) {
+        return async.submit(() -> findByNome(nome));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByCitta(String)}
+     * @param citta la città
+     * @return il future con la lista delle location trovate
+     */
+    public CompletableFuture<List<Location>> findByCittaAsync(String citta) {
+        return async.submit(() -> findByCitta(citta));
+    }
+    
+    /**
+     * Versione asincrona di {@link #searchByNome(String, int)}
+     * @param nome il testo da cercare nel nome
+     * @param limit il numero massimo di risultati
+     * @return il future con i risultati più somiglianti
+     */
+    public CompletableFuture<List<Location>> searchByNomeAsync(String nome, int limit) {
+        return async.submit(() -> searchByNome(nome, limit));
     }
     
     /**
-     * Chiude l'EntityManagerFactory
+     * Versione asincrona di {@link #searchByCitta(String, int)}
+     * @param citta il testo da cercare nella città
+     * @param limit il numero massimo di risultati
+     * @return il future con i risultati più somiglianti
      */
-    public static void closeEntityManagerFactory() {
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    public CompletableFuture<List<Location>> searchByCittaAsync(String citta, int limit) {
+        return async.submit(() -> searchByCitta(citta, limit));
     }
-}
\ No newline at end of file
+}
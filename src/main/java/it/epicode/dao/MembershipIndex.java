@@ -0,0 +1,184 @@
+package it.epicode.dao;
+
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indice in memoria delle iscrizioni: per ogni evento l'insieme ordinato degli ID delle persone iscritte
+ * Ogni evento viene caricato dal database al primo controllo e poi aggiornato dai DAO dopo ogni commit,
+ * quindi le verifiche successive non richiedono query
+ * Le modifiche fatte fuori da questa applicazione diventano visibili alla scadenza dell'evento in memoria
+ * (gestione-eventi.iscrizioni.ttl-seconds); il vincolo univoco sul database resta il controllo definitivo
+ */
+final class MembershipIndex {
+
+    static final String TTL_PROPERTY = "gestione-eventi.iscrizioni.ttl-seconds";
+    static final String MAX_EVENTI_PROPERTY = "gestione-eventi.iscrizioni.max-eventi";
+
+    private static final int DEFAULT_TTL_SECONDS = 300;
+    private static final int DEFAULT_MAX_EVENTI = 10_000;
+
+    private final PersistenceRuntime runtime;
+    private final long ttlNanos;
+    private final int maxEventi;
+    private final Map<Long, Iscritti> eventi = new ConcurrentHashMap<>();
+
+    private MembershipIndex(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(runtime.getPositiveInt(TTL_PROPERTY, DEFAULT_TTL_SECONDS));
+        this.maxEventi = runtime.getPositiveInt(MAX_EVENTI_PROPERTY, DEFAULT_MAX_EVENTI);
+    }
+
+    /**
+     * Restituisce l'indice condiviso dai DAO del runtime indicato
+     */
+    static MembershipIndex of(PersistenceRuntime runtime) {
+        return runtime.getComponent(MembershipIndex.class, MembershipIndex::new);
+    }
+
+    boolean isIscritta(Long personaId, Long eventoId) {
+        return getIscritti(eventoId).contiene(personaId);
+    }
+
+    Map<Long, Boolean> areIscritte(Collection<Long> personaIds, Long eventoId) {
+        Iscritti iscritti = getIscritti(eventoId);
+        Map<Long, Boolean> result = new LinkedHashMap<>();
+        synchronized (iscritti) {
+            for (Long personaId : personaIds) {
+                result.put(personaId, iscritti.contiene(personaId));
+            }
+        }
+        return result;
+    }
+
+    // Da chiamare dopo il commit: se l'evento non è in memoria verrà letto già aggiornato dal database
+    void aggiungi(Long eventoId, Collection<Long> personaIds) {
+        Iscritti iscritti = eventi.get(eventoId);
+        if (iscritti != null) {
+            synchronized (iscritti) {
+                if (iscritti.caricato) {
+                    personaIds.forEach(iscritti::aggiungi);
+                }
+            }
+        }
+    }
+
+    void rimuovi(Long eventoId, Long personaId) {
+        Iscritti iscritti = eventi.get(eventoId);
+        if (iscritti != null) {
+            synchronized (iscritti) {
+                iscritti.rimuovi(personaId);
+            }
+        }
+    }
+
+    // La persona viene tolta da tutti gli eventi in memoria
+    void rimuoviPersona(Long personaId) {
+        for (Iscritti iscritti : eventi.values()) {
+            synchronized (iscritti) {
+                iscritti.rimuovi(personaId);
+            }
+        }
+    }
+
+    void invalida(Long eventoId) {
+        eventi.remove(eventoId);
+    }
+
+    private Iscritti getIscritti(Long eventoId) {
+        Iscritti iscritti = eventi.computeIfAbsent(eventoId, id -> new Iscritti());
+        synchronized (iscritti) {
+            // Il caricamento avviene sotto il lock: un aggiornamento concorrente attende e viene applicato dopo
+            if (!iscritti.caricato || System.nanoTime() - iscritti.caricatoIl > ttlNanos) {
+                iscritti.carica(caricaDalDatabase(eventoId));
+            }
+        }
+        if (eventi.size() > maxEventi) {
+            liberaSpazio(eventoId);
+        }
+        return iscritti;
+    }
+
+    // Rimuove un evento qualsiasi diverso da quello appena usato: verrà ricaricato al prossimo controllo
+    private void liberaSpazio(Long eventoCorrente) {
+        Iterator<Long> iterator = eventi.keySet().iterator();
+        while (eventi.size() > maxEventi && iterator.hasNext()) {
+            if (!iterator.next().equals(eventoCorrente)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Sempre dal primario: una replica in ritardo lascerebbe fuori dall'indice le iscrizioni appena committate
+    // Mai con l'EntityManager di un'unità di lavoro: l'indice è condiviso e non deve vedere righe non committate
+    private long[] caricaDalDatabase(Long eventoId) {
+        EntityManager em = runtime.createCommittedReadOnlyEntityManager();
+        try {
+            List<Long> personaIds = em.createQuery(
+                "SELECT p.persona.id FROM Partecipazione p WHERE p.evento.id = :eventoId", Long.class)
+                .setParameter("eventoId", eventoId)
+                .getResultList();
+            long[] ids = new long[personaIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = personaIds.get(i);
+            }
+            Arrays.sort(ids);
+            return ids;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Persone iscritte a un evento, come array ordinato di ID (8 byte per iscrizione)
+     * Tutti gli accessi avvengono sincronizzati sull'istanza
+     */
+    private static final class Iscritti {
+
+        private long[] ids = new long[0];
+        private int size;
+        private boolean caricato;
+        private long caricatoIl;
+
+        synchronized void carica(long[] idsOrdinati) {
+            ids = idsOrdinati;
+            size = idsOrdinati.length;
+            caricato = true;
+            caricatoIl = System.nanoTime();
+        }
+
+        synchronized boolean contiene(Long personaId) {
+            return personaId != null && Arrays.binarySearch(ids, 0, size, personaId) >= 0;
+        }
+
+        synchronized void aggiungi(Long personaId) {
+            int posizione = Arrays.binarySearch(ids, 0, size, personaId);
+            if (posizione >= 0) {
+                return;
+            }
+            posizione = -posizione - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(8, size + (size >> 1)));
+            }
+            System.arraycopy(ids, posizione, ids, posizione + 1, size - posizione);
+            ids[posizione] = personaId;
+            size++;
+        }
+
+        synchronized void rimuovi(Long personaId) {
+            int posizione = Arrays.binarySearch(ids, 0, size, personaId);
+            if (posizione >= 0) {
+                System.arraycopy(ids, posizione + 1, ids, posizione, size - posizione - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -1,54 +1,254 @@
 package it.epicode.dao;
 
+import it.epicode.dto.PartecipazioneView;
 import it.epicode.entities.Partecipazione;
 import it.epicode.entities.Persona;
 import it.epicode.entities.Evento;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.DaoTimer;
+import it.epicode.persistence.AsyncExecutor;
+import it.epicode.persistence.BatchInserter;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.QueryStreams;
+import it.epicode.persistence.UnitOfWork;
+import it.epicode.repository.PartecipazioneRepository;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import jakarta.persistence.FlushModeType;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.SpecHints;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object per l'entità Partecipazione
  * Gestisce le operazioni CRUD per le partecipazioni
  */
-public class PartecipazioneDAO {
+public class PartecipazioneDAO implements PartecipazioneRepository {
     
-    private static final EntityManagerFactory emf = Persistence.createEntityManagerFactory("gestione-eventi-pu");
+    // Numero massimo di tentativi di register in caso di conflitti di concorrenza
+    private static final int MAX_TENTATIVI = 5;
+    
+    // Righe aggiornate da ogni transazione di confirmAll e updateStato
+    private static final int BULK_CHUNK = 1000;
+    
+    private final PersistenceRuntime runtime;
+    private final DaoTimer timer;
+    private final AsyncExecutor async;
+    private final MembershipIndex iscrizioni;
+    
+    /**
+     * Crea il DAO sul runtime di persistenza condiviso
+     */
+    public PartecipazioneDAO() {
+        this(PersistenceRuntime.getDefault());
+    }
+    
+    /**
+     * Crea il DAO sul runtime di persistenza indicato
+     * @param runtime il runtime di persistenza da utilizzare
+     */
+    public PartecipazioneDAO(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.timer = DaoMetrics.of(runtime).timer("PartecipazioneDAO");
+        this.async = AsyncExecutor.of(runtime);
+        this.iscrizioni = MembershipIndex.of(runtime);
+    }
     
     /**
      * Salva una nuova partecipazione nel database
      * @param partecipazione la partecipazione da salvare
      * @return la partecipazione salvata con l'ID generato
+     * @throws PostiEsauritiException se l'evento non ha più posti disponibili
      */
     public Partecipazione save(Partecipazione partecipazione) {
-        EntityManager em = emf.createEntityManager();
+        return timer.misura("save", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Long eventoId = partecipazione.getEvento().getId();
+                if (!EventoDAO.occupaPosti(runtime, em, eventoId, 1)) {
+                    throw new PostiEsauritiException(eventoId, 1);
+                }
+                em.persist(partecipazione);
+                em.getTransaction().commit();
+                Long personaId = partecipazione.getPersona().getId();
+                runtime.dopoCommit(() -> iscrizioni.aggiungi(eventoId, List.of(personaId)));
+                return partecipazione;
+            } catch (PostiEsauritiException e) {
+                em.getTransaction().rollback();
+                throw e;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante il salvataggio della partecipazione", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Salva le partecipazioni in un'unica transazione con batching JDBC
+     * @param partecipazioni le partecipazioni da salvare
+     * @return il numero di partecipazioni salvate
+     */
+    public long saveAll(Collection<Partecipazione> partecipazioni) {
+        return saveAll(partecipazioni, runtime.getBatchSize());
+    }
+    
+    /**
+     * Salva le partecipazioni in un'unica transazione con batching JDBC
+     * @param partecipazioni le partecipazioni da salvare
+     * @param batchSize il numero di righe per ogni flush
+     * @return il numero di partecipazioni salvate
+     */
+    public long saveAll(Collection<Partecipazione> partecipazioni, int batchSize) {
+        return saveAll(partecipazioni.stream(), batchSize);
+    }
+    
+    /**
+     * Salva le partecipazioni prodotte da uno stream senza mantenerle in memoria
+     * @param partecipazioni lo stream delle partecipazioni da salvare
+     * @return il numero di partecipazioni salvate
+     */
+    public long saveAll(Stream<Partecipazione> partecipazioni) {
+        return saveAll(partecipazioni, runtime.getBatchSize());
+    }
+    
+    // Occupa i posti con un solo update condizionale per evento, prima del commit
+    private long saveAll(Stream<Partecipazione> partecipazioni, int batchSize) {
+        return timer.misura("saveAll", () -> {
+            Map<Long, Integer> nuoviPerEvento = new HashMap<>();
+            Iterator<Partecipazione> iterator = partecipazioni
+                .peek(p -> nuoviPerEvento.merge(p.getEvento().getId(), 1, Integer::sum))
+                .iterator();
+            try {
+                long salvate = BatchInserter.persistAll(runtime, iterator, batchSize,
+                    "Errore durante il salvataggio massivo delle partecipazioni",
+                    em -> nuoviPerEvento.forEach((eventoId, n) -> {
+                        if (!EventoDAO.occupaPosti(runtime, em, eventoId, n)) {
+                            throw new PostiEsauritiException(eventoId, n);
+                        }
+                    }));
+                // Le persone iscritte non sono state conservate: gli eventi coinvolti verranno ricaricati
+                runtime.dopoCommit(() -> nuoviPerEvento.keySet().forEach(iscrizioni::invalida));
+                return salvate;
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof PostiEsauritiException postiEsauriti) {
+                    throw postiEsauriti;
+                }
+                throw e;
+            }
+        });
+    }
+    
+    /**
+     * Iscrive una persona a un evento come CONFERMATA
+     * Capienza e unicità dell'iscrizione sono verificate in modo atomico sul database;
+     * i conflitti di concorrenza vengono ritentati fino a MAX_TENTATIVI volte
+     * @param personaId l'ID della persona
+     * @param eventoId l'ID dell'evento
+     * @return la partecipazione creata
+     * @throws PostiEsauritiException se l'evento non ha più posti disponibili
+     * @throws PersonaGiaIscrittaException se la persona è già iscritta all'evento
+     */
+    public Partecipazione register(Long personaId, Long eventoId) {
+        return timer.misura("register", () -> {
+            for (int tentativo = 1; ; tentativo++) {
+                try {
+                    return iscrivi(eventoId, List.of(personaId), Partecipazione.Stato.CONFERMATA).get(0);
+                } catch (PostiEsauritiException | PersonaGiaIscrittaException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    // In un'unità di lavoro la transazione è già marcata per il rollback: ritentare non serve
+                    if (tentativo >= MAX_TENTATIVI || !PersistenceErrors.isTransitorio(e) || UnitOfWork.of(runtime).isAttiva()) {
+                        throw e;
+                    }
+                    attendiPrimaDiRitentare(tentativo);
+                }
+            }
+        });
+    }
+    
+    private static void attendiPrimaDiRitentare(int tentativo) {
         try {
-            em.getTransaction().begin();
-            em.persist(partecipazione);
-            em.getTransaction().commit();
-            return partecipazione;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante il salvataggio della partecipazione", e);
-        } finally {
-            em.close();
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 1L << Math.min(tentativo + 2, 8)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Iscrizione interrotta", e);
         }
     }
     
+    /**
+     * Iscrive delle persone a un evento verificando la capienza in modo atomico
+     * Le partecipazioni vengono create solo se ci sono posti per tutte, altrimenti nessuna
+     * @param eventoId l'ID dell'evento
+     * @param personaIds gli ID delle persone da iscrivere
+     * @param stato lo stato delle nuove partecipazioni
+     * @return le partecipazioni create
+     * @throws PostiEsauritiException se l'evento non ha abbastanza posti disponibili
+     * @throws PersonaGiaIscrittaException se una delle persone è già iscritta all'evento
+     */
+    public List<Partecipazione> iscrivi(Long eventoId, Collection<Long> personaIds, Partecipazione.Stato stato) {
+        return timer.misura("iscrivi", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                if (!EventoDAO.occupaPosti(runtime, em, eventoId, personaIds.size())) {
+                    throw new PostiEsauritiException(eventoId, personaIds.size());
+                }
+                Evento evento = EventoDAO.trova(runtime, em, eventoId);
+                List<Partecipazione> partecipazioni = new ArrayList<>(personaIds.size());
+                for (Long personaId : personaIds) {
+                    Persona persona = em.find(Persona.class, personaId);
+                    if (persona == null) {
+                        throw new IllegalArgumentException("Persona non trovata: " + personaId);
+                    }
+                    Partecipazione partecipazione = new Partecipazione(persona, evento, stato);
+                    em.persist(partecipazione);
+                    partecipazioni.add(partecipazione);
+                }
+                em.flush();
+                em.getTransaction().commit();
+                runtime.dopoCommit(() -> iscrizioni.aggiungi(eventoId, personaIds));
+                return partecipazioni;
+            } catch (PostiEsauritiException e) {
+                em.getTransaction().rollback();
+                throw e;
+            } catch (Exception e) {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                if (PersistenceErrors.isViolazioneVincolo(e, Partecipazione.UK_PERSONA_EVENTO)) {
+                    throw new PersonaGiaIscrittaException(eventoId, personaIds, e);
+                }
+                throw new RuntimeException("Errore durante l'iscrizione all'evento", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
     /**
      * Trova una partecipazione per ID
      * @param id l'ID della partecipazione
      * @return la partecipazione trovata o null se non esiste
      */
     public Partecipazione findById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            return em.find(Partecipazione.class, id);
-        } finally {
-            em.close();
-        }
+        return timer.misura("findById", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return em.find(Partecipazione.class, id);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -56,33 +256,108 @@ public class PartecipazioneDAO {
      * @return lista di tutte le partecipazioni
      */
     public List<Partecipazione> findAll() {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Partecipazione> query = em.createQuery("SELECT p FROM Partecipazione p", Partecipazione.class);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findAll", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery("SELECT p FROM Partecipazione p", Partecipazione.class);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova tutte le partecipazioni con paginazione keyset ordinata per ID
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Partecipazione> findAllAfter(Long lastId, int limit) {
+        return timer.misura("findAllAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.id > :lastId ORDER BY p.id", Partecipazione.class);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce tutte le partecipazioni come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Partecipazione> streamAll() {
+        return timer.misura("streamAll", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT p FROM Partecipazione p ORDER BY p.id", Partecipazione.class));
+        });
     }
     
     /**
      * Aggiorna una partecipazione esistente
+     * Se cambia l'evento, il posto viene occupato sul nuovo evento con il controllo della capienza
+     * e liberato sul precedente, nella stessa transazione
      * @param partecipazione la partecipazione da aggiornare
      * @return la partecipazione aggiornata
+     * @throws PostiEsauritiException se il nuovo evento non ha più posti disponibili
      */
     public Partecipazione update(Partecipazione partecipazione) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Partecipazione updatedPartecipazione = em.merge(partecipazione);
-            em.getTransaction().commit();
-            return updatedPartecipazione;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'aggiornamento della partecipazione", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("update", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                // Legge persona ed evento attuali prima che merge li sovrascriva
+                Partecipazione attuale = partecipazione.getId() != null
+                    ? em.find(Partecipazione.class, partecipazione.getId()) : null;
+                Long personaPrecedente = attuale != null ? attuale.getPersona().getId() : null;
+                Long eventoPrecedente = attuale != null ? attuale.getEvento().getId() : null;
+                if (attuale != null && attuale == partecipazione) {
+                    // Già gestita dall'unità di lavoro: i valori precedenti sono solo sul database
+                    Object[] precedenti = em.createQuery(
+                            "SELECT p.persona.id, p.evento.id FROM Partecipazione p WHERE p.id = :id", Object[].class)
+                        .setParameter("id", partecipazione.getId())
+                        .setFlushMode(FlushModeType.COMMIT)
+                        .getSingleResult();
+                    personaPrecedente = (Long) precedenti[0];
+                    eventoPrecedente = (Long) precedenti[1];
+                }
+                Long nuovoEvento = partecipazione.getEvento().getId();
+                if (eventoPrecedente != null && !eventoPrecedente.equals(nuovoEvento)) {
+                    if (!EventoDAO.occupaPosti(runtime, em, nuovoEvento, 1)) {
+                        throw new PostiEsauritiException(nuovoEvento, 1);
+                    }
+                    EventoDAO.aggiornaPostiOccupati(runtime, em, eventoPrecedente, -1);
+                }
+                Partecipazione updatedPartecipazione = em.merge(partecipazione);
+                em.getTransaction().commit();
+                Long personaRimossa = personaPrecedente;
+                Long eventoRimosso = eventoPrecedente;
+                Long eventoId = updatedPartecipazione.getEvento().getId();
+                Long personaId = updatedPartecipazione.getPersona().getId();
+                runtime.dopoCommit(() -> {
+                    if (eventoRimosso != null) {
+                        iscrizioni.rimuovi(eventoRimosso, personaRimossa);
+                    }
+                    iscrizioni.aggiungi(eventoId, List.of(personaId));
+                });
+                return updatedPartecipazione;
+            } catch (PostiEsauritiException e) {
+                em.getTransaction().rollback();
+                throw e;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'aggiornamento della partecipazione", e);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -90,17 +365,106 @@ public class PartecipazioneDAO {
      * @param id l'ID della partecipazione da eliminare
      */
     public void deleteById(Long id) {
-        EntityManager em = emf.createEntityManager();
+        timer.misura("deleteById", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Partecipazione partecipazione = em.find(Partecipazione.class, id);
+                if (partecipazione != null) {
+                    em.remove(partecipazione);
+                    EventoDAO.aggiornaPostiOccupati(runtime, em, partecipazione.getEvento().getId(), -1);
+                }
+                em.getTransaction().commit();
+                if (partecipazione != null) {
+                    Long eventoId = partecipazione.getEvento().getId();
+                    Long personaId = partecipazione.getPersona().getId();
+                    runtime.dopoCommit(() -> iscrizioni.rimuovi(eventoId, personaId));
+                }
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'eliminazione della partecipazione", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Conferma tutte le partecipazioni DA_CONFERMARE di un evento con aggiornamenti massivi
+     * Le righe vengono aggiornate a blocchi di BULK_CHUNK, ognuno nella propria transazione; in caso di errore
+     * i blocchi già confermati restano tali e l'operazione si può ripetere
+     * @param eventoId l'ID dell'evento
+     * @return il numero di partecipazioni confermate
+     */
+    public int confirmAll(Long eventoId) {
+        return timer.misura("confirmAll", () -> {
+            int aggiornate = 0;
+            Long lastId = 0L;
+            while (true) {
+                List<Long> ids = findIdsDaConfermare(eventoId, lastId);
+                if (ids.isEmpty()) {
+                    return aggiornate;
+                }
+                aggiornate += aggiornaStato(ids, Partecipazione.Stato.CONFERMATA);
+                lastId = ids.get(ids.size() - 1);
+            }
+        });
+    }
+    
+    /**
+     * Imposta lo stato delle partecipazioni indicate con aggiornamenti massivi, senza caricarle
+     * Le righe vengono aggiornate a blocchi di BULK_CHUNK, ognuno nella propria transazione;
+     * le partecipazioni che hanno già lo stato richiesto non vengono toccate
+     * @param ids gli ID delle partecipazioni
+     * @param stato il nuovo stato
+     * @return il numero di partecipazioni aggiornate
+     */
+    public int updateStato(Collection<Long> ids, Partecipazione.Stato stato) {
+        return timer.misura("updateStato", () -> {
+            List<Long> lista = List.copyOf(ids);
+            int aggiornate = 0;
+            for (int inizio = 0; inizio < lista.size(); inizio += BULK_CHUNK) {
+                aggiornate += aggiornaStato(lista.subList(inizio, Math.min(inizio + BULK_CHUNK, lista.size())), stato);
+            }
+            return aggiornate;
+        });
+    }
+    
+    // Dal primario, come gli aggiornamenti che seguono, e fuori dall'unità di lavoro: si confermano solo
+    // partecipazioni committate, e la paginazione per ID non dipende dagli aggiornamenti già fatti dall'unità
+    private List<Long> findIdsDaConfermare(Long eventoId, Long lastId) {
+        EntityManager em = runtime.createCommittedReadOnlyEntityManager();
+        try {
+            return em.createQuery(
+                "SELECT p.id FROM Partecipazione p WHERE p.evento.id = :eventoId AND p.stato = :stato " +
+                "AND p.id > :lastId ORDER BY p.id", Long.class)
+                .setParameter("eventoId", eventoId)
+                .setParameter("stato", Partecipazione.Stato.DA_CONFERMARE)
+                .setParameter("lastId", lastId)
+                .setMaxResults(BULK_CHUNK)
+                .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+    
+    // Un update JPQL invalida da solo la cache delle query sulle partecipazioni; posti occupati e iscrizioni non dipendono dallo stato
+    private int aggiornaStato(List<Long> ids, Partecipazione.Stato stato) {
+        EntityManager em = runtime.createEntityManager();
         try {
             em.getTransaction().begin();
-            Partecipazione partecipazione = em.find(Partecipazione.class, id);
-            if (partecipazione != null) {
-                em.remove(partecipazione);
-            }
+            int aggiornate = em.createQuery(
+                "UPDATE Partecipazione p SET p.stato = :stato WHERE p.id IN :ids AND p.stato <> :stato")
+                .setParameter("stato", stato)
+                .setParameter("ids", ids)
+                .executeUpdate();
             em.getTransaction().commit();
+            return aggiornate;
         } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'eliminazione della partecipazione", e);
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Errore durante l'aggiornamento dello stato delle partecipazioni", e);
         } finally {
             em.close();
         }
@@ -112,15 +476,95 @@ public class PartecipazioneDAO {
      * @return lista delle partecipazioni della persona
      */
     public List<Partecipazione> findByPersona(Persona persona) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Partecipazione> query = em.createQuery(
-                "SELECT p FROM Partecipazione p WHERE p.persona = :persona", Partecipazione.class);
-            query.setParameter("persona", persona);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByPersona", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.persona = :persona", Partecipazione.class);
+                query.setParameter("persona", persona);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova le partecipazioni della persona con paginazione keyset ordinata per ID
+     * @param persona la persona di cui cercare le partecipazioni
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Partecipazione> findByPersonaAfter(Persona persona, Long lastId, int limit) {
+        return timer.misura("findByPersonaAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.persona = :persona AND p.id > :lastId ORDER BY p.id", Partecipazione.class);
+                query.setParameter("persona", persona);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le partecipazioni della persona come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param persona la persona di cui cercare le partecipazioni
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Partecipazione> streamByPersona(Persona persona) {
+        return timer.misura("streamByPersona", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.persona = :persona ORDER BY p.id", Partecipazione.class)
+                    .setParameter("persona", persona));
+        });
+    }
+    
+    /**
+     * Trova partecipazioni per persona caricando in una sola query le associazioni dell'entity graph indicato
+     * Le associazioni del grafo sono utilizzabili anche dopo la chiusura dell'EntityManager
+     * @param persona la persona di cui cercare le partecipazioni
+     * @param entityGraph il nome dell'entity graph, ad esempio Partecipazione.GRAFO_PERSONA_EVENTO
+     * @return lista delle partecipazioni della persona
+     */
+    public List<Partecipazione> findByPersona(Persona persona, String entityGraph) {
+        return timer.misura("findByPersonaGrafo", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.persona = :persona ORDER BY p.id", Partecipazione.class);
+                query.setParameter("persona", persona);
+                query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(entityGraph));
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le partecipazioni di una persona come proiezioni in sola lettura, con una sola query
+     * @param personaId l'ID della persona
+     * @return le partecipazioni della persona ordinate per ID
+     */
+    public List<PartecipazioneView> findViewByPersona(Long personaId) {
+        return timer.misura("findViewByPersona", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return em.createQuery(PartecipazioneView.SELECT + "WHERE pe.id = :personaId ORDER BY p.id",
+                        PartecipazioneView.class)
+                    .setParameter("personaId", personaId)
+                    .getResultList();
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -129,15 +573,54 @@ public class PartecipazioneDAO {
      * @return lista delle partecipazioni all'evento
      */
     public List<Partecipazione> findByEvento(Evento evento) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Partecipazione> query = em.createQuery(
-                "SELECT p FROM Partecipazione p WHERE p.evento = :evento", Partecipazione.class);
-            query.setParameter("evento", evento);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByEvento", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.evento = :evento", Partecipazione.class);
+                query.setParameter("evento", evento);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova le partecipazioni all'evento con paginazione keyset ordinata per ID
+     * @param evento l'evento di cui cercare le partecipazioni
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Partecipazione> findByEventoAfter(Evento evento, Long lastId, int limit) {
+        return timer.misura("findByEventoAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.evento = :evento AND p.id > :lastId ORDER BY p.id", Partecipazione.class);
+                query.setParameter("evento", evento);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le partecipazioni all'evento come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param evento l'evento di cui cercare le partecipazioni
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Partecipazione> streamByEvento(Evento evento) {
+        return timer.misura("streamByEvento", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.evento = :evento ORDER BY p.id", Partecipazione.class)
+                    .setParameter("evento", evento));
+        });
     }
     
     /**
@@ -146,43 +629,337 @@ public class PartecipazioneDAO {
      * @return lista delle partecipazioni con lo stato specificato
      */
     public List<Partecipazione> findByStato(Partecipazione.Stato stato) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Partecipazione> query = em.createQuery(
-                "SELECT p FROM Partecipazione p WHERE p.stato = :stato", Partecipazione.class);
-            query.setParameter("stato", stato);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByStato", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.stato = :stato", Partecipazione.class);
+                query.setParameter("stato", stato);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova partecipazioni per evento caricando in una sola query le associazioni dell'entity graph indicato
+     * Le associazioni del grafo sono utilizzabili anche dopo la chiusura dell'EntityManager
+     * @param evento l'evento di cui cercare le partecipazioni
+     * @param entityGraph il nome dell'entity graph, ad esempio Partecipazione.GRAFO_DETTAGLIO
+     * @return lista delle partecipazioni all'evento
+     */
+    public List<Partecipazione> findByEvento(Evento evento, String entityGraph) {
+        return timer.misura("findByEventoGrafo", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.evento = :evento ORDER BY p.id", Partecipazione.class);
+                query.setParameter("evento", evento);
+                query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(entityGraph));
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le partecipazioni di un evento come proiezioni in sola lettura, con una sola query
+     * @param eventoId l'ID dell'evento
+     * @return le partecipazioni all'evento ordinate per ID
+     */
+    public List<PartecipazioneView> findViewByEvento(Long eventoId) {
+        return findViewByEventoAfter(eventoId, null, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Restituisce le partecipazioni di un evento come proiezioni in sola lettura, con paginazione keyset ordinata per ID
+     * @param eventoId l'ID dell'evento
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<PartecipazioneView> findViewByEventoAfter(Long eventoId, Long lastId, int limit) {
+        return timer.misura("findViewByEventoAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return em.createQuery(PartecipazioneView.SELECT +
+                        "WHERE e.id = :eventoId AND p.id > :lastId ORDER BY p.id", PartecipazioneView.class)
+                    .setParameter("eventoId", eventoId)
+                    .setParameter("lastId", lastId != null ? lastId : 0L)
+                    .setMaxResults(limit)
+                    .getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le partecipazioni di un evento come proiezioni lette da un unico cursore JDBC con persona ed evento in join
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param eventoId l'ID dell'evento
+     * @param stati gli stati da includere, tutti se vuoto
+     * @return lo stream delle proiezioni ordinate per ID
+     */
+    public Stream<PartecipazioneView> streamViewByEvento(Long eventoId, Collection<Partecipazione.Stato> stati) {
+        return timer.misura("streamViewByEvento", () -> {
+            return QueryStreams.stream(runtime, em -> {
+                TypedQuery<PartecipazioneView> query = em.createQuery(PartecipazioneView.SELECT + "WHERE e.id = :eventoId" +
+                        (stati.isEmpty() ? "" : " AND p.stato IN :stati") + " ORDER BY p.id", PartecipazioneView.class)
+                    .setParameter("eventoId", eventoId);
+                return stati.isEmpty() ? query : query.setParameter("stati", stati);
+            });
+        });
+    }
+    
+    /**
+     * Trova le partecipazioni con lo stato specificato con paginazione keyset ordinata per ID
+     * @param stato lo stato delle partecipazioni da cercare
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Partecipazione> findByStatoAfter(Partecipazione.Stato stato, Long lastId, int limit) {
+        return timer.misura("findByStatoAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Partecipazione> query = em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.stato = :stato AND p.id > :lastId ORDER BY p.id", Partecipazione.class);
+                query.setParameter("stato", stato);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le partecipazioni con lo stato specificato come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param stato lo stato delle partecipazioni da cercare
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Partecipazione> streamByStato(Partecipazione.Stato stato) {
+        return timer.misura("streamByStato", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT p FROM Partecipazione p WHERE p.stato = :stato ORDER BY p.id", Partecipazione.class)
+                    .setParameter("stato", stato));
+        });
     }
     
     /**
      * Verifica se una persona è già iscritta a un evento
+     * Dopo il primo controllo sull'evento la risposta arriva dall'indice in memoria, senza query
      * @param persona la persona da verificare
      * @param evento l'evento da verificare
      * @return true se la persona è già iscritta, false altrimenti
      */
     public boolean isPersonaIscritta(Persona persona, Evento evento) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Long> query = em.createQuery(
-                "SELECT COUNT(p) FROM Partecipazione p WHERE p.persona = :persona AND p.evento = :evento", 
-                Long.class);
-            query.setParameter("persona", persona);
-            query.setParameter("evento", evento);
-            return query.getSingleResult() > 0;
-        } finally {
-            em.close();
-        }
+        return isPersonaIscritta(persona.getId(), evento.getId());
     }
     
     /**
-     * Chiude l'EntityManagerFactory
+     * Verifica se una persona è già iscritta a un evento
+     * @param personaId l'ID della persona da verificare
+     * @param eventoId l'ID dell'evento da verificare
+     * @return true se la persona è già iscritta, false altrimenti
      */
-    public static void closeEntityManagerFactory() {
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    public boolean isPersonaIscritta(Long personaId, Long eventoId) {
+        return timer.misura("isPersonaIscritta", () -> {
+            if (personaId == null || eventoId == null) {
+                return false;
+            }
+            return iscrizioni.isIscritta(personaId, eventoId);
+        });
+    }
+    
+    /**
+     * Verifica in un colpo solo quali persone sono iscritte a un evento, ad esempio per una pagina di elenco
+     * @param personaIds gli ID delle persone da verificare
+     * @param eventoId l'ID dell'evento
+     * @return per ogni ID, nell'ordine ricevuto, true se la persona è iscritta
+     */
+    public Map<Long, Boolean> areIscritte(Collection<Long> personaIds, Long eventoId) {
+        return timer.misura("areIscritte", () -> {
+            return iscrizioni.areIscritte(personaIds, eventoId);
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #save(Partecipazione)}
+     * @param partecipazione la partecipazione da salvare
+     * @return il future con la partecipazione salvata
+     */
+    public CompletableFuture<Partecipazione> saveAsync(Partecipazione partecipazione) {
+        return async.submit(() -> save(partecipazione));
+    }
+    
+    /**
+     * Versione asincrona di {@link #register(Long, Long)}
+     * @param personaId l'ID della persona
+     * @param eventoId l'ID dell'evento
+     * @return il future con la partecipazione creata
+     */
+    public CompletableFuture<Partecipazione> registerAsync(Long personaId, Long eventoId) {
+        return async.submit(() -> register(personaId, eventoId));
+    }
+    
+    /**
+     * Versione asincrona di {@link #iscrivi(Long, Collection, Partecipazione.Stato)}
+     * @param eventoId l'ID dell'evento
+     * @param personaIds gli ID delle persone da iscrivere
+     * @param stato lo stato delle nuove partecipazioni
+     * @return il future con le partecipazioni create
+     */
+    public CompletableFuture<List<Partecipazione>> iscriviAsync(Long eventoId, Collection<Long> personaIds, Partecipazione.Stato stato) {
+        return async.submit(() -> iscrivi(eventoId, personaIds, stato));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findById(Long)}
+     * @param id l'ID della partecipazione
+     * @return il future con la partecipazione trovata o null
+     */
+    public CompletableFuture<Partecipazione> findByIdAsync(Long id) {
+        return async.submit(() -> findById(id));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findAll()}
+     * @return il future con la lista di tutte le partecipazioni
+     */
+    public CompletableFuture<List<Partecipazione>> findAllAsync() {
+        return async.submit(() -> findAll());
+    }
+    
+    /**
+     * Versione asincrona di {@link #update(Partecipazione)}
+     * @param partecipazione la partecipazione da aggiornare
+     * @return il future con la partecipazione aggiornata
+     */
+    public CompletableFuture<Partecipazione> updateAsync(Partecipazione partecipazione) {
+        return async.submit(() -> update(partecipazione));
+    }
+    
+    /**
+     * Versione asincrona di {@link #deleteById(Long)}
+     * @param id l'ID della partecipazione da eliminare
+     * @return il future completato al termine dell'eliminazione
+     */
+    public CompletableFuture<Void> deleteByIdAsync(Long id) {
+        return async.submit(() -> {
+            deleteById(id);
+            return null;
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByPersona(Persona)}
+     * @param persona la persona
+     * @return il future con la lista delle partecipazioni della persona
+     */
+    public CompletableFuture<List<Partecipazione>> findByPersonaAsync(Persona persona) {
+        return async.submit(() -> findByPersona(persona));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByEvento(Evento)}
+     * @param evento l'evento
+     * @return il future con la lista delle partecipazioni all'evento
+     */
+    public CompletableFuture<List<Partecipazione>> findByEventoAsync(Evento evento) {
+        return async.submit(() -> findByEvento(evento));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByPersona(Persona, String)}
+     * @param persona la persona
+     * @param entityGraph il nome dell'entity graph
+     * @return il future con la lista delle partecipazioni della persona
+     */
+    public CompletableFuture<List<Partecipazione>> findByPersonaAsync(Persona persona, String entityGraph) {
+        return async.submit(() -> findByPersona(persona, entityGraph));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByEvento(Evento, String)}
+     * @param evento l'evento
+     * @param entityGraph il nome dell'entity graph
+     * @return il future con la lista delle partecipazioni all'evento
+     */
+    public CompletableFuture<List<Partecipazione>> findByEventoAsync(Evento evento, String entityGraph) {
+        return async.submit(() -> findByEvento(evento, entityGraph));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findViewByPersona(Long)}
+     * @param personaId l'ID della persona
+     * @return il future con le proiezioni delle partecipazioni della persona
+     */
+    public CompletableFuture<List<PartecipazioneView>> findViewByPersonaAsync(Long personaId) {
+        return async.submit(() -> findViewByPersona(personaId));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findViewByEventoAfter(Long, Long, int)}
+     * @param eventoId l'ID dell'evento
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return il future con la pagina di proiezioni
+     */
+    public CompletableFuture<List<PartecipazioneView>> findViewByEventoAfterAsync(Long eventoId, Long lastId, int limit) {
+        return async.submit(() -> findViewByEventoAfter(eventoId, lastId, limit));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByStato(Partecipazione.Stato)}
+     * @param stato lo stato da cercare
+     * @return il future con la lista delle partecipazioni con lo stato
+     */
+    public CompletableFuture<List<Partecipazione>> findByStatoAsync(Partecipazione.Stato stato) {
+        return async.submit(() -> findByStato(stato));
+    }
+    
+    /**
+     * Versione asincrona di {@link #isPersonaIscritta(Long, Long)}
+     * @param personaId l'ID della persona
+     * @param eventoId l'ID dell'evento
+     * @return il future con true se la persona è iscritta
+     */
+    public CompletableFuture<Boolean> isPersonaIscrittaAsync(Long personaId, Long eventoId) {
+        return async.submit(() -> isPersonaIscritta(personaId, eventoId));
+    }
+    
+    /**
+     * Versione asincrona di {@link #areIscritte(Collection, Long)}
+     * @param personaIds gli ID delle persone
+     * @param eventoId l'ID dell'evento
+     * @return il future con la mappa da ID della persona a true se iscritta
+     */
+    public CompletableFuture<Map<Long, Boolean>> areIscritteAsync(Collection<Long> personaIds, Long eventoId) {
+        return async.submit(() -> areIscritte(personaIds, eventoId));
+    }
+    
+    /**
+     * Versione asincrona di {@link #confirmAll(Long)}
+     * @param eventoId l'ID dell'evento
+     * @return il future con il numero di partecipazioni confermate
+     */
+    public CompletableFuture<Integer> confirmAllAsync(Long eventoId) {
+        return async.submit(() -> confirmAll(eventoId));
+    }
+    
+    /**
+     * Versione asincrona di {@link #updateStato(Collection, Partecipazione.Stato)}
+     * @param ids gli ID delle partecipazioni
+     * @param stato il nuovo stato
+     * @return il future con il numero di partecipazioni aggiornate
+     */
+    public CompletableFuture<Integer> updateStatoAsync(Collection<Long> ids, Partecipazione.Stato stato) {
+        return async.submit(() -> updateStato(ids, stato));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package it.epicode.dao;
+
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+import java.sql.SQLException;
+
+/**
+ * Classificazione delle eccezioni di persistenza usata dai DAO
+ */
+final class PersistenceErrors {
+
+    // SQLState PostgreSQL di serialization failure e deadlock
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    private PersistenceErrors() {}
+
+    /**
+     * Verifica se l'errore è dovuto a un conflitto di concorrenza e l'operazione può essere ritentata
+     */
+    static boolean isTransitorio(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException
+                    || t instanceof PessimisticLockException
+                    || t instanceof LockTimeoutException
+                    || t instanceof LockAcquisitionException) {
+                return true;
+            }
+            if (t instanceof SQLException sql
+                    && (SERIALIZATION_FAILURE.equals(sql.getSQLState()) || DEADLOCK_DETECTED.equals(sql.getSQLState()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verifica se l'errore è la violazione del vincolo indicato
+     */
+    static boolean isViolazioneVincolo(Throwable error, String vincolo) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException violation
+                    && violation.getConstraintName() != null
+                    && violation.getConstraintName().toLowerCase().contains(vincolo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,19 +1,48 @@
 package it.epicode.dao;
 
 import it.epicode.entities.Persona;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.DaoTimer;
+import it.epicode.persistence.AsyncExecutor;
+import it.epicode.persistence.BatchInserter;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.QueryStreams;
+import it.epicode.persistence.SearchIndexes;
+import it.epicode.repository.PersonaRepository;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object per l'entità Persona
  * Gestisce le operazioni CRUD per le persone
  */
-public class PersonaDAO {
+public class PersonaDAO implements PersonaRepository {
     
-    private static final EntityManagerFactory emf = Persistence.createEntityManagerFactory("gestione-eventi-pu");
+    private final PersistenceRuntime runtime;
+    private final DaoTimer timer;
+    private final AsyncExecutor async;
+    
+    /**
+     * Crea il DAO sul runtime di persistenza condiviso
+     */
+    public PersonaDAO() {
+        this(PersistenceRuntime.getDefault());
+    }
+    
+    /**
+     * Crea il DAO sul runtime di persistenza indicato
+     * @param runtime il runtime di persistenza da utilizzare
+     */
+    public PersonaDAO(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.timer = DaoMetrics.of(runtime).timer("PersonaDAO");
+        this.async = AsyncExecutor.of(runtime);
+    }
     
     /**
      * Salva una nuova persona nel database
@@ -21,18 +50,54 @@ public class PersonaDAO {
      * @return la persona salvata con l'ID generato
      */
     public Persona save(Persona persona) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            em.persist(persona);
-            em.getTransaction().commit();
-            return persona;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante il salvataggio della persona", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("save", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                em.persist(persona);
+                em.getTransaction().commit();
+                return persona;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante il salvataggio della persona", e);
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Salva le persone in un'unica transazione con batching JDBC
+     * @param persone le persone da salvare
+     * @return il numero di persone salvate
+     */
+    public long saveAll(Collection<Persona> persone) {
+        return saveAll(persone, runtime.getBatchSize());
+    }
+    
+    /**
+     * Salva le persone in un'unica transazione con batching JDBC
+     * @param persone le persone da salvare
+     * @param batchSize il numero di righe per ogni flush
+     * @return il numero di persone salvate
+     */
+    public long saveAll(Collection<Persona> persone, int batchSize) {
+        return timer.misura("saveAll", () -> {
+            return BatchInserter.persistAll(runtime, persone.iterator(), batchSize,
+                "Errore durante il salvataggio massivo delle persone");
+        });
+    }
+    
+    /**
+     * Salva le persone prodotte da uno stream senza mantenerle in memoria
+     * @param persone lo stream delle persone da salvare
+     * @return il numero di persone salvate
+     */
+    public long saveAll(Stream<Persona> persone) {
+        return timer.misura("saveAll", () -> {
+            return BatchInserter.persistAll(runtime, persone.iterator(), runtime.getBatchSize(),
+                "Errore durante il salvataggio massivo delle persone");
+        });
     }
     
     /**
@@ -41,12 +106,14 @@ public class PersonaDAO {
      * @return la persona trovata o null se non esiste
      */
     public Persona findById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            return em.find(Persona.class, id);
-        } finally {
-            em.close();
-        }
+        return timer.misura("findById", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return em.find(Persona.class, id);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -54,13 +121,48 @@ public class PersonaDAO {
      * @return lista di tutte le persone
      */
     public List<Persona> findAll() {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Persona> query = em.createQuery("SELECT p FROM Persona p", Persona.class);
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findAll", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Persona> query = em.createQuery("SELECT p FROM Persona p", Persona.class);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova tutte le persone con paginazione keyset ordinata per ID
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Persona> findAllAfter(Long lastId, int limit) {
+        return timer.misura("findAllAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Persona> query = em.createQuery(
+                    "SELECT p FROM Persona p WHERE p.id > :lastId ORDER BY p.id", Persona.class);
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce tutte le persone come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Persona> streamAll() {
+        return timer.misura("streamAll", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT p FROM Persona p ORDER BY p.id", Persona.class));
+        });
     }
     
     /**
@@ -69,18 +171,20 @@ public class PersonaDAO {
      * @return la persona aggiornata
      */
     public Persona update(Persona persona) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Persona updatedPersona = em.merge(persona);
-            em.getTransaction().commit();
-            return updatedPersona;
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'aggiornamento della persona", e);
-        } finally {
-            em.close();
-        }
+        return timer.misura("update", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Persona updatedPersona = em.merge(persona);
+                em.getTransaction().commit();
+                return updatedPersona;
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'aggiornamento della persona", e);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -88,20 +192,27 @@ public class PersonaDAO {
      * @param id l'ID della persona da eliminare
      */
     public void deleteById(Long id) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Persona persona = em.find(Persona.class, id);
-            if (persona != null) {
-                em.remove(persona);
+        timer.misura("deleteById", () -> {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                Persona persona = em.find(Persona.class, id);
+                if (persona != null) {
+                    // Le partecipazioni vengono rimosse in cascata: libera i posti occupati negli eventi
+                    EventoDAO.liberaPostiDellaPersona(runtime, em, id);
+                    em.remove(persona);
+                }
+                em.getTransaction().commit();
+                if (persona != null) {
+                    runtime.dopoCommit(() -> MembershipIndex.of(runtime).rimuoviPersona(id));
+                }
+            } catch (Exception e) {
+                em.getTransaction().rollback();
+                throw new RuntimeException("Errore durante l'eliminazione della persona", e);
+            } finally {
+                em.close();
             }
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            em.getTransaction().rollback();
-            throw new RuntimeException("Errore durante l'eliminazione della persona", e);
-        } finally {
-            em.close();
-        }
+        });
     }
     
     /**
@@ -110,16 +221,18 @@ public class PersonaDAO {
      * @return la persona trovata o null se non esiste
      */
     public Persona findByEmail(String email) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Persona> query = em.createQuery(
-                "SELECT p FROM Persona p WHERE p.email = :email", Persona.class);
-            query.setParameter("email", email);
-            List<Persona> result = query.getResultList();
-            return result.isEmpty() ? null : result.get(0);
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByEmail", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Persona> query = em.createQuery(
+                    "SELECT p FROM Persona p WHERE p.email = :email", Persona.class);
+                query.setParameter("email", email);
+                List<Persona> result = query.getResultList();
+                return result.isEmpty() ? null : result.get(0);
+            } finally {
+                em.close();
+            }
+        });
     }
     
     /**
@@ -129,25 +242,160 @@ public class PersonaDAO {
      * @return lista delle persone che corrispondono ai criteri
      */
     public List<Persona> findByNomeCognome(String nome, String cognome) {
-        EntityManager em = emf.createEntityManager();
-        try {
-            TypedQuery<Persona> query = em.createQuery(
-                "SELECT p FROM Persona p WHERE p.nome LIKE :nome AND p.cognome LIKE :cognome", 
-                Persona.class);
-            query.setParameter("nome", "%" + nome + "%");
-            query.setParameter("cognome", "%" + cognome + "%");
-            return query.getResultList();
-        } finally {
-            em.close();
-        }
+        return timer.misura("findByNomeCognome", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Persona> query = em.createQuery(
+                    "SELECT p FROM Persona p WHERE p.nome LIKE :nome AND p.cognome LIKE :cognome", 
+                    Persona.class);
+                query.setParameter("nome", "%" + nome + "%");
+                query.setParameter("cognome", "%" + cognome + "%");
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Cerca le persone per nome e cognome per sottostringa, senza distinzione tra maiuscole e minuscole
+     * Usa l'indice trigram su lower(nome || ' ' || cognome) e ordina i risultati per somiglianza con il testo cercato
+     * @param testo il testo da cercare in "nome cognome"
+     * @param limit il numero massimo di risultati
+     * @return i risultati più somiglianti, al massimo limit
+     */
+    @SuppressWarnings("unchecked")
+    public List<Persona> searchByNomeCognome(String testo, int limit) {
+        return timer.misura("searchByNomeCognome", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                Query query = em.createNativeQuery(
+                    "SELECT * FROM persone WHERE lower(nome || ' ' || cognome) LIKE lower(:pattern) " +
+                    "ORDER BY lower(:testo) <<-> lower(nome || ' ' || cognome) LIMIT :limit", Persona.class);
+                query.setParameter("pattern", SearchIndexes.containsPattern(testo));
+                query.setParameter("testo", testo);
+                query.setParameter("limit", limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Trova le persone che corrispondono a nome e cognome (ricerca parziale) con paginazione keyset ordinata per ID
+     * @param nome il nome da cercare
+     * @param cognome il cognome da cercare
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<Persona> findByNomeCognomeAfter(String nome, String cognome, Long lastId, int limit) {
+        return timer.misura("findByNomeCognomeAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                TypedQuery<Persona> query = em.createQuery(
+                    "SELECT p FROM Persona p WHERE p.nome LIKE :nome AND p.cognome LIKE :cognome AND p.id > :lastId ORDER BY p.id", Persona.class);
+                query.setParameter("nome", "%" + nome + "%");
+                query.setParameter("cognome", "%" + cognome + "%");
+                query.setParameter("lastId", lastId != null ? lastId : 0L);
+                query.setMaxResults(limit);
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+    
+    /**
+     * Restituisce le persone che corrispondono a nome e cognome (ricerca parziale) come stream letto da un cursore JDBC
+     * Lo stream va chiuso dal chiamante (try-with-resources)
+     * @param nome il nome da cercare
+     * @param cognome il cognome da cercare
+     * @return lo stream dei risultati ordinati per ID
+     */
+    public Stream<Persona> streamByNomeCognome(String nome, String cognome) {
+        return timer.misura("streamByNomeCognome", () -> {
+            return QueryStreams.stream(runtime, em -> em.createQuery(
+                    "SELECT p FROM Persona p WHERE p.nome LIKE :nome AND p.cognome LIKE :cognome ORDER BY p.id", Persona.class)
+                    .setParameter("nome", "%" + nome + "%")
+                    .setParameter("cognome", "%" + cognome + "%"));
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #save(Persona)}
+     * @param persona la persona da salvare
+     * @return il future con la persona salvata
+     */
+    public CompletableFuture<Persona> saveAsync(Persona persona) {
+        return async.submit(() -> save(persona));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findById(Long)}
+     * @param id l'ID della persona
+     * @return il future con la persona trovata o null
+     */
+    public CompletableFuture<Persona> findByIdAsync(Long id) {
+        return async.submit(() -> findById(id));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findAll()}
+     * @return il future con la lista di tutte le persone
+     */
+    public CompletableFuture<List<Persona>> findAllAsync() {
+        return async.submit(() -> findAll());
+    }
+    
+    /**
+     * Versione asincrona di {@link #update(Persona)}
+     * @param persona la persona da aggiornare
+     * @return il future con la persona aggiornata
+     */
+    public CompletableFuture<Persona> updateAsync(Persona persona) {
+        return async.submit(() -> update(persona));
+    }
+    
+    /**
+     * Versione asincrona di {@link #deleteById(Long)}
+     * @param id l'ID della persona da eliminare
+     * @return il future completato al termine dell'eliminazione
+     */
+    public CompletableFuture<Void> deleteByIdAsync(Long id) {
+        return async.submit(() -> {
+            deleteById(id);
+            return null;
+        });
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByEmail(String)}
+     * @param email l'email della persona
+     * @return il future con la persona trovata o null
+     */
+    public CompletableFuture<Persona> findByEmailAsync(String email) {
+        return async.submit(() -> findByEmail(email));
+    }
+    
+    /**
+     * Versione asincrona di {@link #findByNomeCognome(String, String)}
+     * @param nome il nome
+     * @param cognome il cognome
+     * @return il future con la lista delle persone trovate
+     */
+    public CompletableFuture<List<Persona>> findByNomeCognomeAsync(String nome, String cognome) {
+        return async.submit(() -> findByNomeCognome(nome, cognome));
     }
     
     /**
-     * Chiude l'EntityManagerFactory
+     * Versione asincrona di {@link #searchByNomeCognome(String, int)}
+     * @param testo il testo da cercare
+     * @param limit il numero massimo di risultati
+     * @return il future con i risultati più somiglianti
      */
-    public static void closeEntityManagerFactory() {
-        if (emf != null && emf.isOpen()) {
-            emf.close();
-        }
+    public CompletableFuture<List<Persona>> searchByNomeCognomeAsync(String testo, int limit) {
+        return async.submit(() -> searchByNomeCognome(testo, limit));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package it.epicode.dao;
+
+import java.util.Collection;
+
+/**
+ * Eccezione lanciata quando una persona risulta già iscritta a un evento
+ */
+public class PersonaGiaIscrittaException extends RuntimeException {
+
+    public PersonaGiaIscrittaException(Long eventoId, Collection<Long> personaIds, Throwable cause) {
+        super((personaIds.size() == 1
+                ? "La persona " + personaIds.iterator().next()
+                : "Almeno una delle persone " + personaIds)
+            + " è già iscritta all'evento " + eventoId, cause);
+    }
+}
@@ -0,0 +1,18 @@
+package it.epicode.dao;
+
+/**
+ * Eccezione lanciata quando un evento non ha abbastanza posti disponibili
+ */
+public class PostiEsauritiException extends RuntimeException {
+
+    private final Long eventoId;
+
+    public PostiEsauritiException(Long eventoId, int postiRichiesti) {
+        super("Posti esauriti per l'evento " + eventoId + " (posti richiesti: " + postiRichiesti + ")");
+        this.eventoId = eventoId;
+    }
+
+    public Long getEventoId() {
+        return eventoId;
+    }
+}
@@ -0,0 +1,15 @@
+package it.epicode.dao;
+
+/**
+ * Riceve le variazioni dei posti disponibili degli eventi fatte dai DAO
+ * Viene invocato dopo il commit che ha reso visibile la modifica, sul thread del DAO:
+ * l'implementazione deve essere veloce e non deve accedere al database
+ */
+public interface PostiListener {
+
+    /**
+     * Chiamata quando cambiano i posti occupati o la capienza di un evento, o quando l'evento viene eliminato
+     * @param eventoId l'ID dell'evento, oppure null se possono essere cambiati i posti di tutti gli eventi
+     */
+    void postiCambiati(Long eventoId);
+}
@@ -0,0 +1,152 @@
+package it.epicode.dao;
+
+import it.epicode.dto.OccupazioneEvento;
+import it.epicode.dto.Statistiche;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.metrics.DaoMetrics;
+import it.epicode.metrics.DaoTimer;
+import it.epicode.persistence.AsyncExecutor;
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.EntityManager;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Data Access Object delle statistiche aggregate
+ * I conteggi e le somme sono calcolati dal database con COUNT/SUM e GROUP BY: nessuna entità viene caricata,
+ * al posto di findAll().size() viaggiano solo poche righe di risultato
+ * L'occupazione degli eventi usa il contatore posti_occupati mantenuto dalle iscrizioni
+ */
+public class StatisticheDAO {
+
+    private final PersistenceRuntime runtime;
+    private final DaoTimer timer;
+    private final AsyncExecutor async;
+
+    /**
+     * Crea il DAO sul runtime di persistenza condiviso
+     */
+    public StatisticheDAO() {
+        this(PersistenceRuntime.getDefault());
+    }
+
+    /**
+     * Crea il DAO sul runtime di persistenza indicato
+     * @param runtime il runtime di persistenza da utilizzare
+     */
+    public StatisticheDAO(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.timer = DaoMetrics.of(runtime).timer("StatisticheDAO");
+        this.async = AsyncExecutor.of(runtime);
+    }
+
+    /**
+     * Calcola tutte le statistiche con cinque query di aggregazione sulla stessa connessione
+     * @return la fotografia delle statistiche
+     */
+    public Statistiche calcola() {
+        return timer.misura("calcola", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                long persone = em.createQuery("SELECT COUNT(p) FROM Persona p", Long.class).getSingleResult();
+                long locations = em.createQuery("SELECT COUNT(l) FROM Location l", Long.class).getSingleResult();
+
+                Map<Partecipazione.Stato, Long> perStato = new EnumMap<>(Partecipazione.Stato.class);
+                for (Partecipazione.Stato stato : Partecipazione.Stato.values()) {
+                    perStato.put(stato, 0L);
+                }
+                long partecipazioni = 0;
+                for (Object[] riga : em.createQuery(
+                        "SELECT p.stato, COUNT(p) FROM Partecipazione p GROUP BY p.stato", Object[].class).getResultList()) {
+                    perStato.put((Partecipazione.Stato) riga[0], (Long) riga[1]);
+                    partecipazioni += (Long) riga[1];
+                }
+
+                // Conteggio per tipo e somme dei posti nella stessa scansione degli eventi
+                Map<Evento.TipoEvento, Long> perTipo = new EnumMap<>(Evento.TipoEvento.class);
+                for (Evento.TipoEvento tipo : Evento.TipoEvento.values()) {
+                    perTipo.put(tipo, 0L);
+                }
+                long eventi = 0;
+                long postiOccupati = 0;
+                long postiTotali = 0;
+                long eventiCompleti = 0;
+                for (Object[] riga : em.createQuery(
+                        "SELECT e.tipoEvento, COUNT(e), SUM(e.postiOccupati), SUM(e.numeroMassimoPartecipanti), " +
+                        "SUM(CASE WHEN e.postiOccupati >= e.numeroMassimoPartecipanti THEN 1 ELSE 0 END) " +
+                        "FROM Evento e GROUP BY e.tipoEvento", Object[].class).getResultList()) {
+                    perTipo.put((Evento.TipoEvento) riga[0], (Long) riga[1]);
+                    eventi += (Long) riga[1];
+                    postiOccupati += ((Number) riga[2]).longValue();
+                    postiTotali += ((Number) riga[3]).longValue();
+                    eventiCompleti += ((Number) riga[4]).longValue();
+                }
+
+                Map<String, Long> perCitta = new HashMap<>();
+                for (Object[] riga : em.createQuery(
+                        "SELECT l.citta, COUNT(e) FROM Evento e JOIN e.location l GROUP BY l.citta", Object[].class).getResultList()) {
+                    perCitta.put((String) riga[0], (Long) riga[1]);
+                }
+
+                return new Statistiche(persone, locations, eventi, partecipazioni, perStato, perTipo, perCitta,
+                    postiOccupati, postiTotali, eventiCompleti, Instant.now());
+            } finally {
+                em.close();
+            }
+        });
+    }
+
+    /**
+     * Restituisce l'occupazione di un evento con una sola lettura per chiave primaria
+     * @param eventoId l'ID dell'evento
+     * @return l'occupazione dell'evento, o null se l'evento non esiste
+     */
+    public OccupazioneEvento findOccupazione(Long eventoId) {
+        return timer.misura("findOccupazione", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                List<OccupazioneEvento> result = em.createQuery(
+                        OccupazioneEvento.SELECT + "WHERE e.id = :id", OccupazioneEvento.class)
+                    .setParameter("id", eventoId)
+                    .getResultList();
+                return result.isEmpty() ? null : result.get(0);
+            } finally {
+                em.close();
+            }
+        });
+    }
+
+    /**
+     * Restituisce l'occupazione degli eventi con paginazione keyset ordinata per ID
+     * @param lastId l'ID dell'ultimo elemento della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di risultati della pagina
+     * @return la pagina di risultati successiva a lastId
+     */
+    public List<OccupazioneEvento> findOccupazioniAfter(Long lastId, int limit) {
+        return timer.misura("findOccupazioniAfter", () -> {
+            EntityManager em = runtime.createReadOnlyEntityManager();
+            try {
+                return em.createQuery(
+                        OccupazioneEvento.SELECT + "WHERE e.id > :lastId ORDER BY e.id", OccupazioneEvento.class)
+                    .setParameter("lastId", lastId != null ? lastId : 0L)
+                    .setMaxResults(limit)
+                    .getResultList();
+            } finally {
+                em.close();
+            }
+        });
+    }
+
+    /**
+     * Versione asincrona di {@link #calcola()}
+     * @return il future con la fotografia delle statistiche
+     */
+    public CompletableFuture<Statistiche> calcolaAsync() {
+        return async.submit(() -> calcola());
+    }
+}
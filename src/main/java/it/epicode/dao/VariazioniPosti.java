@@ -0,0 +1,41 @@
+package it.epicode.dao;
+
+import it.epicode.persistence.PersistenceRuntime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listener delle variazioni dei posti, condivisi dai DAO di un runtime
+ */
+final class VariazioniPosti {
+
+    private final List<PostiListener> listeners = new CopyOnWriteArrayList<>();
+
+    private VariazioniPosti(PersistenceRuntime runtime) {
+    }
+
+    /**
+     * Restituisce i listener condivisi dai DAO del runtime indicato
+     */
+    static VariazioniPosti of(PersistenceRuntime runtime) {
+        return runtime.getComponent(VariazioniPosti.class, VariazioniPosti::new);
+    }
+
+    void addListener(PostiListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(PostiListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifica una variazione già committata
+     * @param eventoId l'ID dell'evento, oppure null per tutti gli eventi
+     */
+    void notifica(Long eventoId) {
+        for (PostiListener listener : listeners) {
+            listener.postiCambiati(eventoId);
+        }
+    }
+}
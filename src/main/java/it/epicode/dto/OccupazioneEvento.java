@@ -0,0 +1,28 @@
+package it.epicode.dto;
+
+/**
+ * Occupazione di un evento: posti occupati rispetto a numeroMassimoPartecipanti
+ * Viene costruita dalla query (SELECT new ...) leggendo il contatore posti_occupati dell'evento,
+ * senza contare le partecipazioni
+ */
+public record OccupazioneEvento(
+        Long eventoId,
+        String titolo,
+        int postiOccupati,
+        int numeroMassimoPartecipanti) {
+
+    // Espressione JPQL che costruisce la proiezione, con e alias di Evento
+    public static final String SELECT = "SELECT new it.epicode.dto.OccupazioneEvento(" +
+        "e.id, e.titolo, e.postiOccupati, e.numeroMassimoPartecipanti) FROM Evento e ";
+
+    /**
+     * @return la frazione di posti occupati, tra 0 e 1
+     */
+    public double getOccupazione() {
+        return numeroMassimoPartecipanti > 0 ? (double) postiOccupati / numeroMassimoPartecipanti : 0;
+    }
+
+    public boolean isCompleto() {
+        return postiOccupati >= numeroMassimoPartecipanti;
+    }
+}
@@ -0,0 +1,26 @@
+package it.epicode.dto;
+
+import it.epicode.entities.Partecipazione;
+import java.time.LocalDate;
+
+/**
+ * Proiezione in sola lettura di una partecipazione con i dati essenziali di persona ed evento
+ * Viene costruita direttamente dalla query (SELECT new ...): non è un'entità gestita,
+ * non ha associazioni lazy e occupa molta meno memoria di Partecipazione + Persona + Evento
+ */
+public record PartecipazioneView(
+        Long id,
+        Long personaId,
+        String nome,
+        String cognome,
+        String email,
+        Long eventoId,
+        String titolo,
+        LocalDate dataEvento,
+        Partecipazione.Stato stato) {
+
+    // Espressione JPQL che costruisce la proiezione, con p alias di Partecipazione, pe di Persona ed e di Evento
+    public static final String SELECT = "SELECT new it.epicode.dto.PartecipazioneView(" +
+        "p.id, pe.id, pe.nome, pe.cognome, pe.email, e.id, e.titolo, e.dataEvento, p.stato) " +
+        "FROM Partecipazione p JOIN p.persona pe JOIN p.evento e ";
+}
@@ -0,0 +1,60 @@
+package it.epicode.dto;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Fotografia delle statistiche aggregate del sistema, calcolata con query di aggregazione SQL
+ * È immutabile: ogni lettura è una semplice consultazione delle mappe, indipendente dal numero di righe
+ * @param persone il numero di persone
+ * @param locations il numero di location
+ * @param eventi il numero di eventi
+ * @param partecipazioni il numero di partecipazioni
+ * @param partecipazioniPerStato le partecipazioni per stato (gli stati senza partecipazioni valgono 0)
+ * @param eventiPerTipo gli eventi per tipo (i tipi senza eventi valgono 0)
+ * @param eventiPerCitta gli eventi per città della location (solo le città con almeno un evento)
+ * @param postiOccupati la somma dei posti occupati di tutti gli eventi
+ * @param postiTotali la somma di numeroMassimoPartecipanti di tutti gli eventi
+ * @param eventiCompleti il numero di eventi senza posti disponibili
+ * @param calcolateIl l'istante del calcolo
+ */
+public record Statistiche(
+        long persone,
+        long locations,
+        long eventi,
+        long partecipazioni,
+        Map<Partecipazione.Stato, Long> partecipazioniPerStato,
+        Map<Evento.TipoEvento, Long> eventiPerTipo,
+        Map<String, Long> eventiPerCitta,
+        long postiOccupati,
+        long postiTotali,
+        long eventiCompleti,
+        Instant calcolateIl) {
+
+    public Statistiche {
+        partecipazioniPerStato = Map.copyOf(partecipazioniPerStato);
+        eventiPerTipo = Map.copyOf(eventiPerTipo);
+        eventiPerCitta = Map.copyOf(eventiPerCitta);
+    }
+
+    public long partecipazioni(Partecipazione.Stato stato) {
+        return partecipazioniPerStato.getOrDefault(stato, 0L);
+    }
+
+    public long eventi(Evento.TipoEvento tipo) {
+        return eventiPerTipo.getOrDefault(tipo, 0L);
+    }
+
+    public long eventi(String citta) {
+        return eventiPerCitta.getOrDefault(citta, 0L);
+    }
+
+    /**
+     * @return la frazione dei posti occupati su tutti gli eventi, tra 0 e 1
+     */
+    public double getOccupazione() {
+        return postiTotali > 0 ? (double) postiOccupati / postiTotali : 0;
+    }
+}
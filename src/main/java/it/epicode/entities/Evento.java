@@ -1,6 +1,11 @@
 package it.epicode.entities;
 
 import jakarta.persistence.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.PartitionKey;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -9,16 +14,25 @@ import java.util.List;
  * Entità JPA che rappresenta un Evento nel sistema di gestione eventi
  */
 @Entity
-@Table(name = "eventi")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "eventi")
+@Table(name = "eventi", indexes = {
+    @Index(name = "idx_eventi_data", columnList = "data_evento, id"),
+    @Index(name = "idx_eventi_location", columnList = "location_id")
+})
 public class Evento {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventi_seq")
+    @SequenceGenerator(name = "eventi_seq", sequenceName = "eventi_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
     private String titolo;
     
+    // Chiave di partizione della tabella eventi: update e delete di Hibernate la aggiungono alla condizione
+    // sull'ID (con il valore letto dal database), così PostgreSQL accede solo alla partizione dell'evento
+    @PartitionKey
     @Column(name = "data_evento", nullable = false)
     private LocalDate dataEvento;
     
@@ -32,6 +46,19 @@ public class Evento {
     @Column(name = "numero_massimo_partecipanti", nullable = false)
     private Integer numeroMassimoPartecipanti;
     
+    // Versione per il locking ottimistico delle modifiche all'evento
+    // Inizializzata a 0 come sul database: un riferimento per ID (getReference) di una sessione chiusa
+    // è un'istanza enhanced non inizializzata, e con la versione null Hibernate non la distingue da un'entità nuova
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version = 0L;
+    
+    // Contatore dei posti occupati, mantenuto dai DAO con update atomici: mai sovrascritto da merge
+    @ColumnDefault("0")
+    @Column(name = "posti_occupati", nullable = false, updatable = false)
+    private int postiOccupati;
+    
     // Relazione Many-to-One con Location
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "location_id", nullable = false)
@@ -108,6 +135,14 @@ public class Evento {
         this.numeroMassimoPartecipanti = numeroMassimoPartecipanti;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public int getPostiOccupati() {
+        return postiOccupati;
+    }
+    
     public Location getLocation() {
         return location;
     }
@@ -128,21 +163,24 @@ public class Evento {
     public void addPartecipazione(Partecipazione partecipazione) {
         partecipazioni.add(partecipazione);
         partecipazione.setEvento(this);
+        postiOccupati++;
     }
     
     public void removePartecipazione(Partecipazione partecipazione) {
-        partecipazioni.remove(partecipazione);
+        if (partecipazioni.remove(partecipazione)) {
+            postiOccupati--;
+        }
         partecipazione.setEvento(null);
     }
     
-    // Metodo per verificare se ci sono posti disponibili
+    // Metodo per verificare se ci sono posti disponibili (non inizializza la collezione partecipazioni)
     public boolean hasPostiDisponibili() {
-        return partecipazioni.size() < numeroMassimoPartecipanti;
+        return postiOccupati < numeroMassimoPartecipanti;
     }
     
-    // Metodo per ottenere il numero di posti disponibili
+    // Metodo per ottenere il numero di posti disponibili (non inizializza la collezione partecipazioni)
     public int getPostiDisponibili() {
-        return numeroMassimoPartecipanti - partecipazioni.size();
+        return numeroMassimoPartecipanti - postiOccupati;
     }
     
     @Override
@@ -154,7 +192,9 @@ public class Evento {
                 ", descrizione='" + descrizione + '\'' +
                 ", tipoEvento=" + tipoEvento +
                 ", numeroMassimoPartecipanti=" + numeroMassimoPartecipanti +
-                ", location=" + (location != null ? location.getNome() : "null") +
+                ", postiOccupati=" + postiOccupati +
+                ", location=" + (location == null ? "null" : Hibernate.isInitialized(location)
+                    ? location.getNome() : "#" + location.getId()) +
                 '}';
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package it.epicode.entities;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,11 +10,15 @@ import java.util.List;
  * Entità JPA che rappresenta una Location nel sistema di gestione eventi
  */
 @Entity
-@Table(name = "locations")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "locations")
+// Su PostgreSQL la migrazione V3 crea l'indice come trigram GIN, così serve anche LIKE '%citta%' di findByCitta
+@Table(name = "locations", indexes = @Index(name = "idx_locations_citta", columnList = "citta"))
 public class Location {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "locations_seq")
+    @SequenceGenerator(name = "locations_seq", sequenceName = "locations_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -1,17 +1,40 @@
 package it.epicode.entities;
 
 import jakarta.persistence.*;
+import org.hibernate.Hibernate;
 
 /**
  * Entità JPA che rappresenta una Partecipazione nel sistema di gestione eventi
  * Gestisce la relazione Many-to-Many tra Persona ed Evento
  */
 @Entity
-@Table(name = "partecipazioni")
+@NamedEntityGraph(name = Partecipazione.GRAFO_PERSONA_EVENTO, attributeNodes = {
+    @NamedAttributeNode("persona"),
+    @NamedAttributeNode("evento")
+})
+@NamedEntityGraph(name = Partecipazione.GRAFO_DETTAGLIO, attributeNodes = {
+    @NamedAttributeNode("persona"),
+    @NamedAttributeNode(value = "evento", subgraph = "evento-location")
+}, subgraphs = @NamedSubgraph(name = "evento-location", attributeNodes = @NamedAttributeNode("location")))
+@Table(name = "partecipazioni", uniqueConstraints = @UniqueConstraint(
+    name = Partecipazione.UK_PERSONA_EVENTO, columnNames = {"persona_id", "evento_id"}), indexes = {
+    @Index(name = "idx_partecipazioni_evento_stato", columnList = "evento_id, stato"),
+    @Index(name = "idx_partecipazioni_stato", columnList = "stato, id")
+})
 public class Partecipazione {
     
+    // Una persona può iscriversi una sola volta allo stesso evento
+    // Il vincolo serve anche da indice per le ricerche per persona (colonna iniziale persona_id);
+    // per evento (con o senza stato) c'è idx_partecipazioni_evento_stato, per stato con paginazione idx_partecipazioni_stato
+    public static final String UK_PERSONA_EVENTO = "uk_partecipazione_persona_evento";
+    
+    // Entity graph per caricare in una sola query persona ed evento, con o senza la location dell'evento
+    public static final String GRAFO_PERSONA_EVENTO = "Partecipazione.personaEvento";
+    public static final String GRAFO_DETTAGLIO = "Partecipazione.dettaglio";
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "partecipazioni_seq")
+    @SequenceGenerator(name = "partecipazioni_seq", sequenceName = "partecipazioni_seq", allocationSize = 50)
     private Long id;
     
     // Relazione Many-to-One con Persona
@@ -79,8 +102,10 @@ public class Partecipazione {
     public String toString() {
         return "Partecipazione{" +
                 "id=" + id +
-                ", persona=" + (persona != null ? persona.getNome() + " " + persona.getCognome() : "null") +
-                ", evento=" + (evento != null ? evento.getTitolo() : "null") +
+                ", persona=" + (persona == null ? "null" : Hibernate.isInitialized(persona)
+                    ? persona.getNome() + " " + persona.getCognome() : "#" + persona.getId()) +
+                ", evento=" + (evento == null ? "null" : Hibernate.isInitialized(evento)
+                    ? evento.getTitolo() : "#" + evento.getId()) +
                 ", stato=" + stato +
                 '}';
     }
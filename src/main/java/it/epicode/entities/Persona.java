@@ -13,7 +13,8 @@ import java.util.List;
 public class Persona {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "persone_seq")
+    @SequenceGenerator(name = "persone_seq", sequenceName = "persone_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -0,0 +1,29 @@
+package it.epicode.exporter;
+
+import java.time.Duration;
+
+/**
+ * Risultato di un'esportazione
+ * @param righe le righe scritte, esclusa l'intestazione
+ * @param durata la durata dell'esportazione
+ */
+public record ExportResult(long righe, Duration durata) {
+
+    /**
+     * Restituisce le righe scritte al secondo
+     * @return il throughput dell'esportazione
+     */
+    public double getRighePerSecondo() {
+        double secondi = durata.toNanos() / 1_000_000_000.0;
+        return secondi > 0 ? righe / secondi : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportResult{" +
+                "righe=" + righe +
+                ", durata=" + durata.toMillis() + "ms" +
+                ", righePerSecondo=" + String.format("%.0f", getRighePerSecondo()) +
+                '}';
+    }
+}
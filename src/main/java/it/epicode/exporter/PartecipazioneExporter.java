@@ -0,0 +1,205 @@
+package it.epicode.exporter;
+
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dto.PartecipazioneView;
+import it.epicode.entities.Partecipazione;
+import it.epicode.importer.Formato;
+import it.epicode.persistence.PersistenceRuntime;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Esportazione dei partecipanti di un evento in CSV o NDJSON, eventualmente compressa con gzip
+ * Le righe vengono lette da un unico cursore (partecipazioni con persona ed evento in join, senza entità gestite)
+ * e scritte subito sul canale di uscita attraverso un buffer: la memoria usata non dipende dal numero di partecipanti
+ * Le colonne email, evento_id e stato coincidono con quelle dell'importazione delle iscrizioni
+ */
+public class PartecipazioneExporter {
+
+    private static final int BUFFER = 64 * 1024;
+    private static final String[] COLONNE = {
+        "id", "persona_id", "nome", "cognome", "email", "evento_id", "titolo", "data_evento", "stato"
+    };
+
+    private final PartecipazioneDAO partecipazioneDAO;
+
+    public PartecipazioneExporter(PersistenceRuntime runtime) {
+        this.partecipazioneDAO = new PartecipazioneDAO(runtime);
+    }
+
+    /**
+     * Esporta i partecipanti di un evento su file
+     * Il formato è ricavato dall'estensione (.csv o .ndjson), con compressione gzip se il nome termina con .gz;
+     * in caso di errore il file incompleto viene eliminato
+     * @param eventoId l'ID dell'evento
+     * @param stati gli stati delle partecipazioni da esportare, tutti se vuoto
+     * @param file il file da creare o sovrascrivere
+     * @return il risultato dell'esportazione
+     */
+    public ExportResult esporta(Long eventoId, Collection<Partecipazione.Stato> stati, Path file) {
+        String nome = file.getFileName().toString();
+        boolean gzip = nome.toLowerCase(Locale.ROOT).endsWith(".gz");
+        Formato formato = Formato.daFile(gzip ? file.resolveSibling(nome.substring(0, nome.length() - 3)) : file);
+        try (FileChannel canale = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return esporta(eventoId, stati, formato, gzip, canale);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignorata) {
+                e.addSuppressed(ignorata);
+            }
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException("Errore durante l'esportazione su " + file, io);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Esporta i partecipanti di un evento su un canale, ad esempio la risposta di una richiesta HTTP
+     * Il canale non viene chiuso
+     * @param eventoId l'ID dell'evento
+     * @param stati gli stati delle partecipazioni da esportare, tutti se vuoto
+     * @param formato il formato di uscita
+     * @param gzip true per comprimere l'uscita con gzip
+     * @param canale il canale su cui scrivere
+     * @return il risultato dell'esportazione
+     */
+    public ExportResult esporta(Long eventoId, Collection<Partecipazione.Stato> stati, Formato formato, boolean gzip,
+                                WritableByteChannel canale) {
+        long inizio = System.nanoTime();
+        long[] righe = {0};
+        try (Stream<PartecipazioneView> partecipazioni = partecipazioneDAO.streamViewByEvento(eventoId, stati)) {
+            OutputStream uscita = Channels.newOutputStream(canale);
+            GZIPOutputStream compressione = gzip ? new GZIPOutputStream(uscita, BUFFER) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                compressione != null ? compressione : uscita, StandardCharsets.UTF_8), BUFFER);
+            if (formato == Formato.CSV) {
+                writer.write(String.join(",", COLONNE));
+                writer.write('\n');
+            }
+            // forEach legge il cursore senza l'adattatore di iterator(), che alloca un buffer per ogni blocco di righe
+            partecipazioni.forEach(p -> {
+                try {
+                    if (formato == Formato.CSV) {
+                        scriviCsv(writer, p);
+                    } else {
+                        scriviNdjson(writer, p);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                righe[0]++;
+            });
+            // flush e finish al posto di close, che chiuderebbe anche il canale del chiamante
+            writer.flush();
+            if (compressione != null) {
+                compressione.finish();
+            }
+            uscita.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Errore durante l'esportazione dei partecipanti dell'evento " + eventoId, e);
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException("Errore durante l'esportazione dei partecipanti dell'evento " + eventoId, e.getCause());
+        }
+        return new ExportResult(righe[0], Duration.ofNanos(System.nanoTime() - inizio));
+    }
+
+    private static void scriviCsv(Writer writer, PartecipazioneView p) throws IOException {
+        writer.write(Long.toString(p.id()));
+        writer.write(',');
+        writer.write(Long.toString(p.personaId()));
+        writer.write(',');
+        scriviValoreCsv(writer, p.nome());
+        writer.write(',');
+        scriviValoreCsv(writer, p.cognome());
+        writer.write(',');
+        scriviValoreCsv(writer, p.email());
+        writer.write(',');
+        writer.write(Long.toString(p.eventoId()));
+        writer.write(',');
+        scriviValoreCsv(writer, p.titolo());
+        writer.write(',');
+        writer.write(p.dataEvento().toString());
+        writer.write(',');
+        writer.write(p.stato().name());
+        writer.write('\n');
+    }
+
+    // Tra doppi apici solo se il valore contiene separatori, apici o a capo
+    private static void scriviValoreCsv(Writer writer, String valore) throws IOException {
+        boolean apici = false;
+        for (int i = 0; i < valore.length() && !apici; i++) {
+            char c = valore.charAt(i);
+            apici = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!apici) {
+            writer.write(valore);
+            return;
+        }
+        writer.write('"');
+        writer.write(valore.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void scriviNdjson(Writer writer, PartecipazioneView p) throws IOException {
+        writer.write("{\"id\":");
+        writer.write(Long.toString(p.id()));
+        writer.write(",\"persona_id\":");
+        writer.write(Long.toString(p.personaId()));
+        writer.write(",\"nome\":");
+        scriviStringaJson(writer, p.nome());
+        writer.write(",\"cognome\":");
+        scriviStringaJson(writer, p.cognome());
+        writer.write(",\"email\":");
+        scriviStringaJson(writer, p.email());
+        writer.write(",\"evento_id\":");
+        writer.write(Long.toString(p.eventoId()));
+        writer.write(",\"titolo\":");
+        scriviStringaJson(writer, p.titolo());
+        writer.write(",\"data_evento\":\"");
+        writer.write(p.dataEvento().toString());
+        writer.write("\",\"stato\":\"");
+        writer.write(p.stato().name());
+        writer.write("\"}\n");
+    }
+
+    private static void scriviStringaJson(Writer writer, String valore) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < valore.length(); i++) {
+            char c = valore.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,516 @@
+package it.epicode.importer;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.dao.PersonaGiaIscrittaException;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.QueryStreams;
+import it.epicode.persistence.UnitOfWork;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Importazione massiva di persone, location, eventi e iscrizioni da file CSV o NDJSON
+ * Un solo thread legge il file e lo divide in blocchi di righe; più thread in parallelo analizzano,
+ * validano e scrivono ogni blocco con saveAll in una propria transazione
+ * Al più due blocchi per thread sono in memoria insieme, quindi la memoria non dipende dalla dimensione del file
+ * Se un blocco viene rifiutato dal database (ad esempio per un'email duplicata) le sue righe vengono
+ * salvate una alla volta e solo quelle rifiutate vengono scartate
+ * L'avanzamento viene salvato nel checkpoint nella stessa transazione di ogni blocco (o di ogni riga, quando
+ * il blocco è salvato una riga alla volta): se l'importazione si interrompe, rieseguirla sullo stesso file
+ * riprende dalle righe non ancora scritte senza mai importarne una due volte
+ */
+public class BulkImporter {
+
+    public static final int DEFAULT_DIMENSIONE_BLOCCO = 1000;
+
+    // Numero massimo di messaggi di errore conservati nel risultato
+    private static final int MAX_ERRORI = 100;
+
+    private final PersistenceRuntime runtime;
+    private final PersonaDAO personaDAO;
+    private final LocationDAO locationDAO;
+    private final EventoDAO eventoDAO;
+    private final PartecipazioneDAO partecipazioneDAO;
+    private final int thread;
+    private final int dimensioneBlocco;
+
+    /**
+     * Crea un importatore con un thread per core, al massimo quante sono le connessioni del pool
+     * @param runtime il runtime di persistenza da utilizzare
+     */
+    public BulkImporter(PersistenceRuntime runtime) {
+        this(runtime, threadPredefiniti(runtime), DEFAULT_DIMENSIONE_BLOCCO);
+    }
+
+    /**
+     * Crea un importatore
+     * @param runtime il runtime di persistenza da utilizzare
+     * @param thread il numero di blocchi elaborati in parallelo
+     * @param dimensioneBlocco il numero di righe scritte in ogni transazione
+     */
+    public BulkImporter(PersistenceRuntime runtime, int thread, int dimensioneBlocco) {
+        if (thread <= 0 || dimensioneBlocco <= 0) {
+            throw new IllegalArgumentException("Thread e dimensione dei blocchi devono essere positivi");
+        }
+        this.runtime = runtime;
+        this.personaDAO = new PersonaDAO(runtime);
+        this.locationDAO = new LocationDAO(runtime);
+        this.eventoDAO = new EventoDAO(runtime);
+        this.partecipazioneDAO = new PartecipazioneDAO(runtime);
+        this.thread = thread;
+        this.dimensioneBlocco = dimensioneBlocco;
+    }
+
+    /**
+     * Importa un file usando il checkpoint predefinito (file.checkpoint nella stessa cartella)
+     * @param tipo il tipo di dati contenuti nel file
+     * @param file il file CSV o NDJSON da importare
+     * @return il risultato dell'importazione
+     */
+    public ImportResult importa(TipoImport tipo, Path file) {
+        return importa(tipo, file, checkpointPredefinito(file), risultato -> {});
+    }
+
+    /**
+     * Importa un file
+     * Il checkpoint viene eliminato quando l'importazione termina; se invece viene lanciata un'eccezione
+     * resta sul disco e la prossima esecuzione con lo stesso checkpoint riprende da dove si era fermata
+     * @param tipo il tipo di dati contenuti nel file
+     * @param file il file CSV o NDJSON da importare
+     * @param fileCheckpoint il file in cui salvare l'avanzamento
+     * @param avanzamento chiamato dai thread dell'importazione dopo ogni blocco, con il risultato parziale
+     * @return il risultato dell'importazione
+     */
+    public ImportResult importa(TipoImport tipo, Path file, Path fileCheckpoint, Consumer<ImportResult> avanzamento) {
+        Formato formato = Formato.daFile(file);
+        long inizio = System.nanoTime();
+        Esecuzione esecuzione;
+        try {
+            Checkpoint checkpoint = Checkpoint.apri(runtime, fileCheckpoint, Files.size(file), dimensioneBlocco);
+            esecuzione = new Esecuzione(tipo, checkpoint, caricaRiferimenti(tipo), inizio, avanzamento);
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                esecuzione.leggi(reader, formato);
+            } finally {
+                esecuzione.attendi();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Errore durante la lettura di " + file, e);
+        }
+        if (esecuzione.errore.get() != null) {
+            throw new RuntimeException("Importazione di " + file + " interrotta, " +
+                "rieseguirla per riprendere dal checkpoint " + fileCheckpoint, esecuzione.errore.get());
+        }
+        esecuzione.checkpoint.elimina();
+        return esecuzione.risultato();
+    }
+
+    /**
+     * Restituisce il checkpoint usato da {@link #importa(TipoImport, Path)} per un file
+     * @param file il file da importare
+     * @return il percorso del checkpoint
+     */
+    public static Path checkpointPredefinito(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+
+    private static int threadPredefiniti(PersistenceRuntime runtime) {
+        PersistenceRuntime.PoolStats pool = runtime.getPoolStats();
+        int processori = Runtime.getRuntime().availableProcessors();
+        return pool != null ? Math.min(processori, pool.massime()) : processori;
+    }
+
+    // Mappe in memoria per risolvere le chiavi esterne senza una query per riga
+    private Riferimenti caricaRiferimenti(TipoImport tipo) {
+        return switch (tipo) {
+            case EVENTI -> new Riferimenti(caricaMappa("SELECT l.nome, l.id FROM Location l ORDER BY l.id"), Map.of());
+            case ISCRIZIONI -> new Riferimenti(Map.of(), caricaMappa("SELECT p.email, p.id FROM Persona p"));
+            default -> new Riferimenti(Map.of(), Map.of());
+        };
+    }
+
+    // A parità di chiave vale il primo ID letto; dal primario, per vedere anche le righe di un'importazione appena finita
+    private Map<String, Long> caricaMappa(String jpql) {
+        Map<String, Long> mappa = new HashMap<>();
+        runtime.getReadReplicas().dalPrimario(() -> {
+            try (Stream<Object[]> righe = QueryStreams.stream(runtime, em -> em.createQuery(jpql, Object[].class))) {
+                righe.forEach(riga -> mappa.putIfAbsent((String) riga[0], (Long) riga[1]));
+            }
+            return null;
+        });
+        return Collections.unmodifiableMap(mappa);
+    }
+
+    private record Riferimenti(Map<String, Long> locations, Map<String, Long> persone) {}
+
+    // Iscrizione letta dal file, con le chiavi esterne già risolte
+    private record Iscrizione(Long personaId, Long eventoId, Partecipazione.Stato stato) {}
+
+    /**
+     * Stato di una singola importazione: lettura del file, blocchi in elaborazione e contatori
+     */
+    private final class Esecuzione {
+
+        private final TipoImport tipo;
+        private final Checkpoint checkpoint;
+        private final Riferimenti riferimenti;
+        private final long inizio;
+        private final Consumer<ImportResult> avanzamento;
+        private final ExecutorService executor;
+        private final Semaphore blocchiInMemoria = new Semaphore(thread * 2);
+        private final AtomicReference<Throwable> errore = new AtomicReference<>();
+        private final AtomicLong righe = new AtomicLong();
+        private final AtomicLong importate = new AtomicLong();
+        private final AtomicLong scartate = new AtomicLong();
+        private final AtomicLong saltate = new AtomicLong();
+        private final List<String> errori = Collections.synchronizedList(new ArrayList<>());
+        private RecordParser parser;
+
+        Esecuzione(TipoImport tipo, Checkpoint checkpoint, Riferimenti riferimenti, long inizio,
+                   Consumer<ImportResult> avanzamento) {
+            this.tipo = tipo;
+            this.checkpoint = checkpoint;
+            this.riferimenti = riferimenti;
+            this.inizio = inizio;
+            this.avanzamento = avanzamento;
+            AtomicInteger sequenza = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(thread, task -> {
+                Thread t = new Thread(task, "gestione-eventi-import-" + sequenza.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        void leggi(BufferedReader reader, Formato formato) throws IOException {
+            if (formato == Formato.CSV) {
+                String intestazione = reader.readLine();
+                if (intestazione == null) {
+                    return;
+                }
+                parser = RecordParser.csv(intestazione);
+                List<String> colonne = RecordParser.colonneCsv(intestazione);
+                for (String colonna : tipo.getColonneObbligatorie()) {
+                    if (!colonne.contains(colonna)) {
+                        throw new IllegalArgumentException("Colonna obbligatoria mancante nell'intestazione: " + colonna);
+                    }
+                }
+            } else {
+                parser = RecordParser.ndjson();
+            }
+            int dimensione = checkpoint.getDimensioneBlocco();
+            List<String> blocco = new ArrayList<>(dimensione);
+            long numeroBlocco = 0;
+            String riga;
+            while (errore.get() == null && (riga = reader.readLine()) != null) {
+                blocco.add(riga);
+                if (blocco.size() == dimensione) {
+                    invia(numeroBlocco++, blocco);
+                    blocco = new ArrayList<>(dimensione);
+                }
+            }
+            if (!blocco.isEmpty() && errore.get() == null) {
+                invia(numeroBlocco, blocco);
+            }
+        }
+
+        private void invia(long numeroBlocco, List<String> blocco) {
+            if (checkpoint.isCompletato(numeroBlocco)) {
+                saltate.addAndGet(blocco.size());
+                return;
+            }
+            // Le righe sono numerate da 1 senza l'intestazione: il blocco n inizia dalla riga n * dimensione + 1
+            long primaRiga = numeroBlocco * checkpoint.getDimensioneBlocco() + 1;
+            blocchiInMemoria.acquireUninterruptibly();
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (errore.get() == null) {
+                            elabora(numeroBlocco, primaRiga, blocco);
+                        }
+                    } catch (Throwable e) {
+                        errore.compareAndSet(null, e);
+                    } finally {
+                        blocchiInMemoria.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                blocchiInMemoria.release();
+                throw e;
+            }
+        }
+
+        void attendi() {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // I blocchi in corso terminano comunque con un commit o un rollback
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                errore.compareAndSet(null, e);
+            }
+        }
+
+        private void elabora(long numeroBlocco, long primaRiga, List<String> blocco) {
+            long ultimaRigaBlocco = primaRiga + blocco.size() - 1;
+            List<Record> validi = new ArrayList<>(blocco.size());
+            long scartateBlocco = 0;
+            long righeBlocco = 0;
+            for (int i = 0; i < blocco.size(); i++) {
+                String testo = blocco.get(i);
+                if (testo.isBlank()) {
+                    continue;
+                }
+                righeBlocco++;
+                try {
+                    Record record = parser.parse(primaRiga + i, testo);
+                    valida(record);
+                    validi.add(record);
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    scarta(primaRiga + i, e.getMessage());
+                    scartateBlocco++;
+                }
+            }
+            long importateBlocco = 0;
+            // Un blocco già salvato in parte una riga alla volta riprende da lì, senza ritentare il blocco intero
+            long ultimaRigaSalvata = checkpoint.getUltimaRiga(numeroBlocco);
+            boolean completato = false;
+            if (ultimaRigaSalvata == 0) {
+                long scartateValidazione = scartateBlocco;
+                try {
+                    UnitOfWork.of(runtime).esegui(() -> {
+                        salvaTutti(validi);
+                        checkpoint.completa(numeroBlocco, ultimaRigaBlocco, validi.size(), scartateValidazione);
+                    });
+                    importateBlocco = validi.size();
+                    completato = true;
+                } catch (RuntimeException e) {
+                    if (!isRifiutoDati(e)) {
+                        throw e;
+                    }
+                }
+            }
+            if (!completato) {
+                // Il blocco è stato annullato: le righe vengono riprovate una alla volta
+                long scartateValidazione = scartateBlocco;
+                for (Record record : validi) {
+                    if (record.getNumero() <= ultimaRigaSalvata) {
+                        continue;
+                    }
+                    try {
+                        UnitOfWork.of(runtime).esegui(() -> {
+                            salva(record);
+                            checkpoint.registraRiga(numeroBlocco, record.getNumero(), true);
+                        });
+                        importateBlocco++;
+                    } catch (RuntimeException rifiuto) {
+                        if (!isRifiutoDati(rifiuto)) {
+                            throw rifiuto;
+                        }
+                        checkpoint.registraRiga(numeroBlocco, record.getNumero(), false);
+                        scarta(record.getNumero(), messaggio(rifiuto));
+                        scartateBlocco++;
+                    }
+                }
+                checkpoint.completa(numeroBlocco, ultimaRigaBlocco, 0, scartateValidazione);
+            }
+            righe.addAndGet(righeBlocco);
+            importate.addAndGet(importateBlocco);
+            scartate.addAndGet(scartateBlocco);
+            avanzamento.accept(risultato());
+        }
+
+        // Controlla i valori e risolve le chiavi esterne prima di aprire la transazione
+        private void valida(Record record) {
+            switch (tipo) {
+                case PERSONE -> persona(record);
+                case LOCATIONS -> location(record);
+                case EVENTI -> evento(record, null);
+                case ISCRIZIONI -> iscrizione(record);
+            }
+        }
+
+        private void salvaTutti(List<Record> records) {
+            switch (tipo) {
+                case PERSONE -> personaDAO.saveAll(records.stream().map(this::persona).toList());
+                case LOCATIONS -> locationDAO.saveAll(records.stream().map(this::location).toList());
+                case EVENTI -> {
+                    List<Evento> eventi = conRiferimenti(em -> records.stream().map(r -> evento(r, em)).toList());
+                    eventoDAO.saveAll(eventi);
+                }
+                case ISCRIZIONI -> {
+                    List<Partecipazione> partecipazioni = conRiferimenti(em -> records.stream()
+                        .map(this::iscrizione)
+                        .map(i -> new Partecipazione(em.getReference(Persona.class, i.personaId()),
+                            em.getReference(Evento.class, i.eventoId()), i.stato()))
+                        .toList());
+                    partecipazioneDAO.saveAll(partecipazioni);
+                }
+            }
+        }
+
+        private void salva(Record record) {
+            switch (tipo) {
+                case PERSONE -> personaDAO.save(persona(record));
+                case LOCATIONS -> locationDAO.save(location(record));
+                case EVENTI -> eventoDAO.save(conRiferimenti(em -> evento(record, em)));
+                case ISCRIZIONI -> {
+                    Iscrizione iscrizione = iscrizione(record);
+                    partecipazioneDAO.iscrivi(iscrizione.eventoId(), List.of(iscrizione.personaId()), iscrizione.stato());
+                }
+            }
+        }
+
+        // Le entità collegate vengono passate ai DAO come riferimenti per ID, senza leggerle
+        // L'EntityManager dei riferimenti viene chiuso prima del salvataggio: un proxy non può appartenere a due sessioni aperte
+        private <T> T conRiferimenti(Function<EntityManager, T> crea) {
+            EntityManager em = runtime.createEntityManager();
+            try {
+                return crea.apply(em);
+            } finally {
+                em.close();
+            }
+        }
+
+        private Persona persona(Record record) {
+            String email = record.getObbligatorio("email");
+            if (email.indexOf('@') <= 0) {
+                throw new IllegalArgumentException("email non valida: " + email);
+            }
+            return new Persona(record.getObbligatorio("nome"), record.getObbligatorio("cognome"), email,
+                LocalDate.parse(record.getObbligatorio("data_nascita")),
+                enumerato(Persona.Sesso.class, record, "sesso"));
+        }
+
+        private Location location(Record record) {
+            return new Location(record.getObbligatorio("nome"), record.getObbligatorio("citta"));
+        }
+
+        // Con em null verifica solo la riga senza creare il riferimento alla location
+        private Evento evento(Record record, EntityManager em) {
+            String nomeLocation = record.getObbligatorio("location");
+            Long locationId = riferimenti.locations().get(nomeLocation);
+            if (locationId == null) {
+                throw new IllegalArgumentException("location non trovata: " + nomeLocation);
+            }
+            int posti = intero(record, "numero_massimo_partecipanti");
+            if (posti <= 0) {
+                throw new IllegalArgumentException("numero_massimo_partecipanti deve essere positivo: " + posti);
+            }
+            return new Evento(record.getObbligatorio("titolo"), LocalDate.parse(record.getObbligatorio("data_evento")),
+                record.get("descrizione"), enumerato(Evento.TipoEvento.class, record, "tipo_evento"), posti,
+                em != null ? em.getReference(Location.class, locationId) : null);
+        }
+
+        private Iscrizione iscrizione(Record record) {
+            String email = record.getObbligatorio("email");
+            Long personaId = riferimenti.persone().get(email);
+            if (personaId == null) {
+                throw new IllegalArgumentException("persona non trovata: " + email);
+            }
+            Partecipazione.Stato stato = record.get("stato") != null
+                ? enumerato(Partecipazione.Stato.class, record, "stato")
+                : Partecipazione.Stato.CONFERMATA;
+            String eventoId = record.getObbligatorio("evento_id");
+            try {
+                return new Iscrizione(personaId, Long.parseLong(eventoId), stato);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("evento_id non è un numero: " + eventoId);
+            }
+        }
+
+        private int intero(Record record, String colonna) {
+            String valore = record.getObbligatorio(colonna);
+            try {
+                return Integer.parseInt(valore);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(colonna + " non è un numero: " + valore);
+            }
+        }
+
+        private <E extends Enum<E>> E enumerato(Class<E> tipoEnum, Record record, String colonna) {
+            String valore = record.getObbligatorio(colonna);
+            try {
+                return Enum.valueOf(tipoEnum, valore.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(colonna + " non valido: " + valore);
+            }
+        }
+
+        private void scarta(long riga, String messaggio) {
+            synchronized (errori) {
+                if (errori.size() < MAX_ERRORI) {
+                    errori.add("riga " + riga + ": " + messaggio);
+                }
+            }
+        }
+
+        ImportResult risultato() {
+            return new ImportResult(tipo, righe.get(), importate.get(), scartate.get(), saltate.get(),
+                Duration.ofNanos(System.nanoTime() - inizio), List.copyOf(errori));
+        }
+    }
+
+    // Errori dovuti al contenuto della riga: la riga viene scartata e l'importazione continua
+    private static boolean isRifiutoDati(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException
+                    || t instanceof DataException
+                    || t instanceof PostiEsauritiException
+                    || t instanceof PersonaGiaIscrittaException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String messaggio(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof PostiEsauritiException || t instanceof PersonaGiaIscrittaException) {
+                return t.getMessage();
+            }
+            if (t instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return "vincolo " + violation.getConstraintName() + " violato";
+            }
+        }
+        Throwable causa = error;
+        while (causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        return causa.getMessage();
+    }
+}
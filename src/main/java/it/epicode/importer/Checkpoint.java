@@ -0,0 +1,219 @@
+package it.epicode.importer;
+
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Avanzamento di un'importazione, salvato sul database nella stessa transazione dei dati importati
+ * Il file è diviso in blocchi di righe di dimensione fissa: la tabella import_blocchi ricorda i blocchi già
+ * scritti e, per un blocco salvato una riga alla volta, l'ultima riga salvata o scartata, così una nuova
+ * esecuzione sullo stesso file salta esattamente le righe già importate anche se si era interrotta subito
+ * dopo un commit. Il file del checkpoint contiene solo l'identificativo dell'importazione e i dati per
+ * riconoscere il file da importare, e viene scritto prima del primo blocco
+ */
+final class Checkpoint {
+
+    private final PersistenceRuntime runtime;
+    private final Path file;
+    private final String importazione;
+    private final long dimensioneFile;
+    private final int dimensioneBlocco;
+    private final Set<Long> completati = new HashSet<>();
+    private final Map<Long, Long> ultimaRiga = new HashMap<>();
+
+    private Checkpoint(PersistenceRuntime runtime, Path file, String importazione, long dimensioneFile, int dimensioneBlocco) {
+        this.runtime = runtime;
+        this.file = file;
+        this.importazione = importazione;
+        this.dimensioneFile = dimensioneFile;
+        this.dimensioneBlocco = dimensioneBlocco;
+    }
+
+    /**
+     * Legge il checkpoint se esiste, altrimenti ne crea uno nuovo
+     * Un checkpoint esistente mantiene la propria dimensione dei blocchi
+     * @throws IllegalStateException se il file da importare è cambiato dopo il checkpoint
+     */
+    static Checkpoint apri(PersistenceRuntime runtime, Path file, long dimensioneFile, int dimensioneBlocco) {
+        if (!Files.exists(file)) {
+            Checkpoint checkpoint = new Checkpoint(runtime, file, UUID.randomUUID().toString(), dimensioneFile, dimensioneBlocco);
+            checkpoint.salva();
+            return checkpoint;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile leggere il checkpoint " + file, e);
+        }
+        long dimensioneSalvata = Long.parseLong(properties.getProperty("dimensioneFile"));
+        if (dimensioneSalvata != dimensioneFile) {
+            throw new IllegalStateException("Il file da importare è cambiato dopo il checkpoint " + file +
+                " (" + dimensioneSalvata + " byte attesi, " + dimensioneFile + " trovati): eliminare il checkpoint per ricominciare");
+        }
+        String importazione = properties.getProperty("importazione");
+        if (importazione == null) {
+            throw new IllegalStateException("Il checkpoint " + file + " è di una versione precedente: eliminarlo per ricominciare");
+        }
+        Checkpoint checkpoint = new Checkpoint(runtime, file, importazione, dimensioneFile,
+            Integer.parseInt(properties.getProperty("dimensioneBlocco")));
+        checkpoint.carica();
+        return checkpoint;
+    }
+
+    int getDimensioneBlocco() {
+        return dimensioneBlocco;
+    }
+
+    synchronized boolean isCompletato(long blocco) {
+        return completati.contains(blocco);
+    }
+
+    /**
+     * @return l'ultima riga del blocco già salvata o scartata una alla volta, oppure 0 se il blocco non è iniziato
+     */
+    synchronized long getUltimaRiga(long blocco) {
+        return ultimaRiga.getOrDefault(blocco, 0L);
+    }
+
+    /**
+     * Registra una riga di un blocco salvato una riga alla volta
+     * Va chiamato nella transazione che ha salvato la riga, o in una propria se la riga è stata scartata
+     */
+    void registraRiga(long blocco, long riga, boolean importata) {
+        scrivi(blocco, riga, importata ? 1 : 0, importata ? 0 : 1, false);
+    }
+
+    /**
+     * Registra un blocco completato, nella transazione che ne ha salvato le righe
+     * @param importate le righe importate non ancora registrate con registraRiga
+     * @param scartate le righe scartate non ancora registrate con registraRiga
+     */
+    void completa(long blocco, long ultimaRigaBlocco, long importate, long scartate) {
+        scrivi(blocco, ultimaRigaBlocco, importate, scartate, true);
+    }
+
+    /**
+     * Elimina l'avanzamento al termine dell'importazione
+     */
+    void elimina() {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("DELETE FROM import_blocchi WHERE importazione = :importazione")
+                .setParameter("importazione", importazione)
+                .executeUpdate();
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Errore durante l'eliminazione del checkpoint " + importazione, e);
+        } finally {
+            em.close();
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile eliminare il checkpoint " + file, e);
+        }
+    }
+
+    private void carica() {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            List<?> righe = em.createNativeQuery(
+                    "SELECT blocco, ultima_riga, completato FROM import_blocchi WHERE importazione = :importazione")
+                .setParameter("importazione", importazione)
+                .getResultList();
+            for (Object riga : righe) {
+                Object[] colonne = (Object[]) riga;
+                long blocco = ((Number) colonne[0]).longValue();
+                if ((Boolean) colonne[2]) {
+                    completati.add(blocco);
+                } else {
+                    ultimaRiga.put(blocco, ((Number) colonne[1]).longValue());
+                }
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    // Dentro un'unità di lavoro l'EntityManager è quello dell'unità: la riga viene scritta con i dati del blocco
+    private void scrivi(long blocco, long riga, long importate, long scartate, boolean completato) {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            int aggiornate = em.createNativeQuery(
+                    "UPDATE import_blocchi SET ultima_riga = :riga, importate = importate + :importate, " +
+                    "scartate = scartate + :scartate, completato = :completato " +
+                    "WHERE importazione = :importazione AND blocco = :blocco")
+                .setParameter("riga", riga)
+                .setParameter("importate", importate)
+                .setParameter("scartate", scartate)
+                .setParameter("completato", completato)
+                .setParameter("importazione", importazione)
+                .setParameter("blocco", blocco)
+                .executeUpdate();
+            if (aggiornate == 0) {
+                em.createNativeQuery(
+                        "INSERT INTO import_blocchi (importazione, blocco, ultima_riga, importate, scartate, completato) " +
+                        "VALUES (:importazione, :blocco, :riga, :importate, :scartate, :completato)")
+                    .setParameter("importazione", importazione)
+                    .setParameter("blocco", blocco)
+                    .setParameter("riga", riga)
+                    .setParameter("importate", importate)
+                    .setParameter("scartate", scartate)
+                    .setParameter("completato", completato)
+                    .executeUpdate();
+            }
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Errore durante il salvataggio del checkpoint " + importazione, e);
+        } finally {
+            em.close();
+        }
+    }
+
+    // Scrive su un file temporaneo e lo rinomina: un'interruzione non lascia mai un checkpoint incompleto
+    private void salva() {
+        Properties properties = new Properties();
+        properties.setProperty("importazione", importazione);
+        properties.setProperty("dimensioneFile", Long.toString(dimensioneFile));
+        properties.setProperty("dimensioneBlocco", Integer.toString(dimensioneBlocco));
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporaneo, StandardCharsets.UTF_8)) {
+                properties.store(writer, "Checkpoint dell'importazione");
+            }
+            Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile salvare il checkpoint " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return file + " (importazione " + importazione + ", " + completati.size() + " blocchi da " +
+            dimensioneBlocco + " righe completati)";
+    }
+}
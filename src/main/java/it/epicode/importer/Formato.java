@@ -0,0 +1,29 @@
+package it.epicode.importer;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formati dei file di importazione
+ * - CSV: prima riga di intestazione con i nomi delle colonne, separatore virgola, valori tra doppi apici se contengono virgole
+ * - NDJSON: un oggetto JSON piatto per riga, con i nomi delle colonne come chiavi
+ */
+public enum Formato {
+    CSV, NDJSON;
+
+    /**
+     * Ricava il formato dall'estensione del file (.csv, .ndjson o .jsonl)
+     * @param file il file da importare
+     * @return il formato del file
+     */
+    public static Formato daFile(Path file) {
+        String nome = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nome.endsWith(".csv")) {
+            return CSV;
+        }
+        if (nome.endsWith(".ndjson") || nome.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Formato non riconosciuto dall'estensione: " + file.getFileName());
+    }
+}
@@ -0,0 +1,44 @@
+package it.epicode.importer;
+
+import it.epicode.persistence.PersistenceRuntime;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Importazione da riga di comando
+ * Argomenti: tipo (persone, locations, eventi, iscrizioni), file .csv o .ndjson
+ * In caso di errore il checkpoint resta accanto al file: rieseguire lo stesso comando per riprendere
+ *
+ * Esecuzione: mvn exec:java -Dexec.mainClass="it.epicode.importer.ImportMain" -Dexec.args="persone persone.csv"
+ */
+public class ImportMain {
+
+    private static final long INTERVALLO_AVANZAMENTO_NANOS = 5_000_000_000L;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: ImportMain <persone|locations|eventi|iscrizioni> <file.csv|file.ndjson>");
+            System.exit(2);
+        }
+        TipoImport tipo = TipoImport.valueOf(args[0].toUpperCase(Locale.ROOT));
+        Path file = Path.of(args[1]);
+        PersistenceRuntime runtime = PersistenceRuntime.getDefault();
+        try {
+            AtomicLong ultimaStampa = new AtomicLong(System.nanoTime());
+            ImportResult risultato = new BulkImporter(runtime).importa(tipo, file,
+                BulkImporter.checkpointPredefinito(file), parziale -> {
+                    long ora = System.nanoTime();
+                    long ultima = ultimaStampa.get();
+                    if (ora - ultima > INTERVALLO_AVANZAMENTO_NANOS && ultimaStampa.compareAndSet(ultima, ora)) {
+                        System.out.printf("%,d righe importate, %,.0f righe/s%n",
+                            parziale.importate(), parziale.getRighePerSecondo());
+                    }
+                });
+            System.out.println(risultato);
+            risultato.errori().forEach(errore -> System.out.println("  " + errore));
+        } finally {
+            PersistenceRuntime.closeDefault();
+        }
+    }
+}
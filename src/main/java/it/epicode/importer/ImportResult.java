@@ -0,0 +1,39 @@
+package it.epicode.importer;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Risultato di un'importazione
+ * @param righe le righe lette dal file in questa esecuzione, escluse quelle saltate
+ * @param importate le righe scritte sul database
+ * @param scartate le righe non valide o rifiutate dal database
+ * @param saltate le righe già importate da un'esecuzione precedente, secondo il checkpoint
+ * @param durata la durata dell'importazione
+ * @param errori i primi errori incontrati, con il numero di riga
+ */
+public record ImportResult(TipoImport tipo, long righe, long importate, long scartate, long saltate,
+                           Duration durata, List<String> errori) {
+
+    /**
+     * Restituisce le righe elaborate al secondo (importate più scartate)
+     * @return il throughput dell'importazione
+     */
+    public double getRighePerSecondo() {
+        double secondi = durata.toNanos() / 1_000_000_000.0;
+        return secondi > 0 ? (importate + scartate) / secondi : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" +
+                "tipo=" + tipo +
+                ", righe=" + righe +
+                ", importate=" + importate +
+                ", scartate=" + scartate +
+                ", saltate=" + saltate +
+                ", durata=" + durata.toMillis() + "ms" +
+                ", righePerSecondo=" + String.format("%.0f", getRighePerSecondo()) +
+                '}';
+    }
+}
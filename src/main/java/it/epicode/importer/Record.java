@@ -0,0 +1,39 @@
+package it.epicode.importer;
+
+import java.util.Map;
+
+/**
+ * Una riga del file di importazione già suddivisa in colonne
+ */
+final class Record {
+
+    private final long numero;
+    private final Map<String, String> valori;
+
+    Record(long numero, Map<String, String> valori) {
+        this.numero = numero;
+        this.valori = valori;
+    }
+
+    long getNumero() {
+        return numero;
+    }
+
+    // Restituisce il valore senza spazi iniziali e finali, o null se la colonna manca o è vuota
+    String get(String colonna) {
+        String valore = valori.get(colonna);
+        if (valore == null) {
+            return null;
+        }
+        valore = valore.trim();
+        return valore.isEmpty() ? null : valore;
+    }
+
+    String getObbligatorio(String colonna) {
+        String valore = get(colonna);
+        if (valore == null) {
+            throw new IllegalArgumentException("colonna " + colonna + " mancante");
+        }
+        return valore;
+    }
+}
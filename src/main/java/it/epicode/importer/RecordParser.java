@@ -0,0 +1,193 @@
+package it.epicode.importer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Suddivide una riga CSV o NDJSON nelle sue colonne
+ * I parser sono senza stato dopo la lettura dell'intestazione, quindi possono essere usati da più thread insieme
+ * I valori CSV tra doppi apici non possono contenere a capo
+ */
+abstract class RecordParser {
+
+    abstract Record parse(long numero, String riga);
+
+    static RecordParser csv(String intestazione) {
+        String[] nomi = colonneCsv(intestazione).toArray(String[]::new);
+        return new RecordParser() {
+            @Override
+            Record parse(long numero, String riga) {
+                List<String> valori = splitCsv(riga);
+                if (valori.size() != nomi.length) {
+                    throw new IllegalArgumentException("attese " + nomi.length + " colonne, trovate " + valori.size());
+                }
+                Map<String, String> record = new HashMap<>(nomi.length * 2);
+                for (int i = 0; i < nomi.length; i++) {
+                    record.put(nomi[i], valori.get(i));
+                }
+                return new Record(numero, record);
+            }
+        };
+    }
+
+    static RecordParser ndjson() {
+        return new RecordParser() {
+            @Override
+            Record parse(long numero, String riga) {
+                return new Record(numero, new JsonObjectParser(riga).parse());
+            }
+        };
+    }
+
+    // Nomi delle colonne dell'intestazione CSV, in minuscolo e senza l'eventuale BOM iniziale
+    static List<String> colonneCsv(String intestazione) {
+        String senzaBom = intestazione.startsWith("\uFEFF") ? intestazione.substring(1) : intestazione;
+        return splitCsv(senzaBom).stream().map(c -> c.trim().toLowerCase(Locale.ROOT)).toList();
+    }
+
+    static List<String> splitCsv(String riga) {
+        List<String> valori = new ArrayList<>();
+        StringBuilder valore = new StringBuilder();
+        boolean traApici = false;
+        for (int i = 0; i < riga.length(); i++) {
+            char c = riga.charAt(i);
+            if (traApici) {
+                if (c == '"' && i + 1 < riga.length() && riga.charAt(i + 1) == '"') {
+                    valore.append('"');
+                    i++;
+                } else if (c == '"') {
+                    traApici = false;
+                } else {
+                    valore.append(c);
+                }
+            } else if (c == '"') {
+                traApici = true;
+            } else if (c == ',') {
+                valori.add(valore.toString());
+                valore.setLength(0);
+            } else {
+                valore.append(c);
+            }
+        }
+        if (traApici) {
+            throw new IllegalArgumentException("doppi apici non chiusi");
+        }
+        valori.add(valore.toString());
+        return valori;
+    }
+
+    /**
+     * Parser di un oggetto JSON piatto: i valori possono essere stringhe, numeri, booleani o null
+     */
+    private static final class JsonObjectParser {
+
+        private final String testo;
+        private int pos;
+
+        JsonObjectParser(String testo) {
+            this.testo = testo;
+        }
+
+        Map<String, String> parse() {
+            Map<String, String> valori = new HashMap<>();
+            atteso('{');
+            if (prossimo() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    String chiave = stringa().toLowerCase();
+                    atteso(':');
+                    valori.put(chiave, valore());
+                    char c = prossimo();
+                    pos++;
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw errore("atteso ',' o '}'");
+                    }
+                }
+            }
+            if (prossimo() != 0) {
+                throw errore("caratteri dopo la fine dell'oggetto");
+            }
+            return valori;
+        }
+
+        private String valore() {
+            char c = prossimo();
+            if (c == '"') {
+                return stringa();
+            }
+            if (c == '{' || c == '[') {
+                throw errore("oggetti e array annidati non supportati");
+            }
+            int inizio = pos;
+            while (pos < testo.length() && ",} \t".indexOf(testo.charAt(pos)) < 0) {
+                pos++;
+            }
+            String token = testo.substring(inizio, pos);
+            if (token.isEmpty()) {
+                throw errore("valore mancante");
+            }
+            return "null".equals(token) ? null : token;
+        }
+
+        private String stringa() {
+            atteso('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < testo.length()) {
+                char c = testo.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= testo.length()) {
+                    break;
+                }
+                char escape = testo.charAt(pos++);
+                switch (escape) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > testo.length()) {
+                            throw errore("sequenza \\u incompleta");
+                        }
+                        sb.append((char) Integer.parseInt(testo.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(escape);
+                }
+            }
+            throw errore("stringa non chiusa");
+        }
+
+        private void atteso(char c) {
+            if (prossimo() != c) {
+                throw errore("atteso '" + c + "'");
+            }
+            pos++;
+        }
+
+        // Salta gli spazi e restituisce il carattere successivo senza consumarlo, 0 a fine riga
+        private char prossimo() {
+            while (pos < testo.length() && Character.isWhitespace(testo.charAt(pos))) {
+                pos++;
+            }
+            return pos < testo.length() ? testo.charAt(pos) : 0;
+        }
+
+        private IllegalArgumentException errore(String messaggio) {
+            return new IllegalArgumentException("JSON non valido alla posizione " + pos + ": " + messaggio);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package it.epicode.importer;
+
+import java.util.List;
+
+/**
+ * Tipi di dati importabili, con le colonne attese nel file
+ * Le colonne facoltative possono mancare o essere vuote
+ */
+public enum TipoImport {
+
+    // sesso: M o F; data_nascita: yyyy-MM-dd
+    PERSONE(List.of("nome", "cognome", "email", "data_nascita", "sesso")),
+    LOCATIONS(List.of("nome", "citta")),
+    // location: nome di una location esistente; descrizione facoltativa
+    EVENTI(List.of("titolo", "data_evento", "tipo_evento", "numero_massimo_partecipanti", "location")),
+    // email: persona esistente; evento_id: evento esistente; stato facoltativo, CONFERMATA se assente
+    ISCRIZIONI(List.of("email", "evento_id"));
+
+    private final List<String> colonneObbligatorie;
+
+    TipoImport(List<String> colonneObbligatorie) {
+        this.colonneObbligatorie = colonneObbligatorie;
+    }
+
+    public List<String> getColonneObbligatorie() {
+        return colonneObbligatorie;
+    }
+}
@@ -0,0 +1,161 @@
+package it.epicode.metrics;
+
+import it.epicode.persistence.AdmissionControl;
+import it.epicode.persistence.Bulkhead;
+import it.epicode.persistence.PersistenceRuntime;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metriche dei DAO di un runtime di persistenza
+ * Ogni metodo misurato è registrato come MBean it.epicode:type=DaoMetrics,runtime=N,dao=...,method=...
+ * e i conteggi delle transazioni (dalle statistiche di Hibernate) come it.epicode:type=TransactionMetrics,runtime=N
+ * I compartimenti del controllo di ammissione sono registrati come it.epicode:type=Bulkhead,runtime=N,name=...
+ * La registrazione JMX si disattiva con gestione-eventi.metrics.jmx=false in persistence.xml
+ */
+public final class DaoMetrics implements TransactionMetricsMXBean, AutoCloseable {
+
+    public static final String JMX_PROPERTY = "gestione-eventi.metrics.jmx";
+
+    private static final String DOMINIO = "it.epicode";
+    private static final AtomicInteger RUNTIME_SEQUENZA = new AtomicInteger();
+
+    private final Statistics statistics;
+    private final AdmissionControl ammissione;
+    private final boolean jmx;
+    private final int runtimeId = RUNTIME_SEQUENZA.incrementAndGet();
+    private final Map<String, DaoTimer> timers = new ConcurrentHashMap<>();
+    private final List<MethodMetrics> metodi = new CopyOnWriteArrayList<>();
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ObjectName> registrati = new CopyOnWriteArrayList<>();
+
+    private DaoMetrics(PersistenceRuntime runtime, AdmissionControl ammissione) {
+        this.statistics = runtime.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        this.ammissione = ammissione;
+        this.jmx = !"false".equalsIgnoreCase(String.valueOf(
+            runtime.getEntityManagerFactory().getProperties().get(JMX_PROPERTY)));
+        registraMBean(this, "type=TransactionMetrics,runtime=" + runtimeId);
+        for (Bulkhead bulkhead : ammissione.getBulkheads()) {
+            registraMBean(bulkhead, "type=Bulkhead,runtime=" + runtimeId + ",name=" + bulkhead.getNome());
+        }
+    }
+
+    /**
+     * Restituisce le metriche condivise dai DAO del runtime indicato
+     * @param runtime il runtime di persistenza
+     * @return le metriche del runtime
+     */
+    public static DaoMetrics of(PersistenceRuntime runtime) {
+        // Risolto prima: getComponent non può essere chiamato dalla factory di un altro componente
+        AdmissionControl ammissione = AdmissionControl.of(runtime);
+        return runtime.getComponent(DaoMetrics.class, r -> new DaoMetrics(r, ammissione));
+    }
+
+    /**
+     * Restituisce il timer con cui un DAO misura i propri metodi
+     * @param dao il nome del DAO
+     * @return il timer del DAO
+     */
+    public DaoTimer timer(String dao) {
+        return timers.computeIfAbsent(dao, d -> new DaoTimer(this, d, ammissione));
+    }
+
+    /**
+     * Restituisce le metriche di tutti i metodi chiamati almeno una volta, ordinate per DAO e metodo
+     * @return le metriche per metodo
+     */
+    public List<MethodMetrics> getMethodMetrics() {
+        List<MethodMetrics> result = new ArrayList<>(metodi);
+        result.sort(Comparator.comparing(MethodMetrics::getDao).thenComparing(MethodMetrics::getMetodo));
+        return result;
+    }
+
+    /**
+     * Aggiunge un listener che riceve ogni misura, ad esempio per inoltrarla a un sistema di monitoraggio
+     * @param listener il listener da aggiungere
+     */
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Restituisce il controllo di ammissione da cui passano i metodi misurati
+     * @return il controllo di ammissione del runtime
+     */
+    public AdmissionControl getAdmissionControl() {
+        return ammissione;
+    }
+
+    @Override
+    public long getTransazioni() {
+        return statistics.getTransactionCount();
+    }
+
+    @Override
+    public long getCommit() {
+        return statistics.getSuccessfulTransactionCount();
+    }
+
+    @Override
+    public long getRollback() {
+        return statistics.getTransactionCount() - statistics.getSuccessfulTransactionCount();
+    }
+
+    /**
+     * Rimuove gli MBean registrati; chiamato alla chiusura del runtime
+     */
+    @Override
+    public void close() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registrati) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // Già rimosso
+            }
+        }
+        registrati.clear();
+    }
+
+    MethodMetrics registra(String dao, String metodo) {
+        MethodMetrics metriche = new MethodMetrics(dao, metodo);
+        metodi.add(metriche);
+        registraMBean(metriche, "type=DaoMetrics,runtime=" + runtimeId + ",dao=" + dao + ",method=" + metodo);
+        return metriche;
+    }
+
+    void notifica(String dao, String metodo, long durata, long righe, boolean errore) {
+        for (MetricsListener listener : listeners) {
+            listener.onCall(dao, metodo, durata, righe, errore);
+        }
+    }
+
+    private void registraMBean(Object mbean, String proprieta) {
+        if (!jmx) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(DOMINIO + ":" + proprieta);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+            registrati.add(name);
+        } catch (JMException e) {
+            // Le metriche restano disponibili da getMethodMetrics anche senza JMX
+            System.err.println("Impossibile registrare l'MBean " + proprieta + ": " + e.getMessage());
+        }
+    }
+}
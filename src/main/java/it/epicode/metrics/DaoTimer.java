@@ -0,0 +1,112 @@
+package it.epicode.metrics;
+
+import it.epicode.persistence.AdmissionControl;
+import it.epicode.persistence.Bulkhead;
+import it.epicode.persistence.OperazioneRifiutataException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Misura le chiamate ai metodi di un DAO e le fa passare dal controllo di ammissione del runtime
+ * Il costo per chiamata è di due letture di System.nanoTime, una ricerca in una mappa e qualche incremento atomico,
+ * più un tryAcquire per compartimento quando c'è posto
+ */
+public final class DaoTimer {
+
+    private final DaoMetrics registry;
+    private final String dao;
+    private final AdmissionControl ammissione;
+    private final Map<String, MethodMetrics> metodi = new ConcurrentHashMap<>();
+    private final Map<String, Bulkhead[]> compartimenti = new ConcurrentHashMap<>();
+
+    DaoTimer(DaoMetrics registry, String dao, AdmissionControl ammissione) {
+        this.registry = registry;
+        this.dao = dao;
+        this.ammissione = ammissione;
+    }
+
+    /**
+     * Esegue e misura un metodo che restituisce un risultato
+     * Le righe restituite sono la dimensione delle collezioni, 1 per un'entità e 0 per null, numeri e stream
+     * La latenza comprende l'attesa nei compartimenti; uno stream restituito tiene il posto fino alla chiusura
+     * @param metodo il nome del metodo
+     * @param chiamata il corpo del metodo
+     * @return il risultato della chiamata
+     * @throws OperazioneRifiutataException se un compartimento rifiuta la chiamata, che non viene eseguita
+     */
+    public <T> T misura(String metodo, Supplier<T> chiamata) {
+        long inizio = System.nanoTime();
+        AdmissionControl.Ingresso ingresso = entra(metodo);
+        T risultato = null;
+        boolean errore = true;
+        try {
+            risultato = ingresso.trattieni(chiamata.get());
+            errore = false;
+            return risultato;
+        } finally {
+            ingresso.esci();
+            registra(metodo, System.nanoTime() - inizio, ingresso.getAttesaNanos(), errore ? 0 : righe(risultato), errore);
+        }
+    }
+
+    /**
+     * Esegue e misura un metodo senza risultato
+     * @param metodo il nome del metodo
+     * @param chiamata il corpo del metodo
+     * @throws OperazioneRifiutataException se un compartimento rifiuta la chiamata, che non viene eseguita
+     */
+    public void misura(String metodo, Runnable chiamata) {
+        long inizio = System.nanoTime();
+        AdmissionControl.Ingresso ingresso = entra(metodo);
+        boolean errore = true;
+        try {
+            chiamata.run();
+            errore = false;
+        } finally {
+            ingresso.esci();
+            registra(metodo, System.nanoTime() - inizio, ingresso.getAttesaNanos(), 0, errore);
+        }
+    }
+
+    private AdmissionControl.Ingresso entra(String metodo) {
+        Bulkhead[] daOccupare = compartimenti.get(metodo);
+        if (daOccupare == null) {
+            daOccupare = compartimenti.computeIfAbsent(metodo, m -> ammissione.compartimenti(dao, m));
+        }
+        try {
+            return ammissione.entra(dao, metodo, daOccupare);
+        } catch (OperazioneRifiutataException e) {
+            metriche(metodo).rifiuta();
+            throw e;
+        }
+    }
+
+    private void registra(String metodo, long durata, long attesa, long righe, boolean errore) {
+        metriche(metodo).record(durata, attesa, righe, errore);
+        registry.notifica(dao, metodo, durata, righe, errore);
+    }
+
+    private MethodMetrics metriche(String metodo) {
+        MethodMetrics metriche = metodi.get(metodo);
+        if (metriche == null) {
+            metriche = metodi.computeIfAbsent(metodo, m -> registry.registra(dao, m));
+        }
+        return metriche;
+    }
+
+    private static long righe(Object risultato) {
+        if (risultato == null || risultato instanceof Number || risultato instanceof Boolean
+                || risultato instanceof java.util.stream.BaseStream) {
+            return 0;
+        }
+        if (risultato instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (risultato instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,106 @@
+package it.epicode.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Istogramma delle latenze a bucket log-lineari, sul modello di HdrHistogram
+ * Ogni potenza di due è divisa in 64 sotto-bucket, quindi i percentili hanno un errore relativo massimo di circa 1,6%
+ * La registrazione non usa lock né allocazioni: un incremento atomico su un array di dimensione fissa
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    // Valori oltre circa 73 minuti vengono registrati come valore massimo
+    private static final int MAX_BITS = 42;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final LongAdder totale = new LongAdder();
+    private final LongAdder somma = new LongAdder();
+    private final LongAccumulator massimo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una latenza
+     * @param nanos la durata in nanosecondi
+     */
+    public void record(long nanos) {
+        long valore = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(valore));
+        totale.increment();
+        somma.add(valore);
+        massimo.accumulate(valore);
+    }
+
+    /**
+     * Restituisce il valore sotto il quale cade la frazione indicata delle registrazioni
+     * @param quantile il quantile tra 0 e 1, ad esempio 0.99
+     * @return la latenza in nanosecondi, 0 se non ci sono registrazioni
+     */
+    public long getValueAtQuantile(double quantile) {
+        long[] snapshot = new long[counts.length()];
+        long conteggio = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            conteggio += snapshot[i];
+        }
+        if (conteggio == 0) {
+            return 0;
+        }
+        long posizione = Math.max(1, (long) Math.ceil(quantile * conteggio));
+        long cumulato = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulato += snapshot[i];
+            if (cumulato >= posizione) {
+                return Math.min(valoreMedio(i), massimo.get());
+            }
+        }
+        return massimo.get();
+    }
+
+    public long getCount() {
+        return totale.sum();
+    }
+
+    public long getMax() {
+        return massimo.get();
+    }
+
+    public double getMean() {
+        long conteggio = totale.sum();
+        return conteggio == 0 ? 0 : (double) somma.sum() / conteggio;
+    }
+
+    /**
+     * Azzera l'istogramma; le registrazioni concorrenti all'azzeramento possono andare perse
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totale.reset();
+        somma.reset();
+        massimo.reset();
+    }
+
+    // Sotto SUB_BUCKETS i valori sono esatti; sopra, ogni potenza di due occupa HALF bucket
+    private static int indexOf(long valore) {
+        if (valore < SUB_BUCKETS) {
+            return (int) valore;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(valore) - (SUB_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (valore >>> shift) - HALF;
+    }
+
+    private static long valoreMedio(int indice) {
+        if (indice < SUB_BUCKETS) {
+            return indice;
+        }
+        int shift = (indice - SUB_BUCKETS) / HALF + 1;
+        long inizio = (long) ((indice - SUB_BUCKETS) % HALF + HALF) << shift;
+        return inizio + (1L << shift) / 2;
+    }
+}
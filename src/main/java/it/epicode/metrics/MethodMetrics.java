@@ -0,0 +1,120 @@
+package it.epicode.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metriche di un singolo metodo di un DAO: chiamate, errori, righe restituite e istogramma delle latenze,
+ * più le chiamate rifiutate dai compartimenti e l'attesa in coda di quelle ammesse
+ */
+public final class MethodMetrics implements MethodMetricsMXBean {
+
+    private final String dao;
+    private final String metodo;
+    private final LatencyHistogram latenze = new LatencyHistogram();
+    private final LongAdder errori = new LongAdder();
+    private final LongAdder righe = new LongAdder();
+    private final LongAdder rifiutate = new LongAdder();
+    private final LatencyHistogram attese = new LatencyHistogram();
+
+    MethodMetrics(String dao, String metodo) {
+        this.dao = dao;
+        this.metodo = metodo;
+    }
+
+    void record(long durataNanos, long attesaNanos, long righeRestituite, boolean errore) {
+        latenze.record(durataNanos);
+        attese.record(attesaNanos);
+        righe.add(righeRestituite);
+        if (errore) {
+            errori.increment();
+        }
+    }
+
+    void rifiuta() {
+        rifiutate.increment();
+    }
+
+    public String getDao() {
+        return dao;
+    }
+
+    public String getMetodo() {
+        return metodo;
+    }
+
+    public LatencyHistogram getLatenze() {
+        return latenze;
+    }
+
+    @Override
+    public long getChiamate() {
+        return latenze.getCount();
+    }
+
+    @Override
+    public long getErrori() {
+        return errori.sum();
+    }
+
+    @Override
+    public long getRighe() {
+        return righe.sum();
+    }
+
+    @Override
+    public double getLatenzaMediaMicros() {
+        return latenze.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getLatenzaP50Micros() {
+        return latenze.getValueAtQuantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getLatenzaP99Micros() {
+        return latenze.getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getLatenzaP999Micros() {
+        return latenze.getValueAtQuantile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getLatenzaMassimaMicros() {
+        return latenze.getMax() / 1000.0;
+    }
+
+    @Override
+    public long getRifiutate() {
+        return rifiutate.sum();
+    }
+
+    @Override
+    public double getAttesaP99Micros() {
+        return attese.getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getAttesaMassimaMicros() {
+        return attese.getMax() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        latenze.reset();
+        errori.reset();
+        righe.reset();
+        rifiutate.reset();
+        attese.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s.%s{chiamate=%d, errori=%d, rifiutate=%d, righe=%d, p50=%.1fus, p99=%.1fus, p999=%.1fus, max=%.1fus, attesaP99=%.1fus}",
+            dao, metodo, getChiamate(), getErrori(), getRifiutate(), getRighe(),
+            getLatenzaP50Micros(), getLatenzaP99Micros(), getLatenzaP999Micros(), getLatenzaMassimaMicros(),
+            getAttesaP99Micros());
+    }
+}
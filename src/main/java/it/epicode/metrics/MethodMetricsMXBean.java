@@ -0,0 +1,31 @@
+package it.epicode.metrics;
+
+/**
+ * Metriche di un metodo di un DAO esposte via JMX
+ */
+public interface MethodMetricsMXBean {
+
+    long getChiamate();
+
+    long getErrori();
+
+    long getRighe();
+
+    double getLatenzaMediaMicros();
+
+    double getLatenzaP50Micros();
+
+    double getLatenzaP99Micros();
+
+    double getLatenzaP999Micros();
+
+    double getLatenzaMassimaMicros();
+
+    long getRifiutate();
+
+    double getAttesaP99Micros();
+
+    double getAttesaMassimaMicros();
+
+    void reset();
+}
@@ -0,0 +1,18 @@
+package it.epicode.metrics;
+
+/**
+ * Riceve le misure delle chiamate ai DAO, per inoltrarle a un sistema di monitoraggio esterno
+ * Viene invocato sul thread della chiamata: l'implementazione deve essere veloce e non bloccante
+ */
+public interface MetricsListener {
+
+    /**
+     * Chiamata al termine di ogni metodo di un DAO
+     * @param dao il nome del DAO, ad esempio "PersonaDAO"
+     * @param metodo il nome del metodo
+     * @param durataNanos la durata della chiamata in nanosecondi
+     * @param righe il numero di righe restituite
+     * @param errore true se il metodo ha lanciato un'eccezione
+     */
+    void onCall(String dao, String metodo, long durataNanos, long righe, boolean errore);
+}
@@ -0,0 +1,13 @@
+package it.epicode.metrics;
+
+/**
+ * Conteggi delle transazioni del runtime di persistenza esposti via JMX
+ */
+public interface TransactionMetricsMXBean {
+
+    long getTransazioni();
+
+    long getCommit();
+
+    long getRollback();
+}
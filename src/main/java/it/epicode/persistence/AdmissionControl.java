@@ -0,0 +1,241 @@
+package it.epicode.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.BaseStream;
+
+/**
+ * Controllo di ammissione delle chiamate ai DAO tramite compartimenti (bulkhead), condiviso dai DAO di un runtime
+ * Ogni metodo misurato da DaoTimer passa, nell'ordine, dal compartimento del metodo (es. "PersonaDAO.findAll")
+ * e da quello del DAO (es. "PersonaDAO"), se configurati, e sempre da quello della sua classe:
+ * "letture" per i metodi find*, search*, stream*, get*, has*, is*, are* e calcola, "scritture" per gli altri.
+ * Le letture possono usare al più maximumPoolSize - scritture-riservate connessioni, quindi una raffica di letture
+ * lente lascia sempre connessioni libere a salvataggi e iscrizioni. Con le repliche configurate
+ * (gestione-eventi.replica.urls) le letture usano i pool delle repliche e il compartimento "letture" ha un posto
+ * per ogni loro connessione.
+ * Configurazione (persistence.xml o system property), con nome = letture, scritture, DAO o DAO.metodo:
+ * gestione-eventi.bulkhead.nome.max-concorrenti, .max-coda e .max-attesa-ms; i valori di default di coda e attesa
+ * sono gestione-eventi.bulkhead.max-coda e gestione-eventi.bulkhead.max-attesa-ms
+ * Le chiamate annidate (un metodo di un DAO che ne chiama un altro) e quelle dentro un'unità di lavoro,
+ * che ha già la sua connessione, non occupano altri posti. Uno stream restituito da un metodo stream* tiene
+ * il posto fino alla chiusura, come tiene la connessione
+ */
+public final class AdmissionControl {
+
+    public static final String LETTURE = "letture";
+    public static final String SCRITTURE = "scritture";
+
+    private static final String PREFIX = "gestione-eventi.bulkhead.";
+    private static final String ENABLED_PROPERTY = PREFIX + "enabled";
+    private static final String RISERVATE_PROPERTY = PREFIX + "scritture-riservate";
+    private static final String MAX_CONCORRENTI = ".max-concorrenti";
+    private static final String MAX_CODA = "max-coda";
+    private static final String MAX_ATTESA = "max-attesa-ms";
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final int DEFAULT_RISERVATE = 2;
+    private static final int DEFAULT_MAX_CODA = 100;
+    private static final int DEFAULT_MAX_ATTESA_MILLIS = 1_000;
+    private static final String[] PREFISSI_LETTURA = {"find", "search", "stream", "get", "has", "is", "are", "calcola"};
+    private static final Bulkhead[] NESSUNO = new Bulkhead[0];
+
+    private final PersistenceRuntime runtime;
+    private final boolean attivo;
+    private final Map<String, Bulkhead> bulkheads;
+    // true mentre il thread esegue una chiamata già ammessa
+    private final ThreadLocal<boolean[]> ammesso = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private AdmissionControl(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.attivo = !"false".equalsIgnoreCase(String.valueOf(
+            runtime.getEntityManagerFactory().getProperties().get(ENABLED_PROPERTY)));
+        this.bulkheads = attivo ? creaBulkheads(runtime) : Map.of();
+    }
+
+    /**
+     * Restituisce il controllo di ammissione condiviso dai DAO del runtime indicato
+     * @param runtime il runtime di persistenza
+     * @return il controllo di ammissione del runtime
+     */
+    public static AdmissionControl of(PersistenceRuntime runtime) {
+        return runtime.getComponent(AdmissionControl.class, AdmissionControl::new);
+    }
+
+    private static Map<String, Bulkhead> creaBulkheads(PersistenceRuntime runtime) {
+        PersistenceRuntime.PoolStats pool = runtime.getPoolStats();
+        int connessioni = pool != null ? pool.massime() : DEFAULT_POOL_SIZE;
+        int riservate = Math.min(runtime.getPositiveInt(RISERVATE_PROPERTY, DEFAULT_RISERVATE), connessioni - 1);
+
+        ReadReplicas repliche = runtime.getReadReplicas();
+        int letture = repliche.isAttive() ? repliche.getConnessioniMassime() : connessioni - riservate;
+
+        Map<String, Bulkhead> result = new LinkedHashMap<>();
+        result.put(LETTURE, crea(runtime, LETTURE, letture));
+        result.put(SCRITTURE, crea(runtime, SCRITTURE, connessioni));
+        for (Object chiave : runtime.getEntityManagerFactory().getProperties().keySet()) {
+            String proprieta = chiave.toString();
+            if (proprieta.startsWith(PREFIX) && proprieta.endsWith(MAX_CONCORRENTI)) {
+                String nome = proprieta.substring(PREFIX.length(), proprieta.length() - MAX_CONCORRENTI.length());
+                if (!result.containsKey(nome)) {
+                    result.put(nome, crea(runtime, nome, DEFAULT_POOL_SIZE));
+                }
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Bulkhead crea(PersistenceRuntime runtime, String nome, int maxConcorrenti) {
+        return new Bulkhead(nome,
+            runtime.getPositiveInt(PREFIX + nome + MAX_CONCORRENTI, maxConcorrenti),
+            runtime.getPositiveInt(PREFIX + nome + "." + MAX_CODA, runtime.getPositiveInt(PREFIX + MAX_CODA, DEFAULT_MAX_CODA)),
+            runtime.getPositiveInt(PREFIX + nome + "." + MAX_ATTESA, runtime.getPositiveInt(PREFIX + MAX_ATTESA, DEFAULT_MAX_ATTESA_MILLIS)));
+    }
+
+    /**
+     * Verifica se un metodo di un DAO è una lettura, in base al nome
+     * @param metodo il nome del metodo
+     * @return true per i metodi find*, search*, stream*, get*, has*, is*, are* e calcola
+     */
+    public static boolean isLettura(String metodo) {
+        for (String prefisso : PREFISSI_LETTURA) {
+            if (metodo.startsWith(prefisso)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce i compartimenti da cui passa un metodo, nell'ordine in cui vengono occupati
+     * Il risultato non cambia durante la vita del runtime: i DAO lo calcolano una volta per metodo
+     * @param dao il nome del DAO
+     * @param metodo il nome del metodo
+     * @return i compartimenti del metodo, vuoto se il controllo di ammissione è disattivato
+     */
+    public Bulkhead[] compartimenti(String dao, String metodo) {
+        if (!attivo) {
+            return NESSUNO;
+        }
+        List<Bulkhead> result = new ArrayList<>();
+        for (String nome : List.of(dao + "." + metodo, dao)) {
+            Bulkhead bulkhead = bulkheads.get(nome);
+            if (bulkhead != null) {
+                result.add(bulkhead);
+            }
+        }
+        result.add(bulkheads.get(isLettura(metodo) ? LETTURE : SCRITTURE));
+        return result.toArray(NESSUNO);
+    }
+
+    /**
+     * Ammette una chiamata occupando un posto in ognuno dei suoi compartimenti
+     * @param dao il nome del DAO
+     * @param metodo il nome del metodo
+     * @param compartimenti i compartimenti restituiti da compartimenti(dao, metodo)
+     * @return l'ingresso da chiudere con esci() al termine della chiamata
+     * @throws OperazioneRifiutataException se un compartimento rifiuta la chiamata
+     */
+    public Ingresso entra(String dao, String metodo, Bulkhead[] compartimenti) {
+        boolean[] corrente = ammesso.get();
+        if (compartimenti.length == 0 || corrente[0] || runtime.getEntityManagerCondiviso() != null) {
+            return Ingresso.LIBERO;
+        }
+        long attesa = 0;
+        int occupati = 0;
+        try {
+            for (Bulkhead bulkhead : compartimenti) {
+                attesa += bulkhead.entra(dao + "." + metodo);
+                occupati++;
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < occupati; i++) {
+                compartimenti[i].esci();
+            }
+            throw e;
+        }
+        corrente[0] = true;
+        return new Ingresso(compartimenti, attesa, corrente);
+    }
+
+    public boolean isAttivo() {
+        return attivo;
+    }
+
+    /**
+     * Restituisce i compartimenti configurati
+     * @return i compartimenti, vuoto se il controllo di ammissione è disattivato
+     */
+    public Collection<Bulkhead> getBulkheads() {
+        return bulkheads.values();
+    }
+
+    /**
+     * Restituisce un compartimento per nome
+     * @param nome letture, scritture, il nome di un DAO o DAO.metodo
+     * @return il compartimento, o null se non è configurato
+     */
+    public Bulkhead getBulkhead(String nome) {
+        return bulkheads.get(nome);
+    }
+
+    /**
+     * Posti occupati da una chiamata ammessa
+     */
+    public static final class Ingresso {
+
+        static final Ingresso LIBERO = new Ingresso(NESSUNO, 0, null);
+
+        private final Bulkhead[] compartimenti;
+        private final long attesaNanos;
+        private final boolean[] ammesso;
+        private boolean trattenuto;
+
+        private Ingresso(Bulkhead[] compartimenti, long attesaNanos, boolean[] ammesso) {
+            this.compartimenti = compartimenti;
+            this.attesaNanos = attesaNanos;
+            this.ammesso = ammesso;
+        }
+
+        /**
+         * Se il risultato è uno stream, i posti restano occupati fino alla sua chiusura
+         * @param risultato il risultato della chiamata
+         * @return il risultato, con la liberazione dei posti alla chiusura se è uno stream
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T trattieni(T risultato) {
+            if (risultato instanceof BaseStream<?, ?> stream && compartimenti.length > 0) {
+                trattenuto = true;
+                return (T) stream.onClose(this::libera);
+            }
+            return risultato;
+        }
+
+        /**
+         * Chiude l'ingresso al termine della chiamata, sul thread che l'ha ottenuto
+         */
+        public void esci() {
+            if (ammesso != null) {
+                ammesso[0] = false;
+            }
+            if (!trattenuto) {
+                libera();
+            }
+        }
+
+        private void libera() {
+            for (Bulkhead bulkhead : compartimenti) {
+                bulkhead.esci();
+            }
+        }
+
+        /**
+         * @return il tempo passato in coda prima dell'ammissione, in nanosecondi
+         */
+        public long getAttesaNanos() {
+            return attesaNanos;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package it.epicode.persistence;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Esecutore delle varianti asincrone dei DAO, condiviso da tutti i DAO di un runtime
+ * Usa i virtual thread se la JVM li supporta (Java 21+), altrimenti un pool di thread di piattaforma;
+ * in entrambi i casi al più maximumPoolSize operazioni sono in esecuzione insieme, così le richieste
+ * in eccesso attendono in coda invece di contendersi le connessioni del pool
+ * Le operazioni asincrone non devono attendere il risultato di altre operazioni asincrone
+ * Un'operazione legge dal primario se vi leggerebbe il thread che la invia (vedi {@link ReadReplicas})
+ */
+public final class AsyncExecutor implements AutoCloseable {
+
+    private static final int DEFAULT_CONCORRENZA = 10;
+
+    private final ExecutorService executor;
+    private final ReadReplicas replicas;
+    private final Semaphore permessi;
+    private final boolean virtualThreads;
+    private final int concorrenza;
+
+    private AsyncExecutor(int concorrenza, ReadReplicas replicas) {
+        ExecutorService virtuale = creaExecutorVirtuale();
+        this.virtualThreads = virtuale != null;
+        this.executor = virtuale != null ? virtuale : Executors.newFixedThreadPool(concorrenza, threadFactory());
+        this.replicas = replicas;
+        this.permessi = new Semaphore(concorrenza);
+        this.concorrenza = concorrenza;
+    }
+
+    /**
+     * Restituisce l'esecutore condiviso dai DAO del runtime indicato
+     * La concorrenza massima è la dimensione del connection pool
+     * @param runtime il runtime di persistenza
+     * @return l'esecutore del runtime
+     */
+    public static AsyncExecutor of(PersistenceRuntime runtime) {
+        return runtime.getComponent(AsyncExecutor.class, r -> {
+            PersistenceRuntime.PoolStats pool = r.getPoolStats();
+            return new AsyncExecutor(pool != null ? pool.massime() : DEFAULT_CONCORRENZA, r.getReadReplicas());
+        });
+    }
+
+    /**
+     * Esegue un'operazione in modo asincrono
+     * @param operazione l'operazione da eseguire, tipicamente una chiamata a un DAO
+     * @return il future completato con il risultato, o eccezionalmente con l'errore dell'operazione
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> operazione) {
+        Supplier<T> instradata = replicas.conInstradamentoCorrente(operazione);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permessi.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return instradata.get();
+            } finally {
+                permessi.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Verifica se le operazioni vengono eseguite su virtual thread
+     * @return true se la JVM supporta i virtual thread
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Restituisce il numero massimo di operazioni eseguite insieme
+     * @return la concorrenza massima
+     */
+    public int getConcorrenzaMassima() {
+        return concorrenza;
+    }
+
+    /**
+     * Attende il completamento delle operazioni in corso e ferma l'esecutore
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor esiste solo da Java 21: viene cercato per reflection
+    private static ExecutorService creaExecutorVirtuale() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger sequenza = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "gestione-eventi-async-" + sequenza.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
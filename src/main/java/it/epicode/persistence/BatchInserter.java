@@ -0,0 +1,80 @@
+package it.epicode.persistence;
+
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Inserimento massivo di entità con batching JDBC
+ * Esegue flush e clear del persistence context ogni batch, così la memoria resta costante
+ * qualunque sia il numero di entità in ingresso, anche dentro un'unità di lavoro
+ */
+public final class BatchInserter {
+
+    private BatchInserter() {}
+
+    /**
+     * Persiste tutte le entità in un'unica transazione
+     * @param runtime il runtime di persistenza da utilizzare
+     * @param entities le entità da salvare
+     * @param batchSize il numero di entità tra un flush e il successivo
+     * @param messaggioErrore il messaggio dell'eccezione in caso di errore
+     * @return il numero di entità salvate
+     */
+    public static long persistAll(PersistenceRuntime runtime, Iterator<?> entities, int batchSize, String messaggioErrore) {
+        return persistAll(runtime, entities, batchSize, messaggioErrore, em -> {});
+    }
+
+    /**
+     * Persiste tutte le entità in un'unica transazione
+     * @param runtime il runtime di persistenza da utilizzare
+     * @param entities le entità da salvare
+     * @param batchSize il numero di entità tra un flush e il successivo
+     * @param messaggioErrore il messaggio dell'eccezione in caso di errore
+     * @param primaDelCommit operazioni da eseguire nella stessa transazione dopo l'ultimo insert
+     * @return il numero di entità salvate
+     */
+    public static long persistAll(PersistenceRuntime runtime, Iterator<?> entities, int batchSize,
+                                  String messaggioErrore, Consumer<EntityManager> primaDelCommit) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Il batch size deve essere positivo: " + batchSize);
+        }
+        // Dentro un'unità di lavoro clear() non ha effetto e svuoterebbe comunque anche le entità dell'unità:
+        // dopo il flush vengono staccate solo le entità del batch appena scritto
+        List<Object> batch = runtime.getEntityManagerCondiviso() != null ? new ArrayList<>(batchSize) : null;
+        EntityManager em = runtime.createEntityManager();
+        long count = 0;
+        try {
+            em.getTransaction().begin();
+            while (entities.hasNext()) {
+                Object entity = entities.next();
+                em.persist(entity);
+                if (batch != null) {
+                    batch.add(entity);
+                }
+                count++;
+                if (count % batchSize == 0) {
+                    em.flush();
+                    if (batch != null) {
+                        batch.forEach(em::detach);
+                        batch.clear();
+                    } else {
+                        em.clear();
+                    }
+                }
+            }
+            primaDelCommit.accept(em);
+            em.getTransaction().commit();
+            return count;
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException(messaggioErrore, e);
+        } finally {
+            em.close();
+        }
+    }
+}
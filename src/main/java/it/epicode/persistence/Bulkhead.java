@@ -0,0 +1,151 @@
+package it.epicode.persistence;
+
+import it.epicode.metrics.LatencyHistogram;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compartimento (bulkhead): al più maxConcorrenti chiamate in esecuzione insieme
+ * Le chiamate in eccesso attendono in ordine di arrivo fino a maxAttesa; oltre maxCoda chiamate in attesa,
+ * o allo scadere dell'attesa, la chiamata viene rifiutata subito con OperazioneRifiutataException
+ */
+public final class Bulkhead implements BulkheadMXBean {
+
+    private final String nome;
+    private final int maxConcorrenti;
+    private final int maxCoda;
+    private final long maxAttesaNanos;
+    private final Semaphore permessi;
+    private final AtomicInteger inCoda = new AtomicInteger();
+    private final LongAdder ammesse = new LongAdder();
+    private final LongAdder rifiutate = new LongAdder();
+    private final LatencyHistogram attese = new LatencyHistogram();
+
+    Bulkhead(String nome, int maxConcorrenti, int maxCoda, long maxAttesaMillis) {
+        this.nome = nome;
+        this.maxConcorrenti = maxConcorrenti;
+        this.maxCoda = maxCoda;
+        this.maxAttesaNanos = TimeUnit.MILLISECONDS.toNanos(maxAttesaMillis);
+        this.permessi = new Semaphore(maxConcorrenti, true);
+    }
+
+    /**
+     * Occupa un posto nel compartimento, attendendo se necessario
+     * @param operazione il nome dell'operazione, per il messaggio dell'eccezione
+     * @return il tempo di attesa in nanosecondi
+     * @throws OperazioneRifiutataException se la coda è piena o l'attesa supera maxAttesa
+     */
+    long entra(String operazione) {
+        // Con chiamate già in coda si mette in coda anche questa: l'ordine di arrivo è rispettato
+        if (inCoda.get() == 0 && permessi.tryAcquire()) {
+            ammesse.increment();
+            attese.record(0);
+            return 0;
+        }
+        if (inCoda.incrementAndGet() > maxCoda) {
+            inCoda.decrementAndGet();
+            rifiutate.increment();
+            throw new OperazioneRifiutataException(operazione, nome, OperazioneRifiutataException.Motivo.CODA_PIENA);
+        }
+        long inizio = System.nanoTime();
+        boolean ammessa;
+        try {
+            ammessa = permessi.tryAcquire(maxAttesaNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rifiutate.increment();
+            throw new OperazioneRifiutataException(operazione, nome, OperazioneRifiutataException.Motivo.INTERROTTA);
+        } finally {
+            inCoda.decrementAndGet();
+        }
+        long attesa = System.nanoTime() - inizio;
+        attese.record(attesa);
+        if (!ammessa) {
+            rifiutate.increment();
+            throw new OperazioneRifiutataException(operazione, nome, OperazioneRifiutataException.Motivo.ATTESA_SCADUTA);
+        }
+        ammesse.increment();
+        return attesa;
+    }
+
+    /**
+     * Libera il posto occupato con entra()
+     */
+    void esci() {
+        permessi.release();
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public int getMaxConcorrenti() {
+        return maxConcorrenti;
+    }
+
+    @Override
+    public int getMaxCoda() {
+        return maxCoda;
+    }
+
+    @Override
+    public long getMaxAttesaMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxAttesaNanos);
+    }
+
+    @Override
+    public int getInEsecuzione() {
+        return maxConcorrenti - permessi.availablePermits();
+    }
+
+    @Override
+    public int getInCoda() {
+        return inCoda.get();
+    }
+
+    @Override
+    public long getAmmesse() {
+        return ammesse.sum();
+    }
+
+    @Override
+    public long getRifiutate() {
+        return rifiutate.sum();
+    }
+
+    public LatencyHistogram getAttese() {
+        return attese;
+    }
+
+    @Override
+    public double getAttesaMediaMicros() {
+        return attese.getMean() / 1000.0;
+    }
+
+    @Override
+    public double getAttesaP99Micros() {
+        return attese.getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getAttesaMassimaMicros() {
+        return attese.getMax() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        ammesse.reset();
+        rifiutate.reset();
+        attese.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Bulkhead %s{max=%d, coda=%d, attesa=%dms, inEsecuzione=%d, inCoda=%d, ammesse=%d, rifiutate=%d, attesaP99=%.1fus, attesaMax=%.1fus}",
+            nome, maxConcorrenti, maxCoda, getMaxAttesaMillis(), getInEsecuzione(), getInCoda(), getAmmesse(), getRifiutate(),
+            getAttesaP99Micros(), getAttesaMassimaMicros());
+    }
+}
@@ -0,0 +1,29 @@
+package it.epicode.persistence;
+
+/**
+ * Stato di un compartimento (bulkhead) esposto via JMX
+ */
+public interface BulkheadMXBean {
+
+    int getMaxConcorrenti();
+
+    int getMaxCoda();
+
+    long getMaxAttesaMillis();
+
+    int getInEsecuzione();
+
+    int getInCoda();
+
+    long getAmmesse();
+
+    long getRifiutate();
+
+    double getAttesaMediaMicros();
+
+    double getAttesaP99Micros();
+
+    double getAttesaMassimaMicros();
+
+    void reset();
+}
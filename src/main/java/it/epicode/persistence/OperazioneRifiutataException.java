@@ -0,0 +1,51 @@
+package it.epicode.persistence;
+
+/**
+ * Eccezione lanciata quando un compartimento (bulkhead) rifiuta la chiamata a un metodo di un DAO
+ * La chiamata non è stata eseguita e non ha usato connessioni: si può ripetere più tardi
+ */
+public class OperazioneRifiutataException extends RuntimeException {
+
+    /**
+     * Motivo del rifiuto
+     */
+    public enum Motivo {
+        /** Troppe chiamate già in attesa nel compartimento (max-coda) */
+        CODA_PIENA,
+        /** Nessun posto libero nel compartimento entro max-attesa-ms */
+        ATTESA_SCADUTA,
+        /** Il thread è stato interrotto durante l'attesa */
+        INTERROTTA
+    }
+
+    private final String operazione;
+    private final String compartimento;
+    private final Motivo motivo;
+
+    public OperazioneRifiutataException(String operazione, String compartimento, Motivo motivo) {
+        super("Operazione " + operazione + " rifiutata dal compartimento '" + compartimento + "': " + descrizione(motivo));
+        this.operazione = operazione;
+        this.compartimento = compartimento;
+        this.motivo = motivo;
+    }
+
+    private static String descrizione(Motivo motivo) {
+        return switch (motivo) {
+            case CODA_PIENA -> "troppe operazioni in attesa";
+            case ATTESA_SCADUTA -> "attesa massima superata";
+            case INTERROTTA -> "attesa interrotta";
+        };
+    }
+
+    public String getOperazione() {
+        return operazione;
+    }
+
+    public String getCompartimento() {
+        return compartimento;
+    }
+
+    public Motivo getMotivo() {
+        return motivo;
+    }
+}
@@ -0,0 +1,154 @@
+package it.epicode.persistence;
+
+import jakarta.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creazione periodica delle partizioni annuali della tabella eventi (migrazioni V4 e V7), condivisa dai DAO di un runtime
+ * A ogni controllo una sola query in sola lettura verifica se manca la partizione di uno degli anni gestiti
+ * (l'anno corrente e i successivi) o se la partizione di default contiene eventi; solo in quel caso viene chiamata
+ * la funzione SQL crea_partizioni_eventi, quindi l'avvio dell'applicazione non esegue DDL e il nuovo anno trova
+ * la sua partizione già pronta. Più istanze dell'applicazione possono eseguire il controllo insieme:
+ * la funzione le serializza con un lock advisory
+ * Con gestione-eventi.schema.migrate=true il runtime avvia il controllo periodico dopo le migrazioni, su PostgreSQL;
+ * il primo controllo avviene un minuto dopo l'avvio
+ * Configurazione (persistence.xml o system property): gestione-eventi.partizioni.enabled (default true),
+ * gestione-eventi.partizioni.anni-successivi (default 2) e gestione-eventi.partizioni.intervallo-ore (default 24)
+ * Su uno schema non creato dalle migrazioni (ad esempio da hbm2ddl, o su H2) la tabella eventi_chiavi non esiste:
+ * {@link #isSchemaPartizionato()} lo segnala ai DAO, che cercano allora gli eventi per il solo ID
+ */
+public final class PartizioniEventi implements AutoCloseable {
+
+    private static final String PREFIX = "gestione-eventi.partizioni.";
+    private static final String ENABLED_PROPERTY = PREFIX + "enabled";
+    private static final String ANNI_SUCCESSIVI_PROPERTY = PREFIX + "anni-successivi";
+    private static final String INTERVALLO_PROPERTY = PREFIX + "intervallo-ore";
+    private static final int DEFAULT_ANNI_SUCCESSIVI = 2;
+    private static final int DEFAULT_INTERVALLO_ORE = 24;
+    private static final int RITARDO_INIZIALE_SECONDI = 60;
+
+    private final PersistenceRuntime runtime;
+    private final int anniSuccessivi;
+    private ScheduledExecutorService scheduler;
+    private volatile Boolean schemaPartizionato;
+
+    private PartizioniEventi(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+        this.anniSuccessivi = runtime.getPositiveInt(ANNI_SUCCESSIVI_PROPERTY, DEFAULT_ANNI_SUCCESSIVI);
+    }
+
+    /**
+     * Restituisce la gestione delle partizioni del runtime indicato
+     * @param runtime il runtime di persistenza
+     * @return la gestione delle partizioni del runtime
+     */
+    public static PartizioniEventi of(PersistenceRuntime runtime) {
+        return runtime.getComponent(PartizioniEventi.class, PartizioniEventi::new);
+    }
+
+    // Chiamato dal runtime dopo le migrazioni
+    synchronized void avvia() {
+        if (scheduler != null || "false".equalsIgnoreCase(String.valueOf(
+                runtime.getEntityManagerFactory().getProperties().get(ENABLED_PROPERTY)))) {
+            return;
+        }
+        int intervalloOre = runtime.getPositiveInt(INTERVALLO_PROPERTY, DEFAULT_INTERVALLO_ORE);
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "gestione-eventi-partizioni");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                creaMancanti();
+            } catch (RuntimeException e) {
+                System.err.println("Errore durante la creazione delle partizioni degli eventi: " + e.getMessage());
+            }
+        }, RITARDO_INIZIALE_SECONDI, TimeUnit.HOURS.toSeconds(intervalloOre), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Crea le partizioni mancanti dell'anno corrente e dei successivi, e quelle degli anni con eventi
+     * finiti nella partizione di default, che vengono spostati nella nuova partizione
+     * @return il numero di partizioni create, 0 se non ne mancava nessuna
+     */
+    public int creaMancanti() {
+        int corrente = LocalDate.now().getYear();
+        if (!isNecessario(corrente)) {
+            return 0;
+        }
+        EntityManager em = runtime.createPrimaryEntityManager();
+        try {
+            em.getTransaction().begin();
+            Number daDefault = (Number) em.createNativeQuery(
+                    "SELECT COALESCE(SUM(crea_partizioni_eventi(anno, anno)), 0) FROM " +
+                    "(SELECT DISTINCT CAST(extract(year FROM data_evento) AS integer) AS anno FROM eventi_default) anni")
+                .getSingleResult();
+            Number successive = (Number) em.createNativeQuery("SELECT crea_partizioni_eventi(:primo, :ultimo)")
+                .setParameter("primo", corrente)
+                .setParameter("ultimo", corrente + anniSuccessivi)
+                .getSingleResult();
+            em.getTransaction().commit();
+            return daDefault.intValue() + successive.intValue();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Errore durante la creazione delle partizioni degli eventi", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    private boolean isNecessario(int corrente) {
+        EntityManager em = runtime.createCommittedReadOnlyEntityManager();
+        try {
+            return (Boolean) em.createNativeQuery(
+                    "SELECT EXISTS (SELECT 1 FROM generate_series(:primo, :ultimo) anno " +
+                    "WHERE to_regclass('eventi_' || anno) IS NULL) OR EXISTS (SELECT 1 FROM eventi_default)")
+                .setParameter("primo", corrente)
+                .setParameter("ultimo", corrente + anniSuccessivi)
+                .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Verifica se lo schema ha la tabella eventi_chiavi (migrazione V7), da cui i DAO leggono la data
+     * per limitare le query per ID alla partizione dell'evento
+     * Il controllo viene fatto una sola volta per runtime, al primo utilizzo
+     * @return true su PostgreSQL con lo schema delle migrazioni, false altrimenti
+     */
+    public boolean isSchemaPartizionato() {
+        Boolean risultato = schemaPartizionato;
+        if (risultato == null) {
+            risultato = runtime.isPostgreSQL() && haChiaviEventi();
+            schemaPartizionato = risultato;
+        }
+        return risultato;
+    }
+
+    private boolean haChiaviEventi() {
+        EntityManager em = runtime.createCommittedReadOnlyEntityManager();
+        try {
+            return (Boolean) em.createNativeQuery("SELECT to_regclass('eventi_chiavi') IS NOT NULL").getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Ferma il controllo periodico
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
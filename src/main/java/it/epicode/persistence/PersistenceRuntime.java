@@ -0,0 +1,452 @@
+package it.epicode.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.resource.transaction.spi.TransactionObserver;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Runtime di persistenza condiviso da tutti i DAO
+ * Contiene l'unico EntityManagerFactory dell'applicazione, il connection pool del database primario
+ * e gli eventuali pool delle repliche di lettura (ReadReplicas)
+ */
+public final class PersistenceRuntime implements AutoCloseable {
+
+    public static final String PERSISTENCE_UNIT = "gestione-eventi-pu";
+
+    private static final String BATCH_SIZE_PROPERTY = "hibernate.jdbc.batch_size";
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final String FETCH_SIZE_PROPERTY = "hibernate.jdbc.fetch_size";
+    private static final int DEFAULT_FETCH_SIZE = 500;
+    static final String QUERY_TIMEOUT_PROPERTY = "gestione-eventi.query.timeout-ms";
+    private static final int DEFAULT_QUERY_TIMEOUT_MILLIS = 10_000;
+    static final String WRITE_TIMEOUT_PROPERTY = "gestione-eventi.query.write-timeout-ms";
+    private static final int DEFAULT_WRITE_TIMEOUT_MILLIS = 5_000;
+
+    // Prefissi delle system property che sovrascrivono i valori di persistence.xml
+    private static final String[] OVERRIDE_PREFIXES = {"jakarta.persistence.jdbc.", "hibernate.", "gestione-eventi."};
+
+    private static volatile PersistenceRuntime defaultRuntime;
+
+    private final EntityManagerFactory emf;
+    private final ReadReplicas replicas;
+    private final Map<Class<?>, Object> components = new ConcurrentHashMap<>();
+
+    private PersistenceRuntime(EntityManagerFactory emf) {
+        this.emf = emf;
+        this.replicas = new ReadReplicas(this);
+    }
+
+    /**
+     * Crea un nuovo runtime per la persistence unit di default
+     * @param overrides proprietà che sovrascrivono quelle di persistence.xml
+     * @return il runtime creato
+     */
+    public static PersistenceRuntime create(Map<String, ?> overrides) {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, overrides);
+        PersistenceRuntime runtime;
+        try {
+            runtime = new PersistenceRuntime(emf);
+        } catch (RuntimeException e) {
+            emf.close();
+            throw e;
+        }
+        if (runtime.isPostgreSQL() && Boolean.parseBoolean(String.valueOf(
+                runtime.emf.getProperties().get(SchemaMigrations.MIGRATE_PROPERTY)))) {
+            try {
+                SchemaMigrations.migrate(runtime);
+                PartizioniEventi.of(runtime).avvia();
+            } catch (RuntimeException e) {
+                runtime.close();
+                throw e;
+            }
+        }
+        return runtime;
+    }
+
+    /**
+     * Restituisce il runtime condiviso, creandolo al primo utilizzo
+     * Le system property con prefisso "hibernate.", "jakarta.persistence.jdbc." o "gestione-eventi." sovrascrivono persistence.xml
+     * @return il runtime condiviso
+     */
+    public static PersistenceRuntime getDefault() {
+        PersistenceRuntime runtime = defaultRuntime;
+        if (runtime == null) {
+            synchronized (PersistenceRuntime.class) {
+                runtime = defaultRuntime;
+                if (runtime == null) {
+                    runtime = create(systemOverrides());
+                    defaultRuntime = runtime;
+                }
+            }
+        }
+        return runtime;
+    }
+
+    /**
+     * Chiude il runtime condiviso, se è stato creato
+     */
+    public static void closeDefault() {
+        synchronized (PersistenceRuntime.class) {
+            if (defaultRuntime != null) {
+                defaultRuntime.close();
+                defaultRuntime = null;
+            }
+        }
+    }
+
+    /**
+     * Apre un nuovo EntityManager sull'EntityManagerFactory condiviso
+     * Dentro un'unità di lavoro (UnitOfWork) restituisce l'EntityManager dell'unità
+     * @return un nuovo EntityManager, oppure quello dell'unità di lavoro attiva
+     */
+    public EntityManager createEntityManager() {
+        EntityManager condiviso = getEntityManagerCondiviso();
+        return condiviso != null ? condiviso : createPrimaryEntityManager();
+    }
+
+    // EntityManager proprio sul primario: i suoi commit spostano sul primario le letture successive del thread;
+    // le query hanno il timeout gestione-eventi.query.write-timeout-ms, così un lock conteso non trattiene la connessione
+    EntityManager createPrimaryEntityManager() {
+        EntityManager em = emf.createEntityManager();
+        Session session = em.unwrap(Session.class);
+        session.setProperty(SpecHints.HINT_SPEC_QUERY_TIMEOUT, getWriteTimeoutMillis());
+        if (isPostgreSQL()) {
+            limitaTransazioni(session);
+        }
+        return replicas.tracciaScritture(em);
+    }
+
+    // Il timeout delle query non vale per gli insert, update e delete eseguiti dal flush: all'inizio di ogni transazione
+    // SET LOCAL statement_timeout limita tutti gli statement fino al commit o al rollback, poi la connessione torna
+    // al pool con il valore di default
+    private void limitaTransazioni(Session session) {
+        String sql = "SET LOCAL statement_timeout = " + getWriteTimeoutMillis();
+        session.unwrap(SessionImplementor.class).getTransactionCoordinator().addObserver(new TransactionObserver() {
+            @Override
+            public void afterBegin() {
+                session.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(sql);
+                    }
+                });
+            }
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(boolean successful, boolean delayed) {
+            }
+        });
+    }
+
+    /**
+     * Apre un EntityManager per le sole letture, usato dai metodi find* e search* dei DAO
+     * Le entità caricate sono read-only, quindi Hibernate non conserva la copia dello stato per il dirty checking;
+     * il flush automatico è disattivato e ogni query ha il timeout gestione-eventi.query.timeout-ms
+     * (il fetch size hibernate.jdbc.fetch_size vale già per tutte le query)
+     * Le entità restano modificabili dopo la chiusura dell'EntityManager e si salvano con update()
+     * Dentro un'unità di lavoro restituisce l'EntityManager dell'unità, così le letture vedono le sue modifiche
+     * Con le repliche configurate l'EntityManager è aperto su una replica, salvo subito dopo un commit del thread
+     * corrente (vedi {@link ReadReplicas})
+     * @return un nuovo EntityManager di sola lettura, oppure quello dell'unità di lavoro attiva
+     */
+    public EntityManager createReadOnlyEntityManager() {
+        EntityManager condiviso = getEntityManagerCondiviso();
+        if (condiviso != null) {
+            return condiviso;
+        }
+        EntityManager replica = replicas.apriSessione();
+        return configuraSolaLettura(replica != null ? replica : emf.createEntityManager());
+    }
+
+    /**
+     * Apre un EntityManager per le sole letture sempre sul primario, per le letture che devono vedere
+     * le modifiche appena committate da qualunque thread (indici in memoria, letture che precedono una scrittura)
+     * Senza repliche equivale a {@link #createReadOnlyEntityManager()}
+     * @return un nuovo EntityManager di sola lettura sul primario, oppure quello dell'unità di lavoro attiva
+     */
+    public EntityManager createPrimaryReadOnlyEntityManager() {
+        EntityManager condiviso = getEntityManagerCondiviso();
+        return condiviso != null ? condiviso : configuraSolaLettura(emf.createEntityManager());
+    }
+
+    /**
+     * Apre sempre un EntityManager proprio per le sole letture sul primario, anche dentro un'unità di lavoro
+     * Vede solo dati committati: da usare per caricare stato condiviso tra thread (indici in memoria),
+     * che non deve mai contenere le modifiche di un'unità che potrebbe ancora fare rollback
+     * @return un nuovo EntityManager di sola lettura sul primario, da chiudere al termine
+     */
+    public EntityManager createCommittedReadOnlyEntityManager() {
+        return configuraSolaLettura(emf.createEntityManager());
+    }
+
+    // EntityManager degli stream di QueryStreams: fuori dall'unità di lavoro, su una replica se disponibile
+    EntityManager createStreamEntityManager() {
+        EntityManager replica = replicas.apriSessione();
+        return replica != null ? replica : emf.createEntityManager();
+    }
+
+    private EntityManager configuraSolaLettura(EntityManager em) {
+        Session session = em.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        session.setProperty(SpecHints.HINT_SPEC_QUERY_TIMEOUT, getQueryTimeoutMillis());
+        return em;
+    }
+
+    /**
+     * Esegue un'azione dopo il commit della transazione corrente, ad esempio l'aggiornamento di uno stato in memoria
+     * Dentro un'unità di lavoro l'azione viene rimandata al commit dell'unità e scartata in caso di rollback;
+     * altrimenti il DAO ha appena fatto commit e l'azione viene eseguita subito
+     * @param azione l'azione da eseguire
+     */
+    public void dopoCommit(Runnable azione) {
+        Object unitOfWork = components.get(UnitOfWork.class);
+        if (unitOfWork == null || !((UnitOfWork) unitOfWork).rimandaDopoCommit(azione)) {
+            azione.run();
+        }
+    }
+
+    // EntityManager dell'unità di lavoro attiva sul thread corrente, null fuori da un'unità di lavoro
+    EntityManager getEntityManagerCondiviso() {
+        Object unitOfWork = components.get(UnitOfWork.class);
+        return unitOfWork != null ? ((UnitOfWork) unitOfWork).getEntityManagerCondiviso() : null;
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return emf;
+    }
+
+    /**
+     * Restituisce le repliche di lettura configurate in gestione-eventi.replica.urls
+     * @return le repliche del runtime (nessuna replica attiva se la proprietà non è impostata)
+     */
+    public ReadReplicas getReadReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Restituisce il batch size JDBC configurato (hibernate.jdbc.batch_size)
+     * @return il numero di righe per batch
+     */
+    public int getBatchSize() {
+        return getPositiveInt(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Restituisce il fetch size JDBC configurato (hibernate.jdbc.fetch_size)
+     * @return il numero di righe lette dal cursore per ogni round-trip
+     */
+    public int getFetchSize() {
+        return getPositiveInt(FETCH_SIZE_PROPERTY, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Restituisce il timeout delle query di sola lettura (gestione-eventi.query.timeout-ms)
+     * @return il timeout in millisecondi
+     */
+    public int getQueryTimeoutMillis() {
+        return getPositiveInt(QUERY_TIMEOUT_PROPERTY, DEFAULT_QUERY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Restituisce il timeout delle query dei metodi che scrivono (gestione-eventi.query.write-timeout-ms)
+     * @return il timeout in millisecondi
+     */
+    public int getWriteTimeoutMillis() {
+        return getPositiveInt(WRITE_TIMEOUT_PROPERTY, DEFAULT_WRITE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Legge una proprietà intera positiva della persistence unit
+     * @param property il nome della proprietà
+     * @param defaultValue il valore usato se la proprietà manca o non è positiva
+     * @return il valore della proprietà
+     */
+    public int getPositiveInt(String property, int defaultValue) {
+        Object value = emf.getProperties().get(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value.toString().trim());
+        return parsed > 0 ? parsed : defaultValue;
+    }
+
+    /**
+     * Restituisce un componente condiviso legato a questo runtime, creandolo al primo utilizzo
+     * Permette a DAO diversi sullo stesso runtime di condividere lo stesso stato in memoria
+     * @param type la classe del componente
+     * @param factory crea il componente a partire dal runtime
+     * @return il componente condiviso
+     */
+    public <T> T getComponent(Class<T> type, Function<PersistenceRuntime, T> factory) {
+        return type.cast(components.computeIfAbsent(type, t -> factory.apply(this)));
+    }
+
+    /**
+     * Restituisce una fotografia dello stato del connection pool
+     * @return le statistiche del pool, oppure null se il pool non è HikariCP
+     */
+    public PoolStats getPoolStats() {
+        HikariDataSource dataSource = getDataSource();
+        if (dataSource == null || dataSource.getHikariPoolMXBean() == null) {
+            return null;
+        }
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return new PoolStats(
+            pool.getActiveConnections(),
+            pool.getIdleConnections(),
+            pool.getTotalConnections(),
+            pool.getThreadsAwaitingConnection(),
+            dataSource.getMaximumPoolSize());
+    }
+
+    /**
+     * Restituisce il DataSource HikariCP usato da Hibernate
+     * @return il DataSource, oppure null se il connection provider non è HikariCP
+     */
+    public HikariDataSource getDataSource() {
+        ConnectionProvider provider = emf.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(ConnectionProvider.class);
+        if (provider != null && provider.isUnwrappableAs(HikariDataSource.class)) {
+            return provider.unwrap(HikariDataSource.class);
+        }
+        return null;
+    }
+
+    /**
+     * Restituisce le statistiche di ogni regione della cache di secondo livello e della cache delle query
+     * Richiede hibernate.generate_statistics=true
+     * @return le statistiche per regione
+     */
+    public List<CacheStats> getCacheStats() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        List<CacheStats> result = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats != null) {
+                result.add(new CacheStats(region,
+                    regionStats.getHitCount(),
+                    regionStats.getMissCount(),
+                    regionStats.getPutCount()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Svuota la cache di secondo livello e la cache delle query
+     * Da usare dopo modifiche fatte direttamente sul database
+     */
+    public void evictCache() {
+        emf.getCache().evictAll();
+        emf.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
+    /**
+     * Verifica se il database configurato è PostgreSQL
+     * @return true se il dialetto Hibernate è PostgreSQL
+     */
+    public boolean isPostgreSQL() {
+        return emf.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+    }
+
+    public boolean isOpen() {
+        return emf.isOpen();
+    }
+
+    /**
+     * Chiude i componenti condivisi, i pool delle repliche, l'EntityManagerFactory e il connection pool
+     */
+    @Override
+    public void close() {
+        for (Object component : components.values()) {
+            if (component instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    System.err.println("Errore durante la chiusura di " + component.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+            }
+        }
+        components.clear();
+        replicas.close();
+        if (emf.isOpen()) {
+            emf.close();
+        }
+    }
+
+    private static Map<String, Object> systemOverrides() {
+        Map<String, Object> overrides = new HashMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            for (String prefix : OVERRIDE_PREFIXES) {
+                if (name.startsWith(prefix)) {
+                    overrides.put(name, System.getProperty(name));
+                    break;
+                }
+            }
+        }
+        return overrides;
+    }
+
+    /**
+     * Statistiche del connection pool
+     */
+    public record PoolStats(int attive, int inattive, int totali, int inAttesa, int massime) {
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "attive=" + attive +
+                    ", inattive=" + inattive +
+                    ", totali=" + totali +
+                    ", inAttesa=" + inAttesa +
+                    ", massime=" + massime +
+                    '}';
+        }
+    }
+
+    /**
+     * Statistiche di una regione della cache di secondo livello
+     */
+    public record CacheStats(String regione, long hit, long miss, long put) {
+
+        public double getHitRatio() {
+            long totale = hit + miss;
+            return totale == 0 ? 0 : (double) hit / totale;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{" +
+                    "regione='" + regione + '\'' +
+                    ", hit=" + hit +
+                    ", miss=" + miss +
+                    ", put=" + put +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package it.epicode.persistence;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Esecuzione di query in streaming su un cursore JDBC
+ * Le righe vengono lette a blocchi di fetch size e il persistence context viene svuotato
+ * a ogni blocco, quindi la memoria dipende dal fetch size e non dalla dimensione della tabella
+ */
+public final class QueryStreams {
+
+    private QueryStreams() {}
+
+    /**
+     * Esegue la query e restituisce i risultati come stream
+     * Lo stream tiene aperti EntityManager e connessione: va chiuso dal chiamante (try-with-resources)
+     * Lo stream usa sempre un EntityManager proprio, anche dentro un'unità di lavoro, aperto su una replica
+     * di lettura se configurata (con le stesse regole di runtime.createReadOnlyEntityManager())
+     * @param runtime il runtime di persistenza da utilizzare
+     * @param queryFactory crea la query sull'EntityManager aperto per lo stream
+     * @return lo stream dei risultati
+     */
+    public static <T> Stream<T> stream(PersistenceRuntime runtime, Function<EntityManager, TypedQuery<T>> queryFactory) {
+        // Non partecipa all'unità di lavoro: il rollback alla chiusura annullerebbe l'intera unità
+        EntityManager em = runtime.createStreamEntityManager();
+        try {
+            // PostgreSQL usa un cursore lato server solo con autocommit disattivato
+            em.getTransaction().begin();
+            int fetchSize = runtime.getFetchSize();
+            TypedQuery<T> query = queryFactory.apply(em);
+            query.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+            query.setHint(HibernateHints.HINT_READ_ONLY, true);
+            long[] lette = {0};
+            return query.getResultStream()
+                .peek(result -> {
+                    if (++lette[0] % fetchSize == 0) {
+                        em.clear();
+                    }
+                })
+                .onClose(() -> chiudi(em));
+        } catch (RuntimeException e) {
+            chiudi(em);
+            throw e;
+        }
+    }
+
+    private static void chiudi(EntityManager em) {
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package it.epicode.persistence;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
+import org.hibernate.SessionFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Repliche in sola lettura del database primario, a cui il runtime instrada le letture dei DAO
+ * Le repliche sono gli URL JDBC di gestione-eventi.replica.urls, separati da virgola, ognuno con un proprio pool
+ * HikariCP in sola lettura; senza repliche ogni operazione usa il primario come prima.
+ * runtime.createReadOnlyEntityManager() apre la sessione su una replica scelta a rotazione; una replica che non
+ * fornisce una connessione viene saltata per qualche secondo e, se nessuna è disponibile, la lettura va sul primario.
+ * Lettura delle proprie scritture: dopo il commit di una transazione sul primario le letture dello stesso thread
+ * restano sul primario per gestione-eventi.replica.sticky-ms, il tempo entro cui le repliche ricevono la modifica.
+ * Come l'unità di lavoro la finestra è legata al thread; le varianti async dei DAO la ereditano dal chiamante.
+ * Le sessioni sulle repliche leggono la cache di secondo livello ma non la popolano (CacheMode.GET): in cache
+ * finiscono solo dati letti o scritti sul primario, così una replica in ritardo non vi salva valori superati
+ */
+public final class ReadReplicas implements AutoCloseable {
+
+    static final String URLS_PROPERTY = "gestione-eventi.replica.urls";
+    private static final String USER_PROPERTY = "gestione-eventi.replica.user";
+    private static final String PASSWORD_PROPERTY = "gestione-eventi.replica.password";
+    private static final String POOL_SIZE_PROPERTY = "gestione-eventi.replica.pool-size";
+    private static final String STICKY_PROPERTY = "gestione-eventi.replica.sticky-ms";
+    private static final String CONNECTION_TIMEOUT_PROPERTY = "gestione-eventi.replica.connection-timeout-ms";
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final int DEFAULT_STICKY_MILLIS = 2_000;
+    private static final int DEFAULT_CONNECTION_TIMEOUT_MILLIS = 1_000;
+    // Una replica che non ha fornito una connessione viene riprovata solo dopo questo intervallo
+    private static final long RIPROVA_DOPO_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final SessionFactory sessionFactory;
+    private final List<Replica> repliche;
+    private final long stickyNanos;
+    private final AtomicInteger prossima = new AtomicInteger();
+    private final LongAdder lettureDalPrimario = new LongAdder();
+    private final ThreadLocal<Instradamento> instradamento = ThreadLocal.withInitial(Instradamento::new);
+    private final SessionEventListener commitListener = new SessionEventListener() {
+        @Override
+        public void transactionCompletion(boolean successful) {
+            if (successful) {
+                registraScrittura();
+            }
+        }
+    };
+
+    ReadReplicas(PersistenceRuntime runtime) {
+        this.sessionFactory = runtime.getEntityManagerFactory().unwrap(SessionFactory.class);
+        this.stickyNanos = TimeUnit.MILLISECONDS.toNanos(runtime.getPositiveInt(STICKY_PROPERTY, DEFAULT_STICKY_MILLIS));
+        this.repliche = creaRepliche(runtime);
+    }
+
+    private static List<Replica> creaRepliche(PersistenceRuntime runtime) {
+        String urls = proprieta(runtime, URLS_PROPERTY, "");
+        // Le credenziali del primario si leggono dal suo pool: nelle proprietà dell'EntityManagerFactory sono mascherate
+        HikariDataSource primario = runtime.getDataSource();
+        String user = proprieta(runtime, USER_PROPERTY, primario != null ? primario.getUsername() : null);
+        String password = proprieta(runtime, PASSWORD_PROPERTY, primario != null ? primario.getPassword() : null);
+        int poolSize = runtime.getPositiveInt(POOL_SIZE_PROPERTY,
+            runtime.getPositiveInt("hibernate.hikari.maximumPoolSize", DEFAULT_POOL_SIZE));
+        int connectionTimeout = runtime.getPositiveInt(CONNECTION_TIMEOUT_PROPERTY, DEFAULT_CONNECTION_TIMEOUT_MILLIS);
+
+        List<Replica> repliche = new ArrayList<>();
+        try {
+            for (String url : urls.split(",")) {
+                if (url.isBlank()) {
+                    continue;
+                }
+                HikariConfig config = new HikariConfig();
+                config.setPoolName("gestione-eventi-replica-" + (repliche.size() + 1));
+                config.setJdbcUrl(url.trim());
+                config.setUsername(user);
+                config.setPassword(password);
+                config.setMaximumPoolSize(poolSize);
+                config.setMinimumIdle(poolSize);
+                config.setConnectionTimeout(connectionTimeout);
+                config.setReadOnly(true);
+                // Una replica spenta all'avvio non blocca il runtime: il pool continua a riprovare in background
+                config.setInitializationFailTimeout(-1);
+                repliche.add(new Replica(config.getPoolName(), new HikariDataSource(config)));
+            }
+        } catch (RuntimeException e) {
+            repliche.forEach(replica -> replica.dataSource.close());
+            throw e;
+        }
+        return List.copyOf(repliche);
+    }
+
+    private static String proprieta(PersistenceRuntime runtime, String nome, String defaultValue) {
+        Object value = runtime.getEntityManagerFactory().getProperties().get(nome);
+        return value != null ? value.toString() : defaultValue;
+    }
+
+    /**
+     * Verifica se sono configurate delle repliche
+     * @return true se le letture possono essere instradate alle repliche
+     */
+    public boolean isAttive() {
+        return !repliche.isEmpty();
+    }
+
+    /**
+     * Verifica se le letture del thread corrente devono andare sul primario, per un commit recente
+     * o perché il thread è dentro dalPrimario()
+     * @return true se le letture del thread corrente vanno sul primario
+     */
+    public boolean isLetturaDalPrimario() {
+        Instradamento corrente = instradamento.get();
+        return corrente.dalPrimario > 0 || (corrente.scrittura && System.nanoTime() - corrente.primarioFino < 0);
+    }
+
+    /**
+     * Esegue il blocco leggendo dal primario, per le letture che devono vedere anche le modifiche
+     * committate da altri thread o processi un istante prima (ad esempio prima di un'operazione di scrittura)
+     * @param operazione le chiamate ai DAO da eseguire
+     * @return il risultato del blocco
+     */
+    public <T> T dalPrimario(Supplier<T> operazione) {
+        Instradamento corrente = instradamento.get();
+        corrente.dalPrimario++;
+        try {
+            return operazione.get();
+        } finally {
+            corrente.dalPrimario--;
+        }
+    }
+
+    /**
+     * Apre una sessione su una delle repliche disponibili, a rotazione
+     * @return la sessione sulla replica, oppure null se la lettura deve andare sul primario
+     */
+    EntityManager apriSessione() {
+        if (repliche.isEmpty()) {
+            return null;
+        }
+        if (!isLetturaDalPrimario()) {
+            for (int tentativo = 0; tentativo < repliche.size(); tentativo++) {
+                Replica replica = repliche.get(Math.floorMod(prossima.getAndIncrement(), repliche.size()));
+                Connection connection = replica.getConnection();
+                if (connection != null) {
+                    return apriSessione(replica, connection);
+                }
+            }
+        }
+        lettureDalPrimario.increment();
+        return null;
+    }
+
+    private EntityManager apriSessione(Replica replica, Connection connection) {
+        try {
+            Session session = sessionFactory.withOptions().connection(connection).openSession();
+            // La connessione è fornita alla sessione, quindi Hibernate non la restituisce al pool da solo
+            session.addEventListeners(new SessionEventListener() {
+                @Override
+                public void end() {
+                    chiudi(connection);
+                }
+            });
+            session.setCacheMode(CacheMode.GET);
+            replica.letture.increment();
+            return session;
+        } catch (RuntimeException e) {
+            chiudi(connection);
+            throw e;
+        }
+    }
+
+    private static void chiudi(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Errore durante la chiusura della connessione alla replica: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registra i commit dell'EntityManager sul primario, che spostano sul primario le letture del thread
+     * @param em l'EntityManager appena aperto sul primario
+     * @return lo stesso EntityManager
+     */
+    EntityManager tracciaScritture(EntityManager em) {
+        if (!repliche.isEmpty()) {
+            em.unwrap(Session.class).addEventListeners(commitListener);
+        }
+        return em;
+    }
+
+    private void registraScrittura() {
+        Instradamento corrente = instradamento.get();
+        corrente.scrittura = true;
+        corrente.primarioFino = System.nanoTime() + stickyNanos;
+    }
+
+    /**
+     * Lega l'operazione all'instradamento del thread corrente, per eseguirla su un altro thread
+     * Chiamato dal thread che invia l'operazione asincrona
+     * @param operazione l'operazione da eseguire
+     * @return l'operazione che sul thread di esecuzione legge dal primario se lo avrebbe fatto il chiamante
+     */
+    <T> Supplier<T> conInstradamentoCorrente(Supplier<T> operazione) {
+        if (repliche.isEmpty()) {
+            return operazione;
+        }
+        Instradamento chiamante = instradamento.get().copia();
+        return () -> {
+            Instradamento precedente = instradamento.get();
+            instradamento.set(chiamante);
+            try {
+                return operazione.get();
+            } finally {
+                instradamento.set(precedente);
+            }
+        };
+    }
+
+    /**
+     * Restituisce le statistiche di ogni replica
+     * @return le statistiche per replica, vuote se non ci sono repliche
+     */
+    public List<ReplicaStats> getStats() {
+        List<ReplicaStats> result = new ArrayList<>();
+        for (Replica replica : repliche) {
+            HikariPoolMXBean pool = replica.dataSource.getHikariPoolMXBean();
+            result.add(new ReplicaStats(replica.nome,
+                replica.letture.sum(),
+                replica.connessioniFallite.sum(),
+                !replica.isEsclusa(),
+                pool == null ? null : new PersistenceRuntime.PoolStats(
+                    pool.getActiveConnections(),
+                    pool.getIdleConnections(),
+                    pool.getTotalConnections(),
+                    pool.getThreadsAwaitingConnection(),
+                    replica.dataSource.getMaximumPoolSize())));
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il numero massimo di connessioni aperte insieme sulle repliche
+     * @return la somma delle dimensioni dei pool delle repliche, 0 se non ci sono repliche
+     */
+    public int getConnessioniMassime() {
+        int totale = 0;
+        for (Replica replica : repliche) {
+            totale += replica.dataSource.getMaximumPoolSize();
+        }
+        return totale;
+    }
+
+    /**
+     * Restituisce il numero di letture andate sul primario pur essendo configurate delle repliche
+     * (finestra dopo una scrittura, dalPrimario() o nessuna replica disponibile)
+     * @return il numero di letture sul primario
+     */
+    public long getLettureDalPrimario() {
+        return lettureDalPrimario.sum();
+    }
+
+    /**
+     * Chiude i pool delle repliche
+     */
+    @Override
+    public void close() {
+        for (Replica replica : repliche) {
+            replica.dataSource.close();
+        }
+    }
+
+    /**
+     * Stato dell'instradamento delle letture di un thread
+     */
+    private static final class Instradamento {
+
+        private boolean scrittura;
+        private long primarioFino;
+        private int dalPrimario;
+
+        Instradamento copia() {
+            Instradamento copia = new Instradamento();
+            copia.scrittura = scrittura;
+            copia.primarioFino = primarioFino;
+            copia.dalPrimario = dalPrimario;
+            return copia;
+        }
+    }
+
+    private static final class Replica {
+
+        private final String nome;
+        private final HikariDataSource dataSource;
+        private final LongAdder letture = new LongAdder();
+        private final LongAdder connessioniFallite = new LongAdder();
+        private volatile long esclusaDal;
+        private volatile boolean esclusa;
+
+        Replica(String nome, HikariDataSource dataSource) {
+            this.nome = nome;
+            this.dataSource = dataSource;
+        }
+
+        boolean isEsclusa() {
+            return esclusa && System.nanoTime() - esclusaDal < RIPROVA_DOPO_NANOS;
+        }
+
+        // Restituisce null se la replica non risponde entro connection-timeout-ms
+        Connection getConnection() {
+            if (isEsclusa()) {
+                return null;
+            }
+            try {
+                Connection connection = dataSource.getConnection();
+                esclusa = false;
+                return connection;
+            } catch (SQLException e) {
+                connessioniFallite.increment();
+                esclusaDal = System.nanoTime();
+                esclusa = true;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Statistiche di una replica
+     */
+    public record ReplicaStats(String nome, long letture, long connessioniFallite, boolean disponibile,
+                               PersistenceRuntime.PoolStats pool) {
+
+        @Override
+        public String toString() {
+            return "ReplicaStats{" +
+                    "nome='" + nome + '\'' +
+                    ", letture=" + letture +
+                    ", connessioniFallite=" + connessioniFallite +
+                    ", disponibile=" + disponibile +
+                    ", pool=" + pool +
+                    '}';
+        }
+    }
+}
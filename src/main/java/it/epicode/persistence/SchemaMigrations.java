@@ -0,0 +1,44 @@
+package it.epicode.persistence;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+
+/**
+ * Migrazioni versionate dello schema (Flyway), al posto di hibernate.hbm2ddl.auto=update
+ * Gli script sono in src/main/resources/db/migration (V<versione>__<descrizione>.sql) e vengono
+ * applicati una sola volta, in ordine; all'avvio Flyway legge solo la tabella flyway_schema_history
+ * invece di confrontare i metadati JDBC di ogni tabella con il mapping delle entità
+ * Un database creato in precedenza da hbm2ddl, senza storico delle migrazioni, viene registrato
+ * alla versione 1 (schema iniziale, identico a quello generato dalle entità originali) e riceve solo le
+ * migrazioni successive, a partire dalla 1.1 che aggiunge il contatore dei posti e il vincolo sulle iscrizioni
+ */
+public final class SchemaMigrations {
+
+    // Proprietà di persistence.xml che abilita le migrazioni all'avvio
+    public static final String MIGRATE_PROPERTY = "gestione-eventi.schema.migrate";
+
+    private static final String LOCATION = "classpath:db/migration";
+    private static final String BASELINE_VERSION = "1";
+
+    private SchemaMigrations() {}
+
+    /**
+     * Applica le migrazioni mancanti sul database del runtime
+     * @param runtime il runtime di persistenza di cui migrare lo schema
+     * @return il numero di migrazioni applicate
+     */
+    public static int migrate(PersistenceRuntime runtime) {
+        try {
+            return Flyway.configure()
+                .dataSource(runtime.getDataSource())
+                .locations(LOCATION)
+                .baselineOnMigrate(true)
+                .baselineVersion(BASELINE_VERSION)
+                .load()
+                .migrate()
+                .migrationsExecuted;
+        } catch (FlywayException e) {
+            throw new RuntimeException("Errore durante la migrazione dello schema", e);
+        }
+    }
+}
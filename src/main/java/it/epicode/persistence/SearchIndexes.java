@@ -0,0 +1,30 @@
+package it.epicode.persistence;
+
+/**
+ * Indici trigram (pg_trgm) per la ricerca per sottostringa sui campi testuali
+ * Gli indici GiST su lower(campo) servono le condizioni LIKE '%testo%' case-insensitive,
+ * che un indice B-tree non può usare, e l'ordinamento per somiglianza (operatore <<->),
+ * così una ricerca con LIMIT legge solo le prime righe in ordine di rilevanza
+ * La ricerca richiede almeno 3 caratteri per sfruttare l'indice
+ * Gli indici sono creati dalla migrazione V2__indici_ricerca_trigram.sql (vedi SchemaMigrations)
+ */
+public final class SearchIndexes {
+
+    private SearchIndexes() {}
+
+    /**
+     * Costruisce il pattern LIKE "contiene" per il testo indicato, con escape dei caratteri speciali
+     * @param testo il testo da cercare
+     * @return il pattern in minuscolo, da confrontare con lower(campo)
+     */
+    public static String containsPattern(String testo) {
+        StringBuilder pattern = new StringBuilder(testo.length() + 2).append('%');
+        for (char c : testo.toCharArray()) {
+            if (c == '%' || c == '_' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+}
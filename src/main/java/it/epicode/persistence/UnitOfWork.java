@@ -0,0 +1,292 @@
+package it.epicode.persistence;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.RollbackException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Unità di lavoro: più chiamate ai DAO condividono un solo EntityManager e una sola transazione
+ * Dentro esegui() runtime.createEntityManager() restituisce l'EntityManager dell'unità, quindi ogni DAO
+ * usa la stessa connessione e lo stesso persistence context e il commit avviene una volta sola alla fine.
+ * Le transazioni aperte dai DAO partecipano a quella dell'unità: begin() non fa nulla, commit() esegue
+ * solo il flush (così gli errori arrivano comunque al DAO che li ha causati) e rollback() marca l'unità
+ * per il rollback, che avviene alla fine di esegui() con una RollbackException.
+ * L'unità è legata al thread: i metodi async dei DAO e gli stream di QueryStreams usano sempre un
+ * EntityManager proprio e non vedono le modifiche non ancora committate dall'unità.
+ */
+public final class UnitOfWork {
+
+    /**
+     * Regole di propagazione di esegui() rispetto all'unità già attiva sul thread
+     */
+    public enum Propagazione {
+        /** Partecipa all'unità attiva, oppure ne apre una nuova */
+        REQUIRED,
+        /** Apre sempre una nuova unità, sospendendo quella attiva fino alla fine del blocco */
+        REQUIRES_NEW,
+        /** Partecipa all'unità attiva; senza un'unità attiva lancia IllegalStateException */
+        MANDATORY,
+        /** Sospende l'unità attiva: nel blocco ogni DAO torna a usare EntityManager e transazioni propri */
+        NOT_SUPPORTED
+    }
+
+    private final PersistenceRuntime runtime;
+    // Unità del thread corrente; in cima c'è quella attiva (SOSPESA se il blocco è NOT_SUPPORTED)
+    private final ThreadLocal<Deque<Unita>> unita = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private UnitOfWork(PersistenceRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    /**
+     * Restituisce l'unità di lavoro del runtime
+     * @param runtime il runtime di persistenza
+     * @return l'unità di lavoro condivisa dai DAO del runtime
+     */
+    public static UnitOfWork of(PersistenceRuntime runtime) {
+        return runtime.getComponent(UnitOfWork.class, UnitOfWork::new);
+    }
+
+    /**
+     * Esegue il blocco con propagazione REQUIRED
+     * @param operazione le chiamate ai DAO da eseguire nella stessa transazione
+     * @return il risultato del blocco
+     */
+    public <T> T esegui(Supplier<T> operazione) {
+        return esegui(Propagazione.REQUIRED, operazione);
+    }
+
+    /**
+     * Esegue il blocco con propagazione REQUIRED
+     * @param operazione le chiamate ai DAO da eseguire nella stessa transazione
+     */
+    public void esegui(Runnable operazione) {
+        esegui(Propagazione.REQUIRED, operazione);
+    }
+
+    /**
+     * Esegue il blocco con la propagazione indicata
+     * @param propagazione come il blocco si comporta rispetto all'unità già attiva
+     * @param operazione le chiamate ai DAO da eseguire
+     */
+    public void esegui(Propagazione propagazione, Runnable operazione) {
+        esegui(propagazione, () -> {
+            operazione.run();
+            return null;
+        });
+    }
+
+    /**
+     * Esegue il blocco con la propagazione indicata
+     * Un'eccezione che esce dal blocco annulla l'unità che lo contiene; se il blocco termina normalmente
+     * ma un DAO ha fatto rollback, l'unità viene annullata e viene lanciata una RollbackException
+     * @param propagazione come il blocco si comporta rispetto all'unità già attiva
+     * @param operazione le chiamate ai DAO da eseguire
+     * @return il risultato del blocco
+     */
+    public <T> T esegui(Propagazione propagazione, Supplier<T> operazione) {
+        Unita attiva = getUnitaAttiva();
+        switch (propagazione) {
+            case MANDATORY:
+                if (attiva == null) {
+                    throw new IllegalStateException("Nessuna unità di lavoro attiva sul thread corrente");
+                }
+                return partecipa(attiva, operazione);
+            case REQUIRED:
+                return attiva != null ? partecipa(attiva, operazione) : inNuovaUnita(operazione);
+            case REQUIRES_NEW:
+                return inNuovaUnita(operazione);
+            case NOT_SUPPORTED:
+                if (attiva == null) {
+                    return operazione.get();
+                }
+                unita.get().push(Unita.SOSPESA);
+                try {
+                    return operazione.get();
+                } finally {
+                    unita.get().pop();
+                }
+            default:
+                throw new IllegalArgumentException("Propagazione non gestita: " + propagazione);
+        }
+    }
+
+    /**
+     * Verifica se sul thread corrente è attiva un'unità di lavoro
+     * @return true se le chiamate ai DAO partecipano a un'unità di lavoro
+     */
+    public boolean isAttiva() {
+        return getUnitaAttiva() != null;
+    }
+
+    /**
+     * Restituisce l'EntityManager dell'unità attiva sul thread corrente
+     * @return l'EntityManager condiviso, oppure null se non c'è un'unità attiva
+     */
+    EntityManager getEntityManagerCondiviso() {
+        Unita attiva = getUnitaAttiva();
+        return attiva != null ? attiva.condiviso : null;
+    }
+
+    /**
+     * Rimanda l'azione al commit dell'unità attiva; in caso di rollback l'azione viene scartata
+     * @param azione l'azione da eseguire dopo il commit
+     * @return false se non c'è un'unità attiva e l'azione va eseguita subito
+     */
+    boolean rimandaDopoCommit(Runnable azione) {
+        Unita attiva = getUnitaAttiva();
+        if (attiva == null) {
+            return false;
+        }
+        attiva.dopoCommit.add(azione);
+        return true;
+    }
+
+    private Unita getUnitaAttiva() {
+        Unita attiva = unita.get().peek();
+        return attiva == null || attiva == Unita.SOSPESA ? null : attiva;
+    }
+
+    private <T> T partecipa(Unita attiva, Supplier<T> operazione) {
+        try {
+            return operazione.get();
+        } catch (RuntimeException | Error e) {
+            attiva.rollbackOnly = true;
+            throw e;
+        }
+    }
+
+    private <T> T inNuovaUnita(Supplier<T> operazione) {
+        EntityManager em = runtime.createPrimaryEntityManager();
+        Unita nuova = new Unita(em);
+        Deque<Unita> pila = unita.get();
+        pila.push(nuova);
+        T risultato;
+        try {
+            em.getTransaction().begin();
+            risultato = operazione.get();
+            if (nuova.rollbackOnly) {
+                em.getTransaction().rollback();
+                throw new RollbackException("Unità di lavoro annullata: un'operazione ha richiesto il rollback");
+            }
+            try {
+                em.getTransaction().commit();
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Errore durante il commit dell'unità di lavoro", e);
+            }
+        } catch (RuntimeException | Error e) {
+            try {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            } catch (RuntimeException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            pila.pop();
+            if (pila.isEmpty()) {
+                unita.remove();
+            }
+            em.close();
+        }
+        // Le azioni post-commit girano fuori dall'unità, come dopo il commit di un singolo DAO
+        nuova.dopoCommit.forEach(Runnable::run);
+        return risultato;
+    }
+
+    /**
+     * Stato di un'unità di lavoro aperta
+     */
+    private static final class Unita {
+
+        static final Unita SOSPESA = new Unita(null);
+
+        final EntityManager em;
+        final EntityManager condiviso;
+        final List<Runnable> dopoCommit = new ArrayList<>();
+        boolean rollbackOnly;
+
+        Unita(EntityManager em) {
+            this.em = em;
+            this.condiviso = em != null ? creaCondiviso() : null;
+        }
+
+        /**
+         * EntityManager passato ai DAO: close() e clear() non hanno effetto perché il persistence context
+         * appartiene all'unità, getTransaction() restituisce la transazione partecipante
+         */
+        private EntityManager creaCondiviso() {
+            EntityTransaction partecipante = new Partecipante();
+            return (EntityManager) Proxy.newProxyInstance(
+                EntityManager.class.getClassLoader(),
+                new Class<?>[] {EntityManager.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                        case "clear":
+                            return null;
+                        case "getTransaction":
+                            return partecipante;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "UnitOfWork[" + em + "]";
+                        default:
+                            try {
+                                return method.invoke(em, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+        }
+
+        /**
+         * Transazione di un DAO dentro l'unità
+         */
+        private final class Partecipante implements EntityTransaction {
+
+            @Override
+            public void begin() {
+            }
+
+            @Override
+            public void commit() {
+                if (rollbackOnly) {
+                    throw new RollbackException("Unità di lavoro marcata per il rollback");
+                }
+                em.flush();
+            }
+
+            @Override
+            public void rollback() {
+                rollbackOnly = true;
+            }
+
+            @Override
+            public void setRollbackOnly() {
+                rollbackOnly = true;
+            }
+
+            @Override
+            public boolean getRollbackOnly() {
+                return rollbackOnly;
+            }
+
+            @Override
+            public boolean isActive() {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package it.epicode.repository;
+
+import it.epicode.entities.Evento;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository degli eventi
+ */
+public interface EventoRepository extends Repository<Evento> {
+
+    /**
+     * Ricerca parziale per titolo
+     * @param titolo il testo contenuto nel titolo
+     * @return gli eventi che corrispondono
+     */
+    List<Evento> findByTitolo(String titolo);
+
+    /**
+     * Gli eventi tra due date, estremi compresi, ordinati per data e ID
+     * @param da la prima data
+     * @param a l'ultima data
+     * @return gli eventi dell'intervallo
+     */
+    default List<Evento> findByDataEvento(LocalDate da, LocalDate a) {
+        return findByDataEvento(RicercaEventi.tra(da, a));
+    }
+
+    /**
+     * Gli eventi che soddisfano i criteri, ordinati per data e ID
+     * @param ricerca intervallo di date, città e tipo
+     * @return gli eventi trovati
+     */
+    List<Evento> findByDataEvento(RicercaEventi ricerca);
+
+    /**
+     * Paginazione keyset ordinata per data e ID: gli eventi che soddisfano i criteri e seguono ultimo
+     * @param ricerca intervallo di date, città e tipo
+     * @param ultimo l'ultimo evento della pagina precedente (ne contano data e ID), null per la prima pagina
+     * @param limit il numero massimo di eventi
+     * @return la pagina di eventi
+     */
+    List<Evento> findByDataEventoAfter(RicercaEventi ricerca, Evento ultimo, int limit);
+
+    /**
+     * @param eventoId l'ID dell'evento
+     * @return il numero di posti disponibili, o null se l'evento non esiste
+     */
+    Integer getPostiDisponibili(Long eventoId);
+
+    /**
+     * @param eventoId l'ID dell'evento
+     * @return true se ci sono posti disponibili, false se l'evento è pieno o non esiste
+     */
+    boolean hasPostiDisponibili(Long eventoId);
+}
@@ -0,0 +1,24 @@
+package it.epicode.repository;
+
+import it.epicode.entities.Location;
+import java.util.List;
+
+/**
+ * Repository delle location
+ */
+public interface LocationRepository extends Repository<Location> {
+
+    /**
+     * Ricerca parziale per nome
+     * @param nome il testo contenuto nel nome
+     * @return le location che corrispondono
+     */
+    List<Location> findByNome(String nome);
+
+    /**
+     * Ricerca parziale per città
+     * @param citta il testo contenuto nella città
+     * @return le location che corrispondono
+     */
+    List<Location> findByCitta(String citta);
+}
@@ -0,0 +1,93 @@
+package it.epicode.repository;
+
+import it.epicode.dto.PartecipazioneView;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository delle partecipazioni
+ * save, saveAll e register verificano la capienza dell'evento (PostiEsauritiException);
+ * register e iscrivi segnalano le iscrizioni doppie con PersonaGiaIscrittaException
+ */
+public interface PartecipazioneRepository extends Repository<Partecipazione> {
+
+    /**
+     * Iscrive una persona a un evento come CONFERMATA
+     * @param personaId l'ID della persona
+     * @param eventoId l'ID dell'evento
+     * @return la partecipazione creata
+     */
+    Partecipazione register(Long personaId, Long eventoId);
+
+    /**
+     * Iscrive delle persone a un evento: tutte o nessuna
+     * @param eventoId l'ID dell'evento
+     * @param personaIds gli ID delle persone da iscrivere
+     * @param stato lo stato delle nuove partecipazioni
+     * @return le partecipazioni create
+     */
+    List<Partecipazione> iscrivi(Long eventoId, Collection<Long> personaIds, Partecipazione.Stato stato);
+
+    /**
+     * @param persona la persona
+     * @return le partecipazioni della persona
+     */
+    List<Partecipazione> findByPersona(Persona persona);
+
+    /**
+     * @param evento l'evento
+     * @return le partecipazioni all'evento
+     */
+    List<Partecipazione> findByEvento(Evento evento);
+
+    /**
+     * @param stato lo stato da cercare
+     * @return le partecipazioni con lo stato indicato
+     */
+    List<Partecipazione> findByStato(Partecipazione.Stato stato);
+
+    /**
+     * @param personaId l'ID della persona
+     * @return le partecipazioni della persona come proiezioni in sola lettura
+     */
+    List<PartecipazioneView> findViewByPersona(Long personaId);
+
+    /**
+     * @param eventoId l'ID dell'evento
+     * @return i partecipanti dell'evento come proiezioni in sola lettura
+     */
+    List<PartecipazioneView> findViewByEvento(Long eventoId);
+
+    /**
+     * @param personaId l'ID della persona
+     * @param eventoId l'ID dell'evento
+     * @return true se la persona è iscritta all'evento
+     */
+    boolean isPersonaIscritta(Long personaId, Long eventoId);
+
+    /**
+     * @param personaIds gli ID delle persone da verificare
+     * @param eventoId l'ID dell'evento
+     * @return per ogni ID, nell'ordine ricevuto, true se la persona è iscritta
+     */
+    Map<Long, Boolean> areIscritte(Collection<Long> personaIds, Long eventoId);
+
+    /**
+     * Conferma tutte le partecipazioni DA_CONFERMARE di un evento
+     * @param eventoId l'ID dell'evento
+     * @return il numero di partecipazioni confermate
+     */
+    int confirmAll(Long eventoId);
+
+    /**
+     * Imposta lo stato delle partecipazioni indicate
+     * @param ids gli ID delle partecipazioni
+     * @param stato il nuovo stato
+     * @return il numero di partecipazioni aggiornate
+     */
+    int updateStato(Collection<Long> ids, Partecipazione.Stato stato);
+}
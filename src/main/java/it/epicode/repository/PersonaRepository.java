@@ -0,0 +1,24 @@
+package it.epicode.repository;
+
+import it.epicode.entities.Persona;
+import java.util.List;
+
+/**
+ * Repository delle persone
+ */
+public interface PersonaRepository extends Repository<Persona> {
+
+    /**
+     * @param email l'email da cercare
+     * @return la persona con l'email indicata o null se non esiste
+     */
+    Persona findByEmail(String email);
+
+    /**
+     * Ricerca parziale per nome e cognome
+     * @param nome il testo contenuto nel nome
+     * @param cognome il testo contenuto nel cognome
+     * @return le persone che corrispondono ai criteri
+     */
+    List<Persona> findByNomeCognome(String nome, String cognome);
+}
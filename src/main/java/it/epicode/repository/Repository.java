@@ -0,0 +1,59 @@
+package it.epicode.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Operazioni comuni ai repository delle entità
+ * Implementate dai DAO JPA (it.epicode.dao) e dai repository in memoria (it.epicode.repository.memory),
+ * così il codice che dipende dalle interfacce può usare l'uno o l'altro senza modifiche
+ * @param <T> il tipo dell'entità
+ */
+public interface Repository<T> {
+
+    /**
+     * Salva una nuova entità e le assegna l'ID generato
+     * @param entita l'entità da salvare
+     * @return l'entità salvata
+     */
+    T save(T entita);
+
+    /**
+     * Salva più entità nuove in un'unica operazione
+     * @param entita le entità da salvare
+     * @return il numero di entità salvate
+     */
+    long saveAll(Collection<T> entita);
+
+    /**
+     * @param id l'ID dell'entità
+     * @return l'entità trovata o null se non esiste
+     */
+    T findById(Long id);
+
+    /**
+     * @return tutte le entità
+     */
+    List<T> findAll();
+
+    /**
+     * Paginazione keyset: le entità con ID maggiore di lastId, ordinate per ID
+     * @param lastId l'ultimo ID della pagina precedente, null per la prima pagina
+     * @param limit il numero massimo di entità
+     * @return la pagina di entità
+     */
+    List<T> findAllAfter(Long lastId, int limit);
+
+    /**
+     * Aggiorna un'entità esistente
+     * @param entita l'entità da aggiornare
+     * @return l'entità aggiornata
+     */
+    T update(T entita);
+
+    /**
+     * Elimina un'entità e quelle che dipendono da essa
+     * @param id l'ID dell'entità da eliminare
+     */
+    void deleteById(Long id);
+}
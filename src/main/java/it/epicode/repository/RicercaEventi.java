@@ -0,0 +1,61 @@
+package it.epicode.repository;
+
+import it.epicode.entities.Evento;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Objects;
+
+/**
+ * Criteri di ricerca degli eventi per intervallo di date, con città della location e tipo facoltativi
+ * Esempi: RicercaEventi.prossimiGiorni(30), RicercaEventi.nelMese(YearMonth.of(2024, 6)).inCitta("Roma")
+ * @param da la prima data compresa
+ * @param a l'ultima data compresa
+ * @param citta la città della location (uguaglianza esatta), null per tutte
+ * @param tipo il tipo di evento, null per tutti
+ */
+public record RicercaEventi(LocalDate da, LocalDate a, String citta, Evento.TipoEvento tipo) {
+
+    public RicercaEventi {
+        Objects.requireNonNull(da, "da");
+        Objects.requireNonNull(a, "a");
+        if (a.isBefore(da)) {
+            throw new IllegalArgumentException("Intervallo di date non valido: " + da + " - " + a);
+        }
+    }
+
+    /**
+     * Gli eventi tra due date, estremi compresi
+     */
+    public static RicercaEventi tra(LocalDate da, LocalDate a) {
+        return new RicercaEventi(da, a, null, null);
+    }
+
+    /**
+     * Gli eventi da oggi ai prossimi giorni indicati
+     */
+    public static RicercaEventi prossimiGiorni(int giorni) {
+        LocalDate oggi = LocalDate.now();
+        return tra(oggi, oggi.plusDays(giorni));
+    }
+
+    /**
+     * Gli eventi del mese indicato
+     */
+    public static RicercaEventi nelMese(YearMonth mese) {
+        return tra(mese.atDay(1), mese.atEndOfMonth());
+    }
+
+    /**
+     * Gli stessi criteri limitati alle location della città indicata
+     */
+    public RicercaEventi inCitta(String citta) {
+        return new RicercaEventi(da, a, citta, tipo);
+    }
+
+    /**
+     * Gli stessi criteri limitati al tipo di evento indicato
+     */
+    public RicercaEventi diTipo(Evento.TipoEvento tipo) {
+        return new RicercaEventi(da, a, citta, tipo);
+    }
+}
@@ -0,0 +1,141 @@
+package it.epicode.repository.memory;
+
+import java.util.function.Consumer;
+
+/**
+ * Mappa con chiavi long primitive a indirizzamento aperto (probing lineare), senza boxing delle chiavi
+ * La chiave 0 è riservata alla cella vuota: gli ID generati partono da 1
+ * Non è thread-safe: le scritture avvengono sotto il lock di MemoryDatabase. get() tollera letture
+ * concorrenti a una scrittura (restituisce un valore qualsiasi o null, mai un'eccezione), quindi si può
+ * usare nelle letture ottimistiche validate dopo
+ */
+final class LongMap<V> {
+
+    private static final int CAPACITA_INIZIALE = 16;
+
+    private long[] chiavi;
+    private Object[] valori;
+    private int size;
+
+    LongMap() {
+        chiavi = new long[CAPACITA_INIZIALE];
+        valori = new Object[CAPACITA_INIZIALE];
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long chiave) {
+        long[] chiavi = this.chiavi;
+        Object[] valori = this.valori;
+        if (chiave == 0 || chiavi.length != valori.length) {
+            return null;
+        }
+        int maschera = chiavi.length - 1;
+        int posizione = indice(chiave, maschera);
+        for (int i = 0; i < chiavi.length; i++) {
+            long corrente = chiavi[posizione];
+            if (corrente == chiave) {
+                return (V) valori[posizione];
+            }
+            if (corrente == 0) {
+                return null;
+            }
+            posizione = (posizione + 1) & maschera;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long chiave, V valore) {
+        if (chiave == 0) {
+            throw new IllegalArgumentException("La chiave 0 è riservata");
+        }
+        if ((size + 1) * 2 > chiavi.length) {
+            ridimensiona(chiavi.length * 2);
+        }
+        int maschera = chiavi.length - 1;
+        int posizione = indice(chiave, maschera);
+        while (chiavi[posizione] != 0) {
+            if (chiavi[posizione] == chiave) {
+                V precedente = (V) valori[posizione];
+                valori[posizione] = valore;
+                return precedente;
+            }
+            posizione = (posizione + 1) & maschera;
+        }
+        // Il valore va scritto prima della chiave: una lettura concorrente non vede mai la chiave senza valore
+        valori[posizione] = valore;
+        chiavi[posizione] = chiave;
+        size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long chiave) {
+        if (chiave == 0) {
+            return null;
+        }
+        int maschera = chiavi.length - 1;
+        int posizione = indice(chiave, maschera);
+        while (chiavi[posizione] != chiave) {
+            if (chiavi[posizione] == 0) {
+                return null;
+            }
+            posizione = (posizione + 1) & maschera;
+        }
+        V rimosso = (V) valori[posizione];
+        // Cancellazione con spostamento all'indietro: nessuna lapide, le ricerche restano brevi
+        int libera = posizione;
+        int successiva = (libera + 1) & maschera;
+        while (chiavi[successiva] != 0) {
+            int ideale = indice(chiavi[successiva], maschera);
+            if (((successiva - ideale) & maschera) >= ((successiva - libera) & maschera)) {
+                chiavi[libera] = chiavi[successiva];
+                valori[libera] = valori[successiva];
+                libera = successiva;
+            }
+            successiva = (successiva + 1) & maschera;
+        }
+        chiavi[libera] = 0;
+        valori[libera] = null;
+        size--;
+        return rimosso;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<V> azione) {
+        for (int i = 0; i < chiavi.length; i++) {
+            if (chiavi[i] != 0) {
+                azione.accept((V) valori[i]);
+            }
+        }
+    }
+
+    private void ridimensiona(int capacita) {
+        long[] vecchieChiavi = chiavi;
+        Object[] vecchiValori = valori;
+        long[] nuoveChiavi = new long[capacita];
+        Object[] nuoviValori = new Object[capacita];
+        int maschera = capacita - 1;
+        for (int i = 0; i < vecchieChiavi.length; i++) {
+            if (vecchieChiavi[i] != 0) {
+                int posizione = indice(vecchieChiavi[i], maschera);
+                while (nuoveChiavi[posizione] != 0) {
+                    posizione = (posizione + 1) & maschera;
+                }
+                nuoveChiavi[posizione] = vecchieChiavi[i];
+                nuoviValori[posizione] = vecchiValori[i];
+            }
+        }
+        valori = nuoviValori;
+        chiavi = nuoveChiavi;
+    }
+
+    private static int indice(long chiave, int maschera) {
+        long h = chiave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & maschera;
+    }
+}
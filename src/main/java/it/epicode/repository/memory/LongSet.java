@@ -0,0 +1,87 @@
+package it.epicode.repository.memory;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Insieme ordinato di long primitivi su un array, usato per gli indici secondari e per l'elenco degli ID
+ * Ricerca binaria per contains; aggiungere in coda (ID crescenti) costa O(1), altrove O(n) con System.arraycopy
+ * Non è thread-safe: le scritture avvengono sotto il lock di MemoryDatabase
+ */
+final class LongSet {
+
+    private static final long[] VUOTO = new long[0];
+
+    private long[] ids = VUOTO;
+    private int size;
+
+    boolean add(long id) {
+        if (size > 0 && ids[size - 1] < id) {
+            cresci();
+            ids[size++] = id;
+            return true;
+        }
+        int posizione = Arrays.binarySearch(ids, 0, size, id);
+        if (posizione >= 0) {
+            return false;
+        }
+        posizione = -posizione - 1;
+        cresci();
+        System.arraycopy(ids, posizione, ids, posizione + 1, size - posizione);
+        ids[posizione] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(long id) {
+        int posizione = Arrays.binarySearch(ids, 0, size, id);
+        if (posizione < 0) {
+            return false;
+        }
+        System.arraycopy(ids, posizione + 1, ids, posizione, size - posizione - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(long id) {
+        long[] ids = this.ids;
+        int size = Math.min(this.size, ids.length);
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(LongConsumer azione) {
+        for (int i = 0; i < size; i++) {
+            azione.accept(ids[i]);
+        }
+    }
+
+    /**
+     * Copia degli ID in ordine crescente
+     */
+    long[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Gli ID maggiori di lastId in ordine crescente, al più limit
+     */
+    long[] dopo(long lastId, int limit) {
+        int inizio = Arrays.binarySearch(ids, 0, size, lastId);
+        inizio = inizio >= 0 ? inizio + 1 : -inizio - 1;
+        return Arrays.copyOfRange(ids, inizio, inizio + Math.max(0, Math.min(limit, size - inizio)));
+    }
+
+    private void cresci() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(8, size + (size >> 1)));
+        }
+    }
+}
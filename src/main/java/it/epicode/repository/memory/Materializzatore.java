@@ -0,0 +1,110 @@
+package it.epicode.repository.memory;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.repository.memory.MemoryDatabase.EventoRiga;
+import it.epicode.repository.memory.MemoryDatabase.LocationRiga;
+import it.epicode.repository.memory.MemoryDatabase.PartecipazioneRiga;
+import it.epicode.repository.memory.MemoryDatabase.PersonaRiga;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Crea le entità a partire dalle righe del database in memoria
+ * Dentro lo stesso risultato persone, eventi e location con lo stesso ID sono la stessa istanza,
+ * come nel persistence context di JPA; le collezioni inverse (partecipazioni, eventi) restano vuote
+ */
+final class Materializzatore {
+
+    // version e postiOccupati sono gestiti da Hibernate e non hanno setter pubblici
+    private static final VarHandle VERSION;
+    private static final VarHandle POSTI_OCCUPATI;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(Evento.class, MethodHandles.lookup());
+            VERSION = lookup.findVarHandle(Evento.class, "version", Long.class);
+            POSTI_OCCUPATI = lookup.findVarHandle(Evento.class, "postiOccupati", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MemoryDatabase db;
+    private LongMap<Persona> persone;
+    private LongMap<Evento> eventi;
+    private LongMap<Location> locations;
+
+    Materializzatore(MemoryDatabase db) {
+        this.db = db;
+    }
+
+    static Persona persona(PersonaRiga riga) {
+        Persona persona = new Persona(riga.nome(), riga.cognome(), riga.email(), riga.dataNascita(), riga.sesso());
+        persona.setId(riga.id());
+        return persona;
+    }
+
+    static Location location(LocationRiga riga) {
+        Location location = new Location(riga.nome(), riga.citta());
+        location.setId(riga.id());
+        return location;
+    }
+
+    static void impostaStato(Evento evento, long version, int postiOccupati) {
+        VERSION.set(evento, version);
+        POSTI_OCCUPATI.set(evento, postiOccupati);
+    }
+
+    Persona persona(long id) {
+        if (persone == null) {
+            persone = new LongMap<>();
+        }
+        Persona persona = persone.get(id);
+        if (persona == null) {
+            persona = persona(db.persone.get(id));
+            persone.put(id, persona);
+        }
+        return persona;
+    }
+
+    Location location(long id) {
+        if (locations == null) {
+            locations = new LongMap<>();
+        }
+        Location location = locations.get(id);
+        if (location == null) {
+            location = location(db.locations.get(id));
+            locations.put(id, location);
+        }
+        return location;
+    }
+
+    Evento evento(EventoRiga riga) {
+        Evento evento = new Evento(riga.titolo(), riga.dataEvento(), riga.descrizione(), riga.tipoEvento(),
+            riga.numeroMassimoPartecipanti(), location(riga.locationId()));
+        evento.setId(riga.id());
+        impostaStato(evento, riga.version(), riga.postiOccupati());
+        return evento;
+    }
+
+    Evento evento(long id) {
+        if (eventi == null) {
+            eventi = new LongMap<>();
+        }
+        Evento evento = eventi.get(id);
+        if (evento == null) {
+            evento = evento(db.eventi.get(id));
+            eventi.put(id, evento);
+        }
+        return evento;
+    }
+
+    Partecipazione partecipazione(PartecipazioneRiga riga) {
+        Partecipazione partecipazione = new Partecipazione(persona(riga.personaId()), evento(riga.eventoId()), riga.stato());
+        partecipazione.setId(riga.id());
+        return partecipazione;
+    }
+}
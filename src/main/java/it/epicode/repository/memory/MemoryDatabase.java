@@ -0,0 +1,338 @@
+package it.epicode.repository.memory;
+
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.persistence.QueryStreams;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Database in memoria su cui lavorano i repository di questo package
+ * Ogni tabella è una mappa con chiavi long primitive verso righe immutabili, più l'elenco ordinato degli ID;
+ * gli indici secondari coprono email, città, location e data degli eventi ed eventi/persone delle partecipazioni.
+ * Le scritture sono serializzate da uno StampedLock (vincoli, capienza e cancellazioni in cascata restano
+ * coerenti tra le tabelle); le letture per chiave sono ottimistiche e non toccano il lock, le scansioni
+ * prendono il lock in lettura e procedono in parallelo.
+ * I repository restituiscono sempre entità nuove: modificarle non cambia il database finché non si chiama update()
+ */
+public final class MemoryDatabase {
+
+    record PersonaRiga(long id, String nome, String cognome, String email, LocalDate dataNascita, Persona.Sesso sesso) {}
+
+    record LocationRiga(long id, String nome, String citta) {}
+
+    record EventoRiga(long id, String titolo, LocalDate dataEvento, String descrizione, Evento.TipoEvento tipoEvento,
+                      int numeroMassimoPartecipanti, long version, int postiOccupati, long locationId) {
+
+        EventoRiga conPostiOccupati(int posti) {
+            return new EventoRiga(id, titolo, dataEvento, descrizione, tipoEvento, numeroMassimoPartecipanti,
+                version, posti, locationId);
+        }
+    }
+
+    record PartecipazioneRiga(long id, long personaId, long eventoId, Partecipazione.Stato stato) {}
+
+    private final StampedLock lock = new StampedLock();
+
+    final Tabella<PersonaRiga> persone = new Tabella<>();
+    final Tabella<LocationRiga> locations = new Tabella<>();
+    final Tabella<EventoRiga> eventi = new Tabella<>();
+    final Tabella<PartecipazioneRiga> partecipazioni = new Tabella<>();
+
+    // Indici secondari; quello per email è letto anche dalle letture ottimistiche, quindi è concorrente
+    final Map<String, Long> personePerEmail = new ConcurrentHashMap<>();
+    final Map<String, LongSet> locationsPerCitta = new HashMap<>();
+    final LongMap<LongSet> eventiPerLocation = new LongMap<>();
+    final NavigableMap<LocalDate, LongSet> eventiPerData = new TreeMap<>();
+    final LongMap<LongSet> partecipazioniPerEvento = new LongMap<>();
+    final LongMap<LongSet> partecipazioniPerPersona = new LongMap<>();
+    final LongMap<LongSet> iscrittiPerEvento = new LongMap<>();
+
+    /**
+     * Carica in memoria una fotografia del database, ad esempio per usarla come cache di sola lettura
+     * Le tabelle vengono lette in streaming con una query per tabella; le modifiche fatte poi sulla copia
+     * in memoria non vengono scritte sul database
+     * @param runtime il runtime di persistenza da cui leggere
+     * @return il database in memoria con gli stessi ID del database
+     */
+    public static MemoryDatabase caricaDa(PersistenceRuntime runtime) {
+        MemoryDatabase db = new MemoryDatabase();
+        db.scrittura(() -> {
+            leggi(runtime, "SELECT l.id, l.nome, l.citta FROM Location l", r ->
+                db.inserisciLocation(new LocationRiga((Long) r[0], (String) r[1], (String) r[2])));
+            leggi(runtime, "SELECT p.id, p.nome, p.cognome, p.email, p.dataNascita, p.sesso FROM Persona p", r ->
+                db.inserisciPersona(new PersonaRiga((Long) r[0], (String) r[1], (String) r[2], (String) r[3],
+                    (LocalDate) r[4], (Persona.Sesso) r[5])));
+            leggi(runtime, "SELECT e.id, e.titolo, e.dataEvento, e.descrizione, e.tipoEvento, " +
+                    "e.numeroMassimoPartecipanti, e.version, e.postiOccupati, e.location.id FROM Evento e", r ->
+                db.inserisciEvento(new EventoRiga((Long) r[0], (String) r[1], (LocalDate) r[2], (String) r[3],
+                    (Evento.TipoEvento) r[4], (Integer) r[5], (Long) r[6], (Integer) r[7], (Long) r[8])));
+            leggi(runtime, "SELECT p.id, p.persona.id, p.evento.id, p.stato FROM Partecipazione p", r ->
+                db.inserisciPartecipazione(new PartecipazioneRiga((Long) r[0], (Long) r[1], (Long) r[2],
+                    (Partecipazione.Stato) r[3])));
+            return null;
+        });
+        return db;
+    }
+
+    private static void leggi(PersistenceRuntime runtime, String jpql, Consumer<Object[]> azione) {
+        try (Stream<Object[]> righe = QueryStreams.stream(runtime, em -> em.createQuery(jpql, Object[].class))) {
+            righe.forEach(azione);
+        }
+    }
+
+    /**
+     * Lettura di poche righe per chiave: prima senza lock, ripetuta con il lock in lettura se nel frattempo
+     * c'è stata una scrittura. La lettura non deve avere effetti collaterali perché può essere ripetuta
+     */
+    <T> T letturaPuntuale(Supplier<T> lettura) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T risultato = lettura.get();
+                if (lock.validate(stamp)) {
+                    return risultato;
+                }
+            } catch (RuntimeException e) {
+                // Stato intermedio di una scrittura concorrente: si ripete con il lock
+            }
+        }
+        return lettura(lettura);
+    }
+
+    <T> T lettura(Supplier<T> lettura) {
+        long stamp = lock.readLock();
+        try {
+            return lettura.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    <T> T scrittura(Supplier<T> scrittura) {
+        long stamp = lock.writeLock();
+        try {
+            return scrittura.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // I metodi seguenti vanno chiamati dentro scrittura(): aggiornano tabelle e indici insieme
+
+    void inserisciPersona(PersonaRiga riga) {
+        persone.inserisci(riga.id(), riga);
+        personePerEmail.put(riga.email(), riga.id());
+    }
+
+    void sostituisciPersona(PersonaRiga precedente, PersonaRiga riga) {
+        if (!precedente.email().equals(riga.email())) {
+            personePerEmail.remove(precedente.email());
+            personePerEmail.put(riga.email(), riga.id());
+        }
+        persone.sostituisci(riga.id(), riga);
+    }
+
+    /**
+     * Elimina la persona e in cascata le sue partecipazioni, liberando i posti negli eventi
+     */
+    void rimuoviPersona(PersonaRiga riga) {
+        LongSet ids = partecipazioniPerPersona.get(riga.id());
+        if (ids != null) {
+            for (long id : ids.toArray()) {
+                rimuoviPartecipazione(partecipazioni.get(id), true);
+            }
+        }
+        persone.rimuovi(riga.id());
+        personePerEmail.remove(riga.email());
+    }
+
+    void inserisciLocation(LocationRiga riga) {
+        locations.inserisci(riga.id(), riga);
+        locationsPerCitta.computeIfAbsent(riga.citta(), c -> new LongSet()).add(riga.id());
+    }
+
+    void sostituisciLocation(LocationRiga precedente, LocationRiga riga) {
+        if (!precedente.citta().equals(riga.citta())) {
+            rimuoviDa(locationsPerCitta, precedente.citta(), riga.id());
+            locationsPerCitta.computeIfAbsent(riga.citta(), c -> new LongSet()).add(riga.id());
+        }
+        locations.sostituisci(riga.id(), riga);
+    }
+
+    /**
+     * Elimina la location e in cascata i suoi eventi con le relative partecipazioni
+     */
+    void rimuoviLocation(LocationRiga riga) {
+        LongSet ids = eventiPerLocation.get(riga.id());
+        if (ids != null) {
+            for (long id : ids.toArray()) {
+                rimuoviEvento(eventi.get(id));
+            }
+        }
+        locations.rimuovi(riga.id());
+        rimuoviDa(locationsPerCitta, riga.citta(), riga.id());
+    }
+
+    void inserisciEvento(EventoRiga riga) {
+        eventi.inserisci(riga.id(), riga);
+        aggiungiA(eventiPerLocation, riga.locationId(), riga.id());
+        eventiPerData.computeIfAbsent(riga.dataEvento(), d -> new LongSet()).add(riga.id());
+    }
+
+    void sostituisciEvento(EventoRiga precedente, EventoRiga riga) {
+        if (precedente.locationId() != riga.locationId()) {
+            rimuoviDa(eventiPerLocation, precedente.locationId(), riga.id());
+            aggiungiA(eventiPerLocation, riga.locationId(), riga.id());
+        }
+        if (!precedente.dataEvento().equals(riga.dataEvento())) {
+            rimuoviDa(eventiPerData, precedente.dataEvento(), riga.id());
+            eventiPerData.computeIfAbsent(riga.dataEvento(), d -> new LongSet()).add(riga.id());
+        }
+        eventi.sostituisci(riga.id(), riga);
+    }
+
+    /**
+     * Elimina l'evento e in cascata le sue partecipazioni
+     */
+    void rimuoviEvento(EventoRiga riga) {
+        LongSet ids = partecipazioniPerEvento.get(riga.id());
+        if (ids != null) {
+            for (long id : ids.toArray()) {
+                rimuoviPartecipazione(partecipazioni.get(id), false);
+            }
+        }
+        eventi.rimuovi(riga.id());
+        rimuoviDa(eventiPerLocation, riga.locationId(), riga.id());
+        rimuoviDa(eventiPerData, riga.dataEvento(), riga.id());
+    }
+
+    void inserisciPartecipazione(PartecipazioneRiga riga) {
+        partecipazioni.inserisci(riga.id(), riga);
+        indicizzaPartecipazione(riga);
+    }
+
+    void sostituisciPartecipazione(PartecipazioneRiga precedente, PartecipazioneRiga riga) {
+        if (precedente.personaId() != riga.personaId() || precedente.eventoId() != riga.eventoId()) {
+            rimuoviIndiciPartecipazione(precedente);
+            indicizzaPartecipazione(riga);
+        }
+        partecipazioni.sostituisci(riga.id(), riga);
+    }
+
+    void rimuoviPartecipazione(PartecipazioneRiga riga, boolean liberaPosto) {
+        partecipazioni.rimuovi(riga.id());
+        rimuoviIndiciPartecipazione(riga);
+        if (liberaPosto) {
+            occupaPosti(riga.eventoId(), -1);
+        }
+    }
+
+    /**
+     * Verifica se la persona è iscritta all'evento; sicuro anche in letturaPuntuale()
+     */
+    boolean isIscritta(long personaId, long eventoId) {
+        LongSet iscritti = iscrittiPerEvento.get(eventoId);
+        return iscritti != null && iscritti.contains(personaId);
+    }
+
+    void occupaPosti(long eventoId, int posti) {
+        EventoRiga evento = eventi.get(eventoId);
+        if (evento != null) {
+            eventi.sostituisci(eventoId, evento.conPostiOccupati(evento.postiOccupati() + posti));
+        }
+    }
+
+    private void indicizzaPartecipazione(PartecipazioneRiga riga) {
+        aggiungiA(partecipazioniPerEvento, riga.eventoId(), riga.id());
+        aggiungiA(partecipazioniPerPersona, riga.personaId(), riga.id());
+        aggiungiA(iscrittiPerEvento, riga.eventoId(), riga.personaId());
+    }
+
+    private void rimuoviIndiciPartecipazione(PartecipazioneRiga riga) {
+        rimuoviDa(partecipazioniPerEvento, riga.eventoId(), riga.id());
+        rimuoviDa(partecipazioniPerPersona, riga.personaId(), riga.id());
+        rimuoviDa(iscrittiPerEvento, riga.eventoId(), riga.personaId());
+    }
+
+    private static void aggiungiA(LongMap<LongSet> indice, long chiave, long id) {
+        LongSet ids = indice.get(chiave);
+        if (ids == null) {
+            ids = new LongSet();
+            indice.put(chiave, ids);
+        }
+        ids.add(id);
+    }
+
+    private static void rimuoviDa(LongMap<LongSet> indice, long chiave, long id) {
+        LongSet ids = indice.get(chiave);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            indice.remove(chiave);
+        }
+    }
+
+    private static <K> void rimuoviDa(Map<K, LongSet> indice, K chiave, long id) {
+        LongSet ids = indice.get(chiave);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            indice.remove(chiave);
+        }
+    }
+
+    /**
+     * Tabella di righe immutabili per ID, con l'elenco ordinato degli ID e il generatore degli ID
+     */
+    static final class Tabella<R> {
+
+        private final LongMap<R> righe = new LongMap<>();
+        private final LongSet ids = new LongSet();
+        private long ultimoId;
+
+        R get(long id) {
+            return righe.get(id);
+        }
+
+        long nuovoId() {
+            return ++ultimoId;
+        }
+
+        int size() {
+            return righe.size();
+        }
+
+        /**
+         * Scorre le righe in ordine di ID
+         */
+        void forEach(Consumer<R> azione) {
+            ids.forEach(id -> azione.accept(righe.get(id)));
+        }
+
+        long[] idsDopo(Long lastId, int limit) {
+            return ids.dopo(lastId == null ? 0 : lastId, limit);
+        }
+
+        private void inserisci(long id, R riga) {
+            righe.put(id, riga);
+            ids.add(id);
+            ultimoId = Math.max(ultimoId, id);
+        }
+
+        private void sostituisci(long id, R riga) {
+            righe.put(id, riga);
+        }
+
+        private void rimuovi(long id) {
+            righe.remove(id);
+            ids.remove(id);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package it.epicode.repository.memory;
+
+import it.epicode.entities.Evento;
+import it.epicode.repository.EventoRepository;
+import it.epicode.repository.RicercaEventi;
+import it.epicode.repository.memory.MemoryDatabase.EventoRiga;
+import jakarta.persistence.OptimisticLockException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Repository degli eventi sul database in memoria
+ * Come sul database, update() verifica la versione dell'evento e non modifica i posti occupati,
+ * che cambiano solo con le iscrizioni e le cancellazioni
+ */
+public class MemoryEventoRepository implements EventoRepository {
+
+    private final MemoryDatabase db;
+
+    public MemoryEventoRepository(MemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public Evento save(Evento evento) {
+        try {
+            return db.scrittura(() -> {
+                valida(evento);
+                long id = db.eventi.nuovoId();
+                db.inserisciEvento(riga(id, evento, 0, 0));
+                evento.setId(id);
+                Materializzatore.impostaStato(evento, 0, 0);
+                return evento;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante il salvataggio dell'evento", e);
+        }
+    }
+
+    @Override
+    public long saveAll(Collection<Evento> eventi) {
+        try {
+            return db.scrittura(() -> {
+                eventi.forEach(this::valida);
+                for (Evento evento : eventi) {
+                    long id = db.eventi.nuovoId();
+                    db.inserisciEvento(riga(id, evento, 0, 0));
+                    evento.setId(id);
+                    Materializzatore.impostaStato(evento, 0, 0);
+                }
+                return (long) eventi.size();
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante il salvataggio massivo degli eventi", e);
+        }
+    }
+
+    @Override
+    public Evento findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return db.letturaPuntuale(() -> {
+            EventoRiga riga = db.eventi.get(id);
+            return riga != null ? new Materializzatore(db).evento(riga) : null;
+        });
+    }
+
+    @Override
+    public List<Evento> findAll() {
+        return db.lettura(() -> {
+            Materializzatore materializzatore = new Materializzatore(db);
+            List<Evento> result = new ArrayList<>(db.eventi.size());
+            db.eventi.forEach(riga -> result.add(materializzatore.evento(riga)));
+            return result;
+        });
+    }
+
+    @Override
+    public List<Evento> findAllAfter(Long lastId, int limit) {
+        return db.lettura(() -> {
+            Materializzatore materializzatore = new Materializzatore(db);
+            long[] ids = db.eventi.idsDopo(lastId, limit);
+            List<Evento> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                result.add(materializzatore.evento(db.eventi.get(id)));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Aggiorna l'evento; come merge() di JPA, un evento senza ID o non presente viene salvato come nuovo
+     * @throws RuntimeException con causa OptimisticLockException se l'evento è stato modificato nel frattempo
+     */
+    @Override
+    public Evento update(Evento evento) {
+        try {
+            return db.scrittura(() -> {
+                valida(evento);
+                EventoRiga precedente = evento.getId() != null ? db.eventi.get(evento.getId()) : null;
+                EventoRiga riga;
+                if (precedente != null) {
+                    if (evento.getVersion() != null && evento.getVersion() != precedente.version()) {
+                        throw new OptimisticLockException("L'evento " + precedente.id() + " è stato modificato da un'altra operazione");
+                    }
+                    riga = riga(precedente.id(), evento, precedente.version() + 1, precedente.postiOccupati());
+                    db.sostituisciEvento(precedente, riga);
+                } else {
+                    riga = riga(db.eventi.nuovoId(), evento, 0, 0);
+                    db.inserisciEvento(riga);
+                }
+                return new Materializzatore(db).evento(riga);
+            });
+        } catch (IllegalArgumentException | OptimisticLockException e) {
+            throw new RuntimeException("Errore durante l'aggiornamento dell'evento", e);
+        }
+    }
+
+    /**
+     * Elimina l'evento con le sue partecipazioni
+     */
+    @Override
+    public void deleteById(Long id) {
+        if (id == null) {
+            return;
+        }
+        db.scrittura(() -> {
+            EventoRiga riga = db.eventi.get(id);
+            if (riga != null) {
+                db.rimuoviEvento(riga);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Evento> findByTitolo(String titolo) {
+        return db.lettura(() -> {
+            Materializzatore materializzatore = new Materializzatore(db);
+            List<Evento> result = new ArrayList<>();
+            db.eventi.forEach(riga -> {
+                if (riga.titolo().contains(titolo)) {
+                    result.add(materializzatore.evento(riga));
+                }
+            });
+            return result;
+        });
+    }
+
+    @Override
+    public List<Evento> findByDataEvento(RicercaEventi ricerca) {
+        return cerca(ricerca, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Evento> findByDataEventoAfter(RicercaEventi ricerca, Evento ultimo, int limit) {
+        return cerca(ricerca, ultimo, limit);
+    }
+
+    // Scorre l'indice per data dal giorno dell'ultimo evento (o dall'inizio dell'intervallo), in ordine di data e ID
+    private List<Evento> cerca(RicercaEventi ricerca, Evento ultimo, int limit) {
+        return db.lettura(() -> {
+            Materializzatore materializzatore = new Materializzatore(db);
+            List<Evento> result = new ArrayList<>();
+            LocalDate da = ricerca.da();
+            if (ultimo != null && ultimo.getDataEvento().isAfter(da)) {
+                da = ultimo.getDataEvento();
+            }
+            for (Map.Entry<LocalDate, LongSet> giorno : db.eventiPerData.subMap(da, true, ricerca.a(), true).entrySet()) {
+                long[] ids = ultimo != null && giorno.getKey().equals(ultimo.getDataEvento())
+                    ? giorno.getValue().dopo(ultimo.getId(), Integer.MAX_VALUE)
+                    : giorno.getValue().toArray();
+                for (long id : ids) {
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                    EventoRiga riga = db.eventi.get(id);
+                    if ((ricerca.tipo() == null || riga.tipoEvento() == ricerca.tipo())
+                            && (ricerca.citta() == null || ricerca.citta().equals(db.locations.get(riga.locationId()).citta()))) {
+                        result.add(materializzatore.evento(riga));
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public Integer getPostiDisponibili(Long eventoId) {
+        if (eventoId == null) {
+            return null;
+        }
+        return db.letturaPuntuale(() -> {
+            EventoRiga riga = db.eventi.get(eventoId);
+            return riga != null ? riga.numeroMassimoPartecipanti() - riga.postiOccupati() : null;
+        });
+    }
+
+    @Override
+    public boolean hasPostiDisponibili(Long eventoId) {
+        Integer posti = getPostiDisponibili(eventoId);
+        return posti != null && posti > 0;
+    }
+
+    private void valida(Evento evento) {
+        Objects.requireNonNull(evento, "evento");
+        if (evento.getTitolo() == null || evento.getDataEvento() == null || evento.getTipoEvento() == null
+                || evento.getNumeroMassimoPartecipanti() == null) {
+            throw new IllegalArgumentException("Titolo, data, tipo e numero massimo di partecipanti sono obbligatori");
+        }
+        if (evento.getLocation() == null || evento.getLocation().getId() == null
+                || db.locations.get(evento.getLocation().getId()) == null) {
+            throw new IllegalArgumentException("Location non trovata: " +
+                (evento.getLocation() != null ? evento.getLocation().getId() : null));
+        }
+    }
+
+    private static EventoRiga riga(long id, Evento evento, long version, int postiOccupati) {
+        return new EventoRiga(id, evento.getTitolo(), evento.getDataEvento(), evento.getDescrizione(),
+            evento.getTipoEvento(), evento.getNumeroMassimoPartecipanti(), version, postiOccupati,
+            evento.getLocation().getId());
+    }
+}
@@ -0,0 +1,167 @@
+package it.epicode.repository.memory;
+
+import it.epicode.entities.Location;
+import it.epicode.repository.LocationRepository;
+import it.epicode.repository.memory.MemoryDatabase.LocationRiga;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Repository delle location sul database in memoria
+ * La ricerca per città scorre solo le città distinte (indice per città), non tutte le location
+ */
+public class MemoryLocationRepository implements LocationRepository {
+
+    private final MemoryDatabase db;
+
+    public MemoryLocationRepository(MemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public Location save(Location location) {
+        try {
+            return db.scrittura(() -> {
+                valida(location);
+                long id = db.locations.nuovoId();
+                db.inserisciLocation(riga(id, location));
+                location.setId(id);
+                return location;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante il salvataggio della location", e);
+        }
+    }
+
+    @Override
+    public long saveAll(Collection<Location> locations) {
+        try {
+            return db.scrittura(() -> {
+                locations.forEach(MemoryLocationRepository::valida);
+                for (Location location : locations) {
+                    long id = db.locations.nuovoId();
+                    db.inserisciLocation(riga(id, location));
+                    location.setId(id);
+                }
+                return (long) locations.size();
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante il salvataggio massivo delle location", e);
+        }
+    }
+
+    @Override
+    public Location findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return db.letturaPuntuale(() -> {
+            LocationRiga riga = db.locations.get(id);
+            return riga != null ? Materializzatore.location(riga) : null;
+        });
+    }
+
+    @Override
+    public List<Location> findAll() {
+        return db.lettura(() -> {
+            List<Location> result = new ArrayList<>(db.locations.size());
+            db.locations.forEach(riga -> result.add(Materializzatore.location(riga)));
+            return result;
+        });
+    }
+
+    @Override
+    public List<Location> findAllAfter(Long lastId, int limit) {
+        return db.lettura(() -> {
+            long[] ids = db.locations.idsDopo(lastId, limit);
+            List<Location> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                result.add(Materializzatore.location(db.locations.get(id)));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Aggiorna la location; come merge() di JPA, una location senza ID o non presente viene salvata come nuova
+     */
+    @Override
+    public Location update(Location location) {
+        try {
+            return db.scrittura(() -> {
+                valida(location);
+                LocationRiga precedente = location.getId() != null ? db.locations.get(location.getId()) : null;
+                LocationRiga riga;
+                if (precedente != null) {
+                    riga = riga(precedente.id(), location);
+                    db.sostituisciLocation(precedente, riga);
+                } else {
+                    riga = riga(db.locations.nuovoId(), location);
+                    db.inserisciLocation(riga);
+                }
+                return Materializzatore.location(riga);
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante l'aggiornamento della location", e);
+        }
+    }
+
+    /**
+     * Elimina la location con i suoi eventi e le relative partecipazioni
+     */
+    @Override
+    public void deleteById(Long id) {
+        if (id == null) {
+            return;
+        }
+        db.scrittura(() -> {
+            LocationRiga riga = db.locations.get(id);
+            if (riga != null) {
+                db.rimuoviLocation(riga);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Location> findByNome(String nome) {
+        return db.lettura(() -> {
+            List<Location> result = new ArrayList<>();
+            db.locations.forEach(riga -> {
+                if (riga.nome().contains(nome)) {
+                    result.add(Materializzatore.location(riga));
+                }
+            });
+            return result;
+        });
+    }
+
+    @Override
+    public List<Location> findByCitta(String citta) {
+        return db.lettura(() -> {
+            LongSet ids = new LongSet();
+            for (Map.Entry<String, LongSet> entry : db.locationsPerCitta.entrySet()) {
+                if (entry.getKey().contains(citta)) {
+                    entry.getValue().forEach(ids::add);
+                }
+            }
+            List<Location> result = new ArrayList<>(ids.size());
+            ids.forEach(id -> result.add(Materializzatore.location(db.locations.get(id))));
+            return result;
+        });
+    }
+
+    private static void valida(Location location) {
+        Objects.requireNonNull(location, "location");
+        if (location.getNome() == null || location.getCitta() == null) {
+            throw new IllegalArgumentException("Nome e città sono obbligatori");
+        }
+    }
+
+    private static LocationRiga riga(long id, Location location) {
+        return new LocationRiga(id, location.getNome(), location.getCitta());
+    }
+}
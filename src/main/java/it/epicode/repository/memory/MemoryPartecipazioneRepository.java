@@ -0,0 +1,340 @@
+package it.epicode.repository.memory;
+
+import it.epicode.dao.PersonaGiaIscrittaException;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.dto.PartecipazioneView;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.repository.PartecipazioneRepository;
+import it.epicode.repository.memory.MemoryDatabase.EventoRiga;
+import it.epicode.repository.memory.MemoryDatabase.PartecipazioneRiga;
+import it.epicode.repository.memory.MemoryDatabase.PersonaRiga;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Repository delle partecipazioni sul database in memoria
+ * Capienza e unicità di persona ed evento sono verificate sotto il lock in scrittura, quindi sono atomiche
+ * come gli aggiornamenti condizionali dei DAO; le ricerche per persona ed evento usano gli indici secondari
+ */
+public class MemoryPartecipazioneRepository implements PartecipazioneRepository {
+
+    private final MemoryDatabase db;
+
+    public MemoryPartecipazioneRepository(MemoryDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * @throws PostiEsauritiException se l'evento non ha più posti disponibili
+     */
+    @Override
+    public Partecipazione save(Partecipazione partecipazione) {
+        try {
+            return db.scrittura(() -> {
+                valida(partecipazione);
+                long eventoId = partecipazione.getEvento().getId();
+                long personaId = partecipazione.getPersona().getId();
+                verificaPosti(eventoId, 1);
+                if (db.isIscritta(personaId, eventoId)) {
+                    throw new PersonaGiaIscrittaException(eventoId, List.of(personaId), null);
+                }
+                db.occupaPosti(eventoId, 1);
+                long id = db.partecipazioni.nuovoId();
+                db.inserisciPartecipazione(new PartecipazioneRiga(id, personaId, eventoId, partecipazione.getStato()));
+                partecipazione.setId(id);
+                return partecipazione;
+            });
+        } catch (IllegalArgumentException | PersonaGiaIscrittaException e) {
+            throw new RuntimeException("Errore durante il salvataggio della partecipazione", e);
+        }
+    }
+
+    /**
+     * Tutte o nessuna: capienza e unicità sono verificate per l'intero lotto prima di inserire
+     * @throws PostiEsauritiException se un evento non ha abbastanza posti per le nuove partecipazioni
+     */
+    @Override
+    public long saveAll(Collection<Partecipazione> partecipazioni) {
+        try {
+            return db.scrittura(() -> {
+                Map<Long, Integer> nuoviPerEvento = new HashMap<>();
+                Map<Long, Set<Long>> nuoviIscritti = new HashMap<>();
+                for (Partecipazione partecipazione : partecipazioni) {
+                    valida(partecipazione);
+                    Long eventoId = partecipazione.getEvento().getId();
+                    Long personaId = partecipazione.getPersona().getId();
+                    if (db.isIscritta(personaId, eventoId)
+                            || !nuoviIscritti.computeIfAbsent(eventoId, id -> new HashSet<>()).add(personaId)) {
+                        throw new PersonaGiaIscrittaException(eventoId, List.of(personaId), null);
+                    }
+                    nuoviPerEvento.merge(eventoId, 1, Integer::sum);
+                }
+                nuoviPerEvento.forEach(this::verificaPosti);
+                nuoviPerEvento.forEach(db::occupaPosti);
+                for (Partecipazione partecipazione : partecipazioni) {
+                    long id = db.partecipazioni.nuovoId();
+                    db.inserisciPartecipazione(new PartecipazioneRiga(id, partecipazione.getPersona().getId(),
+                        partecipazione.getEvento().getId(), partecipazione.getStato()));
+                    partecipazione.setId(id);
+                }
+                return (long) partecipazioni.size();
+            });
+        } catch (IllegalArgumentException | PersonaGiaIscrittaException e) {
+            throw new RuntimeException("Errore durante il salvataggio massivo delle partecipazioni", e);
+        }
+    }
+
+    @Override
+    public Partecipazione register(Long personaId, Long eventoId) {
+        return iscrivi(eventoId, List.of(personaId), Partecipazione.Stato.CONFERMATA).get(0);
+    }
+
+    /**
+     * @throws PostiEsauritiException se l'evento non ha abbastanza posti disponibili
+     * @throws PersonaGiaIscrittaException se una delle persone è già iscritta all'evento
+     */
+    @Override
+    public List<Partecipazione> iscrivi(Long eventoId, Collection<Long> personaIds, Partecipazione.Stato stato) {
+        try {
+            return db.scrittura(() -> {
+                verificaPosti(eventoId, personaIds.size());
+                Set<Long> nuovi = new HashSet<>();
+                for (Long personaId : personaIds) {
+                    if (personaId == null || db.persone.get(personaId) == null) {
+                        throw new IllegalArgumentException("Persona non trovata: " + personaId);
+                    }
+                    if (db.isIscritta(personaId, eventoId) || !nuovi.add(personaId)) {
+                        throw new PersonaGiaIscrittaException(eventoId, personaIds, null);
+                    }
+                }
+                db.occupaPosti(eventoId, personaIds.size());
+                Materializzatore materializzatore = new Materializzatore(db);
+                List<Partecipazione> result = new ArrayList<>(personaIds.size());
+                for (Long personaId : personaIds) {
+                    PartecipazioneRiga riga = new PartecipazioneRiga(db.partecipazioni.nuovoId(), personaId, eventoId, stato);
+                    db.inserisciPartecipazione(riga);
+                    result.add(materializzatore.partecipazione(riga));
+                }
+                return result;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante l'iscrizione all'evento", e);
+        }
+    }
+
+    @Override
+    public Partecipazione findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return db.letturaPuntuale(() -> {
+            PartecipazioneRiga riga = db.partecipazioni.get(id);
+            return riga != null ? new Materializzatore(db).partecipazione(riga) : null;
+        });
+    }
+
+    @Override
+    public List<Partecipazione> findAll() {
+        return db.lettura(() -> {
+            Materializzatore materializzatore = new Materializzatore(db);
+            List<Partecipazione> result = new ArrayList<>(db.partecipazioni.size());
+            db.partecipazioni.forEach(riga -> result.add(materializzatore.partecipazione(riga)));
+            return result;
+        });
+    }
+
+    @Override
+    public List<Partecipazione> findAllAfter(Long lastId, int limit) {
+        return db.lettura(() -> materializza(db.partecipazioni.idsDopo(lastId, limit)));
+    }
+
+    /**
+     * Aggiorna la partecipazione; come il DAO non modifica i posti occupati degli eventi.
+     * Una partecipazione senza ID o non presente viene salvata come nuova, come con merge() di JPA
+     */
+    @Override
+    public Partecipazione update(Partecipazione partecipazione) {
+        try {
+            return db.scrittura(() -> {
+                valida(partecipazione);
+                long eventoId = partecipazione.getEvento().getId();
+                long personaId = partecipazione.getPersona().getId();
+                PartecipazioneRiga precedente = partecipazione.getId() != null
+                    ? db.partecipazioni.get(partecipazione.getId()) : null;
+                boolean stessaIscrizione = precedente != null
+                    && precedente.personaId() == personaId && precedente.eventoId() == eventoId;
+                if (!stessaIscrizione && db.isIscritta(personaId, eventoId)) {
+                    throw new PersonaGiaIscrittaException(eventoId, List.of(personaId), null);
+                }
+                PartecipazioneRiga riga;
+                if (precedente != null) {
+                    riga = new PartecipazioneRiga(precedente.id(), personaId, eventoId, partecipazione.getStato());
+                    db.sostituisciPartecipazione(precedente, riga);
+                } else {
+                    riga = new PartecipazioneRiga(db.partecipazioni.nuovoId(), personaId, eventoId, partecipazione.getStato());
+                    db.inserisciPartecipazione(riga);
+                }
+                return new Materializzatore(db).partecipazione(riga);
+            });
+        } catch (IllegalArgumentException | PersonaGiaIscrittaException e) {
+            throw new RuntimeException("Errore durante l'aggiornamento della partecipazione", e);
+        }
+    }
+
+    /**
+     * Elimina la partecipazione e libera il posto nell'evento
+     */
+    @Override
+    public void deleteById(Long id) {
+        if (id == null) {
+            return;
+        }
+        db.scrittura(() -> {
+            PartecipazioneRiga riga = db.partecipazioni.get(id);
+            if (riga != null) {
+                db.rimuoviPartecipazione(riga, true);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Partecipazione> findByPersona(Persona persona) {
+        return db.lettura(() -> persona.getId() != null ? materializza(db.partecipazioniPerPersona.get(persona.getId())) : new ArrayList<>());
+    }
+
+    @Override
+    public List<Partecipazione> findByEvento(Evento evento) {
+        return db.lettura(() -> evento.getId() != null ? materializza(db.partecipazioniPerEvento.get(evento.getId())) : new ArrayList<>());
+    }
+
+    @Override
+    public List<Partecipazione> findByStato(Partecipazione.Stato stato) {
+        return db.lettura(() -> {
+            Materializzatore materializzatore = new Materializzatore(db);
+            List<Partecipazione> result = new ArrayList<>();
+            db.partecipazioni.forEach(riga -> {
+                if (riga.stato() == stato) {
+                    result.add(materializzatore.partecipazione(riga));
+                }
+            });
+            return result;
+        });
+    }
+
+    @Override
+    public List<PartecipazioneView> findViewByPersona(Long personaId) {
+        return db.lettura(() -> vista(personaId != null ? db.partecipazioniPerPersona.get(personaId) : null));
+    }
+
+    @Override
+    public List<PartecipazioneView> findViewByEvento(Long eventoId) {
+        return db.lettura(() -> vista(eventoId != null ? db.partecipazioniPerEvento.get(eventoId) : null));
+    }
+
+    @Override
+    public boolean isPersonaIscritta(Long personaId, Long eventoId) {
+        if (personaId == null || eventoId == null) {
+            return false;
+        }
+        return db.letturaPuntuale(() -> db.isIscritta(personaId, eventoId));
+    }
+
+    @Override
+    public Map<Long, Boolean> areIscritte(Collection<Long> personaIds, Long eventoId) {
+        return db.letturaPuntuale(() -> {
+            Map<Long, Boolean> result = new LinkedHashMap<>();
+            for (Long personaId : personaIds) {
+                result.put(personaId, personaId != null && eventoId != null && db.isIscritta(personaId, eventoId));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public int confirmAll(Long eventoId) {
+        return db.scrittura(() -> {
+            LongSet ids = eventoId != null ? db.partecipazioniPerEvento.get(eventoId) : null;
+            return ids != null ? aggiornaStato(ids.toArray(), Partecipazione.Stato.DA_CONFERMARE, Partecipazione.Stato.CONFERMATA) : 0;
+        });
+    }
+
+    @Override
+    public int updateStato(Collection<Long> ids, Partecipazione.Stato stato) {
+        long[] daAggiornare = ids.stream().filter(Objects::nonNull).mapToLong(Long::longValue).toArray();
+        return db.scrittura(() -> aggiornaStato(daAggiornare, null, stato));
+    }
+
+    // Sotto il lock in scrittura: aggiorna le partecipazioni con stato diverso da quello nuovo (e uguale a richiesto, se indicato)
+    private int aggiornaStato(long[] ids, Partecipazione.Stato richiesto, Partecipazione.Stato stato) {
+        int aggiornate = 0;
+        for (long id : ids) {
+            PartecipazioneRiga riga = db.partecipazioni.get(id);
+            if (riga != null && riga.stato() != stato && (richiesto == null || riga.stato() == richiesto)) {
+                db.sostituisciPartecipazione(riga, new PartecipazioneRiga(id, riga.personaId(), riga.eventoId(), stato));
+                aggiornate++;
+            }
+        }
+        return aggiornate;
+    }
+
+    // Sotto il lock in scrittura: lancia PostiEsauritiException se l'evento non esiste o non ha abbastanza posti
+    private void verificaPosti(Long eventoId, int posti) {
+        EventoRiga evento = eventoId != null ? db.eventi.get(eventoId) : null;
+        if (evento == null || evento.postiOccupati() + posti > evento.numeroMassimoPartecipanti()) {
+            throw new PostiEsauritiException(eventoId, posti);
+        }
+    }
+
+    private List<Partecipazione> materializza(LongSet ids) {
+        return ids != null ? materializza(ids.toArray()) : new ArrayList<>();
+    }
+
+    private List<Partecipazione> materializza(long[] ids) {
+        Materializzatore materializzatore = new Materializzatore(db);
+        List<Partecipazione> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(materializzatore.partecipazione(db.partecipazioni.get(id)));
+        }
+        return result;
+    }
+
+    // Le proiezioni si costruiscono direttamente dalle righe, senza creare le entità
+    private List<PartecipazioneView> vista(LongSet ids) {
+        List<PartecipazioneView> result = new ArrayList<>(ids != null ? ids.size() : 0);
+        if (ids != null) {
+            ids.forEach(id -> {
+                PartecipazioneRiga riga = db.partecipazioni.get(id);
+                PersonaRiga persona = db.persone.get(riga.personaId());
+                EventoRiga evento = db.eventi.get(riga.eventoId());
+                result.add(new PartecipazioneView(riga.id(), persona.id(), persona.nome(), persona.cognome(),
+                    persona.email(), evento.id(), evento.titolo(), evento.dataEvento(), riga.stato()));
+            });
+        }
+        return result;
+    }
+
+    private void valida(Partecipazione partecipazione) {
+        Objects.requireNonNull(partecipazione, "partecipazione");
+        if (partecipazione.getStato() == null) {
+            throw new IllegalArgumentException("Lo stato della partecipazione è obbligatorio");
+        }
+        Long personaId = partecipazione.getPersona() != null ? partecipazione.getPersona().getId() : null;
+        if (personaId == null || db.persone.get(personaId) == null) {
+            throw new IllegalArgumentException("Persona non trovata: " + personaId);
+        }
+        Long eventoId = partecipazione.getEvento() != null ? partecipazione.getEvento().getId() : null;
+        if (eventoId == null || db.eventi.get(eventoId) == null) {
+            throw new IllegalArgumentException("Evento non trovato: " + eventoId);
+        }
+    }
+}
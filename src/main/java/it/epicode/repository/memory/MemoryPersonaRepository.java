@@ -0,0 +1,181 @@
+package it.epicode.repository.memory;
+
+import it.epicode.entities.Persona;
+import it.epicode.repository.PersonaRepository;
+import it.epicode.repository.memory.MemoryDatabase.PersonaRiga;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Repository delle persone sul database in memoria
+ * Stessi vincoli della tabella persone: campi obbligatori ed email univoca (indice per email)
+ */
+public class MemoryPersonaRepository implements PersonaRepository {
+
+    private final MemoryDatabase db;
+
+    public MemoryPersonaRepository(MemoryDatabase db) {
+        this.db = db;
+    }
+
+    @Override
+    public Persona save(Persona persona) {
+        try {
+            return db.scrittura(() -> {
+                valida(persona);
+                if (db.personePerEmail.containsKey(persona.getEmail())) {
+                    throw new IllegalArgumentException("Email già registrata: " + persona.getEmail());
+                }
+                long id = db.persone.nuovoId();
+                db.inserisciPersona(riga(id, persona));
+                persona.setId(id);
+                return persona;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante il salvataggio della persona", e);
+        }
+    }
+
+    @Override
+    public long saveAll(Collection<Persona> persone) {
+        try {
+            return db.scrittura(() -> {
+                // Tutte o nessuna: i controlli precedono ogni inserimento
+                Set<String> email = new HashSet<>();
+                for (Persona persona : persone) {
+                    valida(persona);
+                    if (db.personePerEmail.containsKey(persona.getEmail()) || !email.add(persona.getEmail())) {
+                        throw new IllegalArgumentException("Email già registrata: " + persona.getEmail());
+                    }
+                }
+                for (Persona persona : persone) {
+                    long id = db.persone.nuovoId();
+                    db.inserisciPersona(riga(id, persona));
+                    persona.setId(id);
+                }
+                return (long) persone.size();
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante il salvataggio massivo delle persone", e);
+        }
+    }
+
+    @Override
+    public Persona findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return db.letturaPuntuale(() -> {
+            PersonaRiga riga = db.persone.get(id);
+            return riga != null ? Materializzatore.persona(riga) : null;
+        });
+    }
+
+    @Override
+    public List<Persona> findAll() {
+        return db.lettura(() -> {
+            List<Persona> result = new ArrayList<>(db.persone.size());
+            db.persone.forEach(riga -> result.add(Materializzatore.persona(riga)));
+            return result;
+        });
+    }
+
+    @Override
+    public List<Persona> findAllAfter(Long lastId, int limit) {
+        return db.lettura(() -> {
+            long[] ids = db.persone.idsDopo(lastId, limit);
+            List<Persona> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                result.add(Materializzatore.persona(db.persone.get(id)));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Aggiorna la persona; come merge() di JPA, una persona senza ID o non presente viene salvata come nuova
+     */
+    @Override
+    public Persona update(Persona persona) {
+        try {
+            return db.scrittura(() -> {
+                valida(persona);
+                PersonaRiga precedente = persona.getId() != null ? db.persone.get(persona.getId()) : null;
+                Long proprietario = db.personePerEmail.get(persona.getEmail());
+                if (proprietario != null && (precedente == null || proprietario != precedente.id())) {
+                    throw new IllegalArgumentException("Email già registrata: " + persona.getEmail());
+                }
+                PersonaRiga riga;
+                if (precedente != null) {
+                    riga = riga(precedente.id(), persona);
+                    db.sostituisciPersona(precedente, riga);
+                } else {
+                    riga = riga(db.persone.nuovoId(), persona);
+                    db.inserisciPersona(riga);
+                }
+                return Materializzatore.persona(riga);
+            });
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Errore durante l'aggiornamento della persona", e);
+        }
+    }
+
+    /**
+     * Elimina la persona con le sue partecipazioni e libera i posti negli eventi
+     */
+    @Override
+    public void deleteById(Long id) {
+        if (id == null) {
+            return;
+        }
+        db.scrittura(() -> {
+            PersonaRiga riga = db.persone.get(id);
+            if (riga != null) {
+                db.rimuoviPersona(riga);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Persona findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return db.letturaPuntuale(() -> {
+            Long id = db.personePerEmail.get(email);
+            PersonaRiga riga = id != null ? db.persone.get(id) : null;
+            return riga != null ? Materializzatore.persona(riga) : null;
+        });
+    }
+
+    @Override
+    public List<Persona> findByNomeCognome(String nome, String cognome) {
+        return db.lettura(() -> {
+            List<Persona> result = new ArrayList<>();
+            db.persone.forEach(riga -> {
+                if (riga.nome().contains(nome) && riga.cognome().contains(cognome)) {
+                    result.add(Materializzatore.persona(riga));
+                }
+            });
+            return result;
+        });
+    }
+
+    private static void valida(Persona persona) {
+        Objects.requireNonNull(persona, "persona");
+        if (persona.getNome() == null || persona.getCognome() == null || persona.getEmail() == null
+                || persona.getDataNascita() == null || persona.getSesso() == null) {
+            throw new IllegalArgumentException("Nome, cognome, email, data di nascita e sesso sono obbligatori");
+        }
+    }
+
+    private static PersonaRiga riga(long id, Persona persona) {
+        return new PersonaRiga(id, persona.getNome(), persona.getCognome(), persona.getEmail(),
+            persona.getDataNascita(), persona.getSesso());
+    }
+}
@@ -0,0 +1,198 @@
+package it.epicode.reservation;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timer a ruota (hashed timer wheel) per la scadenza di un gran numero di timeout
+ * Inserimento e cancellazione costano O(1); a ogni tick viene visitato un solo slot della ruota,
+ * quindi le scadenze non richiedono mai una scansione di tutti i timeout attivi
+ * I task scaduti vengono eseguiti sul thread della ruota e devono essere brevi
+ * Un'eccezione lanciata da un task non ferma la ruota: viene contata ({@link #getErrori()}) e passata,
+ * completa di stack trace, al gestore degli errori indicato alla creazione
+ */
+public final class HashedTimerWheel implements AutoCloseable {
+
+    // Numero massimo di nuovi timeout trasferiti nella ruota a ogni tick
+    private static final int MAX_TRASFERIMENTI_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final LinkedList<Timeout>[] ruota;
+    private final int mask;
+    private final Queue<Timeout> inAttesa = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final Thread.UncaughtExceptionHandler gestoreErrori;
+    private final LongAdder errori = new LongAdder();
+    private final long inizio;
+    private volatile boolean attivo = true;
+
+    // Usato solo dal thread della ruota
+    private long tick;
+
+    /**
+     * Crea e avvia la ruota
+     * @param tickDuration la durata di un tick (risoluzione delle scadenze)
+     * @param unit l'unità di misura di tickDuration
+     * @param slot il numero di slot della ruota, arrotondato alla potenza di due successiva
+     */
+    public HashedTimerWheel(long tickDuration, TimeUnit unit, int slot) {
+        this(tickDuration, unit, slot, null);
+    }
+
+    /**
+     * Crea e avvia la ruota
+     * @param tickDuration la durata di un tick (risoluzione delle scadenze)
+     * @param unit l'unità di misura di tickDuration
+     * @param slot il numero di slot della ruota, arrotondato alla potenza di due successiva
+     * @param gestoreErrori riceve il thread della ruota e l'eccezione di ogni task fallito; se null si usa
+     *                      il gestore delle eccezioni non catturate del thread, che di default stampa lo stack trace
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(long tickDuration, TimeUnit unit, int slot, Thread.UncaughtExceptionHandler gestoreErrori) {
+        if (tickDuration <= 0 || slot <= 0) {
+            throw new IllegalArgumentException("Durata del tick e numero di slot devono essere positivi");
+        }
+        int dimensione = Integer.highestOneBit(slot - 1) << 1;
+        if (dimensione <= 0) {
+            dimensione = 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.ruota = new LinkedList[dimensione];
+        for (int i = 0; i < dimensione; i++) {
+            ruota[i] = new LinkedList<>();
+        }
+        this.mask = dimensione - 1;
+        this.inizio = System.nanoTime();
+        this.gestoreErrori = gestoreErrori;
+        this.worker = new Thread(this::esegui, "hashed-timer-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Pianifica l'esecuzione di un task dopo il ritardo indicato
+     * @param task il task da eseguire alla scadenza
+     * @param delay il ritardo
+     * @param unit l'unità di misura del ritardo
+     * @return il timeout, che può essere cancellato prima della scadenza
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!attivo) {
+            throw new IllegalStateException("Il timer è stato chiuso");
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() - inizio + unit.toNanos(delay));
+        inAttesa.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Restituisce il numero di task che hanno lanciato un'eccezione
+     * @return il numero di task falliti dall'avvio della ruota
+     */
+    public long getErrori() {
+        return errori.sum();
+    }
+
+    /**
+     * Ferma il thread della ruota; i timeout non ancora scaduti non vengono eseguiti
+     */
+    @Override
+    public void close() {
+        attivo = false;
+        worker.interrupt();
+    }
+
+    private void esegui() {
+        while (attivo) {
+            long prossimoTick = tickNanos * (tick + 1);
+            long attesa;
+            while (attivo && (attesa = prossimoTick - (System.nanoTime() - inizio)) > 0) {
+                LockSupport.parkNanos(this, attesa);
+            }
+            trasferisciInAttesa();
+            scadi(ruota[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void trasferisciInAttesa() {
+        for (int i = 0; i < MAX_TRASFERIMENTI_PER_TICK; i++) {
+            Timeout timeout = inAttesa.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.cancellato) {
+                continue;
+            }
+            long tickScadenza = timeout.scadenza / tickNanos;
+            timeout.giriRimanenti = (tickScadenza - tick) / ruota.length;
+            // I timeout già scaduti finiscono nello slot corrente
+            long slot = Math.max(tickScadenza, tick);
+            ruota[(int) (slot & mask)].add(timeout);
+        }
+    }
+
+    private void scadi(LinkedList<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancellato) {
+                iterator.remove();
+            } else if (timeout.giriRimanenti <= 0) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (Throwable e) {
+                    errori.increment();
+                    segnala(e);
+                }
+            } else {
+                timeout.giriRimanenti--;
+            }
+        }
+    }
+
+    // Un gestore che fallisce a sua volta non deve fermare la ruota: il suo errore, con quello del task
+    // come soppresso, va al gestore del gruppo del thread
+    private void segnala(Throwable errore) {
+        Thread.UncaughtExceptionHandler gestore = gestoreErrori != null ? gestoreErrori : worker.getUncaughtExceptionHandler();
+        try {
+            gestore.uncaughtException(worker, errore);
+        } catch (RuntimeException e) {
+            e.addSuppressed(errore);
+            worker.getThreadGroup().uncaughtException(worker, e);
+        }
+    }
+
+    /**
+     * Timeout pianificato sulla ruota
+     */
+    public static final class Timeout {
+
+        private final Runnable task;
+        private final long scadenza;
+        private long giriRimanenti;
+        private volatile boolean cancellato;
+
+        private Timeout(Runnable task, long scadenza) {
+            this.task = task;
+            this.scadenza = scadenza;
+        }
+
+        /**
+         * Cancella il timeout; lo slot viene liberato al passaggio successivo della ruota
+         */
+        public void cancel() {
+            cancellato = true;
+        }
+
+        public boolean isCancelled() {
+            return cancellato;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package it.epicode.reservation;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Blocco temporaneo di posti di un evento a nome di una persona
+ */
+public final class SeatHold {
+
+    // Stato del blocco: le transizioni avvengono solo a partire da ATTIVO
+    public enum Stato {
+        ATTIVO, IN_CONFERMA, CONFERMATO, SCADUTO, RILASCIATO
+    }
+
+    private final long id;
+    private final Long personaId;
+    private final Long eventoId;
+    private final int posti;
+    private final Instant scadenza;
+    private final AtomicReference<Stato> stato = new AtomicReference<>(Stato.ATTIVO);
+    private volatile HashedTimerWheel.Timeout timeout;
+
+    SeatHold(long id, Long personaId, Long eventoId, int posti, Instant scadenza) {
+        this.id = id;
+        this.personaId = personaId;
+        this.eventoId = eventoId;
+        this.posti = posti;
+        this.scadenza = scadenza;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Long getPersonaId() {
+        return personaId;
+    }
+
+    public Long getEventoId() {
+        return eventoId;
+    }
+
+    public int getPosti() {
+        return posti;
+    }
+
+    public Instant getScadenza() {
+        return scadenza;
+    }
+
+    public Stato getStato() {
+        return stato.get();
+    }
+
+    boolean transizione(Stato da, Stato a) {
+        return stato.compareAndSet(da, a);
+    }
+
+    void setTimeout(HashedTimerWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    void cancellaTimeout() {
+        HashedTimerWheel.Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SeatHold{" +
+                "id=" + id +
+                ", personaId=" + personaId +
+                ", eventoId=" + eventoId +
+                ", posti=" + posti +
+                ", scadenza=" + scadenza +
+                ", stato=" + stato.get() +
+                '}';
+    }
+}
@@ -0,0 +1,367 @@
+package it.epicode.reservation;
+
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.dao.PostiListener;
+import it.epicode.entities.Partecipazione;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prenotazioni temporanee di posti con scadenza
+ * I posti bloccati sono tenuti in memoria e scadono tramite una {@link HashedTimerWheel};
+ * alla conferma le partecipazioni vengono create con un controllo atomico della capienza sul database,
+ * quindi un evento non può mai superare numeroMassimoPartecipanti
+ * I posti disponibili in memoria vengono riletti dal database dopo ogni modifica fatta dai DAO del runtime
+ * (iscrizioni, cancellazioni, cambi di capienza) e dopo una conferma fallita; un evento senza blocchi
+ * attivi né conferme in corso, ad esempio quando il suo ultimo blocco scade, viene tolto dalla memoria
+ * e riletto alla prenotazione successiva
+ */
+public class SeatHoldService implements AutoCloseable {
+
+    private static final long TICK_MILLIS = 100;
+    private static final int SLOT_RUOTA = 512;
+
+    private final EventoDAO eventoDAO;
+    private final PartecipazioneDAO partecipazioneDAO;
+    private final HashedTimerWheel timerWheel;
+    private final Map<Long, SeatHold> holds = new ConcurrentHashMap<>();
+    private final Map<Long, PostiEvento> eventi = new ConcurrentHashMap<>();
+    private final AtomicLong sequenza = new AtomicLong();
+    private final PostiListener postiListener = this::postiCambiati;
+
+    public SeatHoldService(EventoDAO eventoDAO, PartecipazioneDAO partecipazioneDAO) {
+        this(eventoDAO, partecipazioneDAO, null);
+    }
+
+    /**
+     * Crea il servizio indicando chi riceve gli errori delle scadenze
+     * Una scadenza fallita può lasciare dei posti bloccati in memoria: il gestore riceve l'eccezione completa
+     * e {@link #getScadenzeFallite()} ne conta il numero
+     * @param eventoDAO il DAO degli eventi
+     * @param partecipazioneDAO il DAO delle partecipazioni
+     * @param gestoreErrori riceve le eccezioni lanciate alla scadenza di un blocco; se null vengono stampate
+     *                      con lo stack trace dal gestore delle eccezioni non catturate del thread delle scadenze
+     */
+    public SeatHoldService(EventoDAO eventoDAO, PartecipazioneDAO partecipazioneDAO,
+                           Thread.UncaughtExceptionHandler gestoreErrori) {
+        this.eventoDAO = eventoDAO;
+        this.partecipazioneDAO = partecipazioneDAO;
+        this.timerWheel = new HashedTimerWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, SLOT_RUOTA, gestoreErrori);
+        eventoDAO.addPostiListener(postiListener);
+    }
+
+    /**
+     * Blocca dei posti di un evento per una persona
+     * @param personaId l'ID della persona che effettua la prenotazione
+     * @param eventoId l'ID dell'evento
+     * @param posti il numero di posti da bloccare
+     * @param durata dopo quanto tempo il blocco scade se non confermato
+     * @return il blocco creato
+     * @throws PostiEsauritiException se l'evento non ha abbastanza posti liberi
+     */
+    public SeatHold trattieni(Long personaId, Long eventoId, int posti, Duration durata) {
+        if (posti <= 0) {
+            throw new IllegalArgumentException("Il numero di posti deve essere positivo: " + posti);
+        }
+        PostiEvento postiEvento;
+        boolean trattenuti;
+        do {
+            // Un'istanza tolta dalla mappa nel frattempo rifiuta il blocco: si riprova con quella nuova
+            postiEvento = getPostiAggiornati(eventoId);
+            trattenuti = postiEvento.trattieni(posti);
+        } while (!trattenuti && postiEvento.isRimosso());
+        if (!trattenuti) {
+            rimuoviSeInattivo(eventoId);
+            throw new PostiEsauritiException(eventoId, posti);
+        }
+        SeatHold hold = new SeatHold(sequenza.incrementAndGet(), personaId, eventoId, posti, Instant.now().plus(durata));
+        holds.put(hold.getId(), hold);
+        hold.setTimeout(timerWheel.schedule(() -> scadi(hold), durata.toNanos(), TimeUnit.NANOSECONDS));
+        return hold;
+    }
+
+    /**
+     * Conferma un blocco creando la partecipazione CONFERMATA della persona che lo ha effettuato
+     * Gli eventuali posti bloccati in più vengono rilasciati
+     * @param holdId l'ID del blocco
+     * @return la partecipazione creata
+     */
+    public Partecipazione conferma(long holdId) {
+        SeatHold hold = holds.get(holdId);
+        if (hold == null) {
+            throw new IllegalStateException("Prenotazione non trovata o non più attiva: " + holdId);
+        }
+        return conferma(holdId, List.of(hold.getPersonaId())).get(0);
+    }
+
+    /**
+     * Conferma un blocco creando una partecipazione CONFERMATA per ciascuna persona indicata
+     * Gli eventuali posti bloccati in più vengono rilasciati
+     * @param holdId l'ID del blocco
+     * @param personaIds gli ID delle persone da iscrivere, al massimo quanti sono i posti bloccati
+     * @return le partecipazioni create
+     * @throws IllegalStateException se il blocco è scaduto, rilasciato o già confermato
+     * @throws PostiEsauritiException se nel frattempo i posti sono stati occupati fuori dalle prenotazioni
+     */
+    public List<Partecipazione> conferma(long holdId, Collection<Long> personaIds) {
+        SeatHold hold = holds.get(holdId);
+        if (hold != null && (personaIds.isEmpty() || personaIds.size() > hold.getPosti())) {
+            throw new IllegalArgumentException("Numero di persone non valido per la prenotazione " + holdId);
+        }
+        if (hold == null || !hold.transizione(SeatHold.Stato.ATTIVO, SeatHold.Stato.IN_CONFERMA)) {
+            throw new IllegalStateException("Prenotazione non trovata o non più attiva: " + holdId);
+        }
+        hold.cancellaTimeout();
+        holds.remove(holdId);
+        // I posti del blocco sono ancora trattenuti, quindi l'evento non può essere tolto dalla mappa
+        PostiEvento postiEvento = eventi.get(hold.getEventoId());
+        postiEvento.iniziaConferma();
+        try {
+            List<Partecipazione> partecipazioni = partecipazioneDAO.iscrivi(
+                hold.getEventoId(), personaIds, Partecipazione.Stato.CONFERMATA);
+            postiEvento.conferma(hold.getPosti(), personaIds.size());
+            hold.transizione(SeatHold.Stato.IN_CONFERMA, SeatHold.Stato.CONFERMATO);
+            return partecipazioni;
+        } catch (RuntimeException e) {
+            // Il database ha rifiutato l'iscrizione: libera il blocco, i posti disponibili verranno riletti
+            postiEvento.annullaConferma(hold.getPosti());
+            hold.transizione(SeatHold.Stato.IN_CONFERMA, SeatHold.Stato.RILASCIATO);
+            throw e;
+        } finally {
+            rimuoviSeInattivo(hold.getEventoId());
+        }
+    }
+
+    /**
+     * Rilascia un blocco prima della scadenza
+     * @param holdId l'ID del blocco
+     * @return true se il blocco era attivo ed è stato rilasciato
+     */
+    public boolean rilascia(long holdId) {
+        SeatHold hold = holds.get(holdId);
+        if (hold == null || !hold.transizione(SeatHold.Stato.ATTIVO, SeatHold.Stato.RILASCIATO)) {
+            return false;
+        }
+        hold.cancellaTimeout();
+        holds.remove(holdId);
+        liberaPosti(hold);
+        return true;
+    }
+
+    /**
+     * Trova un blocco attivo
+     * @param holdId l'ID del blocco
+     * @return il blocco, o null se non esiste o non è più attivo
+     */
+    public SeatHold findById(long holdId) {
+        return holds.get(holdId);
+    }
+
+    /**
+     * Restituisce i posti di un evento attualmente bloccati da prenotazioni
+     * @param eventoId l'ID dell'evento
+     * @return il numero di posti bloccati
+     */
+    public int getPostiTrattenuti(Long eventoId) {
+        PostiEvento postiEvento = eventi.get(eventoId);
+        return postiEvento != null ? postiEvento.getTrattenuti() : 0;
+    }
+
+    /**
+     * Restituisce i posti di un evento ancora prenotabili
+     * Per un evento senza blocchi attivi legge i posti disponibili dal database senza tenerlo in memoria
+     * @param eventoId l'ID dell'evento
+     * @return i posti disponibili meno quelli bloccati
+     */
+    public int getPostiPrenotabili(Long eventoId) {
+        PostiEvento postiEvento = eventi.get(eventoId);
+        if (postiEvento == null) {
+            return caricaDisponibili(eventoId);
+        }
+        ricaricaSeSuperato(eventoId, postiEvento);
+        return postiEvento.getPrenotabili();
+    }
+
+    /**
+     * Restituisce il numero di eventi con blocchi attivi o conferme in corso tenuti in memoria
+     * @return il numero di eventi in memoria
+     */
+    public int getNumeroEventiInMemoria() {
+        return eventi.size();
+    }
+
+    /**
+     * Restituisce il numero di blocchi attivi
+     * @return il numero di blocchi attivi
+     */
+    public int getNumeroPrenotazioniAttive() {
+        return holds.size();
+    }
+
+    /**
+     * Restituisce il numero di scadenze di blocchi terminate con un'eccezione
+     * @return il numero di scadenze fallite
+     */
+    public long getScadenzeFallite() {
+        return timerWheel.getErrori();
+    }
+
+    /**
+     * Ferma il timer delle scadenze e smette di ricevere le variazioni dei posti
+     */
+    @Override
+    public void close() {
+        eventoDAO.removePostiListener(postiListener);
+        timerWheel.close();
+    }
+
+    private void scadi(SeatHold hold) {
+        if (hold.transizione(SeatHold.Stato.ATTIVO, SeatHold.Stato.SCADUTO)) {
+            holds.remove(hold.getId());
+            liberaPosti(hold);
+        }
+    }
+
+    // Alla scadenza o al rilascio i posti disponibili vanno riletti: l'evento in memoria viene tolto
+    // se non ha altri blocchi, altrimenti viene marcato da rileggere alla prossima prenotazione
+    private void liberaPosti(SeatHold hold) {
+        PostiEvento postiEvento = eventi.get(hold.getEventoId());
+        postiEvento.rilascia(hold.getPosti());
+        postiEvento.superato();
+        rimuoviSeInattivo(hold.getEventoId());
+    }
+
+    // Chiamato dai DAO dopo il commit: segna soltanto gli eventi da rileggere, senza accedere al database
+    private void postiCambiati(Long eventoId) {
+        if (eventoId == null) {
+            eventi.values().forEach(PostiEvento::superato);
+            return;
+        }
+        PostiEvento postiEvento = eventi.get(eventoId);
+        if (postiEvento != null) {
+            postiEvento.superato();
+        }
+    }
+
+    private PostiEvento getPostiAggiornati(Long eventoId) {
+        PostiEvento postiEvento = eventi.computeIfAbsent(eventoId, id -> new PostiEvento(caricaDisponibili(id)));
+        ricaricaSeSuperato(eventoId, postiEvento);
+        return postiEvento;
+    }
+
+    // La lettura avviene fuori dal lock: il valore viene scartato se nel frattempo è iniziata o terminata
+    // una conferma o è arrivata un'altra variazione, e l'evento resta da rileggere
+    private void ricaricaSeSuperato(Long eventoId, PostiEvento postiEvento) {
+        long generazione = postiEvento.getGenerazioneSeSuperato();
+        if (generazione >= 0) {
+            Integer disponibili = eventoDAO.getPostiDisponibili(eventoId);
+            postiEvento.riallinea(disponibili != null ? disponibili : 0, generazione);
+        }
+    }
+
+    private int caricaDisponibili(Long eventoId) {
+        Integer disponibili = eventoDAO.getPostiDisponibili(eventoId);
+        if (disponibili == null) {
+            throw new IllegalArgumentException("Evento non trovato: " + eventoId);
+        }
+        return disponibili;
+    }
+
+    private void rimuoviSeInattivo(Long eventoId) {
+        eventi.computeIfPresent(eventoId, (id, postiEvento) -> postiEvento.rimuoviSeInattivo() ? null : postiEvento);
+    }
+
+    /**
+     * Posti di un evento visti dalle prenotazioni: disponibili sul database e bloccati in memoria
+     * La generazione cambia a ogni variazione segnalata e a ogni inizio o fine di una conferma,
+     * così una rilettura partita prima viene riconosciuta e scartata
+     */
+    private static final class PostiEvento {
+
+        private int disponibili;
+        private int trattenuti;
+        private int inConferma;
+        private long generazione;
+        private boolean daRileggere;
+        private boolean rimosso;
+
+        PostiEvento(int disponibili) {
+            this.disponibili = disponibili;
+        }
+
+        synchronized boolean trattieni(int posti) {
+            if (rimosso || trattenuti + posti > disponibili) {
+                return false;
+            }
+            trattenuti += posti;
+            return true;
+        }
+
+        synchronized void rilascia(int posti) {
+            trattenuti -= posti;
+        }
+
+        synchronized void iniziaConferma() {
+            inConferma++;
+            generazione++;
+        }
+
+        synchronized void conferma(int postiTrattenuti, int postiOccupati) {
+            trattenuti -= postiTrattenuti;
+            disponibili -= postiOccupati;
+            inConferma--;
+            generazione++;
+        }
+
+        synchronized void annullaConferma(int postiTrattenuti) {
+            trattenuti -= postiTrattenuti;
+            inConferma--;
+            generazione++;
+            daRileggere = true;
+        }
+
+        synchronized void superato() {
+            generazione++;
+            daRileggere = true;
+        }
+
+        /**
+         * @return la generazione da passare a riallinea(), oppure -1 se i posti non vanno riletti
+         */
+        synchronized long getGenerazioneSeSuperato() {
+            return daRileggere && inConferma == 0 ? generazione : -1;
+        }
+
+        synchronized void riallinea(int disponibiliSulDatabase, long generazioneLetta) {
+            if (generazioneLetta == generazione && inConferma == 0) {
+                disponibili = disponibiliSulDatabase;
+                daRileggere = false;
+            }
+        }
+
+        synchronized boolean rimuoviSeInattivo() {
+            rimosso = trattenuti == 0 && inConferma == 0;
+            return rimosso;
+        }
+
+        synchronized boolean isRimosso() {
+            return rimosso;
+        }
+
+        synchronized int getTrattenuti() {
+            return trattenuti;
+        }
+
+        synchronized int getPrenotabili() {
+            return disponibili - trattenuti;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package it.epicode.statistiche;
+
+import it.epicode.dao.StatisticheDAO;
+import it.epicode.dto.Statistiche;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Statistiche aggregate per cruscotti e riepiloghi, servite da una fotografia in memoria
+ * get() restituisce sempre l'ultima fotografia calcolata, senza query e in tempo costante; quando la fotografia
+ * è più vecchia di etaMassima ne viene calcolata una nuova in background con le query di aggregazione
+ * di StatisticheDAO, e nel frattempo si continua a rispondere con quella precedente
+ * Solo la prima chiamata (o aggiorna()) attende il calcolo
+ */
+public class StatisticheService {
+
+    private final StatisticheDAO statisticheDAO;
+    private final Duration etaMassima;
+    private final AtomicBoolean inAggiornamento = new AtomicBoolean();
+    private volatile Statistiche ultime;
+
+    /**
+     * @param statisticheDAO il DAO che calcola le statistiche
+     * @param etaMassima dopo quanto tempo una fotografia viene ricalcolata
+     */
+    public StatisticheService(StatisticheDAO statisticheDAO, Duration etaMassima) {
+        this.statisticheDAO = statisticheDAO;
+        this.etaMassima = etaMassima;
+    }
+
+    /**
+     * Restituisce le statistiche più recenti, al più vecchie di etaMassima più il tempo di un ricalcolo
+     * @return l'ultima fotografia delle statistiche
+     */
+    public Statistiche get() {
+        Statistiche statistiche = ultime;
+        if (statistiche == null) {
+            return aggiorna();
+        }
+        if (statistiche.calcolateIl().plus(etaMassima).isBefore(Instant.now())
+                && inAggiornamento.compareAndSet(false, true)) {
+            // Un solo ricalcolo alla volta; se fallisce resta la fotografia precedente e si riprova alla prossima lettura
+            statisticheDAO.calcolaAsync()
+                .whenComplete((nuove, errore) -> {
+                    if (nuove != null) {
+                        pubblica(nuove);
+                    }
+                    inAggiornamento.set(false);
+                });
+        }
+        return statistiche;
+    }
+
+    /**
+     * Ricalcola subito le statistiche, ad esempio dopo un'importazione
+     * @return la nuova fotografia delle statistiche
+     */
+    public Statistiche aggiorna() {
+        Statistiche statistiche = statisticheDAO.calcola();
+        pubblica(statistiche);
+        return statistiche;
+    }
+
+    // Un ricalcolo in background terminato dopo aggiorna() non deve sostituire una fotografia più recente
+    private synchronized void pubblica(Statistiche statistiche) {
+        if (ultime == null || statistiche.calcolateIl().isAfter(ultime.calcolateIl())) {
+            ultime = statistiche;
+        }
+    }
+}
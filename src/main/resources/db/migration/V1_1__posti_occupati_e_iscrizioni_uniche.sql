@@ -0,0 +1,32 @@
+-- Contatore dei posti occupati, versione degli eventi e unicità delle iscrizioni, assenti nello schema iniziale (V1)
+-- Su un database esistente gli eventi hanno già delle partecipazioni: il contatore parte dal loro numero,
+-- altrimenti ogni evento ripartirebbe da 0 posti occupati e accetterebbe iscrizioni oltre la capienza
+-- Lo script si può rieseguire su un database che ha già colonne e vincolo (la prima versione di V1 li conteneva)
+
+-- 1. Nuove colonne di eventi: posti_occupati (EventoDAO) e version (locking ottimistico di Evento)
+alter table eventi add column if not exists posti_occupati integer default 0 not null;
+alter table eventi add column if not exists version bigint default 0 not null;
+
+-- 2. Iscrizioni ripetute della stessa persona allo stesso evento, possibili prima del vincolo unico:
+-- resta una sola partecipazione per coppia (persona, evento), quella confermata se c'è, altrimenti la prima
+delete from partecipazioni p
+using (
+    select id, row_number() over (
+        partition by persona_id, evento_id order by (stato = 'CONFERMATA') desc, id) as posizione
+    from partecipazioni
+) doppie
+where p.id = doppie.id and doppie.posizione > 1;
+
+-- 3. Posti occupati = partecipazioni dell'evento, come EventoDAO.ricalcolaPostiOccupati()
+update eventi e set posti_occupati = iscritti.totale
+from (select evento_id, count(*) as totale from partecipazioni group by evento_id) iscritti
+where e.id = iscritti.evento_id;
+
+-- 4. Una sola partecipazione per persona ed evento (Partecipazione.UK_PERSONA_EVENTO); serve anche la ricerca per persona
+do $$
+begin
+    if not exists (select 1 from pg_constraint
+                   where conrelid = 'partecipazioni'::regclass and conname = 'uk_partecipazione_persona_evento') then
+        alter table partecipazioni add constraint uk_partecipazione_persona_evento unique (persona_id, evento_id);
+    end if;
+end $$;
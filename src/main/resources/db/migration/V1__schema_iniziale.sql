@@ -0,0 +1,55 @@
+-- Schema iniziale: lo schema generato da Hibernate (hibernate.hbm2ddl.auto=update) per le entità originali
+-- di it.epicode.entities, con ID IDENTITY (bigserial) e nomi dei vincoli generati
+-- Sui database già creati da hbm2ddl questa versione viene registrata come baseline, quindi lo script deve
+-- restare identico a quello schema: le colonne e i vincoli aggiunti in seguito sono nelle migrazioni successive
+
+create table eventi (
+    id bigserial not null,
+    data_evento date not null,
+    descrizione TEXT,
+    numero_massimo_partecipanti integer not null,
+    tipoEvento varchar(255) not null check (tipoEvento in ('PUBBLICO','PRIVATO')),
+    titolo varchar(255) not null,
+    location_id bigint not null,
+    primary key (id)
+);
+
+create table locations (
+    id bigserial not null,
+    citta varchar(255) not null,
+    nome varchar(255) not null,
+    primary key (id)
+);
+
+create table partecipazioni (
+    id bigserial not null,
+    stato varchar(255) not null check (stato in ('CONFERMATA','DA_CONFERMARE')),
+    evento_id bigint not null,
+    persona_id bigint not null,
+    primary key (id)
+);
+
+create table persone (
+    id bigserial not null,
+    cognome varchar(255) not null,
+    data_nascita date not null,
+    email varchar(255) not null unique,
+    nome varchar(255) not null,
+    sesso varchar(255) not null check (sesso in ('M','F')),
+    primary key (id)
+);
+
+alter table if exists eventi
+   add constraint FK1rjedanbxs9eptgs9s8429wnw
+   foreign key (location_id)
+   references locations;
+
+alter table if exists partecipazioni
+   add constraint FKlbnumg7vae17aiefwgack3pmy
+   foreign key (evento_id)
+   references eventi;
+
+alter table if exists partecipazioni
+   add constraint FKip1wc9v12y6l3sar5oxgyqr0y
+   foreign key (persona_id)
+   references persone;
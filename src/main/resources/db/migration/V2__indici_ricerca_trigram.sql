@@ -0,0 +1,9 @@
+-- Indici trigram (pg_trgm) per i metodi search* dei DAO
+-- Gli indici GiST su lower(campo) servono le condizioni LIKE '%testo%' case-insensitive e l'ordinamento per somiglianza
+
+create extension if not exists pg_trgm;
+
+create index if not exists idx_eventi_titolo_trgm on eventi using gist (lower(titolo) gist_trgm_ops);
+create index if not exists idx_locations_nome_trgm on locations using gist (lower(nome) gist_trgm_ops);
+create index if not exists idx_locations_citta_trgm on locations using gist (lower(citta) gist_trgm_ops);
+create index if not exists idx_persone_nome_cognome_trgm on persone using gist (lower(nome || ' ' || cognome) gist_trgm_ops);
@@ -0,0 +1,19 @@
+-- Indici delle query dei DAO, dichiarati anche sulle entità (@Table(indexes = ...))
+-- La ricerca per persona usa già il vincolo unico uk_partecipazione_persona_evento (persona_id, evento_id)
+-- Verifica dei piani: QueryPlanTest (src/test/java, it.epicode.dao)
+
+-- findByEvento, findViewByEvento, confirmAll e il caricamento degli iscritti di un evento (MembershipIndex)
+create index if not exists idx_partecipazioni_evento_stato on partecipazioni (evento_id, stato);
+
+-- findByStato e findByStatoAfter (keyset ordinato per id) sugli stati poco frequenti
+create index if not exists idx_partecipazioni_stato on partecipazioni (stato, id);
+
+-- Ricerche per data dell'evento
+create index if not exists idx_eventi_data on eventi (data_evento);
+
+-- Eventi di una location (chiave esterna: cancellazione a cascata della location)
+create index if not exists idx_eventi_location on eventi (location_id);
+
+-- findByCitta e findByCittaAfter cercano LIKE '%citta%': con il carattere jolly iniziale serve un indice trigram
+-- (quello di V2 è su lower(citta) e serve solo searchByCitta)
+create index if not exists idx_locations_citta on locations using gin (citta gin_trgm_ops);
@@ -0,0 +1,147 @@
+-- Tabella eventi partizionata per anno di data_evento (partizionamento dichiarativo di PostgreSQL)
+-- Le ricerche per intervallo di date (EventoDAO.findByDataEvento*) leggono solo le partizioni degli anni
+-- richiesti: gli eventi degli anni passati restano nelle loro partizioni e non rallentano le query sui prossimi
+-- eventi; vacuum e manutenzione degli indici lavorano partizione per partizione.
+-- Le partizioni annuali sono create da crea_partizioni_eventi(), chiamata qui per gli anni già presenti, per l'anno
+-- corrente e per i due successivi; le date senza partizione finiscono in eventi_default. Le partizioni degli anni
+-- seguenti le crea PartizioniEventi, un controllo periodico del runtime (V7).
+--
+-- Su una tabella partizionata la chiave primaria e ogni vincolo unico devono contenere la chiave di partizione,
+-- quindi la chiave primaria diventa (id, data_evento) e partecipazioni.evento_id non può più avere una chiave
+-- esterna verso eventi(id): il vincolo fk_partecipazioni_evento è sostituito da due trigger con la stessa semantica
+-- (stesso SQLSTATE 23503 e stesso nome del vincolo nel messaggio d'errore).
+
+-- 1. Chiave esterna delle partecipazioni verso eventi (in V1, come in ogni schema creato da hbm2ddl, ha un nome generato)
+do $$
+declare
+    vincolo text;
+begin
+    for vincolo in
+        select conname from pg_constraint
+        where conrelid = 'partecipazioni'::regclass and confrelid = 'eventi'::regclass and contype = 'f'
+    loop
+        execute format('alter table partecipazioni drop constraint %I', vincolo);
+    end loop;
+end $$;
+
+-- 2. Nuova tabella partizionata, con la partizione di default per le date fuori dagli anni gestiti
+alter table eventi rename to eventi_non_partizionata;
+
+create table eventi (
+    data_evento date not null,
+    numero_massimo_partecipanti integer not null,
+    posti_occupati integer default 0 not null,
+    id bigint not null,
+    location_id bigint not null,
+    version bigint default 0 not null,
+    descrizione text,
+    tipoEvento varchar(255) not null check (tipoEvento in ('PUBBLICO', 'PRIVATO')),
+    titolo varchar(255) not null
+) partition by range (data_evento);
+
+create table eventi_default partition of eventi default;
+
+-- 3. Creazione delle partizioni annuali mancanti
+-- Le righe dell'anno già finite in eventi_default vengono spostate nella nuova partizione prima di collegarla;
+-- durante lo spostamento i controlli d'integrità delle partecipazioni sono sospesi (l'evento non cambia)
+create or replace function crea_partizioni_eventi(primo_anno integer, ultimo_anno integer) returns integer
+language plpgsql as $$
+declare
+    anno integer;
+    partizione text;
+    inizio date;
+    fine date;
+    nuove integer := 0;
+begin
+    perform set_config('gestione_eventi.sposta_eventi', 'on', true);
+    for anno in primo_anno..ultimo_anno loop
+        partizione := 'eventi_' || anno;
+        if to_regclass(partizione) is null then
+            inizio := make_date(anno, 1, 1);
+            fine := make_date(anno + 1, 1, 1);
+            execute format('create table %I (like eventi including defaults including constraints)', partizione);
+            execute format('with spostati as (delete from eventi_default where data_evento >= %L and data_evento < %L returning *) '
+                || 'insert into %I select * from spostati', inizio, fine, partizione);
+            execute format('alter table eventi attach partition %I for values from (%L) to (%L)', partizione, inizio, fine);
+            nuove := nuove + 1;
+        end if;
+    end loop;
+    perform set_config('gestione_eventi.sposta_eventi', 'off', true);
+    return nuove;
+end $$;
+
+-- Una partizione per ogni anno con eventi, più l'anno corrente e i due successivi
+do $$
+declare
+    anno integer;
+    corrente integer := extract(year from current_date)::integer;
+begin
+    for anno in select distinct extract(year from data_evento)::integer from eventi_non_partizionata order by 1 loop
+        perform crea_partizioni_eventi(anno, anno);
+    end loop;
+    perform crea_partizioni_eventi(corrente, corrente + 2);
+end $$;
+
+-- 4. Copia dei dati (ogni riga va nella partizione del suo anno) e rimozione della vecchia tabella
+insert into eventi (data_evento, numero_massimo_partecipanti, posti_occupati, id, location_id, version,
+                    descrizione, tipoEvento, titolo)
+select data_evento, numero_massimo_partecipanti, posti_occupati, id, location_id, version,
+       descrizione, tipoEvento, titolo
+from eventi_non_partizionata;
+
+drop table eventi_non_partizionata;
+
+-- 5. Vincoli e indici, creati su ogni partizione
+-- La chiave primaria inizia con id: la ricerca per ID usa l'indice di ogni partizione
+alter table eventi add constraint eventi_pkey primary key (id, data_evento);
+alter table eventi add constraint fk_eventi_location foreign key (location_id) references locations;
+
+-- Ricerche per intervallo di date con paginazione keyset su (data_evento, id)
+create index idx_eventi_data on eventi (data_evento, id);
+create index idx_eventi_location on eventi (location_id);
+create index idx_eventi_titolo_trgm on eventi using gist (lower(titolo) gist_trgm_ops);
+
+-- 6. Integrità referenziale delle partecipazioni al posto di fk_partecipazioni_evento
+-- Inserimento o cambio evento di una partecipazione: l'evento deve esistere; il lock FOR KEY SHARE è lo stesso
+-- di una chiave esterna e blocca la cancellazione concorrente dell'evento
+create or replace function verifica_evento_partecipazione() returns trigger
+language plpgsql as $$
+begin
+    perform 1 from eventi where id = new.evento_id for key share;
+    if not found then
+        raise exception using
+            errcode = 'foreign_key_violation',
+            constraint = 'fk_partecipazioni_evento',
+            message = 'insert or update on table "partecipazioni" violates foreign key constraint "fk_partecipazioni_evento"',
+            detail = format('Key (evento_id)=(%s) is not present in table "eventi".', new.evento_id);
+    end if;
+    return new;
+end $$;
+
+create trigger fk_partecipazioni_evento
+    before insert or update of evento_id on partecipazioni
+    for each row execute function verifica_evento_partecipazione();
+
+-- Cancellazione di un evento che ha ancora partecipazioni. Un update di data_evento che cambia anno sposta la
+-- riga in un'altra partizione come cancellazione più inserimento: il trigger è AFTER, quando la riga spostata
+-- esiste già, e in quel caso non segnala nulla
+create or replace function verifica_partecipazioni_evento() returns trigger
+language plpgsql as $$
+begin
+    if current_setting('gestione_eventi.sposta_eventi', true) = 'on' then
+        return null;
+    end if;
+    if exists (select 1 from partecipazioni where evento_id = old.id)
+            and not exists (select 1 from eventi where id = old.id) then
+        raise exception using
+            errcode = 'foreign_key_violation',
+            constraint = 'fk_partecipazioni_evento',
+            message = 'update or delete on table "eventi" violates foreign key constraint "fk_partecipazioni_evento" on table "partecipazioni"',
+            detail = format('Key (id)=(%s) is still referenced from table "partecipazioni".', old.id);
+    end if;
+    return null;
+end $$;
+
+create trigger fk_partecipazioni_evento
+    after delete on eventi
+    for each row execute function verifica_partecipazioni_evento();
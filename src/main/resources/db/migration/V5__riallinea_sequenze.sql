@@ -0,0 +1,22 @@
+-- Riallinea le sequence degli ID (allocazione a blocchi da 50, ottimizzatore pooled di Hibernate) con gli ID esistenti
+-- Un database creato da hbm2ddl con ID IDENTITY e registrato come baseline alla versione 1 non ha le sequence,
+-- oppure le ha ancora al valore iniziale: il primo blocco di ID allocato coinciderebbe con righe già presenti.
+-- Con il pooled il valore della sequence è l'estremo superiore del blocco: dopo setval(seq, MAX(id)) il blocco
+-- successivo parte da MAX(id) + 1. Una sequence già più avanti degli ID esistenti non viene mai riportata indietro.
+do $$
+declare
+    coppia text[];
+    massimo bigint;
+begin
+    foreach coppia slice 1 in array array[
+            ['persone', 'persone_seq'],
+            ['locations', 'locations_seq'],
+            ['eventi', 'eventi_seq'],
+            ['partecipazioni', 'partecipazioni_seq']] loop
+        execute format('create sequence if not exists %I start with 1 increment by 50', coppia[2]);
+        execute format('select max(id) from %I', coppia[1]) into massimo;
+        if massimo is not null then
+            execute format('select setval(%L, greatest(%s, (select last_value from %I)))', coppia[2], massimo, coppia[2]);
+        end if;
+    end loop;
+end $$;
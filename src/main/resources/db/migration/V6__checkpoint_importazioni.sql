@@ -0,0 +1,14 @@
+-- Avanzamento delle importazioni da file (BulkImporter): una riga per blocco di righe del file,
+-- scritta nella stessa transazione delle entità del blocco. Un'interruzione tra il commit del blocco
+-- e il salvataggio del checkpoint non può più far reimportare il blocco e duplicare location ed eventi.
+-- Quando un blocco rifiutato viene salvato una riga alla volta, ultima_riga è l'ultima riga del file
+-- già salvata o scartata: una nuova esecuzione riprende dalla riga successiva
+create table import_blocchi (
+    importazione varchar(36) not null,
+    blocco bigint not null,
+    ultima_riga bigint not null,
+    importate integer not null,
+    scartate integer not null,
+    completato boolean not null,
+    constraint pk_import_blocchi primary key (importazione, blocco)
+);
@@ -0,0 +1,164 @@
+-- Unicità globale degli ID degli eventi e accesso per ID alla sola partizione dell'evento
+-- La chiave primaria della tabella partizionata (V4) è (id, data_evento): garantisce l'unicità dell'ID solo
+-- all'interno di una partizione, e una query per solo ID consulta l'indice di ogni partizione.
+-- eventi_chiavi ha una riga per evento, con l'ID come chiave primaria e la data che individua la partizione:
+-- la chiave primaria rifiuta un ID già usato in un'altra partizione (SQLSTATE 23505, vincolo eventi_chiavi_pkey),
+-- le query per ID leggono prima la data e poi solo la partizione che la contiene, e il controllo d'integrità
+-- delle partecipazioni (trigger fk_partecipazioni_evento di V4) blocca la riga di eventi_chiavi invece di cercare
+-- l'evento in ogni partizione.
+-- La tabella è mantenuta dai trigger chiave_evento_* su inserimenti, cancellazioni e cambi di data.
+-- Le partizioni annuali non vengono più create a ogni avvio da afterMigrate.sql: questa migrazione crea quelle
+-- mancanti fino a due anni dopo quello corrente e PartizioniEventi, un'attività periodica del runtime,
+-- aggiunge le successive quando servono.
+
+-- 1. Una riga per ogni evento esistente: se un ID è già duplicato tra due partizioni la migrazione fallisce
+create table eventi_chiavi (
+    id bigint primary key,
+    data_evento date not null
+);
+
+insert into eventi_chiavi (id, data_evento) select id, data_evento from eventi;
+
+-- 2. Manutenzione di eventi_chiavi
+-- Un update che cambia la partizione di un evento viene eseguito da PostgreSQL come cancellazione dalla vecchia
+-- partizione e inserimento nella nuova, con i trigger BEFORE UPDATE, BEFORE DELETE e BEFORE INSERT in quest'ordine:
+-- il BEFORE UPDATE aggiorna la data in eventi_chiavi e ricorda l'ID dell'evento spostato, che i trigger di
+-- cancellazione e inserimento ignorano. L'update della data non cambia la chiave della riga di eventi_chiavi,
+-- quindi non attende le iscrizioni concorrenti che la bloccano FOR KEY SHARE
+create or replace function chiave_evento_inserita() returns trigger
+language plpgsql as $$
+begin
+    if current_setting('gestione_eventi.evento_spostato', true) = new.id::text then
+        perform set_config('gestione_eventi.evento_spostato', '', true);
+        return new;
+    end if;
+    insert into eventi_chiavi (id, data_evento) values (new.id, new.data_evento);
+    return new;
+end $$;
+
+create trigger chiave_evento_inserita
+    before insert on eventi
+    for each row execute function chiave_evento_inserita();
+
+-- Lo spostamento delle righe dalla partizione di default fatto da crea_partizioni_eventi non cambia eventi_chiavi
+create or replace function chiave_evento_cancellata() returns trigger
+language plpgsql as $$
+begin
+    if current_setting('gestione_eventi.sposta_eventi', true) = 'on'
+            or current_setting('gestione_eventi.evento_spostato', true) = old.id::text then
+        return old;
+    end if;
+    delete from eventi_chiavi where id = old.id;
+    return old;
+end $$;
+
+create trigger chiave_evento_cancellata
+    before delete on eventi
+    for each row execute function chiave_evento_cancellata();
+
+create or replace function chiave_evento_aggiornata() returns trigger
+language plpgsql as $$
+begin
+    if new.id <> old.id then
+        raise exception using
+            errcode = 'feature_not_supported',
+            message = format('L''ID dell''evento %s non può essere modificato', old.id);
+    end if;
+    if new.data_evento <> old.data_evento then
+        update eventi_chiavi set data_evento = new.data_evento where id = old.id;
+        perform set_config('gestione_eventi.evento_spostato', old.id::text, true);
+    end if;
+    return new;
+end $$;
+
+create trigger chiave_evento_aggiornata
+    before update of id, data_evento on eventi
+    for each row execute function chiave_evento_aggiornata();
+
+-- Un update che non cambia partizione non passa da cancellazione e inserimento: l'ID ricordato viene dimenticato
+-- alla fine dell'update (i trigger AFTER UPDATE non scattano per le righe spostate)
+create or replace function chiave_evento_aggiornata_dopo() returns trigger
+language plpgsql as $$
+begin
+    perform set_config('gestione_eventi.evento_spostato', '', true);
+    return null;
+end $$;
+
+create trigger chiave_evento_aggiornata_dopo
+    after update of data_evento on eventi
+    for each row execute function chiave_evento_aggiornata_dopo();
+
+-- 3. Integrità referenziale delle partecipazioni su eventi_chiavi (stessi trigger e stessi errori di V4)
+-- Il lock FOR KEY SHARE sulla riga di eventi_chiavi blocca la cancellazione concorrente dell'evento, che deve
+-- cancellare quella riga; la verifica delle partecipazioni rimaste avviene dopo, con la riga già cancellata
+create or replace function verifica_evento_partecipazione() returns trigger
+language plpgsql as $$
+begin
+    perform 1 from eventi_chiavi where id = new.evento_id for key share;
+    if not found then
+        raise exception using
+            errcode = 'foreign_key_violation',
+            constraint = 'fk_partecipazioni_evento',
+            message = 'insert or update on table "partecipazioni" violates foreign key constraint "fk_partecipazioni_evento"',
+            detail = format('Key (evento_id)=(%s) is not present in table "eventi".', new.evento_id);
+    end if;
+    return new;
+end $$;
+
+create or replace function verifica_partecipazioni_evento() returns trigger
+language plpgsql as $$
+begin
+    if current_setting('gestione_eventi.sposta_eventi', true) = 'on' then
+        return null;
+    end if;
+    if exists (select 1 from partecipazioni where evento_id = old.id)
+            and not exists (select 1 from eventi_chiavi where id = old.id) then
+        raise exception using
+            errcode = 'foreign_key_violation',
+            constraint = 'fk_partecipazioni_evento',
+            message = 'update or delete on table "eventi" violates foreign key constraint "fk_partecipazioni_evento" on table "partecipazioni"',
+            detail = format('Key (id)=(%s) is still referenced from table "partecipazioni".', old.id);
+    end if;
+    return null;
+end $$;
+
+-- 4. Creazione delle partizioni, ora chiamata da PartizioniEventi: il lock advisory serializza le istanze
+-- dell'applicazione che la eseguono nello stesso momento
+create or replace function crea_partizioni_eventi(primo_anno integer, ultimo_anno integer) returns integer
+language plpgsql as $$
+declare
+    anno integer;
+    partizione text;
+    inizio date;
+    fine date;
+    nuove integer := 0;
+begin
+    perform pg_advisory_xact_lock(hashtext('crea_partizioni_eventi'));
+    perform set_config('gestione_eventi.sposta_eventi', 'on', true);
+    for anno in primo_anno..ultimo_anno loop
+        partizione := 'eventi_' || anno;
+        if to_regclass(partizione) is null then
+            inizio := make_date(anno, 1, 1);
+            fine := make_date(anno + 1, 1, 1);
+            execute format('create table %I (like eventi including defaults including constraints)', partizione);
+            execute format('with spostati as (delete from eventi_default where data_evento >= %L and data_evento < %L returning *) '
+                || 'insert into %I select * from spostati', inizio, fine, partizione);
+            execute format('alter table eventi attach partition %I for values from (%L) to (%L)', partizione, inizio, fine);
+            nuove := nuove + 1;
+        end if;
+    end loop;
+    perform set_config('gestione_eventi.sposta_eventi', 'off', true);
+    return nuove;
+end $$;
+
+-- Partizioni mancanti per gli anni finiti nella partizione di default e fino a due anni dopo quello corrente
+do $$
+declare
+    anno integer;
+    corrente integer := extract(year from current_date)::integer;
+begin
+    for anno in select distinct extract(year from data_evento)::integer from eventi_default order by 1 loop
+        perform crea_partizioni_eventi(anno, anno);
+    end loop;
+    perform crea_partizioni_eventi(corrente, corrente + 2);
+end $$;
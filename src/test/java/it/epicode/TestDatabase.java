@@ -0,0 +1,86 @@
+package it.epicode;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import it.epicode.persistence.PersistenceRuntime;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PostgreSQL embedded per i test, avviato una sola volta per JVM
+ * Ogni classe di test riceve un database nuovo, creato con le migrazioni Flyway come in produzione,
+ * quindi i test non toccano il database configurato in persistence.xml e non dipendono dall'ordine di esecuzione
+ */
+public final class TestDatabase {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+    private static EmbeddedPostgres server;
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Crea un database vuoto e apre un runtime di persistenza su di esso
+     * @return il runtime, da chiudere al termine dei test
+     */
+    public static PersistenceRuntime nuovoRuntime() {
+        return nuovoRuntime(Map.of());
+    }
+
+    /**
+     * Crea un database vuoto e apre un runtime di persistenza su di esso
+     * @param overrides proprietà aggiuntive che sovrascrivono persistence.xml
+     * @return il runtime, da chiudere al termine dei test
+     */
+    public static PersistenceRuntime nuovoRuntime(Map<String, ?> overrides) {
+        Map<String, Object> proprieta = new HashMap<>();
+        proprieta.put("jakarta.persistence.jdbc.url", nuovoDatabase());
+        proprieta.put("jakarta.persistence.jdbc.user", "postgres");
+        proprieta.put("jakarta.persistence.jdbc.password", "postgres");
+        proprieta.put("gestione-eventi.metrics.jmx", "false");
+        proprieta.putAll(overrides);
+        return PersistenceRuntime.create(proprieta);
+    }
+
+    /**
+     * Crea un database vuoto sul server embedded
+     * @return l'URL JDBC del nuovo database
+     */
+    public static String nuovoDatabase() {
+        String nome = "test_" + SEQUENZA.incrementAndGet();
+        try (Connection connection = server().getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + nome);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Impossibile creare il database di test " + nome, e);
+        }
+        return server().getJdbcUrl("postgres", nome) + "&reWriteBatchedInserts=true";
+    }
+
+    private static synchronized EmbeddedPostgres server() {
+        if (server == null) {
+            try {
+                server = EmbeddedPostgres.builder()
+                    .setServerConfig("max_connections", "300")
+                    .setServerConfig("timezone", "UTC")
+                    .start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Impossibile avviare PostgreSQL embedded", e);
+            }
+            EmbeddedPostgres avviato = server;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    avviato.close();
+                } catch (IOException e) {
+                    // Il processo termina comunque
+                }
+            }));
+        }
+        return server;
+    }
+}
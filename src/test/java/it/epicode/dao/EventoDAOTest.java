@@ -0,0 +1,151 @@
+package it.epicode.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PartizioniEventi;
+import it.epicode.persistence.PersistenceRuntime;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class EventoDAOTest {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+    private static final int ANNO = LocalDate.now().getYear();
+
+    private static PersistenceRuntime runtime;
+    private static PersonaDAO personaDAO;
+    private static EventoDAO eventoDAO;
+    private static PartecipazioneDAO partecipazioneDAO;
+    private static Location location;
+
+    @BeforeAll
+    static void apriRuntime() {
+        runtime = TestDatabase.nuovoRuntime();
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        location = new LocationDAO(runtime).save(new Location("Arena", "Verona"));
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @Test
+    void unIdGiaUsatoInUnAltraPartizioneVieneRifiutato() {
+        Evento evento = nuovoEvento(LocalDate.of(ANNO, 3, 1), 5);
+
+        SQLException errore = assertThrows(SQLException.class, () -> esegui(
+            "INSERT INTO eventi (id, data_evento, numero_massimo_partecipanti, location_id, tipoEvento, titolo) " +
+            "VALUES (?, ?, 5, ?, 'PUBBLICO', 'Duplicato')", evento.getId(), LocalDate.of(ANNO + 1, 3, 1), location.getId()));
+
+        assertEquals("23505", errore.getSQLState());
+        assertEquals(evento.getTitolo(), eventoDAO.findById(evento.getId()).getTitolo());
+    }
+
+    @Test
+    void ilCambioDiAnnoSpostaLEventoSenzaPerdereIscrizioniEIntegrita() throws SQLException {
+        Evento evento = nuovoEvento(LocalDate.of(ANNO, 6, 1), 5);
+        Partecipazione prima = partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+
+        evento = eventoDAO.findById(evento.getId());
+        evento.setDataEvento(LocalDate.of(ANNO + 1, 6, 1));
+        eventoDAO.update(evento);
+
+        assertEquals("eventi_" + (ANNO + 1), leggi("SELECT tableoid::regclass::text FROM eventi WHERE id = ?", evento.getId()));
+        assertEquals(LocalDate.of(ANNO + 1, 6, 1).toString(),
+            leggi("SELECT data_evento::text FROM eventi_chiavi WHERE id = ?", evento.getId()));
+        runtime.evictCache();
+        assertEquals(LocalDate.of(ANNO + 1, 6, 1), eventoDAO.findById(evento.getId()).getDataEvento());
+
+        // Dopo lo spostamento le iscrizioni trovano l'evento e la cancellazione resta bloccata dalle partecipazioni
+        partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+        assertEquals(2, eventoDAO.findById(evento.getId()).getPostiOccupati());
+        Long eventoId = evento.getId();
+        SQLException errore = assertThrows(SQLException.class, () -> esegui("DELETE FROM eventi WHERE id = ?", eventoId));
+        assertEquals("23503", errore.getSQLState());
+
+        // deleteById cancella anche le partecipazioni (cascade)
+        eventoDAO.deleteById(eventoId);
+        assertNull(eventoDAO.findById(eventoId));
+        assertNull(leggi("SELECT id::text FROM eventi_chiavi WHERE id = ?", eventoId));
+        assertNull(partecipazioneDAO.findById(prima.getId()));
+    }
+
+    @Test
+    void findByIdSenzaCacheTrovaLEventoNellaSuaPartizione() {
+        Evento evento = nuovoEvento(LocalDate.of(ANNO + 2, 12, 31), 5);
+        runtime.evictCache();
+
+        Evento trovato = eventoDAO.findById(evento.getId());
+
+        assertEquals(evento.getTitolo(), trovato.getTitolo());
+        assertTrue(runtime.getEntityManagerFactory().getCache().contains(Evento.class, evento.getId()), "evento messo in cache");
+        assertNull(eventoDAO.findById(-1L));
+    }
+
+    @Test
+    void lePartizioniMancantiVengonoCreateSoloQuandoServono() throws SQLException {
+        int anno = ANNO + 5;
+        Evento evento = nuovoEvento(LocalDate.of(anno, 1, 15), 5);
+        partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+        assertEquals("eventi_default", leggi("SELECT tableoid::regclass::text FROM eventi WHERE id = ?", evento.getId()));
+
+        PartizioniEventi partizioni = PartizioniEventi.of(runtime);
+        assertEquals(1, partizioni.creaMancanti());
+        assertEquals(0, partizioni.creaMancanti());
+
+        assertEquals("eventi_" + anno, leggi("SELECT tableoid::regclass::text FROM eventi WHERE id = ?", evento.getId()));
+        runtime.evictCache();
+        assertEquals(1, eventoDAO.findById(evento.getId()).getPostiOccupati());
+        partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+        assertEquals(3, eventoDAO.getPostiDisponibili(evento.getId()));
+    }
+
+    private static Evento nuovoEvento(LocalDate data, int capienza) {
+        return eventoDAO.save(new Evento("Evento " + SEQUENZA.incrementAndGet(), data, "Partizioni",
+            Evento.TipoEvento.PUBBLICO, capienza, location));
+    }
+
+    private static Persona nuovaPersona() {
+        int n = SEQUENZA.incrementAndGet();
+        return personaDAO.save(new Persona("Nome" + n, "Cognome" + n, "partizioni." + n + "@test.it",
+            LocalDate.of(1990, 1, 1), Persona.Sesso.M));
+    }
+
+    private static void esegui(String sql, Object... parametri) throws SQLException {
+        try (Connection connessione = runtime.getDataSource().getConnection();
+             PreparedStatement statement = connessione.prepareStatement(sql)) {
+            for (int i = 0; i < parametri.length; i++) {
+                statement.setObject(i + 1, parametri[i]);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private static String leggi(String sql, Long id) throws SQLException {
+        try (Connection connessione = runtime.getDataSource().getConnection();
+             PreparedStatement statement = connessione.prepareStatement(sql)) {
+            statement.setLong(1, id);
+            try (ResultSet righe = statement.executeQuery()) {
+                return righe.next() ? righe.getString(1) : null;
+            }
+        }
+    }
+}
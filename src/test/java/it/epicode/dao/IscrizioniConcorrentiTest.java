@@ -0,0 +1,178 @@
+package it.epicode.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import it.epicode.TestDatabase;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Iscrizioni concorrenti con PartecipazioneDAO.register: più persone dei posti disponibili tentano di iscriversi
+ * allo stesso evento, ognuna due volte, da 1, 8 e 64 thread insieme
+ * Alla fine non ci devono essere overbooking, iscrizioni duplicate né errori diversi da posti esauriti e duplicati
+ */
+class IscrizioniConcorrentiTest {
+
+    private static final int CAPIENZA = 50;
+    private static final int PERSONE = 150;
+    private static final int THREAD_MASSIMI = 64;
+
+    private static PersistenceRuntime runtime;
+    private static PersonaDAO personaDAO;
+    private static EventoDAO eventoDAO;
+    private static PartecipazioneDAO partecipazioneDAO;
+    private static Location location;
+
+    @BeforeAll
+    static void apriRuntime() {
+        // Una connessione per thread: con il pool di default (10) i thread in più aspetterebbero una connessione
+        // invece di eseguire insieme le transazioni sul database. Tutti aggiornano la stessa riga dell'evento,
+        // quindi con 64 thread l'attesa del lock può superare il timeout delle scritture di default (5 s):
+        // il test verifica la correttezza delle iscrizioni, non la latenza
+        runtime = TestDatabase.nuovoRuntime(Map.of(
+            "hibernate.hikari.maximumPoolSize", String.valueOf(THREAD_MASSIMI),
+            "hibernate.hikari.minimumIdle", "10",
+            "gestione-eventi.query.write-timeout-ms", "60000"));
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        location = new LocationDAO(runtime).save(new Location("Arena", "Torino"));
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 64})
+    void nessunOverbooking(int threads) throws Exception {
+        Evento evento = nuovoEvento("Capienza " + threads, CAPIENZA);
+        Esito esito = iscriviInParallelo(threads, evento, nuovePersone("capienza." + threads));
+
+        assertEquals(CAPIENZA, esito.iscritte.sum(), "iscrizioni riuscite");
+        assertEquals(2L * PERSONE - CAPIENZA, esito.esauriti.sum() + esito.duplicate.sum(), "tentativi rifiutati");
+        assertEquals(CAPIENZA, contaPartecipazioni(evento.getId()), "righe di partecipazioni");
+        assertEquals(0, eventoDAO.getPostiDisponibili(evento.getId()), "posti disponibili");
+        assertEquals(0, contaDuplicati(), "coppie (persona, evento) duplicate");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 64})
+    void nessunaIscrizioneDuplicata(int threads) throws Exception {
+        Evento evento = nuovoEvento("Duplicati " + threads, 2 * PERSONE);
+        Esito esito = iscriviInParallelo(threads, evento, nuovePersone("duplicati." + threads));
+
+        assertEquals(PERSONE, esito.iscritte.sum(), "iscrizioni riuscite");
+        assertEquals(PERSONE, esito.duplicate.sum(), "secondi tentativi rifiutati come duplicati");
+        assertEquals(0, esito.esauriti.sum(), "posti esauriti");
+        assertEquals(PERSONE, contaPartecipazioni(evento.getId()), "righe di partecipazioni");
+        assertEquals(PERSONE, eventoDAO.getPostiDisponibili(evento.getId()), "posti disponibili");
+        assertEquals(0, contaDuplicati(), "coppie (persona, evento) duplicate");
+    }
+
+    private static Evento nuovoEvento(String titolo, int capienza) {
+        return eventoDAO.save(new Evento(titolo, LocalDate.now().plusMonths(1), "Iscrizioni concorrenti",
+            Evento.TipoEvento.PUBBLICO, capienza, location));
+    }
+
+    private static List<Persona> nuovePersone(String prefisso) {
+        List<Persona> persone = IntStream.range(0, PERSONE)
+            .mapToObj(i -> new Persona("Nome" + i, "Cognome" + i, prefisso + "." + i + "@test.it",
+                LocalDate.of(1990, 1, 1), Persona.Sesso.F))
+            .collect(Collectors.toList());
+        personaDAO.saveAll(persone);
+        return persone;
+    }
+
+    // Ogni persona tenta due volte, i tentativi sono distribuiti tra i thread partiti insieme
+    private static Esito iscriviInParallelo(int threads, Evento evento, List<Persona> persone) throws Exception {
+        List<Long> tentativi = persone.stream()
+            .flatMap(persona -> Stream.of(persona.getId(), persona.getId()))
+            .collect(Collectors.toList());
+        Esito esito = new Esito();
+        AtomicInteger prossimo = new AtomicInteger();
+        CountDownLatch partenza = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<Void> worker = () -> {
+                    partenza.await();
+                    int i;
+                    while ((i = prossimo.getAndIncrement()) < tentativi.size()) {
+                        try {
+                            partecipazioneDAO.register(tentativi.get(i), evento.getId());
+                            esito.iscritte.increment();
+                        } catch (PostiEsauritiException e) {
+                            esito.esauriti.increment();
+                        } catch (PersonaGiaIscrittaException e) {
+                            esito.duplicate.increment();
+                        }
+                    }
+                    return null;
+                };
+                workers.add(executor.submit(worker));
+            }
+            partenza.countDown();
+            for (Future<Void> worker : workers) {
+                // Un'eccezione diversa da posti esauriti o duplicato fa fallire il test
+                worker.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return esito;
+    }
+
+    private static final class Esito {
+        final LongAdder iscritte = new LongAdder();
+        final LongAdder esauriti = new LongAdder();
+        final LongAdder duplicate = new LongAdder();
+    }
+
+    private static long contaPartecipazioni(Long eventoId) {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM partecipazioni WHERE evento_id = :evento")
+                .setParameter("evento", eventoId)
+                .getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static long contaDuplicati() {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery(
+                    "SELECT COUNT(*) FROM (SELECT persona_id, evento_id FROM partecipazioni " +
+                    "GROUP BY persona_id, evento_id HAVING COUNT(*) > 1) d")
+                .getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+}
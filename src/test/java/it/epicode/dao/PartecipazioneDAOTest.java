@@ -0,0 +1,106 @@
+package it.epicode.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class PartecipazioneDAOTest {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+
+    private static PersistenceRuntime runtime;
+    private static PersonaDAO personaDAO;
+    private static EventoDAO eventoDAO;
+    private static PartecipazioneDAO partecipazioneDAO;
+    private static Location location;
+
+    @BeforeAll
+    static void apriRuntime() {
+        runtime = TestDatabase.nuovoRuntime();
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        location = new LocationDAO(runtime).save(new Location("Palazzo", "Roma"));
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @Test
+    void updateVersoUnEventoPienoVieneRifiutato() {
+        Evento origine = nuovoEvento(5);
+        Evento pieno = nuovoEvento(1);
+        Persona persona = nuovaPersona();
+        Partecipazione partecipazione = partecipazioneDAO.register(persona.getId(), origine.getId());
+        partecipazioneDAO.register(nuovaPersona().getId(), pieno.getId());
+
+        Partecipazione spostata = spostaSu(partecipazione, persona, pieno);
+        assertThrows(PostiEsauritiException.class, () -> partecipazioneDAO.update(spostata));
+
+        assertEquals(4, eventoDAO.getPostiDisponibili(origine.getId()), "posti dell'evento di origine");
+        assertEquals(0, eventoDAO.getPostiDisponibili(pieno.getId()), "posti dell'evento pieno");
+        assertEquals(origine.getId(), partecipazioneDAO.findById(partecipazione.getId()).getEvento().getId());
+        assertTrue(partecipazioneDAO.isPersonaIscritta(persona.getId(), origine.getId()));
+        assertFalse(partecipazioneDAO.isPersonaIscritta(persona.getId(), pieno.getId()));
+    }
+
+    @Test
+    void updateSpostaIlPostoSulNuovoEvento() {
+        Evento origine = nuovoEvento(5);
+        Evento destinazione = nuovoEvento(5);
+        Persona persona = nuovaPersona();
+        Partecipazione partecipazione = partecipazioneDAO.register(persona.getId(), origine.getId());
+
+        partecipazioneDAO.update(spostaSu(partecipazione, persona, destinazione));
+
+        assertEquals(5, eventoDAO.getPostiDisponibili(origine.getId()), "posti dell'evento di origine");
+        assertEquals(4, eventoDAO.getPostiDisponibili(destinazione.getId()), "posti del nuovo evento");
+        assertFalse(partecipazioneDAO.isPersonaIscritta(persona.getId(), origine.getId()));
+        assertTrue(partecipazioneDAO.isPersonaIscritta(persona.getId(), destinazione.getId()));
+    }
+
+    @Test
+    void updateSenzaCambioDiEventoNonToccaIPosti() {
+        Evento evento = nuovoEvento(5);
+        Partecipazione partecipazione = partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+
+        partecipazione.setStato(Partecipazione.Stato.DA_CONFERMARE);
+        partecipazioneDAO.update(partecipazione);
+
+        assertEquals(4, eventoDAO.getPostiDisponibili(evento.getId()));
+        assertEquals(Partecipazione.Stato.DA_CONFERMARE, partecipazioneDAO.findById(partecipazione.getId()).getStato());
+    }
+
+    // Nuova istanza con lo stesso ID: le collezioni lazy di quella restituita dal DAO non sono più caricabili
+    private static Partecipazione spostaSu(Partecipazione partecipazione, Persona persona, Evento evento) {
+        Partecipazione spostata = new Partecipazione(persona, evento, partecipazione.getStato());
+        spostata.setId(partecipazione.getId());
+        return spostata;
+    }
+
+    private static Evento nuovoEvento(int capienza) {
+        return eventoDAO.save(new Evento("Evento " + SEQUENZA.incrementAndGet(), LocalDate.now().plusMonths(1),
+            "Aggiornamento partecipazioni", Evento.TipoEvento.PUBBLICO, capienza, location));
+    }
+
+    private static Persona nuovaPersona() {
+        int n = SEQUENZA.incrementAndGet();
+        return personaDAO.save(new Persona("Nome" + n, "Cognome" + n, "persona." + n + "@test.it",
+            LocalDate.of(1990, 1, 1), Persona.Sesso.M));
+    }
+}
@@ -0,0 +1,89 @@
+package it.epicode.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.Cache;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class PersonaDAOTest {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+
+    private static PersistenceRuntime runtime;
+    private static PersonaDAO personaDAO;
+    private static EventoDAO eventoDAO;
+    private static PartecipazioneDAO partecipazioneDAO;
+    private static Location location;
+
+    @BeforeAll
+    static void apriRuntime() {
+        runtime = TestDatabase.nuovoRuntime();
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        location = new LocationDAO(runtime).save(new Location("Teatro", "Milano"));
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @Test
+    void deleteByIdLiberaIPostiDegliEventiDellaPersona() {
+        Evento primo = nuovoEvento(3);
+        Evento secondo = nuovoEvento(3);
+        Persona persona = nuovaPersona();
+        partecipazioneDAO.register(persona.getId(), primo.getId());
+        partecipazioneDAO.register(persona.getId(), secondo.getId());
+        partecipazioneDAO.register(nuovaPersona().getId(), secondo.getId());
+
+        personaDAO.deleteById(persona.getId());
+
+        assertNull(personaDAO.findById(persona.getId()));
+        assertEquals(3, eventoDAO.getPostiDisponibili(primo.getId()), "posti del primo evento");
+        assertEquals(2, eventoDAO.getPostiDisponibili(secondo.getId()), "posti del secondo evento");
+        assertEquals(0, eventoDAO.findById(primo.getId()).getPostiOccupati(), "contatore letto dopo il delete");
+    }
+
+    @Test
+    void deleteByIdNonSvuotaLaCacheDegliAltriEventi() {
+        Evento coinvolto = nuovoEvento(3);
+        Evento estraneo = nuovoEvento(3);
+        Persona persona = nuovaPersona();
+        partecipazioneDAO.register(persona.getId(), coinvolto.getId());
+        eventoDAO.findById(coinvolto.getId());
+        eventoDAO.findById(estraneo.getId());
+
+        Cache cache = runtime.getEntityManagerFactory().getCache();
+        assertTrue(cache.contains(Evento.class, estraneo.getId()), "evento estraneo in cache prima del delete");
+
+        personaDAO.deleteById(persona.getId());
+
+        assertTrue(cache.contains(Evento.class, estraneo.getId()), "evento estraneo ancora in cache");
+        assertFalse(cache.contains(Evento.class, coinvolto.getId()), "evento della persona tolto dalla cache");
+    }
+
+    private static Evento nuovoEvento(int capienza) {
+        return eventoDAO.save(new Evento("Evento " + SEQUENZA.incrementAndGet(), LocalDate.now().plusMonths(1),
+            "Eliminazione persone", Evento.TipoEvento.PUBBLICO, capienza, location));
+    }
+
+    private static Persona nuovaPersona() {
+        int n = SEQUENZA.incrementAndGet();
+        return personaDAO.save(new Persona("Nome" + n, "Cognome" + n, "eliminata." + n + "@test.it",
+            LocalDate.of(1990, 1, 1), Persona.Sesso.F));
+    }
+}
@@ -0,0 +1,320 @@
+package it.epicode.dao;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import it.epicode.repository.RicercaEventi;
+import jakarta.persistence.EntityManager;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Verifica dei piani di esecuzione delle query più usate dei DAO
+ * Popola un database di test con un dataset di riferimento, esegue ogni metodo registrando le query SQL
+ * generate da Hibernate con i relativi parametri e ripete ogni query con EXPLAIN: se un piano legge una tabella
+ * con Seq Scan il test fallisce, quindi un indice rimosso o una query che non lo usa più rompe la build
+ * Non sono controllati i metodi che leggono gran parte di una tabella (findAll, findByStato(CONFERMATA)):
+ * per loro la scansione sequenziale è il piano corretto. Per lo stesso motivo è accettata la Seq Scan delle
+ * tabelle quasi vuote, come le partizioni degli eventi senza dati
+ */
+class QueryPlanTest {
+
+    private static final int PERSONE = 20_000;
+    private static final int LOCATIONS = 20_000;
+    private static final int CITTA = 2_000;
+    private static final int EVENTI = 5_000;
+    private static final int GIORNI = 1_500;
+    // Una partecipazione su 20 è da confermare, come le iscrizioni in attesa di un sistema reale
+    private static final int DA_CONFERMARE_OGNI = 20;
+    private static final String DOMINIO = "@piano.check";
+    private static final LocalDate PRIMO_GIORNO = LocalDate.of(2024, 1, 1);
+
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+    // Sotto questa stima di righe (pg_class.reltuples) la scansione sequenziale costa meno di un indice
+    private static final int RIGHE_TABELLA_PICCOLA = 1_000;
+
+    // Query registrate dal connection provider mentre un controllo è in corso
+    private static final List<Eseguita> ESEGUITE = Collections.synchronizedList(new ArrayList<>());
+    private static volatile boolean registrazione;
+
+    private static PersistenceRuntime runtime;
+
+    @BeforeAll
+    static void popolaDatabase() {
+        // Le connessioni dei DAO passano dal provider che registra le query
+        runtime = TestDatabase.nuovoRuntime(Map.of("hibernate.connection.provider_class", Registratore.class.getName()));
+        popola(runtime);
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @TestFactory
+    List<DynamicTest> leQueryDeiDaoUsanoGliIndici() {
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        LocationDAO locationDAO = new LocationDAO(runtime);
+        EventoDAO eventoDAO = new EventoDAO(runtime);
+        PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO(runtime);
+        Persona persona = personaDAO.findByEmail(email(PERSONE / 2));
+        Evento evento = eventoDAO.findByTitolo(titolo(EVENTI / 2)).get(0);
+        String citta = citta(CITTA / 2);
+        LocalDate giorno = PRIMO_GIORNO.plusDays(GIORNI / 2);
+
+        List<Controllo> controlli = List.of(
+            new Controllo("PersonaDAO.findById", () -> personaDAO.findById(persona.getId())),
+            new Controllo("PersonaDAO.findByEmail", () -> personaDAO.findByEmail(persona.getEmail())),
+            new Controllo("PersonaDAO.searchByNomeCognome", () -> personaDAO.searchByNomeCognome("piano1234 check", 10)),
+            new Controllo("LocationDAO.findByCitta", () -> locationDAO.findByCitta(citta)),
+            new Controllo("LocationDAO.findByCittaAfter", () -> locationDAO.findByCittaAfter(citta, 0L, 20)),
+            new Controllo("LocationDAO.searchByCitta", () -> locationDAO.searchByCitta(citta(12).substring(0, 5), 10)),
+            new Controllo("EventoDAO.findById", () -> eventoDAO.findById(evento.getId())),
+            new Controllo("EventoDAO.getPostiDisponibili", () -> eventoDAO.getPostiDisponibili(evento.getId())),
+            new Controllo("EventoDAO.searchByTitolo", () -> eventoDAO.searchByTitolo("evento 123", 10)),
+            new Controllo("EventoDAO.findByDataEvento", () -> eventoDAO.findByDataEvento(giorno, giorno)),
+            new Controllo("EventoDAO.findByDataEventoAfter",
+                () -> eventoDAO.findByDataEventoAfter(RicercaEventi.tra(giorno, giorno.plusDays(30)), evento, 20)),
+            new Controllo("EventoDAO.findByDataEvento (mese e città)",
+                () -> eventoDAO.findByDataEvento(RicercaEventi.nelMese(YearMonth.from(giorno)).inCitta(citta))),
+            new Controllo("PartecipazioneDAO.findByPersona", () -> partecipazioneDAO.findByPersona(persona)),
+            new Controllo("PartecipazioneDAO.findByPersonaAfter", () -> partecipazioneDAO.findByPersonaAfter(persona, 0L, 20)),
+            new Controllo("PartecipazioneDAO.findViewByPersona", () -> partecipazioneDAO.findViewByPersona(persona.getId())),
+            new Controllo("PartecipazioneDAO.findByEvento", () -> partecipazioneDAO.findByEvento(evento)),
+            new Controllo("PartecipazioneDAO.findByEventoAfter", () -> partecipazioneDAO.findByEventoAfter(evento, 0L, 20)),
+            new Controllo("PartecipazioneDAO.findByEvento (entity graph)",
+                () -> partecipazioneDAO.findByEvento(evento, Partecipazione.GRAFO_DETTAGLIO)),
+            new Controllo("PartecipazioneDAO.findViewByEvento", () -> partecipazioneDAO.findViewByEvento(evento.getId())),
+            new Controllo("PartecipazioneDAO.findByStato(DA_CONFERMARE)",
+                () -> partecipazioneDAO.findByStato(Partecipazione.Stato.DA_CONFERMARE)),
+            new Controllo("PartecipazioneDAO.findByStatoAfter(DA_CONFERMARE)",
+                () -> partecipazioneDAO.findByStatoAfter(Partecipazione.Stato.DA_CONFERMARE, 0L, 50)),
+            new Controllo("PartecipazioneDAO.areIscritte",
+                () -> partecipazioneDAO.areIscritte(List.of(persona.getId()), evento.getId())));
+
+        return controlli.stream()
+            .map(controllo -> DynamicTest.dynamicTest(controllo.nome(), () -> verifica(controllo)))
+            .toList();
+    }
+
+    // Esegue il metodo registrando le query e fallisce se un piano legge una tabella grande con Seq Scan
+    private static void verifica(Controllo controllo) throws SQLException {
+        // Senza cache di secondo livello ogni chiamata arriva al database
+        runtime.evictCache();
+        ESEGUITE.clear();
+        registrazione = true;
+        try {
+            controllo.chiamata().run();
+        } finally {
+            registrazione = false;
+        }
+        List<Eseguita> eseguite = List.copyOf(ESEGUITE);
+        assertFalse(eseguite.isEmpty(), "nessuna query eseguita");
+        List<String> scansioni = new ArrayList<>();
+        for (Eseguita eseguita : eseguite) {
+            List<String> piano = explain(runtime, eseguita);
+            for (String riga : piano) {
+                Matcher matcher = SEQ_SCAN.matcher(riga);
+                if (matcher.find() && righeStimate(runtime, matcher.group(1)) >= RIGHE_TABELLA_PICCOLA) {
+                    scansioni.add(matcher.group(1) + " in\n" + eseguita.sql() + "\n  " + String.join("\n  ", piano));
+                }
+            }
+        }
+        assertTrue(scansioni.isEmpty(), () -> "Seq Scan su " + String.join("\n", scansioni));
+    }
+
+    // Ripete la query con EXPLAIN e con gli stessi parametri, su una connessione che non viene registrata
+    private static List<String> explain(PersistenceRuntime runtime, Eseguita eseguita) throws SQLException {
+        List<String> piano = new ArrayList<>();
+        try (Connection connessione = runtime.getDataSource().getConnection();
+             PreparedStatement statement = connessione.prepareStatement("EXPLAIN " + eseguita.sql())) {
+            for (Parametro parametro : eseguita.parametri()) {
+                invoca(statement, parametro.metodo(), parametro.args());
+            }
+            try (ResultSet righe = statement.executeQuery()) {
+                while (righe.next()) {
+                    piano.add(righe.getString(1));
+                }
+            }
+        }
+        return piano;
+    }
+
+    // Numero di righe stimato dall'ultimo ANALYZE (-1 se la tabella non è mai stata analizzata)
+    private static long righeStimate(PersistenceRuntime runtime, String tabella) throws SQLException {
+        try (Connection connessione = runtime.getDataSource().getConnection();
+             PreparedStatement statement = connessione.prepareStatement(
+                 "SELECT reltuples FROM pg_class WHERE relname = ?")) {
+            statement.setString(1, tabella);
+            try (ResultSet righe = statement.executeQuery()) {
+                return righe.next() ? righe.getLong(1) : -1;
+            }
+        }
+    }
+
+    // Crea il dataset di riferimento e aggiorna le statistiche usate dal planner
+    private static void popola(PersistenceRuntime runtime) {
+        PersonaDAO personaDAO = new PersonaDAO(runtime);
+        LocationDAO locationDAO = new LocationDAO(runtime);
+        EventoDAO eventoDAO = new EventoDAO(runtime);
+        locationDAO.saveAll(IntStream.range(0, LOCATIONS)
+            .mapToObj(i -> new Location("Piano location " + i, citta(i % CITTA))));
+        personaDAO.saveAll(IntStream.range(0, PERSONE).mapToObj(i -> new Persona("Piano" + i, "Check" + i, email(i),
+            LocalDate.of(1970, 1, 1).plusDays(i % 15_000), i % 2 == 0 ? Persona.Sesso.M : Persona.Sesso.F)));
+        List<Long> locationIds = ids(runtime, "SELECT l.id FROM Location l ORDER BY l.id");
+        conRiferimenti(runtime, em -> eventoDAO.saveAll(IntStream.range(0, EVENTI).mapToObj(i -> new Evento(
+            titolo(i), PRIMO_GIORNO.plusDays(i % GIORNI), null, Evento.TipoEvento.PUBBLICO, 100,
+            em.getReference(Location.class, locationIds.get(i % locationIds.size()))))));
+        // Gli ID crescono nell'ordine di inserimento: l'i-esimo ID è quello dell'i-esima riga generata
+        List<Long> personaIds = ids(runtime, "SELECT p.id FROM Persona p ORDER BY p.id");
+        List<Long> eventoIds = ids(runtime, "SELECT e.id FROM Evento e ORDER BY e.id");
+        // Ogni persona è iscritta a due eventi diversi
+        conRiferimenti(runtime, em -> new PartecipazioneDAO(runtime).saveAll(IntStream.range(0, PERSONE * 2)
+            .mapToObj(i -> new Partecipazione(
+                em.getReference(Persona.class, personaIds.get(i / 2)),
+                em.getReference(Evento.class, eventoIds.get((i / 2 + (i % 2) * (EVENTI / 2)) % eventoIds.size())),
+                i % DA_CONFERMARE_OGNI == 0 ? Partecipazione.Stato.DA_CONFERMARE : Partecipazione.Stato.CONFERMATA))));
+        new EventoDAO(runtime).ricalcolaPostiOccupati();
+        // VACUUM svuota anche la lista pendente degli indici GIN, che dopo un caricamento massivo rende costoso
+        // l'indice trigram agli occhi del planner: in produzione lo fa l'autovacuum
+        try (Connection connessione = runtime.getDataSource().getConnection();
+             Statement statement = connessione.createStatement()) {
+            connessione.setAutoCommit(true);
+            for (String tabella : List.of("persone", "locations", "eventi", "partecipazioni")) {
+                statement.execute("VACUUM ANALYZE " + tabella);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Impossibile aggiornare le statistiche del dataset", e);
+        }
+    }
+
+    private static List<Long> ids(PersistenceRuntime runtime, String jpql) {
+        EntityManager em = runtime.createReadOnlyEntityManager();
+        try {
+            return em.createQuery(jpql, Long.class).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    // I riferimenti per ID vengono creati da un EntityManager chiuso prima del salvataggio, come in BulkImporter
+    private static void conRiferimenti(PersistenceRuntime runtime, Consumer<EntityManager> salva) {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            salva.accept(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static String email(int i) {
+        return "piano." + i + DOMINIO;
+    }
+
+    private static String titolo(int i) {
+        return "Piano evento " + i;
+    }
+
+    // Nomi di città senza un prefisso comune, come quelli reali: con un prefisso condiviso da tutte le righe
+    // i trigrammi cercati comparirebbero ovunque e la scansione sequenziale sarebbe davvero il piano migliore
+    private static String citta(int i) {
+        StringBuilder nome = new StringBuilder();
+        long n = (i * 2654435761L) & 0xFFFFFFFFL;
+        for (int lettera = 0; lettera < 7; lettera++) {
+            nome.append((char) ((lettera == 0 ? 'A' : 'a') + n % 26));
+            n /= 26;
+        }
+        return nome.toString();
+    }
+
+    private static Object invoca(Object destinazione, Method metodo, Object[] args) throws SQLException {
+        try {
+            return metodo.invoke(destinazione, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sql) {
+                throw sql;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Controllo(String nome, Runnable chiamata) {}
+
+    /** Query eseguita da Hibernate: testo SQL e chiamate set* dei parametri, da ripetere sull'EXPLAIN */
+    private record Eseguita(String sql, List<Parametro> parametri) {}
+
+    private record Parametro(Method metodo, Object[] args) {}
+
+    /**
+     * Connection provider HikariCP che registra le query preparate e i parametri impostati da Hibernate
+     */
+    public static class Registratore extends HikariCPConnectionProvider {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connessione = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    Object risultato = invocaProxy(connessione, method, args);
+                    if ("prepareStatement".equals(method.getName()) && risultato instanceof PreparedStatement statement) {
+                        return registra(statement, (String) args[0]);
+                    }
+                    return risultato;
+                });
+        }
+
+        private static PreparedStatement registra(PreparedStatement statement, String sql) {
+            List<Parametro> parametri = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class},
+                (proxy, method, args) -> {
+                    String nome = method.getName();
+                    if (nome.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        parametri.add(new Parametro(method, args.clone()));
+                    } else if ("clearParameters".equals(nome)) {
+                        parametri.clear();
+                    } else if (nome.startsWith("execute") && registrazione && sql.regionMatches(true, 0, "select", 0, 6)) {
+                        ESEGUITE.add(new Eseguita(sql, List.copyOf(parametri)));
+                    }
+                    return invocaProxy(statement, method, args);
+                });
+        }
+
+        private static Object invocaProxy(Object destinazione, Method metodo, Object[] args) throws Throwable {
+            try {
+                return metodo.invoke(destinazione, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
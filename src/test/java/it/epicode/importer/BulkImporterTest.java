@@ -0,0 +1,139 @@
+package it.epicode.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.persistence.PersistenceRuntime;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BulkImporterTest {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+
+    private static PersistenceRuntime runtime;
+
+    @TempDir
+    Path cartella;
+
+    @BeforeAll
+    static void apriRuntime() {
+        runtime = TestDatabase.nuovoRuntime();
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @Test
+    void unaImportazioneInterrottaRiprendeSenzaDuplicareLeLocation() throws IOException {
+        String citta = "Citta" + SEQUENZA.incrementAndGet();
+        List<String> righe = new ArrayList<>();
+        for (int i = 1; i <= 35; i++) {
+            righe.add("Location " + i + "," + citta);
+        }
+        Path file = scrivi("locations.csv", "nome,citta", righe);
+        Path checkpoint = BulkImporter.checkpointPredefinito(file);
+        BulkImporter importer = new BulkImporter(runtime, 1, 10);
+
+        // Il primo blocco viene scritto, poi l'importazione si interrompe
+        assertThrows(RuntimeException.class, () -> importer.importa(TipoImport.LOCATIONS, file, checkpoint, parziale -> {
+            throw new IllegalStateException("interruzione simulata");
+        }));
+        assertTrue(Files.exists(checkpoint));
+        assertEquals(10, conta("SELECT COUNT(*) FROM locations WHERE citta = '" + citta + "'"));
+
+        ImportResult risultato = importer.importa(TipoImport.LOCATIONS, file, checkpoint, parziale -> {});
+
+        assertEquals(10, risultato.saltate());
+        assertEquals(25, risultato.importate());
+        assertEquals(35, conta("SELECT COUNT(*) FROM locations WHERE citta = '" + citta + "'"));
+        assertEquals(35, conta("SELECT COUNT(DISTINCT nome) FROM locations WHERE citta = '" + citta + "'"));
+        assertFalse(Files.exists(checkpoint));
+        assertEquals(0, conta("SELECT COUNT(*) FROM import_blocchi"));
+    }
+
+    @Test
+    void unBloccoRifiutatoVieneSalvatoUnaRigaAllaVolta() throws IOException {
+        int n = SEQUENZA.incrementAndGet();
+        List<String> righe = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            // La riga 6 ripete l'email della riga 5
+            int email = i == 6 ? 5 : i;
+            righe.add("Nome" + i + ",Cognome" + i + ",import" + n + "." + email + "@test.it,1990-01-01,M");
+        }
+        Path file = scrivi("persone.csv", "nome,cognome,email,data_nascita,sesso", righe);
+
+        ImportResult risultato = new BulkImporter(runtime, 1, 10).importa(TipoImport.PERSONE, file);
+
+        assertEquals(9, risultato.importate());
+        assertEquals(1, risultato.scartate());
+        assertEquals(9, conta("SELECT COUNT(*) FROM persone WHERE email LIKE 'import" + n + ".%'"));
+    }
+
+    @Test
+    void unBloccoSalvatoInParteRiprendeDallaRigaSuccessiva() throws IOException {
+        String citta = "Citta" + SEQUENZA.incrementAndGet();
+        List<String> righe = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            righe.add("Location " + i + "," + citta);
+        }
+        Path file = scrivi("locations.csv", "nome,citta", righe);
+        Path checkpoint = BulkImporter.checkpointPredefinito(file);
+        // Stato lasciato da un'esecuzione interrotta dopo aver salvato una alla volta le prime 4 righe del blocco
+        Files.writeString(checkpoint, "importazione=ripresa-" + citta + "\ndimensioneFile=" + Files.size(file) +
+            "\ndimensioneBlocco=10\n", StandardCharsets.UTF_8);
+        esegui("INSERT INTO import_blocchi (importazione, blocco, ultima_riga, importate, scartate, completato) " +
+            "VALUES ('ripresa-" + citta + "', 0, 4, 4, 0, false)");
+        for (int i = 1; i <= 4; i++) {
+            esegui("INSERT INTO locations (id, nome, citta) VALUES (nextval('locations_seq'), 'Location " + i + "', '" + citta + "')");
+        }
+
+        ImportResult risultato = new BulkImporter(runtime, 1, 10).importa(TipoImport.LOCATIONS, file, checkpoint, parziale -> {});
+
+        assertEquals(6, risultato.importate());
+        assertEquals(10, conta("SELECT COUNT(*) FROM locations WHERE citta = '" + citta + "'"));
+        assertEquals(10, conta("SELECT COUNT(DISTINCT nome) FROM locations WHERE citta = '" + citta + "'"));
+    }
+
+    private Path scrivi(String nome, String intestazione, List<String> righe) throws IOException {
+        List<String> contenuto = new ArrayList<>();
+        contenuto.add(intestazione);
+        contenuto.addAll(righe);
+        return Files.write(cartella.resolve(nome), contenuto, StandardCharsets.UTF_8);
+    }
+
+    private static long conta(String sql) {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery(sql).getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void esegui(String sql) {
+        EntityManager em = runtime.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package it.epicode.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import it.epicode.TestDatabase;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.entities.Persona;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class PersistenceRuntimeTest {
+
+    @Test
+    void ilFlushDiUnaScritturaRispettaIlTimeoutDelleScritture() throws SQLException {
+        try (PersistenceRuntime runtime = TestDatabase.nuovoRuntime(Map.of(
+                PersistenceRuntime.WRITE_TIMEOUT_PROPERTY, "500"))) {
+            PersonaDAO personaDAO = new PersonaDAO(runtime);
+            Persona persona = personaDAO.save(new Persona("Mario", "Rossi", "timeout@test.it",
+                LocalDate.of(1990, 1, 1), Persona.Sesso.M));
+            persona.setNome("Luigi");
+
+            // Un'altra transazione tiene il lock della riga: l'update eseguito dal flush resta in attesa
+            try (Connection concorrente = runtime.getDataSource().getConnection()) {
+                concorrente.setAutoCommit(false);
+                try (PreparedStatement lock = concorrente.prepareStatement("SELECT id FROM persone WHERE id = ? FOR UPDATE")) {
+                    lock.setLong(1, persona.getId());
+                    lock.executeQuery().close();
+                }
+                assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(RuntimeException.class, () -> personaDAO.update(persona)));
+                concorrente.rollback();
+            }
+
+            assertEquals("Mario", personaDAO.findById(persona.getId()).getNome());
+            // Il timeout vale solo dentro la transazione: la connessione torna al pool con il valore di default
+            try (Connection connessione = runtime.getDataSource().getConnection();
+                 PreparedStatement statement = connessione.prepareStatement("SHOW statement_timeout");
+                 ResultSet righe = statement.executeQuery()) {
+                righe.next();
+                assertEquals("0", righe.getString(1));
+            }
+        }
+    }
+
+    @Test
+    void ilCompartimentoDelleLettureHaLeConnessioniDelleRepliche() {
+        String repliche = TestDatabase.nuovoDatabase() + "," + TestDatabase.nuovoDatabase();
+        try (PersistenceRuntime runtime = TestDatabase.nuovoRuntime(Map.of(
+                "hibernate.hikari.maximumPoolSize", "4",
+                "gestione-eventi.replica.urls", repliche,
+                "gestione-eventi.replica.pool-size", "6"))) {
+            AdmissionControl admission = AdmissionControl.of(runtime);
+
+            assertEquals(12, admission.getBulkhead(AdmissionControl.LETTURE).getMaxConcorrenti());
+            assertEquals(4, admission.getBulkhead(AdmissionControl.SCRITTURE).getMaxConcorrenti());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package it.epicode.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class SchemaMigrationsTest {
+
+    // Schema generato da Hibernate 6.2 (hbm2ddl) per le entità originali: ID IDENTITY, nomi dei vincoli generati,
+    // nessun contatore dei posti, nessuna versione, nessun vincolo unico sulle iscrizioni e nessuno storico Flyway
+    private static final String SCHEMA_HBM2DDL = """
+        create table eventi (id bigserial not null, data_evento date not null, descrizione TEXT,
+            numero_massimo_partecipanti integer not null,
+            tipoEvento varchar(255) not null check (tipoEvento in ('PUBBLICO','PRIVATO')),
+            titolo varchar(255) not null, location_id bigint not null, primary key (id));
+        create table locations (id bigserial not null, citta varchar(255) not null, nome varchar(255) not null,
+            primary key (id));
+        create table partecipazioni (id bigserial not null,
+            stato varchar(255) not null check (stato in ('CONFERMATA','DA_CONFERMARE')),
+            evento_id bigint not null, persona_id bigint not null, primary key (id));
+        create table persone (id bigserial not null, cognome varchar(255) not null, data_nascita date not null,
+            email varchar(255) not null unique, nome varchar(255) not null,
+            sesso varchar(255) not null check (sesso in ('M','F')), primary key (id));
+        alter table if exists eventi add constraint FK1rjedanbxs9eptgs9s8429wnw
+            foreign key (location_id) references locations;
+        alter table if exists partecipazioni add constraint FKlbnumg7vae17aiefwgack3pmy
+            foreign key (evento_id) references eventi;
+        alter table if exists partecipazioni add constraint FKip1wc9v12y6l3sar5oxgyqr0y
+            foreign key (persona_id) references persone;
+        """;
+
+    // 120 location, persone ed eventi (capienza 10); la persona i è iscritta all'evento i.
+    // L'evento 1 ha anche le persone 2-5 e un'iscrizione ripetuta della persona 1; l'evento 2 ha la persona 3
+    // iscritta due volte, prima da confermare e poi confermata
+    private static final String DATI = """
+        insert into locations (citta, nome) select 'Roma', 'Location ' || i from generate_series(1, 120) i;
+        insert into persone (data_nascita, cognome, email, nome, sesso)
+            select date '1990-01-01', 'Cognome', 'esistente' || i || '@test.it', 'Nome', 'M' from generate_series(1, 120) i;
+        insert into eventi (data_evento, numero_massimo_partecipanti, location_id, tipoEvento, titolo)
+            select current_date, 10, i, 'PUBBLICO', 'Evento ' || i from generate_series(1, 120) i;
+        insert into partecipazioni (evento_id, persona_id, stato) select i, i, 'CONFERMATA' from generate_series(1, 120) i;
+        insert into partecipazioni (evento_id, persona_id, stato) select 1, i, 'CONFERMATA' from generate_series(2, 5) i;
+        insert into partecipazioni (evento_id, persona_id, stato) values (1, 1, 'DA_CONFERMARE');
+        insert into partecipazioni (evento_id, persona_id, stato) values (2, 3, 'DA_CONFERMARE');
+        insert into partecipazioni (evento_id, persona_id, stato) values (2, 3, 'CONFERMATA');
+        """;
+
+    @Test
+    void iPrimiInserimentiSuUnDatabaseEsistenteNonCollidonoConGliIdPresenti() throws SQLException {
+        try (PersistenceRuntime runtime = migraDatabaseHbm2ddl()) {
+            Location location = new LocationDAO(runtime).save(new Location("Nuova", "Milano"));
+            Persona persona = new PersonaDAO(runtime).save(
+                new Persona("Nuova", "Persona", "nuova@test.it", LocalDate.of(1990, 1, 1), Persona.Sesso.F));
+            Evento evento = new EventoDAO(runtime).save(new Evento("Nuovo", LocalDate.now(), null,
+                Evento.TipoEvento.PUBBLICO, 10, location));
+            Partecipazione partecipazione = new PartecipazioneDAO(runtime).save(
+                new Partecipazione(persona, evento, Partecipazione.Stato.CONFERMATA));
+
+            assertTrue(location.getId() > 120, "ID della location " + location.getId());
+            assertTrue(persona.getId() > 120, "ID della persona " + persona.getId());
+            assertTrue(evento.getId() > 120, "ID dell'evento " + evento.getId());
+            assertTrue(partecipazione.getId() > 125, "ID della partecipazione " + partecipazione.getId());
+        }
+    }
+
+    @Test
+    void gliEventiMigratiPartonoDalleIscrizioniEsistentiSenzaDuplicati() throws SQLException {
+        try (PersistenceRuntime runtime = migraDatabaseHbm2ddl()) {
+            EventoDAO eventoDAO = new EventoDAO(runtime);
+            PartecipazioneDAO partecipazioneDAO = new PartecipazioneDAO(runtime);
+
+            assertEquals(5, eventoDAO.findById(1L).getPostiOccupati());
+            assertEquals(2, eventoDAO.findById(2L).getPostiOccupati());
+            assertEquals(1, eventoDAO.findById(120L).getPostiOccupati());
+            assertEquals(5, eventoDAO.getPostiDisponibili(1L));
+            assertEquals(125L, leggi(runtime, "select count(*) from partecipazioni"));
+            assertEquals(0L, leggi(runtime, "select count(*) from partecipazioni where stato = 'DA_CONFERMARE'"));
+            assertEquals(0L, leggi(runtime, "select count(*) from eventi where version <> 0"));
+
+            assertEquals(1L, leggi(runtime, "select count(*) from pg_constraint " +
+                "where conname = 'uk_partecipazione_persona_evento' and contype = 'u' " +
+                "and conrelid = 'partecipazioni'::regclass"));
+            SQLException errore = assertThrows(SQLException.class, () -> esegui(runtime,
+                "insert into partecipazioni (id, evento_id, persona_id, stato) values (-1, 1, 1, 'CONFERMATA')"));
+            assertEquals("23505", errore.getSQLState());
+
+            // Le iscrizioni rispettano la capienza a partire dai posti già occupati
+            for (long personaId = 6; personaId <= 10; personaId++) {
+                partecipazioneDAO.register(personaId, 1L);
+            }
+            assertEquals(0, eventoDAO.getPostiDisponibili(1L));
+            assertThrows(PostiEsauritiException.class, () -> partecipazioneDAO.register(11L, 1L));
+            assertEquals(10L, leggi(runtime, "select count(*) from partecipazioni where evento_id = 1"));
+        }
+    }
+
+    // Crea un database con lo schema e i dati di hbm2ddl e lo migra aprendo un runtime
+    private static PersistenceRuntime migraDatabaseHbm2ddl() throws SQLException {
+        String url = TestDatabase.nuovoDatabase();
+        try (Connection connection = DriverManager.getConnection(url, "postgres", "postgres");
+             Statement statement = connection.createStatement()) {
+            statement.execute(SCHEMA_HBM2DDL);
+            statement.execute(DATI);
+        }
+        return PersistenceRuntime.create(Map.of(
+            "jakarta.persistence.jdbc.url", url,
+            "jakarta.persistence.jdbc.user", "postgres",
+            "jakarta.persistence.jdbc.password", "postgres",
+            "gestione-eventi.metrics.jmx", "false"));
+    }
+
+    private static long leggi(PersistenceRuntime runtime, String sql) throws SQLException {
+        try (Connection connection = runtime.getDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet righe = statement.executeQuery(sql)) {
+            righe.next();
+            return righe.getLong(1);
+        }
+    }
+
+    private static void esegui(PersistenceRuntime runtime, String sql) throws SQLException {
+        try (Connection connection = runtime.getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package it.epicode.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.TestDatabase;
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class UnitOfWorkTest {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+
+    private static PersistenceRuntime runtime;
+    private static UnitOfWork unitOfWork;
+    private static PersonaDAO personaDAO;
+    private static EventoDAO eventoDAO;
+    private static PartecipazioneDAO partecipazioneDAO;
+    private static Location location;
+
+    @BeforeAll
+    static void apriRuntime() {
+        runtime = TestDatabase.nuovoRuntime();
+        unitOfWork = UnitOfWork.of(runtime);
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        location = new LocationDAO(runtime).save(new Location("Auditorium", "Torino"));
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @Test
+    void lIndiceDelleIscrizioniNonVedeLeRigheDiUnUnitaAnnullata() {
+        Evento evento = eventoDAO.save(new Evento("Evento " + SEQUENZA.incrementAndGet(), LocalDate.now().plusMonths(1),
+            "Unità di lavoro", Evento.TipoEvento.PUBBLICO, 10, location));
+        Persona persona = personaDAO.save(nuovaPersona());
+
+        assertThrows(IllegalStateException.class, () -> unitOfWork.esegui(() -> {
+            partecipazioneDAO.register(persona.getId(), evento.getId());
+            // Il primo controllo carica l'indice dell'evento mentre l'iscrizione non è ancora committata
+            partecipazioneDAO.isPersonaIscritta(persona.getId(), evento.getId());
+            throw new IllegalStateException("rollback dell'unità");
+        }));
+
+        assertFalse(partecipazioneDAO.isPersonaIscritta(persona.getId(), evento.getId()));
+        assertEquals(10, eventoDAO.getPostiDisponibili(evento.getId()));
+    }
+
+    @Test
+    void saveAllDentroUnUnitaNonTrattieneLeEntitaGiaScritte() {
+        List<Persona> persone = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            persone.add(nuovaPersona());
+        }
+
+        int entitaNellUnita = unitOfWork.esegui(() -> {
+            Persona trattenuta = personaDAO.save(nuovaPersona());
+            personaDAO.saveAll(persone, 50);
+            Session session = runtime.createEntityManager().unwrap(Session.class);
+            assertTrue(session.contains(trattenuta), "le entità dell'unità restano gestite");
+            return session.getStatistics().getEntityCount();
+        });
+
+        assertTrue(entitaNellUnita <= 51, "entità nel persistence context dell'unità: " + entitaNellUnita);
+        assertTrue(persone.stream().allMatch(p -> personaDAO.findById(p.getId()) != null));
+    }
+
+    private static Persona nuovaPersona() {
+        int n = SEQUENZA.incrementAndGet();
+        return new Persona("Nome" + n, "Cognome" + n, "unita." + n + "@test.it", LocalDate.of(1990, 1, 1), Persona.Sesso.F);
+    }
+}
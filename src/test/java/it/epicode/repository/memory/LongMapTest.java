@@ -0,0 +1,179 @@
+package it.epicode.repository.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class LongMapTest {
+
+    @Test
+    void putSovrascriveERestituisceIlValorePrecedente() {
+        LongMap<String> mappa = new LongMap<>();
+
+        assertNull(mappa.put(7, "a"));
+        assertEquals("a", mappa.put(7, "b"));
+
+        assertEquals("b", mappa.get(7));
+        assertEquals(1, mappa.size());
+        assertNull(mappa.get(8));
+    }
+
+    @Test
+    void laChiaveZeroERiservata() {
+        LongMap<String> mappa = new LongMap<>();
+
+        assertThrows(IllegalArgumentException.class, () -> mappa.put(0, "zero"));
+        assertNull(mappa.get(0));
+        assertNull(mappa.remove(0));
+    }
+
+    @Test
+    void chiaviCheCollidonoRestanoTutteRaggiungibili() {
+        LongMap<Long> mappa = new LongMap<>();
+        List<Long> collisioni = chiaviConLoStessoIndice(6, 15);
+        collisioni.forEach(chiave -> mappa.put(chiave, chiave * 10));
+
+        for (long chiave : collisioni) {
+            assertEquals(chiave * 10, mappa.get(chiave));
+        }
+        assertNull(mappa.get(collisioni.get(collisioni.size() - 1) + 1_000_003));
+    }
+
+    @Test
+    void rimuovereAMetaDiUnaCatenaDiCollisioniNonPerdeLeChiaviSuccessive() {
+        LongMap<Long> mappa = new LongMap<>();
+        List<Long> collisioni = chiaviConLoStessoIndice(6, 15);
+        collisioni.forEach(chiave -> mappa.put(chiave, chiave));
+
+        assertEquals(collisioni.get(0), mappa.remove(collisioni.get(0)));
+        assertEquals(collisioni.get(3), mappa.remove(collisioni.get(3)));
+        assertNull(mappa.remove(collisioni.get(3)));
+
+        assertEquals(4, mappa.size());
+        for (int i = 0; i < collisioni.size(); i++) {
+            long chiave = collisioni.get(i);
+            if (i == 0 || i == 3) {
+                assertNull(mappa.get(chiave));
+            } else {
+                assertEquals(chiave, mappa.get(chiave));
+            }
+        }
+    }
+
+    @Test
+    void ilRidimensionamentoConservaTutteLeChiavi() {
+        LongMap<Long> mappa = new LongMap<>();
+        for (long chiave = 1; chiave <= 100_000; chiave++) {
+            mappa.put(chiave, -chiave);
+        }
+
+        assertEquals(100_000, mappa.size());
+        for (long chiave = 1; chiave <= 100_000; chiave++) {
+            assertEquals(-chiave, mappa.get(chiave));
+        }
+        long[] somma = new long[1];
+        mappa.forEachValue(valore -> somma[0] += valore);
+        assertEquals(-100_000L * 100_001 / 2, somma[0]);
+    }
+
+    @Test
+    void operazioniCasualiCoincidonoConHashMap() {
+        LongMap<Long> mappa = new LongMap<>();
+        Map<Long, Long> modello = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // Poche chiavi distinte: molte sovrascritture, rimozioni e catene di collisioni
+            long chiave = 1 + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(modello.remove(chiave), mappa.remove(chiave));
+            } else {
+                assertEquals(modello.put(chiave, (long) i), mappa.put(chiave, (long) i));
+            }
+        }
+
+        assertEquals(modello.size(), mappa.size());
+        for (long chiave = 1; chiave <= 2_000; chiave++) {
+            assertEquals(modello.get(chiave), mappa.get(chiave));
+        }
+    }
+
+    @Test
+    void leLettureConcorrentiAUnaScritturaNonLancianoEccezioni() throws Exception {
+        LongMap<Long> mappa = new LongMap<>();
+        ReentrantLock lock = new ReentrantLock();
+        AtomicBoolean fine = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Long>> lettori = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                lettori.add(executor.submit(() -> {
+                    Random random = new Random();
+                    long letture = 0;
+                    while (!fine.get()) {
+                        Long valore = mappa.get(1 + random.nextInt(5_000));
+                        // Un valore letto durante una scrittura può essere di un'altra chiave, mai di un altro tipo
+                        assertTrue(valore == null || valore > 0);
+                        letture++;
+                    }
+                    return letture;
+                }));
+            }
+            Future<?> scrittore = executor.submit(() -> {
+                Random random = new Random(7);
+                for (int i = 0; i < 500_000; i++) {
+                    long chiave = 1 + random.nextInt(5_000);
+                    lock.lock();
+                    try {
+                        if (random.nextBoolean()) {
+                            mappa.put(chiave, chiave);
+                        } else {
+                            mappa.remove(chiave);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                fine.set(true);
+            });
+
+            scrittore.get(1, TimeUnit.MINUTES);
+            for (Future<Long> lettore : lettori) {
+                assertTrue(lettore.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            fine.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    // Chiavi con la stessa posizione iniziale in una tabella di maschera + 1 celle, come calcolata da LongMap
+    private static List<Long> chiaviConLoStessoIndice(int quante, int maschera) {
+        List<Long> result = new ArrayList<>();
+        int obiettivo = indice(1, maschera);
+        for (long chiave = 1; result.size() < quante; chiave++) {
+            if (indice(chiave, maschera) == obiettivo) {
+                result.add(chiave);
+            }
+        }
+        return result;
+    }
+
+    private static int indice(long chiave, int maschera) {
+        long h = chiave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & maschera;
+    }
+}
@@ -0,0 +1,141 @@
+package it.epicode.repository.memory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class LongSetTest {
+
+    @Test
+    void restaOrdinatoConInserimentiFuoriOrdine() {
+        LongSet insieme = new LongSet();
+
+        assertTrue(insieme.add(30));
+        assertTrue(insieme.add(10));
+        assertTrue(insieme.add(20));
+        assertFalse(insieme.add(20));
+        assertTrue(insieme.add(40));
+
+        assertArrayEquals(new long[] {10, 20, 30, 40}, insieme.toArray());
+        assertEquals(4, insieme.size());
+    }
+
+    @Test
+    void rimozioneDallInizioDalMezzoEDallaFine() {
+        LongSet insieme = new LongSet();
+        for (long id = 1; id <= 10; id++) {
+            insieme.add(id);
+        }
+
+        assertTrue(insieme.remove(1));
+        assertTrue(insieme.remove(5));
+        assertTrue(insieme.remove(10));
+        assertFalse(insieme.remove(5));
+
+        assertArrayEquals(new long[] {2, 3, 4, 6, 7, 8, 9}, insieme.toArray());
+        assertFalse(insieme.contains(5));
+        assertTrue(insieme.contains(9));
+    }
+
+    @Test
+    void laCrescitaConservaGliIdInOrdine() {
+        LongSet insieme = new LongSet();
+        for (long id = 100_000; id >= 1; id--) {
+            insieme.add(id * 2);
+        }
+
+        assertEquals(100_000, insieme.size());
+        long[] ids = insieme.toArray();
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals((i + 1) * 2L, ids[i]);
+        }
+        assertTrue(insieme.contains(200_000));
+        assertFalse(insieme.contains(199_999));
+    }
+
+    @Test
+    void dopoRestituisceLaPaginaSuccessiva() {
+        LongSet insieme = new LongSet();
+        for (long id = 2; id <= 20; id += 2) {
+            insieme.add(id);
+        }
+
+        assertArrayEquals(new long[] {2, 4, 6}, insieme.dopo(0, 3));
+        assertArrayEquals(new long[] {8, 10}, insieme.dopo(6, 2));
+        assertArrayEquals(new long[] {8, 10}, insieme.dopo(7, 2));
+        assertArrayEquals(new long[] {18, 20}, insieme.dopo(16, 10));
+        assertArrayEquals(new long[0], insieme.dopo(20, 10));
+        assertArrayEquals(new long[0], insieme.dopo(0, 0));
+    }
+
+    @Test
+    void operazioniCasualiCoincidonoConTreeSet() {
+        LongSet insieme = new LongSet();
+        TreeSet<Long> modello = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = 1 + random.nextInt(3_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(modello.remove(id), insieme.remove(id));
+            } else {
+                assertEquals(modello.add(id), insieme.add(id));
+            }
+        }
+
+        assertEquals(modello.size(), insieme.size());
+        assertArrayEquals(modello.stream().mapToLong(Long::longValue).toArray(), insieme.toArray());
+    }
+
+    @Test
+    void containsConcorrenteAUnaScritturaNonLanciaEccezioni() throws Exception {
+        LongSet insieme = new LongSet();
+        AtomicBoolean fine = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Long>> lettori = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                lettori.add(executor.submit(() -> {
+                    Random random = new Random();
+                    long letture = 0;
+                    while (!fine.get()) {
+                        insieme.contains(1 + random.nextInt(5_000));
+                        letture++;
+                    }
+                    return letture;
+                }));
+            }
+            Future<?> scrittore = executor.submit(() -> {
+                Random random = new Random(7);
+                for (int i = 0; i < 200_000; i++) {
+                    long id = 1 + random.nextInt(5_000);
+                    if (random.nextBoolean()) {
+                        insieme.add(id);
+                    } else {
+                        insieme.remove(id);
+                    }
+                }
+                fine.set(true);
+            });
+
+            scrittore.get(1, TimeUnit.MINUTES);
+            for (Future<Long> lettore : lettori) {
+                assertTrue(lettore.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            fine.set(true);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package it.epicode.repository.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import it.epicode.dao.PersonaGiaIscrittaException;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Partecipazione;
+import it.epicode.entities.Persona;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MemoryDatabaseTest {
+
+    private MemoryDatabase db;
+    private MemoryPersonaRepository persone;
+    private MemoryLocationRepository locations;
+    private MemoryEventoRepository eventi;
+    private MemoryPartecipazioneRepository partecipazioni;
+    private int sequenza;
+
+    @BeforeEach
+    void nuovoDatabase() {
+        db = new MemoryDatabase();
+        persone = new MemoryPersonaRepository(db);
+        locations = new MemoryLocationRepository(db);
+        eventi = new MemoryEventoRepository(db);
+        partecipazioni = new MemoryPartecipazioneRepository(db);
+    }
+
+    @Test
+    void leIscrizioniConcorrentiNonSuperanoLaCapienzaENonSiDuplicano() throws Exception {
+        Evento evento = nuovoEvento(nuovaLocation(), 50);
+        List<Long> personaIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            personaIds.add(persone.save(nuovaPersona()).getId());
+        }
+        AtomicInteger iscritte = new AtomicInteger();
+        AtomicInteger rifiutate = new AtomicInteger();
+        CountDownLatch via = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> compiti = new ArrayList<>();
+            // Ogni persona prova a iscriversi due volte, da thread diversi
+            for (int tentativo = 0; tentativo < 2; tentativo++) {
+                for (Long personaId : personaIds) {
+                    compiti.add(executor.submit(() -> {
+                        via.await();
+                        try {
+                            partecipazioni.register(personaId, evento.getId());
+                            iscritte.incrementAndGet();
+                        } catch (PostiEsauritiException | PersonaGiaIscrittaException e) {
+                            rifiutate.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+            }
+            via.countDown();
+            for (Future<?> compito : compiti) {
+                compito.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, iscritte.get());
+        assertEquals(350, rifiutate.get());
+        assertEquals(0, eventi.getPostiDisponibili(evento.getId()));
+        List<Partecipazione> righe = partecipazioni.findByEvento(evento);
+        assertEquals(50, righe.size());
+        Set<Long> iscritti = new HashSet<>();
+        righe.forEach(p -> assertTrue(iscritti.add(p.getPersona().getId()), "persona iscritta due volte"));
+    }
+
+    @Test
+    void leLetturePerChiaveRestanoCorretteDuranteLeScritture() throws Exception {
+        List<Persona> stabili = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            stabili.add(persone.save(nuovaPersona()));
+        }
+        AtomicBoolean fine = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Long>> lettori = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                lettori.add(executor.submit(() -> {
+                    Random random = new Random();
+                    long letture = 0;
+                    while (!fine.get()) {
+                        Persona attesa = stabili.get(random.nextInt(stabili.size()));
+                        Persona letta = persone.findById(attesa.getId());
+                        assertNotNull(letta);
+                        assertEquals(attesa.getEmail(), letta.getEmail());
+                        assertEquals(attesa.getId(), persone.findByEmail(attesa.getEmail()).getId());
+                        letture++;
+                    }
+                    return letture;
+                }));
+            }
+            // Inserimenti e cancellazioni fanno crescere e spostare le tabelle sotto le letture ottimistiche
+            Future<?> scrittore = executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    Persona transitoria = persone.save(nuovaPersona());
+                    if (i % 2 == 0) {
+                        persone.deleteById(transitoria.getId());
+                    }
+                }
+                fine.set(true);
+            });
+
+            scrittore.get(1, TimeUnit.MINUTES);
+            for (Future<Long> lettore : lettori) {
+                assertTrue(lettore.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            fine.set(true);
+            executor.shutdownNow();
+        }
+        assertEquals(11_000, persone.findAll().size());
+    }
+
+    @Test
+    void leCancellazioniInCascataAggiornanoPostiEIndici() {
+        Location location = nuovaLocation();
+        Evento primo = nuovoEvento(location, 3);
+        Evento secondo = nuovoEvento(nuovaLocation(), 3);
+        Persona persona = persone.save(nuovaPersona());
+        Persona altra = persone.save(nuovaPersona());
+        partecipazioni.register(persona.getId(), primo.getId());
+        partecipazioni.register(persona.getId(), secondo.getId());
+        partecipazioni.register(altra.getId(), secondo.getId());
+
+        persone.deleteById(persona.getId());
+
+        assertEquals(3, eventi.getPostiDisponibili(primo.getId()));
+        assertEquals(2, eventi.getPostiDisponibili(secondo.getId()));
+        assertTrue(partecipazioni.findByPersona(persona).isEmpty());
+        assertEquals(1, partecipazioni.findByEvento(secondo).size());
+        assertNull(persone.findByEmail(persona.getEmail()));
+
+        partecipazioni.register(altra.getId(), primo.getId());
+        locations.deleteById(location.getId());
+
+        assertNull(eventi.findById(primo.getId()));
+        assertEquals(List.of(secondo.getId()), partecipazioni.findByPersona(altra).stream()
+            .map(p -> p.getEvento().getId()).toList());
+        assertTrue(locations.findByCitta(location.getCitta()).stream().noneMatch(l -> l.getId().equals(location.getId())));
+    }
+
+    private Location nuovaLocation() {
+        return locations.save(new Location("Location " + ++sequenza, "Citta" + sequenza));
+    }
+
+    private Evento nuovoEvento(Location location, int capienza) {
+        return eventi.save(new Evento("Evento " + ++sequenza, LocalDate.now().plusMonths(1), "In memoria",
+            Evento.TipoEvento.PUBBLICO, capienza, location));
+    }
+
+    private synchronized Persona nuovaPersona() {
+        int n = ++sequenza;
+        return new Persona("Nome" + n, "Cognome" + n, "memoria." + n + "@test.it", LocalDate.of(1990, 1, 1), Persona.Sesso.F);
+    }
+}
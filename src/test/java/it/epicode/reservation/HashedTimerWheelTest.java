@@ -0,0 +1,53 @@
+package it.epicode.reservation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class HashedTimerWheelTest {
+
+    @Test
+    void lErroreDiUnTaskArrivaAlGestoreEdILTaskSuccessiviVengonoEseguiti() throws InterruptedException {
+        LinkedBlockingQueue<Throwable> errori = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<String> thread = new LinkedBlockingQueue<>();
+        IllegalStateException errore = new IllegalStateException("rilascio fallito");
+        CountDownLatch eseguito = new CountDownLatch(1);
+
+        try (HashedTimerWheel ruota = new HashedTimerWheel(1, TimeUnit.MILLISECONDS, 8, (t, e) -> {
+            thread.add(t.getName());
+            errori.add(e);
+        })) {
+            ruota.schedule(() -> {
+                throw errore;
+            }, 5, TimeUnit.MILLISECONDS);
+            ruota.schedule(eseguito::countDown, 20, TimeUnit.MILLISECONDS);
+
+            assertSame(errore, errori.poll(5, TimeUnit.SECONDS), "eccezione completa passata al gestore");
+            assertEquals("hashed-timer-wheel", thread.poll());
+            assertTrue(eseguito.await(5, TimeUnit.SECONDS), "task successivo eseguito");
+            assertEquals(1, ruota.getErrori());
+        }
+    }
+
+    @Test
+    void unGestoreCheFallisceNonFermaLaRuota() throws InterruptedException {
+        CountDownLatch eseguito = new CountDownLatch(1);
+
+        try (HashedTimerWheel ruota = new HashedTimerWheel(1, TimeUnit.MILLISECONDS, 8, (t, e) -> {
+            throw new IllegalArgumentException("gestore fallito");
+        })) {
+            ruota.schedule(() -> {
+                throw new IllegalStateException("task fallito");
+            }, 5, TimeUnit.MILLISECONDS);
+            ruota.schedule(eseguito::countDown, 20, TimeUnit.MILLISECONDS);
+
+            assertTrue(eseguito.await(5, TimeUnit.SECONDS), "task successivo eseguito");
+            assertEquals(1, ruota.getErrori());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package it.epicode.reservation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import it.epicode.TestDatabase;
+import it.epicode.dao.EventoDAO;
+import it.epicode.dao.LocationDAO;
+import it.epicode.dao.PartecipazioneDAO;
+import it.epicode.dao.PersonaDAO;
+import it.epicode.dao.PostiEsauritiException;
+import it.epicode.entities.Evento;
+import it.epicode.entities.Location;
+import it.epicode.entities.Persona;
+import it.epicode.persistence.PersistenceRuntime;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SeatHoldServiceTest {
+
+    private static final AtomicInteger SEQUENZA = new AtomicInteger();
+    private static final Duration LUNGA = Duration.ofMinutes(5);
+
+    private static PersistenceRuntime runtime;
+    private static PersonaDAO personaDAO;
+    private static EventoDAO eventoDAO;
+    private static PartecipazioneDAO partecipazioneDAO;
+    private static Location location;
+
+    private SeatHoldService service;
+
+    @BeforeAll
+    static void apriRuntime() {
+        runtime = TestDatabase.nuovoRuntime();
+        personaDAO = new PersonaDAO(runtime);
+        eventoDAO = new EventoDAO(runtime);
+        partecipazioneDAO = new PartecipazioneDAO(runtime);
+        location = new LocationDAO(runtime).save(new Location("Arena", "Verona"));
+    }
+
+    @AfterAll
+    static void chiudiRuntime() {
+        runtime.close();
+    }
+
+    @BeforeEach
+    void apriServizio() {
+        service = new SeatHoldService(eventoDAO, partecipazioneDAO);
+    }
+
+    @AfterEach
+    void chiudiServizio() {
+        service.close();
+    }
+
+    @Test
+    void rileggeIPostiDopoUnaIscrizioneFuoriDallePrenotazioni() {
+        Evento evento = nuovoEvento(5);
+        service.trattieni(nuovaPersona().getId(), evento.getId(), 1, LUNGA);
+        assertEquals(4, service.getPostiPrenotabili(evento.getId()));
+
+        partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+        partecipazioneDAO.register(nuovaPersona().getId(), evento.getId());
+
+        assertEquals(2, service.getPostiPrenotabili(evento.getId()));
+        assertThrows(PostiEsauritiException.class,
+            () -> service.trattieni(nuovaPersona().getId(), evento.getId(), 3, LUNGA));
+        service.trattieni(nuovaPersona().getId(), evento.getId(), 2, LUNGA);
+        assertEquals(0, service.getPostiPrenotabili(evento.getId()));
+    }
+
+    @Test
+    void rileggeIPostiLiberatiFuoriDallePrenotazioni() {
+        Evento evento = nuovoEvento(2);
+        Persona iscritta = nuovaPersona();
+        partecipazioneDAO.register(iscritta.getId(), evento.getId());
+        service.trattieni(nuovaPersona().getId(), evento.getId(), 1, LUNGA);
+        assertEquals(0, service.getPostiPrenotabili(evento.getId()));
+
+        personaDAO.deleteById(iscritta.getId());
+
+        assertEquals(1, service.getPostiPrenotabili(evento.getId()));
+        service.trattieni(nuovaPersona().getId(), evento.getId(), 1, LUNGA);
+    }
+
+    @Test
+    void unEventoSenzaBlocchiVieneToltoDallaMemoria() throws InterruptedException {
+        Evento scaduto = nuovoEvento(3);
+        Evento rilasciato = nuovoEvento(3);
+        Evento confermato = nuovoEvento(3);
+        service.trattieni(nuovaPersona().getId(), scaduto.getId(), 2, Duration.ofMillis(200));
+        SeatHold daRilasciare = service.trattieni(nuovaPersona().getId(), rilasciato.getId(), 2, LUNGA);
+        SeatHold daConfermare = service.trattieni(nuovaPersona().getId(), confermato.getId(), 1, LUNGA);
+        assertEquals(3, service.getNumeroEventiInMemoria());
+
+        service.rilascia(daRilasciare.getId());
+        service.conferma(daConfermare.getId());
+        long limite = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (service.getNumeroPrenotazioniAttive() > 0 && System.nanoTime() < limite) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(0, service.getNumeroPrenotazioniAttive());
+        assertEquals(0, service.getNumeroEventiInMemoria());
+        assertEquals(3, service.getPostiPrenotabili(scaduto.getId()));
+        assertEquals(3, service.getPostiPrenotabili(rilasciato.getId()));
+        assertEquals(2, service.getPostiPrenotabili(confermato.getId()));
+        assertEquals(0, service.getNumeroEventiInMemoria(), "la sola lettura non tiene l'evento in memoria");
+    }
+
+    @Test
+    void unaConfermaFallitaRileggeIPostiDalDatabase() {
+        Evento evento = nuovoEvento(2);
+        SeatHold hold = service.trattieni(nuovaPersona().getId(), evento.getId(), 2, LUNGA);
+        // Un'altra istanza del servizio vede ancora i due posti liberi sul database
+        try (SeatHoldService altro = new SeatHoldService(eventoDAO, partecipazioneDAO)) {
+            SeatHold concorrente = altro.trattieni(nuovaPersona().getId(), evento.getId(), 1, LUNGA);
+            altro.conferma(concorrente.getId());
+        }
+
+        List<Long> persone = List.of(nuovaPersona().getId(), nuovaPersona().getId());
+        assertThrows(PostiEsauritiException.class, () -> service.conferma(hold.getId(), persone));
+
+        assertEquals(1, service.getPostiPrenotabili(evento.getId()));
+        assertEquals(0, service.getNumeroEventiInMemoria());
+        assertFalse(partecipazioneDAO.isPersonaIscritta(persone.get(0), evento.getId()));
+    }
+
+    private static Evento nuovoEvento(int capienza) {
+        return eventoDAO.save(new Evento("Evento " + SEQUENZA.incrementAndGet(), LocalDate.now().plusMonths(1),
+            "Prenotazioni temporanee", Evento.TipoEvento.PUBBLICO, capienza, location));
+    }
+
+    private static Persona nuovaPersona() {
+        int n = SEQUENZA.incrementAndGet();
+        return personaDAO.save(new Persona("Nome" + n, "Cognome" + n, "prenota." + n + "@test.it",
+            LocalDate.of(1990, 1, 1), Persona.Sesso.M));
+    }
+}